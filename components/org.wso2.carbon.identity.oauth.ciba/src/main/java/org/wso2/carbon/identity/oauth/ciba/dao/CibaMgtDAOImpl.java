@@ -27,6 +27,7 @@ import org.wso2.carbon.identity.oauth.ciba.common.CibaConstants;
 import org.wso2.carbon.identity.oauth.ciba.exceptions.CibaCoreException;
 import org.wso2.carbon.identity.oauth.ciba.model.CibaAuthCodeDO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.util.AuthorizationStatusNotifier;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.sql.Connection;
@@ -57,6 +58,7 @@ public class CibaMgtDAOImpl implements CibaMgtDAO {
                 prepStmt.setString(2, authCodeKey);
                 prepStmt.execute();
                 IdentityDatabaseUtil.commitTransaction(connection);
+                AuthorizationStatusNotifier.getInstance().notifyStatusChange(authCodeKey);
                 if (log.isDebugEnabled()) {
                     log.debug("Successfully persisted the authentication status: " + authenticationStatus +
                             " identified by authCodeKey: " + authCodeKey);
@@ -93,6 +95,7 @@ public class CibaMgtDAOImpl implements CibaMgtDAO {
                 prepStmt.setString(7, authCodeKey);
                 prepStmt.execute();
                 IdentityDatabaseUtil.commitTransaction(connection);
+                AuthorizationStatusNotifier.getInstance().notifyStatusChange(authCodeKey);
                 if (log.isDebugEnabled()) {
                     log.debug("Successfully updated the authentication request status to 'AUTHENTICATED' for the " +
                             "request identified by authCodeKey: " + authCodeKey);
@@ -32,6 +32,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
 import org.wso2.carbon.identity.oauth2.model.RequestParameter;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AbstractAuthorizationGrantHandler;
+import org.wso2.carbon.identity.oauth2.util.AuthorizationStatusNotifier;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.sql.Timestamp;
@@ -122,7 +123,15 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
             // Validate whether user is authenticated.
             if (isAuthorizationPending(cibaAuthCodeDO)) {
                 updateLastPolledTime(cibaAuthCodeDO);
-                throw new IdentityOAuth2Exception(AUTHORIZATION_PENDING, "Authorization pending");
+                cibaAuthCodeDO = awaitAuthentication(authReqId, cibaAuthCodeDO);
+                if (!isAuthorized(cibaAuthCodeDO)) {
+                    throw new IdentityOAuth2Exception(ACCESS_DENIED, "User denied authentication");
+                }
+                if (isAuthorizationPending(cibaAuthCodeDO)) {
+                    // The auth_req_id may have expired while the request was parked.
+                    validateAuthReqId(cibaAuthCodeDO);
+                    throw new IdentityOAuth2Exception(AUTHORIZATION_PENDING, "Authorization pending");
+                }
             }
 
             setPropertiesForTokenGeneration(tokReqMsgCtx, cibaAuthCodeDO);
@@ -246,6 +255,32 @@ public class CibaGrantHandler extends AbstractAuthorizationGrantHandler {
                 latestPollingTime);
     }
 
+    /**
+     * Parks the token request until the authentication status of the request changes or the long polling timeout
+     * passes, if long polling is enabled.
+     *
+     * @param authReqId      Authentication Request Identifier.
+     * @param cibaAuthCodeDO DO that accumulates information regarding authentication and token requests.
+     * @return The latest persisted state of the authentication request.
+     * @throws IdentityOAuth2Exception Error while retrieving the authentication request.
+     */
+    private CibaAuthCodeDO awaitAuthentication(String authReqId, CibaAuthCodeDO cibaAuthCodeDO)
+            throws IdentityOAuth2Exception {
+
+        AuthorizationStatusNotifier notifier = AuthorizationStatusNotifier.getInstance();
+        if (!notifier.isLongPollingEnabled()) {
+            return cibaAuthCodeDO;
+        }
+        long expiryTime = cibaAuthCodeDO.getIssuedTime().getTime() +
+                cibaAuthCodeDO.getExpiresIn() * SEC_TO_MILLISEC_FACTOR;
+        boolean notified = notifier.awaitStatusChange(cibaAuthCodeDO.getCibaAuthCodeKey(), expiryTime);
+        if (log.isDebugEnabled()) {
+            log.debug("Long polling token request for cibaAuthCodeKey: " + cibaAuthCodeDO.getCibaAuthCodeKey() +
+                    " released by " + (notified ? "a status change." : "timeout."));
+        }
+        return retrieveCibaAuthCode(authReqId);
+    }
+
     /**
      * Validates whether user is authenticated or not.
      *
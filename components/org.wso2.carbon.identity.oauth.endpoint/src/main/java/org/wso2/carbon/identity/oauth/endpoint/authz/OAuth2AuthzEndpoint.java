@@ -34,6 +34,7 @@ import org.apache.oltu.oauth2.common.error.OAuthError;
 import org.apache.oltu.oauth2.common.exception.OAuthProblemException;
 import org.apache.oltu.oauth2.common.exception.OAuthSystemException;
 import org.apache.oltu.oauth2.common.message.OAuthResponse;
+import org.apache.oltu.oauth2.common.message.types.ResponseType;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.owasp.encoder.Encode;
@@ -1495,6 +1496,8 @@ public class OAuth2AuthzEndpoint {
         authorizationGrantCacheEntry.setAuthorizationCode(code);
         boolean isRequestObjectFlow = sessionDataCacheEntry.getoAuth2Parameters().isRequestObjectFlow();
         authorizationGrantCacheEntry.setRequestObjectFlow(isRequestObjectFlow);
+        authorizationGrantCacheEntry.setRequestedClaims(
+                sessionDataCacheEntry.getoAuth2Parameters().getRequestedClaims());
         oAuthMessage.setAuthorizationGrantCacheEntry(authorizationGrantCacheEntry);
     }
 
@@ -1707,6 +1710,12 @@ public class OAuth2AuthzEndpoint {
         String sessionDataKey = params.getSessionDataKey();
         if (EndpointUtil.getRequestObjectService() != null) {
             if (requestObject != null && MapUtils.isNotEmpty(requestObject.getRequestedClaims())) {
+                if (isRequestedClaimsKeptInGrantCache(params)) {
+                    // The requested claims travel with the session data and the authorization grant cache entries,
+                    // which are written in the code flow anyway.
+                    params.setRequestedClaims(new HashMap<>(requestObject.getRequestedClaims()));
+                    return;
+                }
                 EndpointUtil.getRequestObjectService().addRequestObject(params.getClientId(), sessionDataKey,
                         new ArrayList(requestObject.getRequestedClaims().values()));
                 params.setRequestObjectFlow(true);
@@ -1714,6 +1723,13 @@ public class OAuth2AuthzEndpoint {
         }
     }
 
+    private boolean isRequestedClaimsKeptInGrantCache(OAuth2Parameters params) {
+
+        // Only the code flow carries the grant cache entry from the authorization code to the issued tokens.
+        return getOAuthServerConfiguration().isRequestedClaimsInGrantCacheEnabled() &&
+                ResponseType.CODE.toString().equals(params.getResponseType());
+    }
+
     private String handleException(IdentityOAuth2Exception e) throws OAuthSystemException {
 
         if (log.isDebugEnabled()) {
@@ -2666,7 +2682,7 @@ public class OAuth2AuthzEndpoint {
 
         List<String> essentialRequestedClaims = new ArrayList<>();
 
-        if (oauth2Params.isRequestObjectFlow()) {
+        if (oauth2Params.isRequestObjectFlow() || oauth2Params.getRequestedClaims() != null) {
             // Get the requested claims came through request object.
             List<RequestedClaim> requestedClaimsOfIdToken = EndpointUtil.getRequestObjectService()
                     .getRequestedClaimsForSessionDataKey(oauth2Params.getSessionDataKey(), false);
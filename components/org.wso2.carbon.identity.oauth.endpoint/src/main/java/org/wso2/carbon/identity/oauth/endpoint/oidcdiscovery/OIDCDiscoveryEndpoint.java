@@ -30,6 +30,8 @@ import org.wso2.carbon.identity.discovery.OIDCProcessor;
 import org.wso2.carbon.identity.discovery.builders.OIDProviderResponseBuilder;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.endpoint.util.EndpointUtil;
+import org.wso2.carbon.identity.openidconnect.cache.OIDCDiscoveryDocumentCache;
+import org.wso2.carbon.identity.openidconnect.cache.OIDCDiscoveryDocumentCacheEntry;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -38,6 +40,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 /**
@@ -49,6 +52,10 @@ public class OIDCDiscoveryEndpoint {
     private static final Log log = LogFactory.getLog(OIDCDiscoveryEndpoint.class);
     private static final String DISCOVERY_ENDPOINT_PATH_COMPONENT_VALUE_TOKEN = "token";
     private static final String DISCOVERY_ENDPOINT_PATH_COMPONENT_VALUE_OIDCDISCOVERY = "oidcdiscovery";
+    private static final String CACHE_CONTROL_MAX_AGE = "OAuth.OIDCDiscovery.CacheControlMaxAge";
+    private static final long DEFAULT_CACHE_CONTROL_MAX_AGE = 300;
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String ANY_ETAG = "*";
     private OIDProviderResponseBuilder oidProviderResponseBuilder;
 
     @GET
@@ -96,21 +103,72 @@ public class OIDCDiscoveryEndpoint {
 
     private Response getResponse(HttpServletRequest request, String tenant) {
 
-        String response;
-        OIDCProcessor processor = EndpointUtil.getOIDCService();
-        try {
-            OIDProviderResponseBuilder responseBuilder = getOidProviderResponseBuilder();
-            response = responseBuilder.getOIDProviderConfigString(processor.getResponse(request, tenant));
-        } catch (OIDCDiscoveryEndPointException e) {
-            Response.ResponseBuilder errorResponse = Response.status(processor.handleError(e));
-            return errorResponse.entity(e.getMessage()).build();
-        } catch (ServerConfigurationException e) {
-            log.error("Server Configuration error occurred.", e);
-            Response.ResponseBuilder errorResponse = Response.status(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            return errorResponse.entity("Error in reading configuration.").build();
+        OIDCDiscoveryDocumentCacheEntry document = OIDCDiscoveryDocumentCache.getInstance().getDocument(tenant);
+        if (document == null) {
+            String response;
+            OIDCProcessor processor = EndpointUtil.getOIDCService();
+            try {
+                OIDProviderResponseBuilder responseBuilder = getOidProviderResponseBuilder();
+                response = responseBuilder.getOIDProviderConfigString(processor.getResponse(request, tenant));
+            } catch (OIDCDiscoveryEndPointException e) {
+                Response.ResponseBuilder errorResponse = Response.status(processor.handleError(e));
+                return errorResponse.entity(e.getMessage()).build();
+            } catch (ServerConfigurationException e) {
+                log.error("Server Configuration error occurred.", e);
+                Response.ResponseBuilder errorResponse = Response.status(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return errorResponse.entity("Error in reading configuration.").build();
+            }
+            document = new OIDCDiscoveryDocumentCacheEntry(response);
+            OIDCDiscoveryDocumentCache.getInstance().addDocument(document, tenant);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Serving the cached discovery document of tenant: " + tenant);
+        }
+
+        if (isNotModified(request, document.getETag())) {
+            return Response.status(HttpServletResponse.SC_NOT_MODIFIED)
+                    .header(HttpHeaders.ETAG, document.getETag())
+                    .header(HttpHeaders.CACHE_CONTROL, getCacheControlHeaderValue())
+                    .build();
         }
         Response.ResponseBuilder responseBuilder = Response.status(HttpServletResponse.SC_OK);
-        return responseBuilder.entity(response).build();
+        return responseBuilder.entity(document.getDocument())
+                .header(HttpHeaders.ETAG, document.getETag())
+                .header(HttpHeaders.CACHE_CONTROL, getCacheControlHeaderValue())
+                .build();
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String eTag) {
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String requestedETag : ifNoneMatch.split(",")) {
+            requestedETag = StringUtils.removeStart(requestedETag.trim(), WEAK_ETAG_PREFIX);
+            if (ANY_ETAG.equals(requestedETag) || eTag.equals(requestedETag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getCacheControlHeaderValue() {
+
+        long maxAge = DEFAULT_CACHE_CONTROL_MAX_AGE;
+        String configuredMaxAge = IdentityUtil.getProperty(CACHE_CONTROL_MAX_AGE);
+        if (StringUtils.isNotBlank(configuredMaxAge)) {
+            try {
+                maxAge = Long.parseLong(configuredMaxAge.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + configuredMaxAge + " configured for: " + CACHE_CONTROL_MAX_AGE +
+                        ". Using the default value: " + DEFAULT_CACHE_CONTROL_MAX_AGE);
+            }
+        }
+        if (maxAge <= 0) {
+            // Clients may still revalidate the document with its entity tag.
+            return "no-cache";
+        }
+        return "public, max-age=" + maxAge;
     }
 
     @Autowired
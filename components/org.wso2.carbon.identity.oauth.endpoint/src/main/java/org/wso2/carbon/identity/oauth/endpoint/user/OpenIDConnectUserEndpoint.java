@@ -31,6 +31,7 @@ import org.wso2.carbon.identity.oauth.endpoint.user.impl.UserInfoEndpointConfig;
 import org.wso2.carbon.identity.oauth.endpoint.user.impl.UserInfoJWTResponse;
 import org.wso2.carbon.identity.oauth.user.UserInfoAccessTokenValidator;
 import org.wso2.carbon.identity.oauth.user.UserInfoEndpointException;
+import org.wso2.carbon.identity.oauth.user.UserInfoRequestContext;
 import org.wso2.carbon.identity.oauth.user.UserInfoRequestValidator;
 import org.wso2.carbon.identity.oauth.user.UserInfoResponseBuilder;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
@@ -73,11 +74,15 @@ public class OpenIDConnectUserEndpoint {
 
         String userInfoResponse;
         String userInfoResponseContentType;
+        boolean scopeStarted = false;
         try {
             // validate the request
             UserInfoRequestValidator requestValidator = UserInfoEndpointConfig.getInstance().
                     getUserInfoRequestValidator();
             String accessToken = requestValidator.validateRequest(request);
+            // Resolve the token, app and service provider once for the whole request.
+            UserInfoRequestContext.startScope(accessToken);
+            scopeStarted = true;
 
             // validate the access token
             UserInfoAccessTokenValidator tokenValidator =
@@ -96,6 +101,10 @@ public class OpenIDConnectUserEndpoint {
         } catch (OAuthSystemException e) {
             log.error("UserInfoEndpoint Failed", e);
             throw new OAuthSystemException("UserInfoEndpoint Failed");
+        } finally {
+            if (scopeStarted) {
+                UserInfoRequestContext.endScope();
+            }
         }
 
         ResponseBuilder respBuilder = getResponseBuilderWithCacheControlHeaders();
@@ -20,9 +20,11 @@ package org.wso2.carbon.identity.oauth.endpoint.user.impl;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.oltu.oauth2.common.error.OAuthError;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.endpoint.util.EndpointUtil;
 import org.wso2.carbon.identity.oauth.user.UserInfoAccessTokenValidator;
 import org.wso2.carbon.identity.oauth.user.UserInfoEndpointException;
+import org.wso2.carbon.identity.oauth.user.UserInfoRequestContext;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
@@ -76,10 +78,19 @@ public class UserInfoISAccessTokenValidator implements UserInfoAccessTokenValida
             hasOpenIDScope = Arrays.asList(scopes).contains("openid");
         }
 
-        try {
-            accessTokenDO = OAuth2Util.findAccessToken(accessTokenIdentifier, false);
-        } catch (IdentityOAuth2Exception e) {
-            throw new UserInfoEndpointException("Error in getting AccessTokenDO", e);
+        // Reuse the token resolved during validation when a userinfo request scope is active.
+        UserInfoRequestContext requestContext = UserInfoRequestContext.get(accessTokenIdentifier);
+        if (requestContext != null && requestContext.getAccessTokenDO() != null) {
+            accessTokenDO = requestContext.getAccessTokenDO();
+        } else {
+            try {
+                accessTokenDO = OAuth2Util.findAccessToken(accessTokenIdentifier, false);
+            } catch (IdentityOAuth2Exception e) {
+                throw new UserInfoEndpointException("Error in getting AccessTokenDO", e);
+            }
+            if (requestContext != null) {
+                requestContext.setAccessTokenDO(accessTokenDO);
+            }
         }
 
         if (!hasOpenIDScope) {
@@ -94,7 +105,7 @@ public class UserInfoISAccessTokenValidator implements UserInfoAccessTokenValida
 
         try {
             if (accessTokenDO != null && request != null &&
-                    OAuth2Util.getAppInformationByClientId(accessTokenDO.getConsumerKey()).
+                    getAppInformation(accessTokenDO.getConsumerKey(), requestContext).
                     isTokenBindingValidationEnabled() && !isValidTokenBinding(response.getTokenBinding(), request)) {
                     throw new UserInfoEndpointException(OAuthError.ResourceResponse.INVALID_REQUEST,
                             "Valid token binding value not present in the request.");
@@ -109,4 +120,17 @@ public class UserInfoISAccessTokenValidator implements UserInfoAccessTokenValida
         response.setAuthorizationContextToken(authorizationContextToken);
         return response;
     }
+
+    private OAuthAppDO getAppInformation(String clientId, UserInfoRequestContext requestContext)
+            throws IdentityOAuth2Exception, InvalidOAuthClientException {
+
+        if (requestContext != null && requestContext.getOAuthAppDO() != null) {
+            return requestContext.getOAuthAppDO();
+        }
+        OAuthAppDO oAuthAppDO = OAuth2Util.getAppInformationByClientId(clientId);
+        if (requestContext != null) {
+            requestContext.setOAuthAppDO(oAuthAppDO);
+        }
+        return oAuthAppDO;
+    }
 }
@@ -30,7 +30,6 @@ import org.wso2.carbon.identity.application.common.model.ClaimMapping;
 import org.wso2.carbon.identity.application.common.model.ServiceProvider;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.base.IdentityException;
-import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
 import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
@@ -43,6 +42,8 @@ import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.endpoint.user.impl.UserInfoEndpointConfig;
 import org.wso2.carbon.identity.oauth.user.UserInfoClaimRetriever;
 import org.wso2.carbon.identity.oauth.user.UserInfoEndpointException;
+import org.wso2.carbon.identity.oauth.user.UserInfoRequestContext;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMappingCache;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
@@ -115,7 +116,7 @@ public class ClaimUtil {
 
             try {
                 AccessTokenDO accessTokenDO = OAuth2Util.getAccessTokenDOfromTokenIdentifier(
-                        OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+                        UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
                 userId = accessTokenDO.getAuthzUser().getUserId();
                 userTenantDomain = accessTokenDO.getAuthzUser().getTenantDomain();
 
@@ -160,8 +161,8 @@ public class ClaimUtil {
                         log.debug("Requested number of local claims: " + claimURIList.size());
                     }
 
-                    spToLocalClaimMappings = ClaimMetadataHandler.getInstance().getMappingsMapFromOtherDialectToCarbon
-                            (SP_DIALECT, null, userTenantDomain, true);
+                    spToLocalClaimMappings = ClaimDialectMappingCache.getInstance()
+                            .getLocalToExternalMappings(SP_DIALECT, userTenantDomain);
 
                     realm = getUserRealm(null, userTenantDomain);
                     Map<String, String> userClaims = getUserClaimsFromUserStore(userId, realm, claimURIList);
@@ -364,7 +365,7 @@ public class ClaimUtil {
             throws UserInfoEndpointException {
 
         AuthorizationGrantCacheKey cacheKey =
-                new AuthorizationGrantCacheKey(OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+                new AuthorizationGrantCacheKey(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
         AuthorizationGrantCacheEntry cacheEntry =
                 AuthorizationGrantCache.getInstance().getValueFromCacheByToken(cacheKey);
         if (cacheEntry == null) {
@@ -30,6 +30,8 @@ import org.wso2.carbon.identity.discovery.OIDProviderConfigResponse;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.endpoint.oidcdiscovery.impl.OIDProviderJSONResponseBuilder;
 import org.wso2.carbon.identity.oauth.endpoint.util.EndpointUtil;
+import org.wso2.carbon.identity.openidconnect.cache.OIDCDiscoveryDocumentCache;
+import org.wso2.carbon.identity.openidconnect.cache.OIDCDiscoveryDocumentCacheEntry;
 import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
 
 import java.lang.reflect.Field;
@@ -39,16 +41,20 @@ import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 /**
  * This class does unit test coverage for OIDCDiscoveryEndpoint class.
  */
-@PrepareForTest({IdentityUtil.class, EndpointUtil.class})
+@PrepareForTest({IdentityUtil.class, EndpointUtil.class, OIDCDiscoveryDocumentCache.class})
 public class OIDCDiscoveryEndpointTest extends PowerMockIdentityBaseTest {
 
     @Mock
@@ -60,6 +66,9 @@ public class OIDCDiscoveryEndpointTest extends PowerMockIdentityBaseTest {
     @Mock
     DefaultOIDCProcessor defaultOIDCProcessor;
 
+    @Mock
+    OIDCDiscoveryDocumentCache oidcDiscoveryDocumentCache;
+
     private OIDCDiscoveryEndpoint oidcDiscoveryEndpoint;
     private Object identityUtilObj;
 
@@ -98,13 +107,8 @@ public class OIDCDiscoveryEndpointTest extends PowerMockIdentityBaseTest {
         threadLocalProperties.get().put(
                 OAuthConstants.TENANT_NAME_FROM_CONTEXT, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
 
-        Field threadLocalPropertiesField = identityUtilObj.getClass().getDeclaredField("threadLocalProperties");
-        Field modifiersField = Field.class.getDeclaredField("modifiers");
-        modifiersField.setAccessible(true);
-        modifiersField.setInt(threadLocalPropertiesField,
-                threadLocalPropertiesField.getModifiers() & ~Modifier.FINAL);
-        threadLocalPropertiesField.setAccessible(true);
-        threadLocalPropertiesField.set(identityUtilObj, threadLocalProperties);
+        setThreadLocalProperties(threadLocalProperties);
+        mockDiscoveryDocumentCache();
 
         mockStatic(EndpointUtil.class);
         when(EndpointUtil.getOIDCService()).thenReturn(defaultOIDCProcessor);
@@ -119,6 +123,69 @@ public class OIDCDiscoveryEndpointTest extends PowerMockIdentityBaseTest {
         threadLocalProperties.get().remove(OAuthConstants.TENANT_NAME_FROM_CONTEXT);
     }
 
+    @Test
+    public void testGetOIDProviderConfigurationFromCache() throws Exception {
+
+        ThreadLocal<Map<String, Object>> threadLocalProperties = new ThreadLocal() {
+            protected Map<String, Object> initialValue() {
+
+                return new HashMap();
+            }
+        };
+        threadLocalProperties.get().put(
+                OAuthConstants.TENANT_NAME_FROM_CONTEXT, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        setThreadLocalProperties(threadLocalProperties);
+        mockDiscoveryDocumentCache();
+        mockStatic(EndpointUtil.class);
+        when(EndpointUtil.getOIDCService()).thenReturn(defaultOIDCProcessor);
+
+        OIDCDiscoveryDocumentCacheEntry cachedDocument = new OIDCDiscoveryDocumentCacheEntry("{\"issuer\":\"x\"}");
+        when(httpServletRequest.getHeader(HttpHeaders.HOST)).thenReturn("localhost:9443");
+        when(oidcDiscoveryDocumentCache.getDocument(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME))
+                .thenReturn(cachedDocument);
+
+        Response response = oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest);
+        Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        Assert.assertEquals(cachedDocument.getDocument(), response.getEntity());
+        Assert.assertEquals(cachedDocument.getETag(), response.getMetadata().getFirst(HttpHeaders.ETAG));
+        verify(defaultOIDCProcessor, never()).getResponse(any(HttpServletRequest.class), anyString());
+
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("W/" + cachedDocument.getETag());
+        response = oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        Assert.assertNull(response.getEntity());
+
+        // A different Host header is served the same cached document of the tenant.
+        when(httpServletRequest.getHeader(HttpHeaders.HOST)).thenReturn("attacker.example.com");
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(null);
+        response = oidcDiscoveryEndpoint.getOIDProviderConfiguration("token", httpServletRequest);
+        Assert.assertEquals(cachedDocument.getDocument(), response.getEntity());
+        verify(defaultOIDCProcessor, never()).getResponse(any(HttpServletRequest.class), anyString());
+        verify(oidcDiscoveryDocumentCache, never()).addDocument(any(OIDCDiscoveryDocumentCacheEntry.class),
+                anyString());
+
+        when(httpServletRequest.getHeader(HttpHeaders.HOST)).thenReturn(null);
+        when(httpServletRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(null);
+        threadLocalProperties.get().remove(OAuthConstants.TENANT_NAME_FROM_CONTEXT);
+    }
+
+    private void setThreadLocalProperties(ThreadLocal<Map<String, Object>> threadLocalProperties) throws Exception {
+
+        Field threadLocalPropertiesField = identityUtilObj.getClass().getDeclaredField("threadLocalProperties");
+        Field modifiersField = Field.class.getDeclaredField("modifiers");
+        modifiersField.setAccessible(true);
+        modifiersField.setInt(threadLocalPropertiesField,
+                threadLocalPropertiesField.getModifiers() & ~Modifier.FINAL);
+        threadLocalPropertiesField.setAccessible(true);
+        threadLocalPropertiesField.set(identityUtilObj, threadLocalProperties);
+    }
+
+    private void mockDiscoveryDocumentCache() {
+
+        mockStatic(OIDCDiscoveryDocumentCache.class);
+        when(OIDCDiscoveryDocumentCache.getInstance()).thenReturn(oidcDiscoveryDocumentCache);
+    }
+
     private Map<String, Object> getSampleConfigMap() {
 
         Map<String, Object> configMap = new HashMap<>();
@@ -362,6 +362,7 @@ public class UserInfoResponseBaseTest extends PowerMockTestCase {
 
         AccessTokenDO accessTokenDO = new AccessTokenDO();
         accessTokenDO.setAuthzUser(authorizedUser);
+        accessTokenDO.setConsumerKey("mock_client_id");
         when(OAuth2Util.getAccessTokenDOfromTokenIdentifier(accessToken)).thenReturn(accessTokenDO);
 
         when(OAuth2Util.getAuthenticatedUser(any(AccessTokenDO.class))).thenCallRealMethod();
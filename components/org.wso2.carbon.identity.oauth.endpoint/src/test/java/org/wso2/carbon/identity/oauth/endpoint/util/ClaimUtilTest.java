@@ -44,6 +44,7 @@ import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientExcepti
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.user.UserInfoEndpointException;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMappingCache;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
@@ -58,6 +59,7 @@ import org.wso2.carbon.user.core.common.AbstractUserStoreManager;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -66,6 +68,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -248,6 +251,52 @@ public class ClaimUtilTest extends PowerMockIdentityBaseTest {
                                            String userStoreDomain, String claimSeparator, boolean isFederated,
                                            boolean mapFedUsersToLocal, int expectedMapSize) throws Exception {
 
+        mockClaimsFromUserStore(mockRealm, mockAccessTokenDO, mockServiceProvider, claimMappingObject,
+                spToLocalClaimMappings, userClaimsMap, clientId, subjectClaimUri, userStoreDomain, claimSeparator,
+                isFederated, mapFedUsersToLocal);
+
+        Map<String, Object> claimsMap;
+        try {
+            claimsMap = ClaimUtil.getClaimsFromUserStore(mockedValidationTokenResponseDTO);
+            Assert.assertEquals(claimsMap.size(), expectedMapSize);
+        } catch (UserInfoEndpointException e) {
+            Assert.assertEquals(expectedMapSize, -1, "Unexpected exception thrown");
+        }
+    }
+
+    @Test
+    public void testGetClaimsFromUserStoreWithManyToOneMappings() throws Exception {
+
+        // Local claims keyed mappings, as resolved by the claim metadata handler.
+        Map<String, String> localToSpClaimMappings = new HashMap<>();
+        localToSpClaimMappings.put(USERNAME_CLAIM_URI, USERNAME_CLAIM_URI);
+        localToSpClaimMappings.put(ROLE_CLAIM_URI, ROLE_CLAIM_URI);
+        localToSpClaimMappings.put(EMAIL_CLAIM_URI, "mail");
+        mockClaimsFromUserStore(true, true, true, requestedClaimMappings, localToSpClaimMappings, userClaimsMap,
+                CLIENT_ID, USERNAME_CLAIM_URI, "PRIMARY", CLAIM_SEPARATOR, false, false);
+
+        // Two SP claims are mapped to the email claim. Inverting these mappings would resolve the email claim to the
+        // first of them.
+        Map<String, String> spToLocalClaimMappings = new LinkedHashMap<>();
+        spToLocalClaimMappings.put(USERNAME_CLAIM_URI, USERNAME_CLAIM_URI);
+        spToLocalClaimMappings.put(ROLE_CLAIM_URI, ROLE_CLAIM_URI);
+        spToLocalClaimMappings.put("email", EMAIL_CLAIM_URI);
+        spToLocalClaimMappings.put("mail", EMAIL_CLAIM_URI);
+        when(mockedClaimMetadataHandler.getMappingsMapFromOtherDialectToCarbon(
+                anyString(), isNull(Set.class), anyString(), eq(false))).thenReturn(spToLocalClaimMappings);
+
+        Map<String, Object> claimsMap = ClaimUtil.getClaimsFromUserStore(mockedValidationTokenResponseDTO);
+        Assert.assertEquals(claimsMap.size(), 3);
+        Assert.assertEquals(claimsMap.get("mail"), "test@wso2.com");
+        Assert.assertFalse(claimsMap.containsKey("email"));
+    }
+
+    private void mockClaimsFromUserStore(boolean mockRealm, boolean mockAccessTokenDO, boolean mockServiceProvider,
+                                         Object claimMappingObject, Map<String, String> spToLocalClaimMappings,
+                                         Map<String, String> userClaimsMap, String clientId, String subjectClaimUri,
+                                         String userStoreDomain, String claimSeparator, boolean isFederated,
+                                         boolean mapFedUsersToLocal) throws Exception {
+
         ClaimMapping[] claimMappings = (ClaimMapping[]) claimMappingObject;
         mockStatic(IdentityTenantUtil.class);
         if (mockRealm) {
@@ -299,6 +348,7 @@ public class ClaimUtilTest extends PowerMockIdentityBaseTest {
         when(ClaimMetadataHandler.getInstance()).thenReturn(mockedClaimMetadataHandler);
         when(mockedClaimMetadataHandler.getMappingsMapFromOtherDialectToCarbon(
                 anyString(), isNull(Set.class), anyString(), anyBoolean())).thenReturn(spToLocalClaimMappings);
+        ClaimDialectMappingCache.getInstance().clear();
 
         if (userClaimsMap != null) {
             when(mockedUserStoreManager.getUserClaimValuesWithID(anyString(), any(String[].class), anyString())).
@@ -319,14 +369,6 @@ public class ClaimUtilTest extends PowerMockIdentityBaseTest {
 
         when(mockedServiceProvider.getPermissionAndRoleConfig()).thenReturn(mockedPermissionAndRoleConfig);
         when(mockedPermissionAndRoleConfig.getRoleMappings()).thenReturn(roleMappings);
-
-        Map<String, Object> claimsMap;
-        try {
-            claimsMap = ClaimUtil.getClaimsFromUserStore(mockedValidationTokenResponseDTO);
-            Assert.assertEquals(claimsMap.size(), expectedMapSize);
-        } catch (UserInfoEndpointException e) {
-            Assert.assertEquals(expectedMapSize, -1, "Unexpected exception thrown");
-        }
     }
 
     protected void mockOAuth2Util() throws IdentityOAuth2Exception, InvalidOAuthClientException {
@@ -45,7 +45,9 @@ import org.wso2.carbon.identity.oauth.dto.OAuthRevocationResponseDTO;
 import org.wso2.carbon.identity.oauth.dto.OAuthTokenExpiryTimeDTO;
 import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth.dto.TokenBindingMetaDataDTO;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventDispatcher;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
+import org.wso2.carbon.identity.oauth.event.OAuthLifecycleEvent;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth.listener.OAuthApplicationMgtListener;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
@@ -57,6 +59,7 @@ import org.wso2.carbon.identity.oauth2.authz.handlers.ResponseTypeHandler;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.AuthorizedClientDO;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinding;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.oauth2.validators.OAuth2ScopeValidator;
@@ -846,40 +849,27 @@ public class OAuthAdminServiceImpl {
     void updateAppAndRevokeTokensAndAuthzCodes(String consumerKey,
                                                Properties properties) throws IdentityOAuthAdminException {
 
-        int countToken = 0;
         try {
-            Set<AccessTokenDO> activeDetailedTokens = OAuthTokenPersistenceFactory
-                    .getInstance().getAccessTokenDAO().getActiveAcessTokenDataByConsumerKey(consumerKey);
-            String[] accessTokens = new String[activeDetailedTokens.size()];
-
-            for (AccessTokenDO detailToken : activeDetailedTokens) {
-                String token = detailToken.getAccessToken();
-                accessTokens[countToken] = token;
-                countToken++;
-
-                OAuthCacheKey cacheKeyToken = new OAuthCacheKey(token);
-                OAuthCache.getInstance().clearCacheEntry(cacheKeyToken);
-
-                String scope = buildScopeString(detailToken.getScope());
-                String authorizedUser = detailToken.getAuthzUser().getUserId();
-                String authenticatedIDP = detailToken.getAuthzUser().getFederatedIdPName();
-                boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(authorizedUser);
-                String cacheKeyString;
-                if (isUsernameCaseSensitive) {
-                    cacheKeyString = consumerKey + ":" + authorizedUser + ":" + scope + ":" + authenticatedIDP;
-                } else {
-                    cacheKeyString = consumerKey + ":" + authorizedUser.toLowerCase() + ":" + scope + ":"
-                            + authenticatedIDP;
-                }
-                OAuthCacheKey cacheKeyUser = new OAuthCacheKey(cacheKeyString);
-                OAuthCache.getInstance().clearCacheEntry(cacheKeyUser);
-                String tokenBindingRef = NONE;
-                if (detailToken.getTokenBinding() != null) {
-                    tokenBindingRef = detailToken.getTokenBinding().getBindingReference();
-                }
-                OAuthUtil.clearOAuthCache(consumerKey, detailToken.getAuthzUser(),
-                        OAuth2Util.buildScopeString(detailToken.getScope()), tokenBindingRef);
-            }
+            /*
+             * The tokens are revoked by consumer key, and the token values passed to the DAO only determine the token
+             * tables to update. The active tokens are therefore streamed to clear their caches, and only one token
+             * per token table is kept.
+             */
+            Map<String, String> tokensByTokenTable = new HashMap<>();
+            OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().processActiveAccessTokensByConsumerKey(
+                    consumerKey, OAuth2Util.getAccessTokenListingBatchSize(), activeDetailedTokens -> {
+                        for (AccessTokenDO detailToken : activeDetailedTokens) {
+                            String token = detailToken.getAccessToken();
+                            tokensByTokenTable.putIfAbsent(getAccessTokenTable(token), token);
+                            try {
+                                clearAccessTokenCaches(consumerKey, detailToken);
+                            } catch (UserIdNotFoundException e) {
+                                throw new IdentityOAuth2Exception("Error while resolving the user id of the user " +
+                                        "of an access token of the OAuth App with consumerKey: " + consumerKey, e);
+                            }
+                        }
+                    });
+            String[] accessTokens = tokensByTokenTable.values().toArray(new String[0]);
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Access tokens and token of users are removed from the cache for OAuth App with " +
@@ -901,12 +891,47 @@ public class OAuthAdminServiceImpl {
                             consumerKey, properties, authorizationCodes.toArray(
                                     new String[0]), accessTokens);
 
-        } catch (IdentityOAuth2Exception | IdentityApplicationManagementException | UserIdNotFoundException e) {
+        } catch (IdentityOAuth2Exception | IdentityApplicationManagementException e) {
             throw handleError("Error in updating oauth app & revoking access tokens and authz " +
                     "codes for OAuth App with consumerKey: " + consumerKey, e);
         }
     }
 
+    private String getAccessTokenTable(String accessToken) throws IdentityOAuth2Exception {
+
+        if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
+            return OAuth2Util.getAccessTokenStoreTableFromAccessToken(accessToken);
+        }
+        return OAuthConstants.ACCESS_TOKEN_STORE_TABLE;
+    }
+
+    private void clearAccessTokenCaches(String consumerKey, AccessTokenDO detailToken)
+            throws UserIdNotFoundException {
+
+        OAuthCacheKey cacheKeyToken = new OAuthCacheKey(detailToken.getAccessToken());
+        OAuthCache.getInstance().clearCacheEntry(cacheKeyToken);
+
+        String scope = buildScopeString(detailToken.getScope());
+        String authorizedUser = detailToken.getAuthzUser().getUserId();
+        String authenticatedIDP = detailToken.getAuthzUser().getFederatedIdPName();
+        boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(authorizedUser);
+        String cacheKeyString;
+        if (isUsernameCaseSensitive) {
+            cacheKeyString = consumerKey + ":" + authorizedUser + ":" + scope + ":" + authenticatedIDP;
+        } else {
+            cacheKeyString = consumerKey + ":" + authorizedUser.toLowerCase() + ":" + scope + ":"
+                    + authenticatedIDP;
+        }
+        OAuthCacheKey cacheKeyUser = new OAuthCacheKey(cacheKeyString);
+        OAuthCache.getInstance().clearCacheEntry(cacheKeyUser);
+        String tokenBindingRef = NONE;
+        if (detailToken.getTokenBinding() != null) {
+            tokenBindingRef = detailToken.getTokenBinding().getBindingReference();
+        }
+        OAuthUtil.clearOAuthCache(consumerKey, detailToken.getAuthzUser(),
+                OAuth2Util.buildScopeString(detailToken.getScope()), tokenBindingRef);
+    }
+
     /**
      * Removes an OAuth consumer application.
      *
@@ -986,60 +1011,23 @@ public class OAuthAdminServiceImpl {
         AuthenticatedUser loggedInUser = buildAuthenticatedUser(tenantAwareLoggedInUserName, tenantDomain);
 
         String username = UserCoreUtil.addTenantDomainToEntry(tenantAwareLoggedInUserName, tenantDomain);
-        String userStoreDomain = null;
-        if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
-            try {
-                userStoreDomain = OAuth2Util.getUserStoreForFederatedUser(loggedInUser);
-            } catch (IdentityOAuth2Exception e) {
-                String errorMsg = "Error occurred while getting user store domain for User ID : " + loggedInUser;
-                throw handleError(errorMsg, e);
-            }
-        }
 
-        Set<String> clientIds;
+        // A single query lists each application the user holds an ACTIVE or EXPIRED access token for.
+        List<AuthorizedClientDO> authorizedClients;
         try {
-            clientIds = OAuthTokenPersistenceFactory.getInstance().getTokenManagementDAO()
-                    .getAllTimeAuthorizedClientIds(loggedInUser);
+            authorizedClients = OAuthTokenPersistenceFactory.getInstance().getTokenManagementDAO()
+                    .getAuthorizedClients(loggedInUser);
         } catch (IdentityOAuth2Exception e) {
             String errorMsg = "Error occurred while retrieving apps authorized by User ID : " + username;
             throw handleError(errorMsg, e);
         }
-        Set<OAuthConsumerAppDTO> appDTOs = new HashSet<OAuthConsumerAppDTO>();
-        for (String clientId : clientIds) {
-            Set<AccessTokenDO> accessTokenDOs;
-            try {
-                accessTokenDOs = OAuthTokenPersistenceFactory.getInstance()
-                        .getAccessTokenDAO().getAccessTokens(
-                                clientId, loggedInUser, userStoreDomain, true);
-            } catch (IdentityOAuth2Exception e) {
-                String errorMsg = "Error occurred while retrieving access tokens issued for " +
-                        "Client ID : " + clientId + ", User ID : " + username;
-                throw handleError(errorMsg, e);
-            }
-            if (!accessTokenDOs.isEmpty()) {
-                Set<String> distinctClientUserScopeCombo = new HashSet<String>();
-                for (AccessTokenDO accessTokenDO : accessTokenDOs) {
-                    AccessTokenDO scopedToken;
-                    String scopeString = buildScopeString(accessTokenDO.getScope());
-                    try {
-                        scopedToken = OAuthTokenPersistenceFactory.getInstance().
-                                getAccessTokenDAO().getLatestAccessToken(clientId, loggedInUser, userStoreDomain,
-                                scopeString, true);
-                        if (scopedToken != null && !distinctClientUserScopeCombo.contains(clientId + ":" + username)) {
-                            OAuthAppDO appDO = getOAuthAppDO(scopedToken.getConsumerKey());
-                            if (LOG.isDebugEnabled()) {
-                                LOG.debug("Found App: " + appDO.getApplicationName() + " for user: " + username);
-                            }
-                            appDTOs.add(OAuthUtil.buildConsumerAppDTO(appDO));
-                            distinctClientUserScopeCombo.add(clientId + ":" + username);
-                        }
-                    } catch (IdentityOAuth2Exception e) {
-                        String errorMsg = "Error occurred while retrieving latest access token issued for Client ID :" +
-                                " " + clientId + ", User ID : " + username + " and Scope : " + scopeString;
-                        throw handleError(errorMsg, e);
-                    }
-                }
+        List<OAuthConsumerAppDTO> appDTOs = new ArrayList<>(authorizedClients.size());
+        for (AuthorizedClientDO authorizedClient : authorizedClients) {
+            OAuthAppDO appDO = getOAuthAppDO(authorizedClient.getConsumerKey());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Found App: " + appDO.getApplicationName() + " for user: " + username);
             }
+            appDTOs.add(OAuthUtil.buildConsumerAppDTO(appDO));
         }
         return appDTOs.toArray(new OAuthConsumerAppDTO[0]);
     }
@@ -1280,6 +1268,24 @@ public class OAuthAdminServiceImpl {
                 }
             }
         }
+        if (revokeRespDTO == null || !revokeRespDTO.isError()) {
+            publishAsyncRevocationEvents(OAuthLifecycleEvent.Type.POST_TOKEN_REVOCATION_BY_RESOURCE_OWNER,
+                    Arrays.asList(accessTokenDOs));
+        }
+    }
+
+    private void publishAsyncRevocationEvents(OAuthLifecycleEvent.Type eventType,
+                                              List<AccessTokenDO> accessTokenDOs) {
+
+        AsyncOAuthEventDispatcher asyncEventDispatcher = AsyncOAuthEventDispatcher.getInstance();
+        if (!asyncEventDispatcher.hasInterceptors() || accessTokenDOs == null) {
+            return;
+        }
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            if (accessTokenDO != null) {
+                asyncEventDispatcher.publish(OAuthLifecycleEvent.fromAccessToken(eventType, accessTokenDO));
+            }
+        }
     }
 
     private void triggerPreApplicationTokenRevokeListeners(OAuthAppRevocationRequestDTO revokeRequestDTO)
@@ -1313,6 +1319,7 @@ public class OAuthAdminServiceImpl {
                 throw handleError("Error occurred when triggering post revocation listener.", e);
             }
         }
+        publishAsyncRevocationEvents(OAuthLifecycleEvent.Type.POST_TOKEN_REVOCATION_BY_APPLICATION, accessTokenDOs);
     }
 
     private List<AccessTokenDO> getActiveAccessTokensByConsumerKey(String consumerKey)
@@ -29,11 +29,14 @@ import org.wso2.carbon.identity.application.authentication.framework.model.Authe
 import org.wso2.carbon.identity.application.common.model.User;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.cache.JWTVerificationResultCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.dto.OAuthConsumerAppDTO;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventDispatcher;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
+import org.wso2.carbon.identity.oauth.event.OAuthLifecycleEvent;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth.util.ClaimCache;
 import org.wso2.carbon.identity.oauth.util.ClaimCacheKey;
@@ -342,6 +345,7 @@ public final class OAuthUtil {
         OAuthCacheKey cacheKey = new OAuthCacheKey(accessTokenDO.getAccessToken());
         String tenantDomain = accessTokenDO.getAuthzUser().getTenantDomain();
         OAuthCache.getInstance().clearCacheEntry(cacheKey,  tenantDomain);
+        JWTVerificationResultCache.getInstance().invalidate(accessTokenDO.getAccessToken());
     }
 
     public static AuthenticatedUser getAuthenticatedUser(String fullyQualifiedUserName) {
@@ -465,6 +469,11 @@ public final class OAuthUtil {
                 LOG.error("Error while triggering listener for post token revocation by system.", e);
             }
         }
+        AsyncOAuthEventDispatcher asyncEventDispatcher = AsyncOAuthEventDispatcher.getInstance();
+        if (accessTokenDO != null && asyncEventDispatcher.hasInterceptors()) {
+            asyncEventDispatcher.publish(OAuthLifecycleEvent.fromAccessToken(
+                    OAuthLifecycleEvent.Type.POST_TOKEN_REVOCATION_BY_SYSTEM, accessTokenDO));
+        }
     }
 
     /**
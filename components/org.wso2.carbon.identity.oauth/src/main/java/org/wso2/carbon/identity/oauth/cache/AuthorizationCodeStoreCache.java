@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.utils.CarbonUtils;
+
+/**
+ * Expiring store of issued authorization codes, keyed by the hash of the code. When the cache backed authorization
+ * code store is enabled this cache is the source of truth for active codes, while the authorization code table only
+ * receives asynchronous audit writes. Authorization codes are globally unique, hence all entries are kept in the
+ * super tenant space.
+ */
+public class AuthorizationCodeStoreCache extends BaseCache<OAuthCacheKey, AuthzCodeDO> {
+
+    private static final String AUTHORIZATION_CODE_STORE_CACHE_NAME = "AuthorizationCodeStoreCache";
+    private static volatile AuthorizationCodeStoreCache instance;
+
+    private AuthorizationCodeStoreCache() {
+
+        super(AUTHORIZATION_CODE_STORE_CACHE_NAME);
+    }
+
+    public static AuthorizationCodeStoreCache getInstance() {
+
+        CarbonUtils.checkSecurity();
+        if (instance == null) {
+            synchronized (AuthorizationCodeStoreCache.class) {
+                if (instance == null) {
+                    instance = new AuthorizationCodeStoreCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Add an authorization code to the store.
+     *
+     * @param authzCode   Authorization code.
+     * @param authzCodeDO Authorization code data.
+     */
+    public void addToCacheByCode(String authzCode, AuthzCodeDO authzCodeDO) {
+
+        if (StringUtils.isEmpty(authzCode)) {
+            return;
+        }
+        super.addToCache(buildCacheKey(authzCode), authzCodeDO, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    /**
+     * Get the stored data of an authorization code.
+     *
+     * @param authzCode Authorization code.
+     * @return Authorization code data or null if the code is not in the store.
+     */
+    public AuthzCodeDO getValueFromCacheByCode(String authzCode) {
+
+        if (StringUtils.isEmpty(authzCode)) {
+            return null;
+        }
+        return super.getValueFromCache(buildCacheKey(authzCode), MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    /**
+     * Remove an authorization code from the store.
+     *
+     * @param authzCode Authorization code.
+     */
+    public void clearCacheEntryByCode(String authzCode) {
+
+        if (StringUtils.isEmpty(authzCode)) {
+            return;
+        }
+        super.clearCacheEntry(buildCacheKey(authzCode), MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    private OAuthCacheKey buildCacheKey(String authzCode) {
+
+        return new OAuthCacheKey(DigestUtils.sha256Hex(authzCode));
+    }
+}
@@ -20,6 +20,7 @@ package org.wso2.carbon.identity.oauth.cache;
 
 import org.wso2.carbon.identity.application.common.model.ClaimMapping;
 import org.wso2.carbon.identity.openidconnect.model.RequestObject;
+import org.wso2.carbon.identity.openidconnect.model.RequestedClaim;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -78,6 +79,8 @@ public class AuthorizationGrantCacheEntry extends CacheEntry {
 
     private boolean isRequestObjectFlow;
 
+    private Map<String, List<RequestedClaim>> requestedClaims;
+
     public String getSubjectClaim() {
         return subjectClaim;
     }
@@ -314,4 +317,26 @@ public class AuthorizationGrantCacheEntry extends CacheEntry {
 
         this.isRequestObjectFlow = isRequestObjectFlow;
     }
+
+    /**
+     * Get the claims requested through the request object or the claims parameter, grouped by the claim requestor
+     * (id_token or userinfo). Only set when the requested claims are kept in the cache instead of the request object
+     * tables.
+     *
+     * @return Requested claims or null if they are not carried with this grant.
+     */
+    public Map<String, List<RequestedClaim>> getRequestedClaims() {
+
+        return requestedClaims;
+    }
+
+    /**
+     * Set the claims requested through the request object or the claims parameter.
+     *
+     * @param requestedClaims Requested claims grouped by the claim requestor.
+     */
+    public void setRequestedClaims(Map<String, List<RequestedClaim>> requestedClaims) {
+
+        this.requestedClaims = requestedClaims;
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.utils.CarbonUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the revoked stateless JWT access tokens against their JWT IDs. Stateless tokens have no database record to
+ * mark as revoked, hence the revocations are persisted in the {@link SessionDataStore} until the token expires, and
+ * are read through this cache. A node which does not find a token in the cache looks the token up in the session
+ * data store, so that revocations done on the other nodes of the cluster are observed even though the cache is node
+ * local. The outcome of such a lookup is cached as well. A token which is found not to be revoked is looked up again
+ * once the configured lookup validity elapses, which bounds the time a revocation done on another node takes to
+ * apply when the cache invalidation of the cluster does not reach this node. JWT IDs are globally unique, hence all
+ * entries are kept in the super tenant space.
+ */
+public class JWTRevocationCache extends BaseCache<JWTRevocationCacheKey, JWTRevocationCacheEntry> {
+
+    private static final Log log = LogFactory.getLog(JWTRevocationCache.class);
+    private static final String JWT_REVOCATION_CACHE_NAME = "JWTRevocationCache";
+    private static final String LOOKUP_VALIDITY = "OAuth.JWTValidation.StatelessRevocation.LookupValidity";
+    // Time in milliseconds for which a token found not to be revoked is not looked up again.
+    private static final long DEFAULT_LOOKUP_VALIDITY = 30000;
+    private static volatile JWTRevocationCache instance;
+
+    private volatile long lookupValidity = -1;
+
+    private JWTRevocationCache() {
+
+        super(JWT_REVOCATION_CACHE_NAME);
+    }
+
+    public static JWTRevocationCache getInstance() {
+
+        CarbonUtils.checkSecurity();
+        if (instance == null) {
+            synchronized (JWTRevocationCache.class) {
+                if (instance == null) {
+                    instance = new JWTRevocationCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Add a revoked token to the cache and persist the revocation in the session data store until the token expires.
+     *
+     * @param jwtId      JWT ID of the token.
+     * @param expiryTime Expiry time of the token in milliseconds.
+     */
+    public void addRevokedToken(String jwtId, long expiryTime) {
+
+        if (StringUtils.isEmpty(jwtId)) {
+            return;
+        }
+        JWTRevocationCacheEntry entry = new JWTRevocationCacheEntry(expiryTime);
+        long validityPeriod = expiryTime - System.currentTimeMillis();
+        if (validityPeriod > 0) {
+            entry.setValidityPeriod(TimeUnit.MILLISECONDS.toNanos(validityPeriod));
+            SessionDataStore.getInstance().storeSessionData(jwtId, JWT_REVOCATION_CACHE_NAME, entry);
+        }
+        super.addToCache(new JWTRevocationCacheKey(jwtId), entry, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    /**
+     * Check whether a token is revoked, on this node or on any other node of the cluster.
+     *
+     * @param jwtId JWT ID of the token.
+     * @return true if the token is revoked and not expired yet.
+     */
+    public boolean isRevoked(String jwtId) {
+
+        if (StringUtils.isEmpty(jwtId)) {
+            return false;
+        }
+        long currentTime = System.currentTimeMillis();
+        JWTRevocationCacheKey cacheKey = new JWTRevocationCacheKey(jwtId);
+        JWTRevocationCacheEntry entry = super.getValueFromCache(cacheKey,
+                MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        if (entry != null && (entry.getExpiryTime() > currentTime ||
+                entry.getLookupTime() + getLookupValidity() > currentTime)) {
+            return entry.getExpiryTime() > currentTime;
+        }
+
+        Object storedEntry = SessionDataStore.getInstance().getSessionData(jwtId, JWT_REVOCATION_CACHE_NAME);
+        if (storedEntry instanceof JWTRevocationCacheEntry) {
+            entry = (JWTRevocationCacheEntry) storedEntry;
+        } else {
+            entry = new JWTRevocationCacheEntry(0, currentTime);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Looked up the revocation of the token with JWT ID: " + jwtId + " in the session data store.");
+        }
+        super.addToCache(cacheKey, entry, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        return entry.getExpiryTime() > currentTime;
+    }
+
+    /**
+     * Remove all the revoked tokens from the cache. The revocations persisted in the session data store are kept.
+     */
+    public void clearAll() {
+
+        super.clear(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    private long getLookupValidity() {
+
+        if (lookupValidity < 0) {
+            long validity = DEFAULT_LOOKUP_VALIDITY;
+            String value = IdentityUtil.getProperty(LOOKUP_VALIDITY);
+            if (StringUtils.isNotBlank(value)) {
+                try {
+                    validity = Math.max(0, Long.parseLong(value.trim()));
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid value: " + value + " configured for: " + LOOKUP_VALIDITY + ". Using the " +
+                            "default value: " + DEFAULT_LOOKUP_VALIDITY);
+                }
+            }
+            lookupValidity = validity;
+        }
+        return lookupValidity;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+/**
+ * JWT revocation cache entry. Holds the expiry time of a revoked stateless access token, after which the revocation
+ * no longer needs to be kept. Tokens which are looked up and found not to be revoked are cached with no expiry time
+ * and the time of the lookup.
+ */
+public class JWTRevocationCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -2880155190147362916L;
+
+    private long expiryTime;
+    private long lookupTime;
+
+    public JWTRevocationCacheEntry(long expiryTime) {
+
+        this.expiryTime = expiryTime;
+    }
+
+    public JWTRevocationCacheEntry(long expiryTime, long lookupTime) {
+
+        this.expiryTime = expiryTime;
+        this.lookupTime = lookupTime;
+    }
+
+    public long getExpiryTime() {
+
+        return expiryTime;
+    }
+
+    public long getLookupTime() {
+
+        return lookupTime;
+    }
+}
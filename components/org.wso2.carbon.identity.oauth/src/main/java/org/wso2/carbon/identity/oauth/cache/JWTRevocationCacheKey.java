@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+/**
+ * JWT revocation cache key. Holds the JWT ID of a revoked stateless access token.
+ */
+public class JWTRevocationCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = 6207413526091872650L;
+    private String jwtId;
+
+    public JWTRevocationCacheKey(String jwtId) {
+
+        this.jwtId = jwtId;
+    }
+
+    public String getJwtId() {
+
+        return jwtId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof JWTRevocationCacheKey)) {
+            return false;
+        }
+        return this.jwtId.equals(((JWTRevocationCacheKey) o).getJwtId());
+    }
+
+    @Override
+    public int hashCode() {
+
+        return jwtId.hashCode();
+    }
+}
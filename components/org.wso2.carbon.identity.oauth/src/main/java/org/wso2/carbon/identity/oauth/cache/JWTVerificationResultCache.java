@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.utils.CarbonUtils;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of successfully verified JWT access tokens.
+ * <p>
+ * Verifying a self contained access token parses it, resolves the resident identity provider of the issuer and
+ * performs a signature verification, although the same token is usually introspected many times during its lifetime.
+ * Once a token is verified, the verification outcome is cached against a hash of the complete serialized token until
+ * the token expires, bounded by a configurable time to live. Only successful verifications are cached and the entries
+ * are evicted when the token is revoked. Expiry and not-before checks are still done on each validation.
+ * <p>
+ * Revocations of persisted tokens only know the JWT ID of the token, hence the hashes of the cached tokens are also
+ * indexed by their JWT ID. The index is a least recently used map, which bounds the number of cached verification
+ * results on a node: once it is full, caching a token evicts the least recently used one.
+ */
+public class JWTVerificationResultCache extends BaseCache<JWTVerificationResultCacheKey,
+        JWTVerificationResultCacheEntry> {
+
+    private static final Log log = LogFactory.getLog(JWTVerificationResultCache.class);
+
+    private static final String JWT_VERIFICATION_RESULT_CACHE_NAME = "JWTVerificationResultCache";
+    private static final String ENABLE = "OAuth.JWTValidation.VerificationCache.Enable";
+    private static final String MAX_ENTRIES = "OAuth.JWTValidation.VerificationCache.MaxEntries";
+    private static final String TIME_TO_LIVE = "OAuth.JWTValidation.VerificationCache.TimeToLive";
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    // Time to live of an entry in milliseconds. Bounds the time IdP certificate or issuer changes take to apply.
+    private static final long DEFAULT_TIME_TO_LIVE = 300000;
+
+    private static volatile JWTVerificationResultCache instance;
+
+    // Access ordered, hence the eldest entry is the least recently used one. Guarded by itself.
+    private final LinkedHashMap<String, String> tokenHashesByJwtId = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile Boolean enabled;
+    private volatile int maxEntries = -1;
+    private volatile long timeToLive = -1;
+
+    JWTVerificationResultCache() {
+
+        super(JWT_VERIFICATION_RESULT_CACHE_NAME);
+    }
+
+    public static JWTVerificationResultCache getInstance() {
+
+        CarbonUtils.checkSecurity();
+        if (instance == null) {
+            synchronized (JWTVerificationResultCache.class) {
+                if (instance == null) {
+                    instance = new JWTVerificationResultCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the claims of a token verified earlier in the given tenant.
+     *
+     * @param token        Serialized JWT.
+     * @param tenantDomain Tenant domain the token is validated in.
+     * @return Claims of the verified token, or null if the token is not in the cache.
+     */
+    public JWTClaimsSet getVerifiedClaims(String token, String tenantDomain) {
+
+        if (!isVerificationCacheEnabled() || StringUtils.isEmpty(token)) {
+            return null;
+        }
+        JWTVerificationResultCacheKey cacheKey = buildCacheKey(token);
+        JWTVerificationResultCacheEntry entry =
+                super.getValueFromCache(cacheKey, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        if (entry == null || !StringUtils.equals(entry.getTenantDomain(), tenantDomain)) {
+            return null;
+        }
+        if (entry.getExpiry() < System.currentTimeMillis()) {
+            super.clearCacheEntry(cacheKey, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+            return null;
+        }
+        try {
+            JWTClaimsSet claimsSet = entry.getClaimsSet();
+            synchronized (tokenHashesByJwtId) {
+                // Mark the token as recently used.
+                tokenHashesByJwtId.get(claimsSet.getJWTID());
+            }
+            return claimsSet;
+        } catch (ParseException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while parsing the cached claims of a verified token.", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Cache a successfully verified token.
+     *
+     * @param token        Serialized JWT.
+     * @param tenantDomain Tenant domain the token is validated in.
+     * @param claimsSet    Claims of the token.
+     */
+    public void addVerifiedToken(String token, String tenantDomain, JWTClaimsSet claimsSet) {
+
+        if (!isVerificationCacheEnabled() || getMaxEntries() == 0 || StringUtils.isEmpty(token) ||
+                claimsSet == null || StringUtils.isEmpty(claimsSet.getJWTID())) {
+            return;
+        }
+        Date expirationTime = claimsSet.getExpirationTime();
+        if (expirationTime == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiry = Math.min(expirationTime.getTime(), now + getEntryTimeToLive());
+        if (expiry <= now) {
+            return;
+        }
+        String tokenHash = DigestUtils.sha256Hex(token);
+        String evictedTokenHash = null;
+        synchronized (tokenHashesByJwtId) {
+            tokenHashesByJwtId.put(claimsSet.getJWTID(), tokenHash);
+            if (tokenHashesByJwtId.size() > getMaxEntries()) {
+                Iterator<Map.Entry<String, String>> eldest = tokenHashesByJwtId.entrySet().iterator();
+                evictedTokenHash = eldest.next().getValue();
+                eldest.remove();
+            }
+        }
+        if (evictedTokenHash != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("JWT verification cache is full. Evicting the least recently used verification result.");
+            }
+            super.clearCacheEntry(new JWTVerificationResultCacheKey(evictedTokenHash),
+                    MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        }
+        super.addToCache(new JWTVerificationResultCacheKey(tokenHash),
+                new JWTVerificationResultCacheEntry(tenantDomain, claimsSet, expiry),
+                MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    /**
+     * Evict a revoked token from the cache. Identifiers which are neither a serialized JWT nor the JWT ID of a cached
+     * token, such as opaque access tokens, are ignored without touching the cache.
+     *
+     * @param tokenIdentifier Serialized JWT, or the JWT ID of the token.
+     */
+    public void invalidate(String tokenIdentifier) {
+
+        if (StringUtils.isEmpty(tokenIdentifier)) {
+            return;
+        }
+        String tokenHash;
+        synchronized (tokenHashesByJwtId) {
+            tokenHash = tokenHashesByJwtId.remove(tokenIdentifier);
+        }
+        if (tokenHash == null && StringUtils.countMatches(tokenIdentifier, ".") == 2) {
+            tokenHash = DigestUtils.sha256Hex(tokenIdentifier);
+        }
+        if (tokenHash != null) {
+            super.clearCacheEntry(new JWTVerificationResultCacheKey(tokenHash),
+                    MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        }
+    }
+
+    /**
+     * Remove all the cached verification results.
+     */
+    public void clear() {
+
+        synchronized (tokenHashesByJwtId) {
+            tokenHashesByJwtId.clear();
+        }
+        super.clear(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    private JWTVerificationResultCacheKey buildCacheKey(String token) {
+
+        return new JWTVerificationResultCacheKey(DigestUtils.sha256Hex(token));
+    }
+
+    private boolean isVerificationCacheEnabled() {
+
+        if (enabled == null) {
+            enabled = !Boolean.FALSE.toString().equalsIgnoreCase(StringUtils.trim(IdentityUtil.getProperty(ENABLE)));
+        }
+        return enabled;
+    }
+
+    private int getMaxEntries() {
+
+        if (maxEntries < 0) {
+            maxEntries = (int) getLongProperty(MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+        }
+        return maxEntries;
+    }
+
+    private long getEntryTimeToLive() {
+
+        if (timeToLive < 0) {
+            timeToLive = getLongProperty(TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE);
+        }
+        return timeToLive;
+    }
+
+    private static long getLongProperty(String property, long defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                long parsedValue = Long.parseLong(value.trim());
+                if (parsedValue >= 0) {
+                    return parsedValue;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the default value.
+            }
+            log.warn("Invalid value: " + value + " configured for: " + property + ". Using the default value: " +
+                    defaultValue);
+        }
+        return defaultValue;
+    }
+}
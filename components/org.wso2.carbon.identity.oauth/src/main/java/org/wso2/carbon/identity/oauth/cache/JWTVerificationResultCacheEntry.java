@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import java.text.ParseException;
+
+/**
+ * JWT verification result cache entry. Holds the claims of a verified token, the tenant it was verified in and the
+ * time until which the verification result can be reused. The claims are kept in their serialized form as well, since
+ * the parsed claims set can not be serialized.
+ */
+public class JWTVerificationResultCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = 4127769328817395025L;
+
+    private String tenantDomain;
+
+    private String claims;
+
+    private long expiry;
+
+    private transient JWTClaimsSet claimsSet;
+
+    public JWTVerificationResultCacheEntry(String tenantDomain, JWTClaimsSet claimsSet, long expiry) {
+
+        this.tenantDomain = tenantDomain;
+        this.claimsSet = claimsSet;
+        this.claims = claimsSet.toString();
+        this.expiry = expiry;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public long getExpiry() {
+
+        return expiry;
+    }
+
+    public JWTClaimsSet getClaimsSet() throws ParseException {
+
+        if (claimsSet == null) {
+            claimsSet = JWTClaimsSet.parse(claims);
+        }
+        return claimsSet;
+    }
+}
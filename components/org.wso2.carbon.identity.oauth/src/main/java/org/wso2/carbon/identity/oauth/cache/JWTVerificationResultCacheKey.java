@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+/**
+ * JWT verification result cache key. Holds the SHA-256 hash of the complete serialized token so that the raw token is
+ * never used as a cache key and a token reusing the signature of a verified token never matches it.
+ */
+public class JWTVerificationResultCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = -3560812094873213649L;
+    private String tokenHash;
+
+    public JWTVerificationResultCacheKey(String tokenHash) {
+
+        this.tokenHash = tokenHash;
+    }
+
+    public String getTokenHash() {
+
+        return tokenHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof JWTVerificationResultCacheKey)) {
+            return false;
+        }
+        return this.tokenHash.equals(((JWTVerificationResultCacheKey) o).getTokenHash());
+    }
+
+    @Override
+    public int hashCode() {
+
+        return tokenHash.hashCode();
+    }
+}
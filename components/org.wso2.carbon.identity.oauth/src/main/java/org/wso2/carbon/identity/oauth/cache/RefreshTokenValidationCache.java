@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.MultitenantConstants;
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.utils.CarbonUtils;
+
+/**
+ * Caches refresh token validation data keyed by the hash of the refresh token, so that a refresh grant does not have
+ * to read the token table when the presented refresh token is already known to be the latest one of its chain.
+ * Refresh tokens are globally unique, hence all entries are kept in the super tenant space and revocations can
+ * invalidate them without resolving the tenant of the application or the user.
+ * <p>
+ * The token DAO only knows the token id or the access token of a token it expires or revokes, hence each entry is
+ * also indexed by those, so that the DAO can evict it once the change is committed.
+ */
+public class RefreshTokenValidationCache extends BaseCache<RefreshTokenValidationCacheKey,
+        RefreshTokenValidationCacheEntry> {
+
+    private static final String REFRESH_TOKEN_VALIDATION_CACHE_NAME = "RefreshTokenValidationCache";
+    private static final String REFRESH_TOKEN_INDEX_CACHE_NAME = "RefreshTokenValidationIndexCache";
+    private static final String TOKEN_ID_PREFIX = "tokenId:";
+    private static final String ACCESS_TOKEN_PREFIX = "accessToken:";
+    private static final Log LOG = LogFactory.getLog(RefreshTokenValidationCache.class);
+    private static volatile RefreshTokenValidationCache instance;
+
+    private final RefreshTokenIndexCache indexCache = new RefreshTokenIndexCache();
+
+    private RefreshTokenValidationCache() {
+
+        super(REFRESH_TOKEN_VALIDATION_CACHE_NAME);
+    }
+
+    public static RefreshTokenValidationCache getInstance() {
+
+        CarbonUtils.checkSecurity();
+        if (instance == null) {
+            synchronized (RefreshTokenValidationCache.class) {
+                if (instance == null) {
+                    instance = new RefreshTokenValidationCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Add the validation data of a refresh token to the cache.
+     *
+     * @param refreshToken Refresh token as presented by the client.
+     * @param entry        Validation data of the refresh token.
+     */
+    public void addToCacheByRefreshToken(String refreshToken, RefreshTokenValidationCacheEntry entry) {
+
+        if (StringUtils.isEmpty(refreshToken)) {
+            return;
+        }
+        String refreshTokenHash = DigestUtils.sha256Hex(refreshToken);
+        super.addToCache(new RefreshTokenValidationCacheKey(refreshTokenHash), entry,
+                MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        if (entry.getValidationData() != null) {
+            addToIndex(TOKEN_ID_PREFIX, entry.getValidationData().getTokenId(), refreshTokenHash);
+            addToIndex(ACCESS_TOKEN_PREFIX, entry.getValidationData().getAccessToken(), refreshTokenHash);
+        }
+    }
+
+    /**
+     * Get the cached validation data of a refresh token.
+     *
+     * @param refreshToken Refresh token as presented by the client.
+     * @return Cached validation data or null if the refresh token is not cached.
+     */
+    public RefreshTokenValidationCacheEntry getValueFromCacheByRefreshToken(String refreshToken) {
+
+        if (StringUtils.isEmpty(refreshToken)) {
+            return null;
+        }
+        return super.getValueFromCache(buildCacheKey(refreshToken), MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    /**
+     * Remove the cached validation data of a refresh token.
+     *
+     * @param refreshToken Refresh token as presented by the client.
+     */
+    public void clearCacheEntryByRefreshToken(String refreshToken) {
+
+        if (StringUtils.isEmpty(refreshToken)) {
+            return;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Clearing refresh token validation data from the cache.");
+        }
+        super.clearCacheEntry(buildCacheKey(refreshToken), MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    /**
+     * Remove the cached validation data of the refresh token of an access token.
+     *
+     * @param tokenId Token id of the access token.
+     */
+    public void clearCacheEntryByTokenId(String tokenId) {
+
+        clearCacheEntryByIndex(TOKEN_ID_PREFIX, tokenId);
+    }
+
+    /**
+     * Remove the cached validation data of the refresh token of an access token.
+     *
+     * @param accessToken Access token in plain text.
+     */
+    public void clearCacheEntryByAccessToken(String accessToken) {
+
+        clearCacheEntryByIndex(ACCESS_TOKEN_PREFIX, accessToken);
+    }
+
+    /**
+     * Remove all cached refresh token validation data. Used when tokens are revoked in bulk, for example when an
+     * application is revoked or its secret is regenerated.
+     */
+    public void clearAll() {
+
+        super.clear(MultitenantConstants.SUPER_TENANT_ID);
+        indexCache.clear(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    private RefreshTokenValidationCacheKey buildCacheKey(String refreshToken) {
+
+        return new RefreshTokenValidationCacheKey(DigestUtils.sha256Hex(refreshToken));
+    }
+
+    private void addToIndex(String prefix, String value, String refreshTokenHash) {
+
+        if (StringUtils.isNotEmpty(value)) {
+            indexCache.addToCache(buildIndexKey(prefix, value), new RefreshTokenIndexEntry(refreshTokenHash),
+                    MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        }
+    }
+
+    private void clearCacheEntryByIndex(String prefix, String value) {
+
+        if (StringUtils.isEmpty(value) || !isEnabled()) {
+            return;
+        }
+        RefreshTokenValidationCacheKey indexKey = buildIndexKey(prefix, value);
+        RefreshTokenIndexEntry indexEntry = indexCache.getValueFromCache(indexKey,
+                MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        if (indexEntry == null) {
+            return;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Clearing refresh token validation data of an invalidated access token from the cache.");
+        }
+        super.clearCacheEntry(new RefreshTokenValidationCacheKey(indexEntry.getRefreshTokenHash()),
+                MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        indexCache.clearCacheEntry(indexKey, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+    }
+
+    private RefreshTokenValidationCacheKey buildIndexKey(String prefix, String value) {
+
+        // Access tokens are hashed like refresh tokens, so that they are not kept in the cache in plain text.
+        return new RefreshTokenValidationCacheKey(prefix + (ACCESS_TOKEN_PREFIX.equals(prefix) ?
+                DigestUtils.sha256Hex(value) : value));
+    }
+
+    /**
+     * Index of the cached refresh tokens by the token id and the access token of their access tokens.
+     */
+    private static class RefreshTokenIndexCache extends BaseCache<RefreshTokenValidationCacheKey,
+            RefreshTokenIndexEntry> {
+
+        private RefreshTokenIndexCache() {
+
+            super(REFRESH_TOKEN_INDEX_CACHE_NAME);
+        }
+    }
+
+    /**
+     * Hash of the refresh token indexed by a token id or an access token.
+     */
+    private static class RefreshTokenIndexEntry extends CacheEntry {
+
+        private static final long serialVersionUID = 4418217236150447235L;
+
+        private final String refreshTokenHash;
+
+        private RefreshTokenIndexEntry(String refreshTokenHash) {
+
+            this.refreshTokenHash = refreshTokenHash;
+        }
+
+        private String getRefreshTokenHash() {
+
+            return refreshTokenHash;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
+
+/**
+ * Refresh token validation cache entry. Holds the validation data of a refresh token together with the client it
+ * was issued to and whether it is the latest refresh token of its token chain.
+ */
+public class RefreshTokenValidationCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -1953203561574428917L;
+
+    private String consumerKey;
+
+    private RefreshTokenValidationDataDO validationData;
+
+    private boolean latestRefreshToken;
+
+    public RefreshTokenValidationCacheEntry(String consumerKey, RefreshTokenValidationDataDO validationData,
+                                            boolean latestRefreshToken) {
+
+        this.consumerKey = consumerKey;
+        this.validationData = validationData;
+        this.latestRefreshToken = latestRefreshToken;
+    }
+
+    public String getConsumerKey() {
+
+        return consumerKey;
+    }
+
+    public RefreshTokenValidationDataDO getValidationData() {
+
+        return validationData;
+    }
+
+    public boolean isLatestRefreshToken() {
+
+        return latestRefreshToken;
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.wso2.carbon.identity.oauth.cache;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.application.authentication.framework.cache.AuthenticationBaseCache;
 import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
@@ -29,7 +31,9 @@ import org.wso2.carbon.utils.CarbonUtils;
  */
 public class SessionDataCache extends AuthenticationBaseCache<SessionDataCacheKey, SessionDataCacheEntry> {
 
+    private static final Log log = LogFactory.getLog(SessionDataCache.class);
     private static final String SESSION_DATA_CACHE_NAME = "OAuthSessionDataCache";
+    private static final String NODE_LOCAL_SESSION_DATA = "OAuth.SessionDataCache.NodeLocal";
 
     private static volatile SessionDataCache instance;
     private boolean isTemporarySessionDataPersistEnabled = false;
@@ -40,6 +44,19 @@ public class SessionDataCache extends AuthenticationBaseCache<SessionDataCacheKe
             isTemporarySessionDataPersistEnabled = Boolean.parseBoolean(
                     IdentityUtil.getProperty("JDBCPersistenceManager.SessionDataPersist.Temporary"));
         }
+        /*
+         * Session data entries only live for the duration of an authorization flow. When sticky sessions are
+         * guaranteed, every hop of the flow reaches the node that created the entry, so writing the entries to the
+         * session data store only adds database round trips.
+         */
+        if (isTemporarySessionDataPersistEnabled && Boolean.parseBoolean(
+                IdentityUtil.getProperty(NODE_LOCAL_SESSION_DATA))) {
+            isTemporarySessionDataPersistEnabled = false;
+            if (log.isDebugEnabled()) {
+                log.debug("Session data entries are kept node local. Persisting them to the session data store " +
+                        "is disabled.");
+            }
+        }
     }
 
     public static SessionDataCache getInstance() {
@@ -79,6 +79,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.namespace.QName;
@@ -163,6 +165,8 @@ public class OAuthServerConfiguration {
     private Set<String> idTokenNotAllowedGrantTypesSet = new HashSet<>();
     private Set<String> userConsentEnabledGrantTypes = new HashSet<>();
     private Map<String, AuthorizationGrantHandler> supportedGrantTypes;
+    // Initialization time of each handler in milliseconds, keyed by the handler name.
+    private final Map<String, Long> handlerInitTimes = new ConcurrentHashMap<>();
     private Map<String, RequestObjectBuilder> requestObjectBuilder;
     private Map<String, String> supportedGrantTypeValidatorNames = new HashMap<>();
     private Map<String, Class<? extends OAuthValidator<HttpServletRequest>>> supportedGrantTypeValidators;
@@ -198,6 +202,7 @@ public class OAuthServerConfiguration {
     private boolean addTenantDomainToIdTokenEnabled = false;
     private boolean addUserstoreDomainToIdTokenEnabled = false;
     private boolean requestObjectEnabled = true;
+    private boolean requestedClaimsInGrantCacheEnabled = false;
 
     //default token types
     public static final String DEFAULT_TOKEN_TYPE = "Default";
@@ -823,6 +828,7 @@ public class OAuthServerConfiguration {
                     Map<String, AuthorizationGrantHandler> supportedGrantTypesTemp = new HashMap<>();
                     for (Map.Entry<String, String> entry : supportedGrantTypeClassNames.entrySet()) {
                         AuthorizationGrantHandler authzGrantHandler = null;
+                        long startTime = System.nanoTime();
                         try {
                             authzGrantHandler =
                                     (AuthorizationGrantHandler) Class.forName(entry.getValue()).newInstance();
@@ -838,13 +844,14 @@ public class OAuthServerConfiguration {
                         }
 
                         if (authzGrantHandler != null) {
+                            recordHandlerInitTime("GrantHandler:" + entry.getKey(), startTime);
                             supportedGrantTypesTemp.put(entry.getKey(), authzGrantHandler);
                         } else {
                             log.warn("Grant type : " + entry.getKey() + ", is not added as a supported grant type. "
                                     + "Relevant grant handler failed to initiate properly.");
                         }
                     }
-                    supportedGrantTypes = supportedGrantTypesTemp;
+                    supportedGrantTypes = Collections.unmodifiableMap(supportedGrantTypesTemp);
                 }
             }
         }
@@ -899,7 +906,7 @@ public class OAuthServerConfiguration {
                             }
                         }
                     }
-                    supportedGrantTypeValidators = supportedGrantTypeValidatorsTemp;
+                    supportedGrantTypeValidators = Collections.unmodifiableMap(supportedGrantTypeValidatorsTemp);
                 }
             }
         }
@@ -947,7 +954,8 @@ public class OAuthServerConfiguration {
                                 log.error("Cannot cast class: " + entry.getValue(), e);
                             }
                         }
-                        supportedResponseTypeValidators = supportedResponseTypeValidatorsTemp;
+                        supportedResponseTypeValidators =
+                                Collections.unmodifiableMap(supportedResponseTypeValidatorsTemp);
                     }
                 }
             }
@@ -963,6 +971,7 @@ public class OAuthServerConfiguration {
                     Map<String, ResponseTypeHandler> supportedResponseTypesTemp = new Hashtable<>();
                     for (Map.Entry<String, String> entry : supportedResponseTypeClassNames.entrySet()) {
                         ResponseTypeHandler responseTypeHandler = null;
+                        long startTime = System.nanoTime();
                         try {
                             responseTypeHandler = (ResponseTypeHandler) Class.forName(entry.getValue()).newInstance();
                             responseTypeHandler.init();
@@ -975,15 +984,95 @@ public class OAuthServerConfiguration {
                         } catch (IdentityOAuth2Exception e) {
                             log.error("Error while initializing " + entry.getValue(), e);
                         }
+                        recordHandlerInitTime("ResponseTypeHandler:" + entry.getKey(), startTime);
                         supportedResponseTypesTemp.put(entry.getKey(), responseTypeHandler);
                     }
-                    supportedResponseTypes = supportedResponseTypesTemp;
+                    supportedResponseTypes = Collections.unmodifiableMap(supportedResponseTypesTemp);
                 }
             }
         }
         return supportedResponseTypes;
     }
 
+    /**
+     * Instantiate and initialize the configured handlers up front, instead of on the request which first needs them,
+     * so that their cost is paid at server start up and misconfigured handlers are reported at start up. The
+     * initialization time of each handler is logged and can be retrieved with {@link #getHandlerInitTimes()}.
+     * <p>
+     * A handler which can not be loaded is not added to the handler tables and is not loaded again later, hence this
+     * must only be invoked once the bundles providing the configured handlers are resolved.
+     */
+    public void initializeHandlers() {
+
+        long startTime = System.nanoTime();
+        getSupportedGrantTypes();
+        getSupportedResponseTypes();
+        getSupportedGrantTypeValidators();
+        getSupportedResponseTypeValidators();
+        getRequestObjectBuilders();
+
+        long handlerStartTime = System.nanoTime();
+        getRequestObjectValidator();
+        recordHandlerInitTime("RequestObjectValidator", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        getCIBARequestObjectValidator();
+        recordHandlerInitTime("CIBARequestObjectValidator", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        getOAuthTokenGenerator();
+        recordHandlerInitTime("OAuthTokenGenerator", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        getIdentityOauthTokenIssuer();
+        recordHandlerInitTime("IdentityOauthTokenIssuer", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        getOpenIDConnectIDTokenBuilder();
+        recordHandlerInitTime("IDTokenBuilder", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        getOpenIDConnectCustomClaimsCallbackHandler();
+        recordHandlerInitTime("CustomClaimsCallbackHandler", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        getSAML2TokenCallbackHandler();
+        recordHandlerInitTime("SAML2TokenCallbackHandler", handlerStartTime);
+        handlerStartTime = System.nanoTime();
+        try {
+            getPersistenceProcessor();
+            recordHandlerInitTime("TokenPersistenceProcessor", handlerStartTime);
+        } catch (IdentityOAuth2Exception e) {
+            log.error("Error while initializing the token persistence processor.", e);
+        }
+        for (String tokenType : getSupportedTokenTypes()) {
+            handlerStartTime = System.nanoTime();
+            try {
+                addAndReturnTokenIssuerInstance(tokenType);
+                recordHandlerInitTime("TokenIssuer:" + tokenType, handlerStartTime);
+            } catch (IdentityOAuth2Exception e) {
+                log.error("Error while initializing the token issuer of the token type: " + tokenType, e);
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            for (Map.Entry<String, Long> entry : handlerInitTimes.entrySet()) {
+                log.debug("OAuth handler: " + entry.getKey() + " is initialized in " + entry.getValue() + " ms.");
+            }
+        }
+        log.info(handlerInitTimes.size() + " OAuth handlers are initialized in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms.");
+    }
+
+    /**
+     * Get the initialization time of the handlers initialized so far.
+     *
+     * @return Initialization time of each handler in milliseconds, keyed by the handler name.
+     */
+    public Map<String, Long> getHandlerInitTimes() {
+
+        return Collections.unmodifiableMap(handlerInitTimes);
+    }
+
+    private void recordHandlerInitTime(String handler, long startTime) {
+
+        handlerInitTimes.put(handler, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
     public String getHashAlgorithm() {
         return hashAlgorithm;
     }
@@ -1118,7 +1207,7 @@ public class OAuthServerConfiguration {
                                     "the builder " + entry.getKey());
                         }
                     }
-                    requestObjectBuilder = requestBuilderTemp;
+                    requestObjectBuilder = Collections.unmodifiableMap(requestBuilderTemp);
                 }
             }
         }
@@ -1523,6 +1612,17 @@ public class OAuthServerConfiguration {
         return requestObjectEnabled;
     }
 
+    /**
+     * Whether the claims requested through the request object or the claims parameter of a code flow are carried in
+     * the session data and authorization grant caches instead of being persisted in the request object tables.
+     *
+     * @return true if requested claims are kept in the grant cache.
+     */
+    public boolean isRequestedClaimsInGrantCacheEnabled() {
+
+        return requestedClaimsInGrantCacheEnabled;
+    }
+
     public int getDeviceCodeKeyLength() {
 
         return deviceCodeKeyLength;
@@ -2977,6 +3077,12 @@ public class OAuthServerConfiguration {
                     requestObjectEnabled = false;
                 }
             }
+            if (openIDConnectConfigElem.getFirstChildWithName(getQNameWithIdentityNS(ConfigElements
+                    .REQUESTED_CLAIMS_IN_GRANT_CACHE)) != null) {
+                requestedClaimsInGrantCacheEnabled =
+                        Boolean.parseBoolean(openIDConnectConfigElem.getFirstChildWithName(getQNameWithIdentityNS
+                                (ConfigElements.REQUESTED_CLAIMS_IN_GRANT_CACHE)).getText().trim());
+            }
             OMElement oAuthAuthzRequest = openIDConnectConfigElem.getFirstChildWithName(getQNameWithIdentityNS
                     (ConfigElements.OAUTH_AUTHZ_REQUEST_CLASS));
             oAuthAuthzRequestClassName = (oAuthAuthzRequest != null) ? oAuthAuthzRequest.getText().trim() :
@@ -3284,6 +3390,8 @@ public class OAuthServerConfiguration {
         // Property to decide whether to add userstore domain to id_token.
         private static final String OPENID_CONNECT_ADD_USERSTORE_DOMAIN_TO_ID_TOKEN = "AddUserstoreDomainToIdToken";
         private static final String REQUEST_OBJECT_ENABLED = "RequestObjectEnabled";
+        // Property to keep the requested claims of code flows in the grant cache instead of the request object tables.
+        private static final String REQUESTED_CLAIMS_IN_GRANT_CACHE = "RequestedClaimsInGrantCache";
         public static final String SEND_ONLY_LOCALLY_MAPPED_ROLES_OF_IDP = "FederatedRoleManagement"
                 + ".ReturnOnlyMappedLocalRoles";
         public static final String OPENID_CONNECT_ADD_UN_MAPPED_USER_ATTRIBUTES = "AddUnmappedUserAttributes";
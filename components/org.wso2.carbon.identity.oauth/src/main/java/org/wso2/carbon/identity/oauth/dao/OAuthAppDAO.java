@@ -43,6 +43,7 @@ import org.wso2.carbon.identity.oauth.tokenprocessor.PlainTextPersistenceProcess
 import org.wso2.carbon.identity.oauth.tokenprocessor.TokenPersistenceProcessor;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.user.api.UserRealm;
 import org.wso2.carbon.user.api.UserStoreException;
@@ -452,6 +453,7 @@ public class OAuthAppDAO {
     }
 
     public void updateConsumerApplication(OAuthAppDO oauthAppDO) throws IdentityOAuthAdminException {
+
         boolean isUserValidForOwnerUpdate = validateUserForOwnerUpdate(oauthAppDO);
         try (Connection connection = IdentityDatabaseUtil.getDBConnection()) {
             String sqlQuery = getSqlQuery(isUserValidForOwnerUpdate);
@@ -838,24 +840,18 @@ public class OAuthAppDAO {
     }
 
     public String getConsumerAppState(String consumerKey) throws IdentityOAuthAdminException {
-        String consumerAppState = null;
-
-        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false); PreparedStatement
-                prepStmt = connection.prepareStatement(SQLQueries.OAuthAppDAOSQLQueries.GET_APPLICATION_STATE)) {
+        String consumerAppState;
 
-            prepStmt.setString(1, consumerKey);
-            try (ResultSet rSet = prepStmt.executeQuery()) {
-                if (rSet.next()) {
-                    consumerAppState = rSet.getString(APP_STATE);
-                } else {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("No App found for the consumerKey: " + consumerKey);
-                    }
-                }
-            }
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
+            consumerAppState = JdbcUtils.fetchSingleRecord(connection,
+                    SQLQueries.OAuthAppDAOSQLQueries.GET_APPLICATION_STATE,
+                    (rSet, rowNumber) -> rSet.getString(APP_STATE), prepStmt -> prepStmt.setString(1, consumerKey));
         } catch (SQLException e) {
             throw handleError("Error while executing the SQL prepStmt.", e);
         }
+        if (consumerAppState == null && LOG.isDebugEnabled()) {
+            LOG.debug("No App found for the consumerKey: " + consumerKey);
+        }
         return consumerAppState;
     }
 
@@ -951,18 +947,16 @@ public class OAuthAppDAO {
 
         List<String> audiences = new ArrayList<>();
         Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-        PreparedStatement prepStmt = null;
-        ResultSet rSetAudiences = null;
         try {
-            prepStmt = connection.prepareStatement(SQLQueries.OAuthAppDAOSQLQueries.GET_SP_OIDC_PROPERTY);
-            prepStmt.setString(1, consumerKey);
-            prepStmt.setInt(2, IdentityTenantUtil.getTenantId(tenantDomain));
-            prepStmt.setString(3, OPENID_CONNECT_AUDIENCE);
-            rSetAudiences = prepStmt.executeQuery();
-            while (rSetAudiences.next()) {
-                String audience = rSetAudiences.getString(1);
+            for (String audience : JdbcUtils.executeQuery(connection,
+                    SQLQueries.OAuthAppDAOSQLQueries.GET_SP_OIDC_PROPERTY,
+                    (rSetAudiences, rowNumber) -> rSetAudiences.getString(1), prepStmt -> {
+                        prepStmt.setString(1, consumerKey);
+                        prepStmt.setInt(2, IdentityTenantUtil.getTenantId(tenantDomain));
+                        prepStmt.setString(3, OPENID_CONNECT_AUDIENCE);
+                    })) {
                 if (audience != null) {
-                    audiences.add(rSetAudiences.getString(1));
+                    audiences.add(audience);
                 }
             }
         } catch (SQLException e) {
@@ -971,7 +965,7 @@ public class OAuthAppDAO {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             throw new IdentityOAuth2Exception(errorMsg, e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, rSetAudiences, prepStmt);
+            IdentityDatabaseUtil.closeConnection(connection);
         }
         return audiences;
     }
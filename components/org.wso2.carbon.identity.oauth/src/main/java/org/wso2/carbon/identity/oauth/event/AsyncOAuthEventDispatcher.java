@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.event;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches the token lifecycle events to the {@link AsyncOAuthEventInterceptor}s outside the request thread.
+ * <p>
+ * Published events are added to a bounded buffer and delivered in batches by a single worker thread, in the order
+ * they were published. When the buffer is full, the event is dropped, or with the block policy the publishing thread
+ * waits up to a configurable timeout for space before the event is dropped. Delivery latency and failures are
+ * recorded per interceptor. Events are only buffered while at least one interceptor is registered. The worker is
+ * started with the first interceptor and runs until {@link #shutdown()} is called when the component is deactivated.
+ */
+public class AsyncOAuthEventDispatcher {
+
+    private static final Log log = LogFactory.getLog(AsyncOAuthEventDispatcher.class);
+
+    private static final String BUFFER_SIZE = "OAuth.AsyncEventDispatch.BufferSize";
+    private static final String BATCH_SIZE = "OAuth.AsyncEventDispatch.BatchSize";
+    private static final String OVERFLOW_POLICY = "OAuth.AsyncEventDispatch.OverflowPolicy";
+    private static final String BLOCK_TIMEOUT = "OAuth.AsyncEventDispatch.BlockTimeout";
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    // Maximum time in milliseconds a publisher waits for space in the buffer with the block policy.
+    private static final long DEFAULT_BLOCK_TIMEOUT = 1000;
+    private static final long POLL_TIMEOUT = 1000;
+    // Maximum time in milliseconds to wait for the worker to deliver the buffered events on shutdown.
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+    private static final String WORKER_THREAD_NAME = "oauth-async-event-dispatcher";
+
+    private static final AsyncOAuthEventDispatcher instance = new AsyncOAuthEventDispatcher();
+
+    /**
+     * Action taken when an event is published while the buffer is full.
+     */
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private final List<AsyncOAuthEventInterceptor> interceptors = new CopyOnWriteArrayList<>();
+    private final Map<String, InterceptorMetrics> interceptorMetrics = new ConcurrentHashMap<>();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile BlockingQueue<OAuthLifecycleEvent> buffer;
+    private volatile Thread worker;
+    private Thread stoppedWorker;
+    private volatile int batchSize = -1;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile long blockTimeout = -1;
+
+    AsyncOAuthEventDispatcher() {
+
+    }
+
+    public static AsyncOAuthEventDispatcher getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Register an interceptor and start the worker thread if it is not running.
+     *
+     * @param interceptor Async OAuth event interceptor.
+     */
+    public synchronized void addInterceptor(AsyncOAuthEventInterceptor interceptor) {
+
+        interceptors.add(interceptor);
+        interceptorMetrics.putIfAbsent(interceptor.getName(), new InterceptorMetrics());
+        if (buffer == null) {
+            buffer = new ArrayBlockingQueue<>((int) getLongProperty(BUFFER_SIZE, DEFAULT_BUFFER_SIZE, 1));
+        }
+        if (worker == null) {
+            awaitStoppedWorker();
+            worker = new Thread(this::dispatchEvents, WORKER_THREAD_NAME);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Unregister an interceptor. The worker thread keeps running, and is only stopped by {@link #shutdown()}.
+     *
+     * @param interceptor Async OAuth event interceptor.
+     */
+    public synchronized void removeInterceptor(AsyncOAuthEventInterceptor interceptor) {
+
+        interceptors.remove(interceptor);
+    }
+
+    /**
+     * Stop the worker thread once the buffered events are delivered. The worker is not interrupted, so that a batch
+     * being delivered is not cut short. Waits up to {@link #SHUTDOWN_TIMEOUT} for the worker to finish.
+     */
+    public synchronized void shutdown() {
+
+        Thread currentWorker = worker;
+        if (currentWorker == null) {
+            return;
+        }
+        worker = null;
+        stoppedWorker = currentWorker;
+        try {
+            currentWorker.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (currentWorker.isAlive()) {
+            log.warn("Async OAuth event dispatcher worker did not stop within " + SHUTDOWN_TIMEOUT + "ms.");
+        } else {
+            stoppedWorker = null;
+        }
+    }
+
+    private void awaitStoppedWorker() {
+
+        // A worker that did not stop within the shutdown timeout may still be delivering events. Wait for it, so
+        // that the events are never delivered by two workers, out of order.
+        if (stoppedWorker == null) {
+            return;
+        }
+        try {
+            stoppedWorker.join();
+            stoppedWorker = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the previous async OAuth event dispatcher worker to stop.");
+        }
+    }
+
+    /**
+     * Whether any interceptor is registered. Callers can use this to avoid building events nobody consumes.
+     *
+     * @return True if there is at least one interceptor.
+     */
+    public boolean hasInterceptors() {
+
+        return !interceptors.isEmpty();
+    }
+
+    /**
+     * Publish an event to be dispatched to the interceptors.
+     *
+     * @param event Token lifecycle event.
+     * @return False if the event was dropped.
+     */
+    public boolean publish(OAuthLifecycleEvent event) {
+
+        BlockingQueue<OAuthLifecycleEvent> eventBuffer = buffer;
+        if (event == null || eventBuffer == null || !hasInterceptors()) {
+            return false;
+        }
+        boolean added;
+        if (getOverflowPolicy() == OverflowPolicy.BLOCK) {
+            try {
+                added = eventBuffer.offer(event, getBlockTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                added = false;
+            }
+        } else {
+            added = eventBuffer.offer(event);
+        }
+        if (!added) {
+            long dropped = droppedEvents.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("Async OAuth event buffer is full. Dropped event: " + event + ". Total dropped events: " +
+                        dropped);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Get the number of events dropped since the server started, as the buffer was full.
+     *
+     * @return Number of dropped events.
+     */
+    public long getDroppedEventCount() {
+
+        return droppedEvents.get();
+    }
+
+    /**
+     * Get the dispatch metrics of the interceptors.
+     *
+     * @return Unmodifiable map of the metrics against the interceptor name.
+     */
+    public Map<String, InterceptorMetrics> getInterceptorMetrics() {
+
+        return Collections.unmodifiableMap(interceptorMetrics);
+    }
+
+    private void dispatchEvents() {
+
+        Thread currentThread = Thread.currentThread();
+        BlockingQueue<OAuthLifecycleEvent> eventBuffer = buffer;
+        while (worker == currentThread || !eventBuffer.isEmpty()) {
+            OAuthLifecycleEvent event;
+            try {
+                event = eventBuffer.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // The worker is never interrupted by the dispatcher. Keep running until shutdown is called.
+                continue;
+            }
+            if (event == null) {
+                continue;
+            }
+            List<OAuthLifecycleEvent> batch = new ArrayList<>();
+            batch.add(event);
+            eventBuffer.drainTo(batch, getBatchSize() - 1);
+            dispatch(Collections.unmodifiableList(batch));
+        }
+    }
+
+    void dispatch(List<OAuthLifecycleEvent> batch) {
+
+        for (AsyncOAuthEventInterceptor interceptor : interceptors) {
+            if (!interceptor.isEnabled()) {
+                continue;
+            }
+            InterceptorMetrics metrics = interceptorMetrics.computeIfAbsent(interceptor.getName(),
+                    name -> new InterceptorMetrics());
+            long startTime = System.nanoTime();
+            boolean failed = false;
+            try {
+                interceptor.handleEvents(batch);
+            } catch (Exception e) {
+                // Interceptors must not stop the delivery to the others, or kill the worker thread.
+                failed = true;
+                log.error("Error while dispatching " + batch.size() + " OAuth events to the async interceptor: " +
+                        interceptor.getName(), e);
+            }
+            long latency = System.nanoTime() - startTime;
+            metrics.record(batch.size(), latency, failed);
+            if (log.isDebugEnabled()) {
+                log.debug("Dispatched " + batch.size() + " OAuth events to the async interceptor: " +
+                        interceptor.getName() + " in " + TimeUnit.NANOSECONDS.toMicros(latency) + "us.");
+            }
+        }
+    }
+
+    private int getBatchSize() {
+
+        if (batchSize < 0) {
+            batchSize = (int) getLongProperty(BATCH_SIZE, DEFAULT_BATCH_SIZE, 1);
+        }
+        return batchSize;
+    }
+
+    private long getBlockTimeout() {
+
+        if (blockTimeout < 0) {
+            blockTimeout = getLongProperty(BLOCK_TIMEOUT, DEFAULT_BLOCK_TIMEOUT, 0);
+        }
+        return blockTimeout;
+    }
+
+    private OverflowPolicy getOverflowPolicy() {
+
+        if (overflowPolicy == null) {
+            String value = StringUtils.trim(IdentityUtil.getProperty(OVERFLOW_POLICY));
+            OverflowPolicy policy = OverflowPolicy.DROP;
+            if (StringUtils.isNotEmpty(value)) {
+                try {
+                    policy = OverflowPolicy.valueOf(value.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    log.warn("Invalid value: " + value + " configured for: " + OVERFLOW_POLICY +
+                            ". Using the default value: " + policy);
+                }
+            }
+            overflowPolicy = policy;
+        }
+        return overflowPolicy;
+    }
+
+    private static long getLongProperty(String property, long defaultValue, long minValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                long parsedValue = Long.parseLong(value.trim());
+                if (parsedValue >= minValue) {
+                    return parsedValue;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the default value.
+            }
+            log.warn("Invalid value: " + value + " configured for: " + property + ". Using the default value: " +
+                    defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Dispatch metrics of an interceptor.
+     */
+    public static class InterceptorMetrics {
+
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong events = new AtomicLong();
+        private final AtomicLong failedBatches = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        void record(int eventCount, long latency, boolean failed) {
+
+            batches.incrementAndGet();
+            events.addAndGet(eventCount);
+            if (failed) {
+                failedBatches.incrementAndGet();
+            }
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+
+        public long getBatchCount() {
+
+            return batches.get();
+        }
+
+        public long getEventCount() {
+
+            return events.get();
+        }
+
+        public long getFailedBatchCount() {
+
+            return failedBatches.get();
+        }
+
+        /**
+         * Get the average time taken by the interceptor to handle a batch.
+         *
+         * @return Average latency in nanoseconds.
+         */
+        public long getAverageLatency() {
+
+            long batchCount = batches.get();
+            return batchCount == 0 ? 0 : totalLatency.get() / batchCount;
+        }
+
+        /**
+         * Get the maximum time taken by the interceptor to handle a batch.
+         *
+         * @return Maximum latency in nanoseconds.
+         */
+        public long getMaxLatency() {
+
+            return maxLatency.get();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.event;
+
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.util.List;
+
+/**
+ * OAuth event interceptor which is safe to be invoked outside the request thread.
+ * <p>
+ * Unlike {@link OAuthEventInterceptor}, the implementations do not get the request and message context objects.
+ * They receive immutable snapshots of the completed token lifecycle events in batches, from a worker thread of the
+ * {@link AsyncOAuthEventDispatcher}, so that their latency is not added to the token responses. Implementations
+ * should be registered as OSGi services of this interface.
+ */
+public interface AsyncOAuthEventInterceptor {
+
+    /**
+     * Get the name of the interceptor, used to report the dispatch metrics of the interceptor.
+     *
+     * @return Name of the interceptor.
+     */
+    String getName();
+
+    /**
+     * Whether the interceptor is enabled.
+     *
+     * @return True if the events should be dispatched to the interceptor.
+     */
+    default boolean isEnabled() {
+
+        return true;
+    }
+
+    /**
+     * Called with a batch of events, in the order they were published.
+     *
+     * @param events Immutable list of events.
+     * @throws IdentityOAuth2Exception If an error occurred while handling the events.
+     */
+    void handleEvents(List<OAuthLifecycleEvent> events) throws IdentityOAuth2Exception;
+}
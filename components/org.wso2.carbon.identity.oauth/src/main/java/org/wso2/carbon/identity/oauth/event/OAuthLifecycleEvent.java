@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.event;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a completed OAuth token lifecycle event, dispatched to the
+ * {@link AsyncOAuthEventInterceptor}s. Token values are never part of the event, only the token id.
+ */
+public final class OAuthLifecycleEvent {
+
+    /**
+     * Types of the token lifecycle events.
+     */
+    public enum Type {
+        POST_TOKEN_ISSUE,
+        POST_TOKEN_RENEWAL,
+        POST_TOKEN_REVOCATION_BY_CLIENT,
+        POST_TOKEN_REVOCATION_BY_RESOURCE_OWNER,
+        POST_TOKEN_REVOCATION_BY_APPLICATION,
+        POST_TOKEN_REVOCATION_BY_SYSTEM
+    }
+
+    private static final Log log = LogFactory.getLog(OAuthLifecycleEvent.class);
+
+    private final Type type;
+    private final long timestamp;
+    private final String clientId;
+    private final String tenantDomain;
+    private final String grantType;
+    private final String authorizedUser;
+    private final String tokenId;
+    private final List<String> scopes;
+    private final Map<String, String> properties;
+
+    public OAuthLifecycleEvent(Type type, String clientId, String tenantDomain, String grantType,
+                               AuthenticatedUser authorizedUser, String tokenId, String[] scopes,
+                               Map<String, String> properties) {
+
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+        this.clientId = clientId;
+        this.tenantDomain = tenantDomain;
+        this.grantType = grantType;
+        this.authorizedUser = authorizedUser != null ? authorizedUser.toFullQualifiedUsername() : null;
+        this.tokenId = tokenId;
+        this.scopes = ArrayUtils.isEmpty(scopes) ? Collections.emptyList() :
+                Collections.unmodifiableList(Arrays.asList(scopes.clone()));
+        this.properties = properties == null || properties.isEmpty() ? Collections.emptyMap() :
+                Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    /**
+     * Create an event from the persisted details of an access token.
+     *
+     * @param type          Type of the event.
+     * @param accessTokenDO Access token the event is about.
+     * @param tenantDomain  Tenant domain of the token.
+     * @return Token lifecycle event.
+     */
+    public static OAuthLifecycleEvent fromAccessToken(Type type, AccessTokenDO accessTokenDO, String tenantDomain) {
+
+        return new OAuthLifecycleEvent(type, accessTokenDO.getConsumerKey(), tenantDomain,
+                accessTokenDO.getGrantType(), accessTokenDO.getAuthzUser(), accessTokenDO.getTokenId(),
+                accessTokenDO.getScope(), null);
+    }
+
+    /**
+     * Create an event from the persisted details of an access token, resolving the tenant domain of the token from
+     * its tenant id.
+     *
+     * @param type          Type of the event.
+     * @param accessTokenDO Access token the event is about.
+     * @return Token lifecycle event.
+     */
+    public static OAuthLifecycleEvent fromAccessToken(Type type, AccessTokenDO accessTokenDO) {
+
+        String tenantDomain = null;
+        try {
+            tenantDomain = OAuth2Util.getTenantDomain(accessTokenDO.getTenantID());
+        } catch (IdentityOAuth2Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while resolving the tenant domain of tenant id: " + accessTokenDO.getTenantID(), e);
+            }
+        }
+        return fromAccessToken(type, accessTokenDO, tenantDomain);
+    }
+
+    public Type getType() {
+
+        return type;
+    }
+
+    /**
+     * Get the time the event was published.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getTimestamp() {
+
+        return timestamp;
+    }
+
+    public String getClientId() {
+
+        return clientId;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public String getGrantType() {
+
+        return grantType;
+    }
+
+    /**
+     * Get the fully qualified username of the authorized user of the token.
+     *
+     * @return Fully qualified username, or null if the user is not known.
+     */
+    public String getAuthorizedUser() {
+
+        return authorizedUser;
+    }
+
+    public String getTokenId() {
+
+        return tokenId;
+    }
+
+    public List<String> getScopes() {
+
+        return scopes;
+    }
+
+    public Map<String, String> getProperties() {
+
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+
+        return "OAuthLifecycleEvent{type=" + type + ", clientId=" + clientId + ", tenantDomain=" + tenantDomain +
+                ", grantType=" + grantType + ", tokenId=" + tokenId + "}";
+    }
+}
@@ -34,6 +34,8 @@ import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.token.bindings.TokenBinderInfo;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventDispatcher;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventInterceptor;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
 import org.wso2.carbon.identity.oauth.listener.IdentityOathEventListener;
 import org.wso2.carbon.identity.oauth.listener.IdentityOauthEventHandler;
@@ -113,6 +115,7 @@ public class OAuthServiceComponent {
         if (serviceRegistration != null) {
             serviceRegistration.unregister();
         }
+        AsyncOAuthEventDispatcher.getInstance().shutdown();
         if (log.isDebugEnabled()) {
             log.debug("Identity OAuth bundle is deactivated");
         }
@@ -230,6 +233,29 @@ public class OAuthServiceComponent {
         OAuthComponentServiceHolder.getInstance().addOauthEventInterceptorProxy(null);
     }
 
+    @Reference(
+            name = "org.wso2.carbon.identity.oauth.event.AsyncOAuthEventInterceptor",
+            service = AsyncOAuthEventInterceptor.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetAsyncOAuthEventInterceptor"
+    )
+    protected void setAsyncOAuthEventInterceptor(AsyncOAuthEventInterceptor asyncOAuthEventInterceptor) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Adding async oauth event interceptor: " + asyncOAuthEventInterceptor.getName());
+        }
+        AsyncOAuthEventDispatcher.getInstance().addInterceptor(asyncOAuthEventInterceptor);
+    }
+
+    protected void unsetAsyncOAuthEventInterceptor(AsyncOAuthEventInterceptor asyncOAuthEventInterceptor) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Removing async oauth event interceptor: " + asyncOAuthEventInterceptor.getName());
+        }
+        AsyncOAuthEventDispatcher.getInstance().removeInterceptor(asyncOAuthEventInterceptor);
+    }
+
     protected void unsetIdentityCoreInitializedEventService(IdentityCoreInitializedEvent identityCoreInitializedEvent) {
         /* reference IdentityCoreInitializedEvent service to guarantee that this component will wait until identity core
          is started */
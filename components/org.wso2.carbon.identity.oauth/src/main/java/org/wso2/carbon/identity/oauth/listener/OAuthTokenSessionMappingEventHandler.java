@@ -32,6 +32,7 @@ import org.wso2.carbon.identity.oauth.event.AbstractOAuthEventInterceptor;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dao.TokenShardManager;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeRespDTO;
@@ -51,6 +52,11 @@ public class OAuthTokenSessionMappingEventHandler extends AbstractOAuthEventInte
 
     private static final Log log = LogFactory.getLog(OAuthTokenSessionMappingEventHandler.class);
 
+    /**
+     * Message context property set when the token to session mapping was persisted along with the token.
+     */
+    public static final String TOKEN_SESSION_MAPPING_PERSISTED = "TokenSessionMappingPersisted";
+
     /**
      * This method handles stores token to session mapping during post token issuance. This is used by authorization
      * grant flow.
@@ -99,6 +105,13 @@ public class OAuthTokenSessionMappingEventHandler extends AbstractOAuthEventInte
             }
             return;
         }
+        if (tokReqMsgCtx != null && Boolean.TRUE.equals(tokReqMsgCtx.getProperty(TOKEN_SESSION_MAPPING_PERSISTED))) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token to session mapping is already persisted along with the token for the " +
+                        "application: " + tokenReqDTO.getClientId());
+            }
+            return;
+        }
 
         persistTokenToSessionMapping(getSessionContextIdentifierByCode(code), tokenRespDTO.getTokenId(),
                 OAuth2Util.getTenantId(tokenReqDTO.getTenantDomain()), tokenReqDTO.getClientId());
@@ -168,6 +181,13 @@ public class OAuthTokenSessionMappingEventHandler extends AbstractOAuthEventInte
                     "application: %s", oauthAuthzMsgCtx.getAuthorizationReqDTO().getResponseType(),
                     tokenDO.getConsumerKey()));
         }
+        if (Boolean.TRUE.equals(oauthAuthzMsgCtx.getProperty(TOKEN_SESSION_MAPPING_PERSISTED))) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token to session mapping is already persisted along with the token for the " +
+                        "application: " + tokenDO.getConsumerKey());
+            }
+            return;
+        }
         String sessionContextId = oauthAuthzMsgCtx.getAuthorizationReqDTO().getIdpSessionIdentifier();
         persistTokenToSessionMapping(sessionContextId, tokenDO.getTokenId(), tokenDO.getTenantID(),
                 tokenDO.getConsumerKey());
@@ -187,6 +207,57 @@ public class OAuthTokenSessionMappingEventHandler extends AbstractOAuthEventInte
                 Boolean.parseBoolean(identityEventListenerConfig.getEnable());
     }
 
+    /**
+     * Set the session context identifier on a new access token, so that the token to session mapping is written in
+     * the same transaction as the token instead of in a separate one after the token is issued. Once the token is
+     * stored, the caller sets the {@link #TOKEN_SESSION_MAPPING_PERSISTED} property on its message context, which
+     * makes this handler skip the mapping. The mapping is left to this handler when token persistence is sharded,
+     * and nothing is persisted when this handler is disabled.
+     *
+     * @param newTokenBean     Access token to be persisted.
+     * @param sessionContextId Session context identifier the token is issued for.
+     * @return True if the mapping is persisted along with the token.
+     */
+    public static boolean bindSessionContextIdentifier(AccessTokenDO newTokenBean, String sessionContextId) {
+
+        if (StringUtils.isBlank(sessionContextId) || !isMappingPersistedWithToken()) {
+            return false;
+        }
+        newTokenBean.setSessionContextIdentifier(sessionContextId);
+        return true;
+    }
+
+    /**
+     * Set the session context identifier mapped to the authorization code on a new access token. See
+     * {@link #bindSessionContextIdentifier(AccessTokenDO, String)}.
+     *
+     * @param newTokenBean      Access token to be persisted.
+     * @param authorizationCode Authorization code the token is issued for.
+     * @return True if the mapping is persisted along with the token.
+     */
+    public static boolean bindSessionContextIdentifierByCode(AccessTokenDO newTokenBean, String authorizationCode) {
+
+        if (!isMappingPersistedWithToken()) {
+            return false;
+        }
+        String sessionContextId = getSessionContextIdentifierByCode(authorizationCode);
+        if (StringUtils.isBlank(sessionContextId)) {
+            return false;
+        }
+        newTokenBean.setSessionContextIdentifier(sessionContextId);
+        return true;
+    }
+
+    private static boolean isMappingPersistedWithToken() {
+
+        if (TokenShardManager.isShardingEnabled()) {
+            return false;
+        }
+        IdentityEventListenerConfig identityEventListenerConfig = IdentityUtil.readEventListenerProperty
+                (AbstractIdentityHandler.class.getName(), OAuthTokenSessionMappingEventHandler.class.getName());
+        return identityEventListenerConfig == null || Boolean.parseBoolean(identityEventListenerConfig.getEnable());
+    }
+
     /**
      * Return session context identifier from authorization grant cache. For authorization code flow, we mapped it
      * against auth_code.
@@ -194,7 +265,7 @@ public class OAuthTokenSessionMappingEventHandler extends AbstractOAuthEventInte
      * @param authorizationCode Authorization code.
      * @return SessionContextIdentifier.
      */
-    private String getSessionContextIdentifierByCode(String authorizationCode) {
+    private static String getSessionContextIdentifierByCode(String authorizationCode) {
 
         String sessionContextIdentifier = null;
         if (isNotBlank(authorizationCode)) {
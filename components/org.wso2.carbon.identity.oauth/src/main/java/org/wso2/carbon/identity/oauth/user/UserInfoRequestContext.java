@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.user;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+/**
+ * Request scoped context of a userinfo request.
+ * <p>
+ * Serving a userinfo request needs the access token, its stored identifier, the OAuth app and the service provider of
+ * the token at several points: token validation, claim filtering and response building. While a scope is active on
+ * the current thread, each of them is resolved once and shared between those steps. The context is only handed out
+ * for the access token the scope was started for, or for the stored identifier resolved for it, so a nested lookup
+ * of a different token is never served from it.
+ */
+public class UserInfoRequestContext {
+
+    private static final ThreadLocal<UserInfoRequestContext> currentScope = new ThreadLocal<>();
+
+    private final String accessTokenIdentifier;
+    private String storedAccessTokenIdentifier;
+    private AccessTokenDO accessTokenDO;
+    private OAuthAppDO oAuthAppDO;
+    private ServiceProvider serviceProvider;
+    private int depth;
+
+    private UserInfoRequestContext(String accessTokenIdentifier) {
+
+        this.accessTokenIdentifier = accessTokenIdentifier;
+    }
+
+    /**
+     * Start a userinfo request scope for the given access token on the current thread. Scopes of the same token can
+     * be nested, the context is discarded only when the outermost scope ends. Starting a scope for a different token
+     * replaces the existing context.
+     *
+     * @param accessTokenIdentifier Access token used for the userinfo request.
+     */
+    public static void startScope(String accessTokenIdentifier) {
+
+        UserInfoRequestContext context = get(accessTokenIdentifier);
+        if (context == null) {
+            context = new UserInfoRequestContext(accessTokenIdentifier);
+            currentScope.set(context);
+        }
+        context.depth++;
+    }
+
+    /**
+     * End the userinfo request scope started on the current thread.
+     */
+    public static void endScope() {
+
+        UserInfoRequestContext context = currentScope.get();
+        if (context == null) {
+            return;
+        }
+        context.depth--;
+        if (context.depth <= 0) {
+            currentScope.remove();
+        }
+    }
+
+    /**
+     * Get the context of the current thread if a scope is active for the given access token.
+     *
+     * @param accessTokenIdentifier Access token identifier.
+     * @return Context of the active scope or null if there is no scope for the given token.
+     */
+    public static UserInfoRequestContext get(String accessTokenIdentifier) {
+
+        UserInfoRequestContext context = currentScope.get();
+        if (context != null && (StringUtils.equals(context.accessTokenIdentifier, accessTokenIdentifier) ||
+                (context.storedAccessTokenIdentifier != null &&
+                        StringUtils.equals(context.storedAccessTokenIdentifier, accessTokenIdentifier)))) {
+            return context;
+        }
+        return null;
+    }
+
+    /**
+     * Get the identifier the access token of the given validation response is stored with. While a scope is active
+     * for the token, the identifier is looked up only once and reused for the rest of the request.
+     *
+     * @param tokenResponse Validation response of the access token used for the userinfo request.
+     * @return Stored access token identifier or null if the token is not found.
+     * @throws UserInfoEndpointException if an error occurs while looking up the access token.
+     */
+    public static String getAccessTokenIdentifier(OAuth2TokenValidationResponseDTO tokenResponse)
+            throws UserInfoEndpointException {
+
+        UserInfoRequestContext context = get(tokenResponse.getAuthorizationContextToken().getTokenString());
+        if (context == null) {
+            return OAuth2Util.getAccessTokenIdentifier(tokenResponse);
+        }
+        if (context.storedAccessTokenIdentifier == null) {
+            context.storedAccessTokenIdentifier = OAuth2Util.getAccessTokenIdentifier(tokenResponse);
+        }
+        return context.storedAccessTokenIdentifier;
+    }
+
+    public String getAccessTokenIdentifier() {
+
+        return accessTokenIdentifier;
+    }
+
+    public AccessTokenDO getAccessTokenDO() {
+
+        return accessTokenDO;
+    }
+
+    public void setAccessTokenDO(AccessTokenDO accessTokenDO) {
+
+        this.accessTokenDO = accessTokenDO;
+    }
+
+    public OAuthAppDO getOAuthAppDO() {
+
+        return oAuthAppDO;
+    }
+
+    public void setOAuthAppDO(OAuthAppDO oAuthAppDO) {
+
+        this.oAuthAppDO = oAuthAppDO;
+    }
+
+    public ServiceProvider getServiceProvider() {
+
+        return serviceProvider;
+    }
+
+    public void setServiceProvider(ServiceProvider serviceProvider) {
+
+        this.serviceProvider = serviceProvider;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable mapping between the claim URIs of an external claim dialect and the local claim dialect of a tenant.
+ * <p>
+ * The mapped claim URIs are held in two parallel arrays, so that translating a set of claims from one dialect to the
+ * other is an iteration over the mapping, and external claim URIs are resolved through a lookup table built once per
+ * mapping. Each mapping carries the version of the tenant claim configuration it was built from. Local claim URIs are
+ * not resolved here, since several external claims can be mapped to the same local claim. Use
+ * {@link ClaimDialectMappingCache#getLocalToExternalMappings(String, String)} for that.
+ */
+public final class ClaimDialectMapping {
+
+    private final String dialect;
+    private final String tenantDomain;
+    private final long version;
+    private final String[] externalClaimUris;
+    private final String[] localClaimUris;
+    private final Map<String, String> externalToLocalMappings;
+
+    /**
+     * Build a mapping from the external to local claim mappings of a dialect.
+     *
+     * @param dialect                 External claim dialect URI.
+     * @param tenantDomain            Tenant domain of the mappings.
+     * @param version                 Version of the tenant claim configuration.
+     * @param externalToLocalMappings External claim URI to local claim URI mappings.
+     */
+    public ClaimDialectMapping(String dialect, String tenantDomain, long version,
+                               Map<String, String> externalToLocalMappings) {
+
+        this.dialect = dialect;
+        this.tenantDomain = tenantDomain;
+        this.version = version;
+
+        int size = externalToLocalMappings == null ? 0 : externalToLocalMappings.size();
+        String[] externalUris = new String[size];
+        String[] localUris = new String[size];
+        Map<String, String> externalToLocal = new HashMap<>(size * 2);
+        int index = 0;
+        if (externalToLocalMappings != null) {
+            for (Map.Entry<String, String> mapping : externalToLocalMappings.entrySet()) {
+                if (mapping.getKey() == null || mapping.getValue() == null) {
+                    continue;
+                }
+                externalUris[index] = mapping.getKey();
+                localUris[index] = mapping.getValue();
+                externalToLocal.put(mapping.getKey(), mapping.getValue());
+                index++;
+            }
+        }
+        this.externalClaimUris = index == size ? externalUris : Arrays.copyOf(externalUris, index);
+        this.localClaimUris = index == size ? localUris : Arrays.copyOf(localUris, index);
+        this.externalToLocalMappings = Collections.unmodifiableMap(externalToLocal);
+    }
+
+    public String getDialect() {
+
+        return dialect;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public long getVersion() {
+
+        return version;
+    }
+
+    /**
+     * Get the number of claim mappings.
+     *
+     * @return Number of claim mappings.
+     */
+    public int size() {
+
+        return externalClaimUris.length;
+    }
+
+    /**
+     * Get the external claim URI of a mapping.
+     *
+     * @param index Index of the mapping, between 0 and {@link #size()}.
+     * @return External claim URI.
+     */
+    public String getExternalClaimUri(int index) {
+
+        return externalClaimUris[index];
+    }
+
+    /**
+     * Get the local claim URI of a mapping.
+     *
+     * @param index Index of the mapping, between 0 and {@link #size()}.
+     * @return Local claim URI.
+     */
+    public String getLocalClaimUri(int index) {
+
+        return localClaimUris[index];
+    }
+
+    /**
+     * Resolve the local claim URI mapped to an external claim URI.
+     *
+     * @param externalClaimUri External claim URI.
+     * @return Local claim URI, or null if the claim is not mapped.
+     */
+    public String getLocalClaimUri(String externalClaimUri) {
+
+        return externalToLocalMappings.get(externalClaimUri);
+    }
+
+    /**
+     * Get the mappings keyed by the external claim URI.
+     *
+     * @return Unmodifiable external claim URI to local claim URI mappings.
+     */
+    public Map<String, String> getExternalToLocalMappings() {
+
+        return externalToLocalMappings;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
+import org.wso2.carbon.identity.claim.metadata.mgt.exception.ClaimMetadataException;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node local cache of the claim dialect mappings of tenants.
+ * <p>
+ * Translating user claims between the local dialect and the OIDC dialect on token and user info requests otherwise
+ * rebuilds the dialect mappings through {@link ClaimMetadataHandler} on every request. The mapping of a dialect is
+ * built once per tenant and shared until it expires, or until the mappings of the tenant are invalidated.
+ * <p>
+ * The mappings of a tenant are invalidated by
+ * {@link org.wso2.carbon.identity.openidconnect.OIDCClaimMetaDataOperationHandler} on the claim metadata events of
+ * the tenant, such as claim dialect and external claim updates. Every invalidation moves the tenant to a new version,
+ * so that a mapping which was being built from the previous claim configuration is not cached. The events are only
+ * delivered to the node the change was made on, hence the time to live bounds how long the other nodes of a cluster
+ * keep using the previous mappings.
+ */
+public class ClaimDialectMappingCache {
+
+    private static final Log log = LogFactory.getLog(ClaimDialectMappingCache.class);
+
+    private static final String ENABLE = "OAuth.ClaimDialectMappingCache.Enable";
+    private static final String TIME_TO_LIVE = "OAuth.ClaimDialectMappingCache.TimeToLive";
+    // Time to live of a mapping in milliseconds. Bounds the time claim dialect changes take to apply on the other
+    // nodes of a cluster.
+    private static final long DEFAULT_TIME_TO_LIVE = 300000;
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private static final ClaimDialectMappingCache instance = new ClaimDialectMappingCache();
+
+    private final Map<String, CachedMapping<ClaimDialectMapping>> mappings = new ConcurrentHashMap<>();
+    private final Map<String, CachedMapping<Map<String, String>>> localToExternalMappings = new ConcurrentHashMap<>();
+    private final Map<String, Long> tenantVersions = new ConcurrentHashMap<>();
+    private volatile Boolean enabled;
+    private volatile long timeToLive = -1;
+
+    ClaimDialectMappingCache() {
+
+    }
+
+    public static ClaimDialectMappingCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the mapping between the given claim dialect and the local claim dialect of a tenant.
+     *
+     * @param dialect      External claim dialect URI.
+     * @param tenantDomain Tenant domain.
+     * @return Claim dialect mapping.
+     * @throws ClaimMetadataException If the claim mappings of the dialect cannot be retrieved.
+     */
+    public ClaimDialectMapping getMapping(String dialect, String tenantDomain) throws ClaimMetadataException {
+
+        String tenant = StringUtils.defaultString(tenantDomain);
+        long version = getVersion(tenant);
+        if (!isEnabled()) {
+            return buildMapping(dialect, tenantDomain, version);
+        }
+
+        String key = dialect + KEY_SEPARATOR + tenant;
+        long now = System.currentTimeMillis();
+        CachedMapping<ClaimDialectMapping> cachedMapping = mappings.get(key);
+        if (cachedMapping != null && cachedMapping.isValid(version, now)) {
+            return cachedMapping.mapping;
+        }
+
+        ClaimDialectMapping mapping = buildMapping(dialect, tenantDomain, version);
+        if (getVersion(tenant) == version) {
+            mappings.put(key, new CachedMapping<>(mapping, version, now + getTimeToLive()));
+        }
+        return mapping;
+    }
+
+    /**
+     * Get the local claim URI to external claim URI mappings of the given claim dialect of a tenant. The mappings are
+     * resolved by {@link ClaimMetadataHandler} with the local dialect as the key, which decides the external claim a
+     * local claim resolves to when several external claims are mapped to it.
+     *
+     * @param dialect      External claim dialect URI.
+     * @param tenantDomain Tenant domain.
+     * @return Unmodifiable local claim URI to external claim URI mappings.
+     * @throws ClaimMetadataException If the claim mappings of the dialect cannot be retrieved.
+     */
+    public Map<String, String> getLocalToExternalMappings(String dialect, String tenantDomain)
+            throws ClaimMetadataException {
+
+        String tenant = StringUtils.defaultString(tenantDomain);
+        long version = getVersion(tenant);
+        if (!isEnabled()) {
+            return buildLocalToExternalMappings(dialect, tenantDomain);
+        }
+
+        String key = dialect + KEY_SEPARATOR + tenant;
+        long now = System.currentTimeMillis();
+        CachedMapping<Map<String, String>> cachedMapping = localToExternalMappings.get(key);
+        if (cachedMapping != null && cachedMapping.isValid(version, now)) {
+            return cachedMapping.mapping;
+        }
+
+        Map<String, String> mapping = buildLocalToExternalMappings(dialect, tenantDomain);
+        if (getVersion(tenant) == version) {
+            localToExternalMappings.put(key, new CachedMapping<>(mapping, version, now + getTimeToLive()));
+        }
+        return mapping;
+    }
+
+    /**
+     * Evict the claim dialect mappings of a tenant. Invoked when the claim metadata of the tenant changes.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void invalidate(String tenantDomain) {
+
+        String tenant = StringUtils.defaultString(tenantDomain);
+        tenantVersions.merge(tenant, 1L, Long::sum);
+        String keySuffix = KEY_SEPARATOR + tenant;
+        if (!mappings.isEmpty()) {
+            mappings.keySet().removeIf(key -> key.endsWith(keySuffix));
+        }
+        if (!localToExternalMappings.isEmpty()) {
+            localToExternalMappings.keySet().removeIf(key -> key.endsWith(keySuffix));
+        }
+    }
+
+    /**
+     * Remove all the cached mappings.
+     */
+    public void clear() {
+
+        mappings.clear();
+        localToExternalMappings.clear();
+    }
+
+    boolean isEnabled() {
+
+        if (enabled == null) {
+            enabled = !Boolean.FALSE.toString().equalsIgnoreCase(StringUtils.trim(IdentityUtil.getProperty(ENABLE)));
+        }
+        return enabled;
+    }
+
+    private long getVersion(String tenant) {
+
+        Long version = tenantVersions.get(tenant);
+        return version == null ? 0 : version;
+    }
+
+    private ClaimDialectMapping buildMapping(String dialect, String tenantDomain, long version)
+            throws ClaimMetadataException {
+
+        Map<String, String> externalToLocalMappings = ClaimMetadataHandler.getInstance()
+                .getMappingsMapFromOtherDialectToCarbon(dialect, null, tenantDomain, false);
+        if (log.isDebugEnabled()) {
+            log.debug("Built the claim mappings of dialect: " + dialect + " for tenant: " + tenantDomain +
+                    " with version: " + version);
+        }
+        return new ClaimDialectMapping(dialect, tenantDomain, version, externalToLocalMappings);
+    }
+
+    private Map<String, String> buildLocalToExternalMappings(String dialect, String tenantDomain)
+            throws ClaimMetadataException {
+
+        Map<String, String> localToExternal = ClaimMetadataHandler.getInstance()
+                .getMappingsMapFromOtherDialectToCarbon(dialect, null, tenantDomain, true);
+        if (log.isDebugEnabled()) {
+            log.debug("Built the local claim mappings of dialect: " + dialect + " for tenant: " + tenantDomain);
+        }
+        return localToExternal == null ? Collections.emptyMap() :
+                Collections.unmodifiableMap(new HashMap<>(localToExternal));
+    }
+
+    private long getTimeToLive() {
+
+        if (timeToLive < 0) {
+            String value = IdentityUtil.getProperty(TIME_TO_LIVE);
+            long parsedValue = -1;
+            if (StringUtils.isNotBlank(value)) {
+                try {
+                    parsedValue = Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    // Fall back to the default value.
+                }
+                if (parsedValue < 0) {
+                    log.warn("Invalid value: " + value + " configured for: " + TIME_TO_LIVE +
+                            ". Using the default value: " + DEFAULT_TIME_TO_LIVE);
+                }
+            }
+            timeToLive = parsedValue < 0 ? DEFAULT_TIME_TO_LIVE : parsedValue;
+        }
+        return timeToLive;
+    }
+
+    private static class CachedMapping<T> {
+
+        private final T mapping;
+        private final long version;
+        private final long expiry;
+
+        CachedMapping(T mapping, long version, long expiry) {
+
+            this.mapping = mapping;
+            this.version = version;
+            this.expiry = expiry;
+        }
+
+        boolean isValid(long currentVersion, long now) {
+
+            return version == currentVersion && expiry >= now;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Request scoped cache of user claim values retrieved from the user store.
+ * <p>
+ * A single token request may resolve the claims of the same user several times, e.g. for the subject claim, the
+ * claims of a JWT access token and the claims of the ID token. While a scope is active on the current thread,
+ * claim values are retrieved from the user store only once per user, tenant and claim dialect, and only the claim
+ * URIs which were not retrieved earlier in the same scope are requested from the user store. Outside an active scope
+ * every lookup goes straight to the user store.
+ */
+public class RequestScopedUserClaimCache {
+
+    public static final String LOCAL_CLAIM_DIALECT = "http://wso2.org/claims";
+
+    private static final Log log = LogFactory.getLog(RequestScopedUserClaimCache.class);
+    private static final ThreadLocal<RequestScopedUserClaimCache> currentScope = new ThreadLocal<>();
+
+    private final Map<UserClaimsKey, CachedClaims> cachedClaims = new HashMap<>();
+    private int depth;
+    private int userStoreCalls;
+    private int cacheHits;
+
+    private RequestScopedUserClaimCache() {
+
+    }
+
+    /**
+     * Start a claim cache scope on the current thread. Scopes can be nested, the cache is discarded only when the
+     * outermost scope ends.
+     */
+    public static void startScope() {
+
+        RequestScopedUserClaimCache cache = currentScope.get();
+        if (cache == null) {
+            cache = new RequestScopedUserClaimCache();
+            currentScope.set(cache);
+        }
+        cache.depth++;
+    }
+
+    /**
+     * End the claim cache scope started on the current thread.
+     */
+    public static void endScope() {
+
+        RequestScopedUserClaimCache cache = currentScope.get();
+        if (cache == null) {
+            return;
+        }
+        cache.depth--;
+        if (cache.depth <= 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Ending request scoped user claim cache. User store calls: " + cache.userStoreCalls +
+                        ", served from cache: " + cache.cacheHits);
+            }
+            currentScope.remove();
+        }
+    }
+
+    /**
+     * Check whether a claim cache scope is active on the current thread.
+     *
+     * @return True if a scope is active.
+     */
+    public static boolean isScopeActive() {
+
+        return currentScope.get() != null;
+    }
+
+    /**
+     * Get the values of the given claims of a user. Claims already retrieved in the active scope are served from the
+     * cache, and only the remaining claims are requested through the given loader.
+     *
+     * @param username     Fully qualified username of the user.
+     * @param tenantDomain Tenant domain of the user.
+     * @param dialect      Claim dialect of the claim URIs.
+     * @param claimURIs    Claim URIs to retrieve.
+     * @param loader       Loader used to retrieve claim values missing from the cache.
+     * @param <E>          Exception thrown by the loader.
+     * @return A mutable map of the claim values. Claims without a value are not included.
+     * @throws E If the loader fails to retrieve claim values.
+     */
+    public static <E extends Exception> Map<String, String> getClaimValues(String username, String tenantDomain,
+                                                                           String dialect,
+                                                                           Collection<String> claimURIs,
+                                                                           ClaimValueLoader<E> loader) throws E {
+
+        RequestScopedUserClaimCache cache = currentScope.get();
+        if (cache == null) {
+            Map<String, String> claimValues = loader.load(claimURIs.toArray(new String[0]));
+            return claimValues == null ? new HashMap<>() : new HashMap<>(claimValues);
+        }
+        return cache.resolveClaimValues(new UserClaimsKey(username, tenantDomain, dialect), claimURIs, loader);
+    }
+
+    private <E extends Exception> Map<String, String> resolveClaimValues(UserClaimsKey key,
+                                                                         Collection<String> claimURIs,
+                                                                         ClaimValueLoader<E> loader) throws E {
+
+        CachedClaims claims = cachedClaims.computeIfAbsent(key, k -> new CachedClaims());
+        List<String> missingClaimURIs = new ArrayList<>();
+        for (String claimURI : claimURIs) {
+            if (!claims.retrievedClaimURIs.contains(claimURI)) {
+                missingClaimURIs.add(claimURI);
+            }
+        }
+        if (missingClaimURIs.isEmpty()) {
+            cacheHits++;
+        } else {
+            userStoreCalls++;
+            Map<String, String> loadedValues = loader.load(missingClaimURIs.toArray(new String[0]));
+            if (loadedValues != null) {
+                claims.claimValues.putAll(loadedValues);
+            }
+            claims.retrievedClaimURIs.addAll(missingClaimURIs);
+        }
+
+        Map<String, String> claimValues = new HashMap<>();
+        for (String claimURI : claimURIs) {
+            String claimValue = claims.claimValues.get(claimURI);
+            if (claimValue != null) {
+                claimValues.put(claimURI, claimValue);
+            }
+        }
+        return claimValues;
+    }
+
+    /**
+     * Retrieves claim values of a user from the user store.
+     *
+     * @param <E> Exception thrown while retrieving the claim values.
+     */
+    @FunctionalInterface
+    public interface ClaimValueLoader<E extends Exception> {
+
+        Map<String, String> load(String[] claimURIs) throws E;
+    }
+
+    private static class CachedClaims {
+
+        private final Set<String> retrievedClaimURIs = new HashSet<>();
+        private final Map<String, String> claimValues = new HashMap<>();
+    }
+
+    private static class UserClaimsKey {
+
+        private final String username;
+        private final String tenantDomain;
+        private final String dialect;
+
+        UserClaimsKey(String username, String tenantDomain, String dialect) {
+
+            this.username = username;
+            this.tenantDomain = tenantDomain;
+            this.dialect = dialect;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserClaimsKey)) {
+                return false;
+            }
+            UserClaimsKey that = (UserClaimsKey) o;
+            return Objects.equals(username, that.username) && Objects.equals(tenantDomain, that.tenantDomain) &&
+                    Objects.equals(dialect, that.dialect);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(username, tenantDomain, dialect);
+        }
+    }
+}
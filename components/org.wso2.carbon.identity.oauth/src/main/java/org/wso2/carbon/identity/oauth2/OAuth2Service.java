@@ -18,23 +18,32 @@
 
 package org.wso2.carbon.identity.oauth2;
 
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.oltu.oauth2.common.message.types.GrantType;
 import org.owasp.encoder.Encode;
 import org.wso2.carbon.core.AbstractAdmin;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.base.IdentityException;
 import org.wso2.carbon.identity.central.log.mgt.utils.LoggerUtils;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth.cache.JWTVerificationResultCache;
 import org.wso2.carbon.identity.oauth.common.OAuth2ErrorCodes;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.dto.OAuthErrorDTO;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventDispatcher;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
+import org.wso2.carbon.identity.oauth.event.OAuthLifecycleEvent;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth2.authz.AuthorizationHandlerManager;
 import org.wso2.carbon.identity.oauth2.bean.OAuthClientAuthnContext;
@@ -55,12 +64,16 @@ import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
 import org.wso2.carbon.identity.oauth2.token.AccessTokenIssuer;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinder;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.validators.JWTRevocationList;
 import org.wso2.carbon.user.api.Claim;
 import org.wso2.carbon.user.core.UserStoreManager;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPublicKey;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -510,19 +523,26 @@ public class OAuth2Service extends AbstractAdmin {
                     return revokeRespDTO;
                 }
 
+                if (refreshTokenDO == null && accessTokenDO == null) {
+                    // Stateless access tokens are not persisted, hence are not found in the database.
+                    revokeStatelessAccessToken(revokeRequestDTO);
+                }
+
                 if (refreshTokenDO != null) {
                     String tokenBindingReference = NONE;
                     if (StringUtils.isNotBlank(refreshTokenDO.getTokenBindingReference())) {
                         tokenBindingReference = refreshTokenDO.getTokenBindingReference();
                     }
+                    OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                            .revokeAccessTokens(new String[] { refreshTokenDO.getAccessToken() });
+                    // Clear the caches once the revocation is committed, so that a concurrent read can not cache the
+                    // revoked token again.
                     OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), refreshTokenDO.getAuthorizedUser(),
                             OAuth2Util.buildScopeString(refreshTokenDO.getScope()), tokenBindingReference);
                     OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), refreshTokenDO.getAuthorizedUser(),
                             OAuth2Util.buildScopeString(refreshTokenDO.getScope()));
                     OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), refreshTokenDO.getAuthorizedUser());
                     OAuthUtil.clearOAuthCache(refreshTokenDO.getAccessToken());
-                    OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                            .revokeAccessTokens(new String[] { refreshTokenDO.getAccessToken() });
                     addRevokeResponseHeaders(revokeResponseDTO,
                             refreshTokenDO.getAccessToken(),
                             revokeRequestDTO.getToken(),
@@ -558,12 +578,6 @@ public class OAuth2Service extends AbstractAdmin {
                                 .isNotBlank(accessTokenDO.getTokenBinding().getBindingReference())) {
                             tokenBindingReference = accessTokenDO.getTokenBinding().getBindingReference();
                         }
-                        OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), accessTokenDO.getAuthzUser(),
-                                OAuth2Util.buildScopeString(accessTokenDO.getScope()), tokenBindingReference);
-                        OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), accessTokenDO.getAuthzUser(),
-                                OAuth2Util.buildScopeString(accessTokenDO.getScope()));
-                        OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), accessTokenDO.getAuthzUser());
-                        OAuthUtil.clearOAuthCache(accessTokenDO);
                         String scope = OAuth2Util.buildScopeString(accessTokenDO.getScope());
                         String userId = accessTokenDO.getAuthzUser().getUserId();
                         synchronized ((revokeRequestDTO.getConsumerKey() + ":" + userId + ":" + scope + ":"
@@ -571,6 +585,12 @@ public class OAuth2Service extends AbstractAdmin {
                             OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
                                     .revokeAccessTokens(new String[]{accessTokenDO.getAccessToken()});
                         }
+                        OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), accessTokenDO.getAuthzUser(),
+                                OAuth2Util.buildScopeString(accessTokenDO.getScope()), tokenBindingReference);
+                        OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), accessTokenDO.getAuthzUser(),
+                                OAuth2Util.buildScopeString(accessTokenDO.getScope()));
+                        OAuthUtil.clearOAuthCache(revokeRequestDTO.getConsumerKey(), accessTokenDO.getAuthzUser());
+                        OAuthUtil.clearOAuthCache(accessTokenDO);
                         addRevokeResponseHeaders(revokeResponseDTO,
                                 revokeRequestDTO.getToken(),
                                 accessTokenDO.getRefreshToken(),
@@ -650,6 +670,55 @@ public class OAuth2Service extends AbstractAdmin {
         }
     }
 
+    /**
+     * Add a stateless access token issued to the requesting client to the revocation list. The token is accepted only
+     * if it is signed with the key of the tenant of the client.
+     *
+     * @param revokeRequestDTO Revocation request.
+     */
+    private void revokeStatelessAccessToken(OAuthRevocationRequestDTO revokeRequestDTO)
+            throws IdentityOAuth2Exception {
+
+        String token = revokeRequestDTO.getToken();
+        if (!OAuth2Util.isStatelessJWTAccessTokenEnabled() || !OAuth2Util.isJWT(token)) {
+            return;
+        }
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(token);
+            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+            if (claimsSet == null || claimsSet.getExpirationTime() == null || StringUtils.isEmpty(claimsSet.getJWTID())
+                    || !Boolean.TRUE.equals(claimsSet.getClaim(OAuth2Util.STATELESS_ACCESS_TOKEN_CLAIM))
+                    || !revokeRequestDTO.getConsumerKey().equals(claimsSet.getStringClaim(OAuth2Util.CLIENT_ID))) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Provided token is not a stateless access token of the client: " +
+                            revokeRequestDTO.getConsumerKey());
+                }
+                return;
+            }
+            if (!JWSAlgorithm.Family.RSA.contains(signedJWT.getHeader().getAlgorithm())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Signature algorithm of the provided token is not supported for revocation.");
+                }
+                return;
+            }
+            String tenantDomain = OAuth2Util.getTenantDomainOfOauthApp(revokeRequestDTO.getConsumerKey());
+            Certificate certificate = OAuth2Util.getCertificate(tenantDomain,
+                    IdentityTenantUtil.getTenantId(tenantDomain));
+            if (!signedJWT.verify(new RSASSAVerifier((RSAPublicKey) certificate.getPublicKey()))) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Signature of the provided token could not be verified.");
+                }
+                return;
+            }
+            JWTRevocationList.getInstance().revoke(claimsSet.getJWTID(), claimsSet.getExpirationTime().getTime());
+            JWTVerificationResultCache.getInstance().invalidate(token);
+        } catch (ParseException | JOSEException | InvalidOAuthClientException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Provided token could not be revoked as a stateless access token.", e);
+            }
+        }
+    }
+
     private boolean isRefreshTokenType(OAuthRevocationRequestDTO revokeRequestDTO) {
         return StringUtils.equals(GrantType.REFRESH_TOKEN.toString(), revokeRequestDTO.getTokenType());
     }
@@ -669,6 +738,21 @@ public class OAuth2Service extends AbstractAdmin {
                 log.error("Error occurred when invoking post token revoke listener ", e);
             }
         }
+
+        AsyncOAuthEventDispatcher asyncEventDispatcher = AsyncOAuthEventDispatcher.getInstance();
+        if (!asyncEventDispatcher.hasInterceptors() || revokeResponseDTO == null || revokeResponseDTO.isError()) {
+            return;
+        }
+        if (accessTokenDO != null) {
+            asyncEventDispatcher.publish(OAuthLifecycleEvent.fromAccessToken(
+                    OAuthLifecycleEvent.Type.POST_TOKEN_REVOCATION_BY_CLIENT, accessTokenDO));
+        } else if (refreshTokenDO != null) {
+            AuthenticatedUser authorizedUser = refreshTokenDO.getAuthorizedUser();
+            asyncEventDispatcher.publish(new OAuthLifecycleEvent(
+                    OAuthLifecycleEvent.Type.POST_TOKEN_REVOCATION_BY_CLIENT, revokeRequestDTO.getConsumerKey(),
+                    authorizedUser != null ? authorizedUser.getTenantDomain() : null, refreshTokenDO.getGrantType(),
+                    authorizedUser, refreshTokenDO.getTokenId(), refreshTokenDO.getScope(), null));
+        }
     }
 
     /**
@@ -486,6 +486,7 @@ public class TokenResponseTypeHandler extends AbstractResponseTypeHandler {
                 log.error("Oauth post token issue listener ", e);
             }
         }
+        ResponseTypeHandlerUtil.publishAsyncPostTokenIssueEvent(oauthAuthzMsgCtx, tokenDO);
     }
 
     private boolean isOIDCRequest (OAuthAuthzReqMessageContext msgCtx) {
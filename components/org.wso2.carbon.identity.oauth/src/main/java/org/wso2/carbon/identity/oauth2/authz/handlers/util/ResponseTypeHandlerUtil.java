@@ -42,12 +42,16 @@ import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventDispatcher;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
+import org.wso2.carbon.identity.oauth.event.OAuthLifecycleEvent;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth.listener.OAuthTokenSessionMappingEventHandler;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.OAuth2Service;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
 import org.wso2.carbon.identity.oauth2.bean.OAuthClientAuthnContext;
+import org.wso2.carbon.identity.oauth2.dao.CacheBackedAuthorizationCodeDAO;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeReqDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeRespDTO;
@@ -110,6 +114,24 @@ public class ResponseTypeHandlerUtil {
                 log.error("Oauth post token issue listener ", e);
             }
         }
+        publishAsyncPostTokenIssueEvent(oauthAuthzMsgCtx, tokenDO);
+    }
+
+    /**
+     * Publish the token issued in the authorization endpoint to the async OAuth event interceptors.
+     *
+     * @param oauthAuthzMsgCtx Authorization request message context.
+     * @param tokenDO          Issued access token, if any.
+     */
+    public static void publishAsyncPostTokenIssueEvent(OAuthAuthzReqMessageContext oauthAuthzMsgCtx,
+                                                       AccessTokenDO tokenDO) {
+
+        AsyncOAuthEventDispatcher asyncEventDispatcher = AsyncOAuthEventDispatcher.getInstance();
+        if (tokenDO == null || !asyncEventDispatcher.hasInterceptors()) {
+            return;
+        }
+        asyncEventDispatcher.publish(OAuthLifecycleEvent.fromAccessToken(OAuthLifecycleEvent.Type.POST_TOKEN_ISSUE,
+                tokenDO, oauthAuthzMsgCtx.getAuthorizationReqDTO().getTenantDomain()));
     }
 
     /**
@@ -275,7 +297,8 @@ public class ResponseTypeHandlerUtil {
                 .insertAuthorizationCode(authorizationCode, authorizationReqDTO.getConsumerKey(),
                         authorizationReqDTO.getCallbackUrl(), authzCodeDO);
 
-        if (cacheEnabled) {
+        // The cache backed authorization code store keeps the code itself, hence it is not cached again here.
+        if (cacheEnabled && !CacheBackedAuthorizationCodeDAO.isEnabled()) {
             // Cache the authz Code, here we prepend the client_key to avoid collisions with
             // AccessTokenDO instances. In database level, these are in two databases. But access
             // tokens and authorization codes are in a single cache.
@@ -680,8 +703,13 @@ public class ResponseTypeHandlerUtil {
             existingTokenBean, AccessTokenDO newTokenBean) throws IdentityOAuth2Exception {
 
         OAuth2AuthorizeReqDTO authorizationReqDTO = oauthAuthzMsgCtx.getAuthorizationReqDTO();
+        boolean sessionMappingWithToken = OAuthTokenSessionMappingEventHandler.bindSessionContextIdentifier(
+                newTokenBean, authorizationReqDTO.getIdpSessionIdentifier());
         storeAccessToken(authorizationReqDTO, getUserStoreDomain(authorizationReqDTO.getUser()), existingTokenBean,
                 newTokenBean);
+        if (sessionMappingWithToken) {
+            oauthAuthzMsgCtx.addProperty(OAuthTokenSessionMappingEventHandler.TOKEN_SESSION_MAPPING_PERSISTED, true);
+        }
         if (log.isDebugEnabled()) {
             log.debug("Persisted Access Token for" + " Client ID: " + authorizationReqDTO.getConsumerKey() + ", " +
                     "Authorized User: " + authorizationReqDTO.getUser() + ", Is Federated User: " +
@@ -22,15 +22,27 @@ package org.wso2.carbon.identity.oauth2.dao;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.database.utils.jdbc.JdbcTemplate;
+import org.wso2.carbon.identity.application.mgt.util.JdbcUtils;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.cache.RefreshTokenValidationCache;
+import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.tokenprocessor.HashingPersistenceProcessor;
 import org.wso2.carbon.identity.oauth.tokenprocessor.PlainTextPersistenceProcessor;
 import org.wso2.carbon.identity.oauth.tokenprocessor.TokenPersistenceProcessor;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import javax.sql.DataSource;
 
 /*
 NOTE
@@ -98,7 +110,150 @@ abstract class AbstractOAuthDAO {
 
     protected Connection getConnection() {
 
+        return getDBConnection();
+    }
+
+    /**
+     * Get a transactional connection to the token shard bound to the current thread, or to the identity
+     * datasource when token persistence is not sharded.
+     *
+     * @return Database connection.
+     */
+    protected Connection getDBConnection() {
+
+        if (TokenShardManager.getCurrentShard() != null) {
+            return TokenShardManager.getCurrentShardConnection(true);
+        }
         return IdentityDatabaseUtil.getDBConnection();
     }
 
+    /**
+     * Get a connection to the token shard bound to the current thread, to the read replica during a replica read, or
+     * to the identity datasource otherwise.
+     *
+     * @param shouldApplyTransaction Whether the connection should be transactional.
+     * @return Database connection.
+     */
+    protected Connection getDBConnection(boolean shouldApplyTransaction) {
+
+        if (TokenShardManager.getCurrentShard() != null) {
+            return TokenShardManager.getCurrentShardConnection(shouldApplyTransaction);
+        }
+        return ReadReplicaManager.getDBConnection(shouldApplyTransaction);
+    }
+
+    /**
+     * Get a JDBC template over the token shard bound to the current thread, or over the identity datasource when
+     * token persistence is not sharded.
+     *
+     * @return JDBC template.
+     */
+    protected JdbcTemplate getJdbcTemplate() {
+
+        DataSource shard = TokenShardManager.getCurrentShard();
+        if (shard != null) {
+            return new JdbcTemplate(shard);
+        }
+        return JdbcUtils.getNewTemplate();
+    }
+
+    /**
+     * Check whether the statements of the current thread are executed against a token shard.
+     *
+     * @return true if a token shard is bound to the current thread.
+     */
+    protected boolean isOnTokenShard() {
+
+        return TokenShardManager.getCurrentShard() != null;
+    }
+
+    /**
+     * Evict the cached data of access tokens which are expired or revoked. Invoked by the token DAOs once the state
+     * change is committed, so that a concurrent read can not cache the previous state again after the eviction.
+     *
+     * @param tokenIds     Token ids of the invalidated tokens.
+     * @param accessTokens Invalidated access tokens in plain text.
+     */
+    protected void onAccessTokensInvalidated(Collection<String> tokenIds, Collection<String> accessTokens) {
+
+        RefreshTokenValidationCache refreshTokenValidationCache = RefreshTokenValidationCache.getInstance();
+        for (String tokenId : tokenIds) {
+            refreshTokenValidationCache.clearCacheEntryByTokenId(tokenId);
+        }
+        for (String accessToken : accessTokens) {
+            refreshTokenValidationCache.clearCacheEntryByAccessToken(accessToken);
+        }
+    }
+
+    /**
+     * Evict the cached data of all access tokens of a client, once the revocation of the tokens of the client is
+     * committed. The revoked tokens are not loaded by such a revocation, hence all the cached data is dropped.
+     *
+     * @param consumerKey Consumer key of the client.
+     */
+    protected void onClientAccessTokensInvalidated(String consumerKey) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Clearing the refresh token validation cache as the tokens of client: " + consumerKey +
+                    " are revoked.");
+        }
+        RefreshTokenValidationCache.getInstance().clearAll();
+    }
+
+    /**
+     * Get the id of the application in the identity datasource, which is bound to the rows stored in a token shard.
+     * The application row is copied to the token shard bound to the current thread, if it is not there yet.
+     *
+     * @param consumerKey Consumer key of the application.
+     * @return Id of the application.
+     * @throws IdentityOAuth2Exception If the application cannot be found.
+     */
+    protected int getConsumerAppId(String consumerKey) throws IdentityOAuth2Exception {
+
+        try {
+            OAuthAppDO oAuthAppDO = OAuth2Util.getAppInformationByClientId(consumerKey);
+            if (oAuthAppDO == null) {
+                throw new IdentityOAuth2Exception("Application not found for consumer key: " + consumerKey);
+            }
+            TokenShardManager.provisionConsumerApp(oAuthAppDO.getId());
+            return oAuthAppDO.getId();
+        } catch (InvalidOAuthClientException e) {
+            throw new IdentityOAuth2Exception("Error while retrieving the application of consumer key: " +
+                    consumerKey, e);
+        }
+    }
+
+    /**
+     * Get the id of the identity provider in the identity datasource, which is bound to the rows stored in a token
+     * shard. The identity provider row is copied to the token shard bound to the current thread, if it is not there
+     * yet.
+     *
+     * @param idpName  Name of the identity provider.
+     * @param tenantId Tenant id of the identity provider.
+     * @return Id of the identity provider.
+     * @throws IdentityOAuth2Exception If the identity provider cannot be found.
+     */
+    protected int getIdPId(String idpName, int tenantId) throws IdentityOAuth2Exception {
+
+        int idpId = getIdentityIdPId(idpName, tenantId);
+        TokenShardManager.provisionIdP(idpId);
+        return idpId;
+    }
+
+    private int getIdentityIdPId(String idpName, int tenantId) throws IdentityOAuth2Exception {
+
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+             PreparedStatement prepStmt = connection.prepareStatement(SQLQueries.GET_IDP_ID_BY_NAME)) {
+            prepStmt.setString(1, idpName);
+            prepStmt.setInt(2, tenantId);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error while retrieving the id of the identity provider: " + idpName, e);
+        }
+        throw new IdentityOAuth2Exception("Identity provider: " + idpName + " not found in tenant: " + tenantId);
+    }
 }
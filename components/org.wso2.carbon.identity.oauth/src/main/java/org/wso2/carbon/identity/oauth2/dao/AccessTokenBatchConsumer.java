@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Consumer of access tokens which are streamed from the token store in bounded batches, so that bulk operations
+ * over all the tokens of a tenant or a user store do not need to hold every token in memory.
+ */
+@FunctionalInterface
+public interface AccessTokenBatchConsumer {
+
+    /**
+     * Process a batch of access tokens. The batch is not retained by the caller once this method returns.
+     *
+     * @param accessTokenDOs Access tokens of the current batch.
+     * @throws IdentityOAuth2Exception If an error occurs while processing the batch.
+     */
+    void consume(List<AccessTokenDO> accessTokenDOs) throws IdentityOAuth2Exception;
+
+    /**
+     * Feed an already retrieved collection of access tokens to the given consumer in batches of the given size.
+     *
+     * @param accessTokenDOs Access tokens to be consumed.
+     * @param batchSize      Maximum number of access tokens in a batch.
+     * @param consumer       Consumer of the batches.
+     * @throws IdentityOAuth2Exception If an error occurs while processing a batch.
+     */
+    static void consumeInBatches(Collection<AccessTokenDO> accessTokenDOs, int batchSize,
+                                 AccessTokenBatchConsumer consumer) throws IdentityOAuth2Exception {
+
+        if (accessTokenDOs == null || accessTokenDOs.isEmpty()) {
+            return;
+        }
+        int effectiveBatchSize = batchSize > 0 ? batchSize : accessTokenDOs.size();
+        List<AccessTokenDO> batch = new ArrayList<>(Math.min(effectiveBatchSize, accessTokenDOs.size()));
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            batch.add(accessTokenDO);
+            if (batch.size() >= effectiveBatchSize) {
+                consumer.consume(batch);
+                batch = new ArrayList<>(effectiveBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.consume(batch);
+        }
+    }
+}
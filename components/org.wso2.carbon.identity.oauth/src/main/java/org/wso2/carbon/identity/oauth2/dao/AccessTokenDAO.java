@@ -23,7 +23,9 @@ package org.wso2.carbon.identity.oauth2.dao;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -84,6 +86,37 @@ public interface AccessTokenDAO {
 
     }
 
+    /**
+     * Get the active access tokens mapped to a session context identifier in a single lookup.
+     *
+     * @param sessionIdentifier Session context identifier.
+     * @return Active access tokens of the session, or null if the lookup is not supported and the tokens need to be
+     * resolved one by one through {@link #getTokenIdBySessionIdentifier(String)}.
+     * @throws IdentityOAuth2Exception in case of failure.
+     */
+    default Set<AccessTokenDO> getActiveAccessTokensBySessionIdentifier(String sessionIdentifier)
+            throws IdentityOAuth2Exception {
+
+        return null;
+    }
+
+    /**
+     * Revoke the given access tokens. Implementations may revoke them with set based updates on the token id.
+     *
+     * @param accessTokenDOs Access tokens to be revoked, as retrieved from the token store.
+     * @throws IdentityOAuth2Exception in case of failure.
+     */
+    default void revokeAccessTokensByTokenIds(Collection<AccessTokenDO> accessTokenDOs)
+            throws IdentityOAuth2Exception {
+
+        String[] tokens = new String[accessTokenDOs.size()];
+        int index = 0;
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            tokens[index++] = accessTokenDO.getAccessToken();
+        }
+        revokeAccessTokens(tokens, OAuth2Util.isHashEnabled());
+    }
+
     Set<AccessTokenDO> getAccessTokens(String consumerKey, AuthenticatedUser userName,
                                        String userStoreDomain, boolean includeExpired) throws IdentityOAuth2Exception;
 
@@ -106,6 +139,55 @@ public interface AccessTokenDAO {
     Set<AccessTokenDO> getAccessTokensOfUserStore(int tenantId, String userStoreDomain) throws
             IdentityOAuth2Exception;
 
+    /**
+     * Stream the 'ACTIVE' access tokens of the given consumer key to the consumer in batches, without loading all the
+     * tokens of the application into memory.
+     *
+     * @param consumerKey Consumer key of the application.
+     * @param batchSize   Maximum number of access tokens handed over to the consumer at once.
+     * @param consumer    Consumer of the access token batches.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving or processing the access tokens.
+     */
+    default void processActiveAccessTokensByConsumerKey(String consumerKey, int batchSize,
+                                                        AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        AccessTokenBatchConsumer.consumeInBatches(getActiveAcessTokenDataByConsumerKey(consumerKey), batchSize,
+                consumer);
+    }
+
+    /**
+     * Stream the 'ACTIVE' and 'EXPIRED' access tokens of the given tenant to the consumer in batches, without
+     * loading all the tokens of the tenant into memory.
+     *
+     * @param tenantId  Tenant id.
+     * @param batchSize Maximum number of access tokens handed over to the consumer at once.
+     * @param consumer  Consumer of the access token batches.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving or processing the access tokens.
+     */
+    default void processAccessTokensByTenant(int tenantId, int batchSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        AccessTokenBatchConsumer.consumeInBatches(getAccessTokensByTenant(tenantId), batchSize, consumer);
+    }
+
+    /**
+     * Stream the 'ACTIVE' and 'EXPIRED' access tokens of the given user store to the consumer in batches, without
+     * loading all the tokens of the user store into memory.
+     *
+     * @param tenantId        Tenant id.
+     * @param userStoreDomain User store domain.
+     * @param batchSize       Maximum number of access tokens handed over to the consumer at once.
+     * @param consumer        Consumer of the access token batches.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving or processing the access tokens.
+     */
+    default void processAccessTokensOfUserStore(int tenantId, String userStoreDomain, int batchSize,
+                                                AccessTokenBatchConsumer consumer) throws IdentityOAuth2Exception {
+
+        AccessTokenBatchConsumer.consumeInBatches(getAccessTokensOfUserStore(tenantId, userStoreDomain), batchSize,
+                consumer);
+    }
+
     /**
      * This method is to revoke specific tokens where tokens should be plain text tokens.
      *
@@ -170,6 +252,25 @@ public interface AccessTokenDAO {
     void updateUserStoreDomain(int tenantId, String currentUserStoreDomain,
                                String newUserStoreDomain) throws IdentityOAuth2Exception;
 
+    /**
+     * Rename the user store domain of the access tokens of a user store in chunks ordered by the token id. Each chunk
+     * continues after the last token id of the previous chunk, is updated in its own short transaction and is handed
+     * over to the consumer once committed. Tokens already moved to the new domain no longer match, hence a re-run
+     * resumes from the first token which is not yet processed.
+     *
+     * @param tenantId               Tenant id.
+     * @param currentUserStoreDomain Current user store domain.
+     * @param newUserStoreDomain     New user store domain.
+     * @param chunkSize              Maximum number of tokens to be updated in a transaction.
+     * @param consumer               Consumer of the updated chunks, which carry only the token id and the access
+     *                               token identifier. It may be invoked concurrently if the tokens are stored in more
+     *                               than one database.
+     * @throws IdentityOAuth2Exception If an error occurs while updating the access tokens.
+     */
+    void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                       int chunkSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception;
+
     String getTokenIdByAccessToken(String token) throws IdentityOAuth2Exception;
 
     List<AccessTokenDO> getLatestAccessTokens(String consumerKey, AuthenticatedUser authzUser,
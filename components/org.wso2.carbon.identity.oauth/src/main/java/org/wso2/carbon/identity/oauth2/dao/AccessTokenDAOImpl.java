@@ -21,6 +21,7 @@
 package org.wso2.carbon.identity.oauth2.dao;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -32,20 +33,22 @@ import org.wso2.carbon.database.utils.jdbc.exceptions.DataAccessException;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.common.IdentityApplicationManagementException;
 import org.wso2.carbon.identity.application.common.model.ServiceProvider;
-import org.wso2.carbon.identity.application.mgt.util.JdbcUtils;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.common.OAuth2ErrorCodes;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.OauthTokenIssuer;
 import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinding;
+import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
 import org.wso2.carbon.identity.oauth2.util.OAuth2TokenUtil;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
@@ -59,6 +62,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -74,6 +78,7 @@ import static org.wso2.carbon.identity.core.util.IdentityUtil.getProperty;
 import static org.wso2.carbon.identity.core.util.LambdaExceptionUtils.rethrowRowMapper;
 import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenBindings.NONE;
 import static org.wso2.carbon.identity.oauth2.dao.SQLQueries.GET_ACCESS_TOKENS_BY_BINDING_REFERENCE;
+import static org.wso2.carbon.identity.oauth2.dao.SQLQueries.GET_ACTIVE_ACCESS_TOKENS_BY_SESSION_IDENTIFIER;
 import static org.wso2.carbon.identity.oauth2.dao.SQLQueries.RETRIEVE_TOKEN_BINDING_BY_TOKEN_ID;
 import static org.wso2.carbon.identity.oauth2.dao.SQLQueries.STORE_TOKEN_BINDING;
 
@@ -90,6 +95,8 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     private boolean isCrossTenantTokenInspectionAllowed
             = OAuthServerConfiguration.getInstance().isCrossTenantTokenInspectionAllowed();
     private static final String DEFAULT_TOKEN_TO_SESSION_MAPPING = "DEFAULT";
+    private static final String TOKEN_ID_PLACEHOLDER = "$tokenIds";
+    private static final int REVOKE_BY_TOKEN_ID_CHUNK_SIZE = 100;
 
     private static final Log log = LogFactory.getLog(AccessTokenDAOImpl.class);
     OldTokensCleanDAO oldTokenCleanupObject = new OldTokensCleanDAO();
@@ -105,6 +112,37 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    /**
+     * Get the identifier under which the given access token is persisted. This is the access token itself, or its
+     * alias when the token issuer of the application persists an alias of the token.
+     *
+     * @param accessToken Access token.
+     * @param consumerKey Consumer key of the application.
+     * @return Persisted identifier of the access token.
+     * @throws IdentityOAuth2Exception If the token issuer of the application cannot be resolved.
+     */
+    String getPersistedAccessTokenIdentifier(String accessToken, String consumerKey) throws IdentityOAuth2Exception {
+
+        String accessTokenHash = accessToken;
+        try {
+            OauthTokenIssuer oauthTokenIssuer = OAuth2Util.getOAuthTokenIssuerForOAuthApp(consumerKey);
+            //check for persist alias for the token type
+            if (oauthTokenIssuer.usePersistedAccessTokenAlias()) {
+                accessTokenHash = oauthTokenIssuer.getAccessTokenHash(accessToken);
+            }
+        } catch (OAuthSystemException e) {
+            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
+                log.debug("Error while getting access token hash for token(hashed): " + DigestUtils
+                        .sha256Hex(accessTokenHash));
+            }
+            throw new IdentityOAuth2Exception("Error while getting access token hash.", e);
+        } catch (InvalidOAuthClientException e) {
+            throw new IdentityOAuth2Exception(
+                    "Error while retrieving oauth issuer for the app with clientId: " + consumerKey, e);
+        }
+        return accessTokenHash;
+    }
+
     private void insertAccessToken(String accessToken, String consumerKey, AccessTokenDO accessTokenDO,
                                    Connection connection, String userStoreDomain) throws IdentityOAuth2Exception {
         // Start inserting access token with retryAttemptCounter set to 0.
@@ -129,23 +167,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     "Authorized user should be available for further execution.");
         }
 
-        String accessTokenHash = accessToken;
-        try {
-            OauthTokenIssuer oauthTokenIssuer = OAuth2Util.getOAuthTokenIssuerForOAuthApp(consumerKey);
-            //check for persist alias for the token type
-            if (oauthTokenIssuer.usePersistedAccessTokenAlias()) {
-                accessTokenHash = oauthTokenIssuer.getAccessTokenHash(accessToken);
-            }
-        } catch (OAuthSystemException e) {
-            if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
-                log.debug("Error while getting access token hash for token(hashed): " + DigestUtils
-                        .sha256Hex(accessTokenHash));
-            }
-            throw new IdentityOAuth2Exception("Error while getting access token hash.", e);
-        } catch (InvalidOAuthClientException e) {
-            throw new IdentityOAuth2Exception(
-                    "Error while retrieving oauth issuer for the app with clientId: " + consumerKey, e);
-        }
+        String accessTokenHash = getPersistedAccessTokenIdentifier(accessToken, consumerKey);
 
         if (log.isDebugEnabled()) {
             if (IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
@@ -162,7 +184,6 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         String userDomain = OAuth2Util.getUserStoreDomain(accessTokenDO.getAuthzUser());
         String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(accessTokenDO.getAuthzUser());
         PreparedStatement insertTokenPrepStmt = null;
-        PreparedStatement addScopePrepStmt = null;
 
         if (log.isDebugEnabled()) {
             String username;
@@ -174,8 +195,11 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             log.debug("Userstore domain for user: " + username + " is " + userDomain);
         }
 
+        boolean isOnTokenShard = isOnTokenShard();
         String sql;
-        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+        if (isOnTokenShard) {
+            sql = getInsertAccessTokenToShardQuery();
+        } else if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
             if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled()) {
                 sql = SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN_WITH_IDP_NAME_WITH_CONSENTED_TOKEN;
             } else {
@@ -189,6 +213,15 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
         }
         sql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, userDomain);
+        int tenantId = OAuth2Util.getTenantId(accessTokenDO.getAuthzUser().getTenantDomain());
+        int consumerAppId = 0;
+        int idpId = 0;
+        if (isOnTokenShard) {
+            consumerAppId = getConsumerAppId(consumerKey);
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                idpId = getIdPId(authenticatedIDP, tenantId);
+            }
+        }
         String sqlAddScopes = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.INSERT_OAUTH2_TOKEN_SCOPE,
                 userDomain);
 
@@ -205,7 +238,6 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
 
             insertTokenPrepStmt.setString(3, accessTokenDO.getAuthzUser().getUserName());
-            int tenantId = OAuth2Util.getTenantId(accessTokenDO.getAuthzUser().getTenantDomain());
             insertTokenPrepStmt.setInt(4, tenantId);
             insertTokenPrepStmt.setString(5, OAuth2Util.getSanitizedUserStoreDomain(userDomain));
             insertTokenPrepStmt
@@ -234,7 +266,16 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             } else {
                 insertTokenPrepStmt.setString(18, NONE);
             }
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            if (isOnTokenShard) {
+                int parameterIndex = 19;
+                if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled()) {
+                    insertTokenPrepStmt.setString(parameterIndex++, Boolean.toString(accessTokenDO.isConsentedToken()));
+                }
+                insertTokenPrepStmt.setInt(parameterIndex++, consumerAppId);
+                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                    insertTokenPrepStmt.setInt(parameterIndex, idpId);
+                }
+            } else if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
                 if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled()) {
                     insertTokenPrepStmt.setString(19, Boolean.toString(accessTokenDO.isConsentedToken()));
                     insertTokenPrepStmt.setString(20, authenticatedIDP);
@@ -253,35 +294,58 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     insertTokenPrepStmt.setString(19, getPersistenceProcessor().getProcessedClientId(consumerKey));
                 }
             }
-            insertTokenPrepStmt.executeUpdate();
-
-            String accessTokenId = accessTokenDO.getTokenId();
-            addScopePrepStmt = connection.prepareStatement(sqlAddScopes);
-
-            if (accessTokenDO.getScope() != null && accessTokenDO.getScope().length > 0) {
-                for (String scope : accessTokenDO.getScope()) {
-                    addScopePrepStmt.setString(1, accessTokenId);
-                    addScopePrepStmt.setString(2, scope);
-                    addScopePrepStmt.setInt(3, tenantId);
-                    addScopePrepStmt.addBatch();
-                }
+            int insertedRows = insertTokenPrepStmt.executeUpdate();
+            if (isOnTokenShard && insertedRows != 1) {
+                throw new IdentityOAuth2Exception("Access token of client: " + consumerKey + " is not stored in " +
+                        "the token shard. Inserted rows: " + insertedRows);
             }
-            addScopePrepStmt.executeBatch();
 
-            if (tokenBindingAvailable) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Storing token binding information" +
-                            " accessTokenId: " + accessTokenId +
-                            " bindingType: " + accessTokenDO.getTokenBinding().getBindingType() +
-                            " bindingRef: " + accessTokenDO.getTokenBinding().getBindingReference());
-                }
+            String accessTokenId = accessTokenDO.getTokenId();
+            if (accessTokenDO.getScope() != null) {
+                JdbcUtils.executeBatch(connection, sqlAddScopes, Arrays.asList(accessTokenDO.getScope()),
+                        (addScopePrepStmt, scope) -> {
+                            addScopePrepStmt.setString(1, accessTokenId);
+                            addScopePrepStmt.setString(2, scope);
+                            addScopePrepStmt.setInt(3, tenantId);
+                        });
+            }
+
+            // Token to session mappings are kept in the identity datasource, hence they are written along with the
+            // token only when the token is not persisted in a token shard.
+            boolean sessionMappingAvailable = isNotBlank(accessTokenDO.getSessionContextIdentifier())
+                    && !isOnTokenShard;
+            if (tokenBindingAvailable || sessionMappingAvailable) {
                 try (PreparedStatement preparedStatement = connection.prepareStatement(STORE_TOKEN_BINDING)) {
-                    preparedStatement.setString(1, accessTokenId);
-                    preparedStatement.setString(2, accessTokenDO.getTokenBinding().getBindingType());
-                    preparedStatement.setString(3, accessTokenDO.getTokenBinding().getBindingReference());
-                    preparedStatement.setString(4, accessTokenDO.getTokenBinding().getBindingValue());
-                    preparedStatement.setInt(5, tenantId);
-                    preparedStatement.execute();
+                    if (tokenBindingAvailable) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Storing token binding information" +
+                                    " accessTokenId: " + accessTokenId +
+                                    " bindingType: " + accessTokenDO.getTokenBinding().getBindingType() +
+                                    " bindingRef: " + accessTokenDO.getTokenBinding().getBindingReference());
+                        }
+                        preparedStatement.setString(1, accessTokenId);
+                        preparedStatement.setString(2, accessTokenDO.getTokenBinding().getBindingType());
+                        preparedStatement.setString(3, accessTokenDO.getTokenBinding().getBindingReference());
+                        preparedStatement.setString(4, accessTokenDO.getTokenBinding().getBindingValue());
+                        preparedStatement.setInt(5, tenantId);
+                        preparedStatement.addBatch();
+                    }
+                    if (sessionMappingAvailable) {
+                        String sessionContextIdentifier = accessTokenDO.getSessionContextIdentifier();
+                        if (log.isDebugEnabled()) {
+                            log.debug("Storing token to session mapping information for" +
+                                    " accessTokenId: " + accessTokenId +
+                                    " bindingType: " + DEFAULT_TOKEN_TO_SESSION_MAPPING +
+                                    " bindingRef: " + sessionContextIdentifier);
+                        }
+                        preparedStatement.setString(1, accessTokenId);
+                        preparedStatement.setString(2, DEFAULT_TOKEN_TO_SESSION_MAPPING);
+                        preparedStatement.setString(3, OAuth2Util.getTokenBindingReference(sessionContextIdentifier));
+                        preparedStatement.setString(4, sessionContextIdentifier);
+                        preparedStatement.setInt(5, tenantId);
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
                 }
             }
 
@@ -349,12 +413,25 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                         "Error when storing the access token for consumer key : " + consumerKey, e);
             }
         } finally {
-            IdentityDatabaseUtil.closeStatement(addScopePrepStmt);
             IdentityDatabaseUtil.closeStatement(insertTokenPrepStmt);
         }
 
     }
 
+    private String getInsertAccessTokenToShardQuery() {
+
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled()) {
+                return SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN_WITH_IDP_ID_WITH_CONSENTED_TOKEN_TO_SHARD;
+            }
+            return SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN_WITH_IDP_ID_TO_SHARD;
+        }
+        if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled()) {
+            return SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN_WITH_CONSENTED_TOKEN_TO_SHARD;
+        }
+        return SQLQueries.INSERT_OAUTH2_ACCESS_TOKEN_TO_SHARD;
+    }
+
     @Override
     public boolean insertAccessToken(String accessToken, String consumerKey,
                                      AccessTokenDO newAccessTokenDO, AccessTokenDO existingAccessTokenDO,
@@ -378,7 +455,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
 
         String userStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(rawUserStoreDomain);
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         try {
             if (existingAccessTokenDO != null) {
                 //  Mark the existing access token as expired on database if a token exist for the user
@@ -392,6 +469,10 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                 oldTokenCleanupObject.cleanupTokenByTokenId(existingAccessTokenDO.getTokenId(), connection);
             }
             IdentityDatabaseUtil.commitTransaction(connection);
+            if (existingAccessTokenDO != null) {
+                onAccessTokensInvalidated(Collections.singletonList(existingAccessTokenDO.getTokenId()),
+                        Collections.emptyList());
+            }
             return true;
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
@@ -426,7 +507,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         String userDomain = OAuth2Util.getUserStoreDomain(authzUser);
         String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(authzUser);
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
         try {
@@ -852,7 +933,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         userStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(userStoreDomain);
         String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(userName);
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
         Map<String, AccessTokenDO> accessTokenDOMap = new HashMap<>();
@@ -961,131 +1042,100 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
 
         String tenantDomain = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain();
-        AccessTokenDO dataDO = null;
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-        PreparedStatement prepStmt = null;
-        ResultSet resultSet = null;
-
-        try {
-            String sql;
+        boolean isTenantQualifiedLookup = isTenantQualifiedUrlsEnabled && !isCrossTenantTokenInspectionAllowed
+                && tenantDomain != null;
+        String sql;
 
-            if (includeExpired) {
-                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                    if ((isTenantQualifiedUrlsEnabled && !isCrossTenantTokenInspectionAllowed)
-                            && tenantDomain != null) {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_TENANT_ACCESS_TOKEN_IDP_NAME;
-                    } else {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_ACCESS_TOKEN_IDP_NAME;
-                    }
+        if (includeExpired) {
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                if (isTenantQualifiedLookup) {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_TENANT_ACCESS_TOKEN_IDP_NAME;
                 } else {
-                    if ((isTenantQualifiedUrlsEnabled && !isCrossTenantTokenInspectionAllowed)
-                            && tenantDomain != null) {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_TENANT_ACCESS_TOKEN;
-                    } else {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_ACCESS_TOKEN;
-                    }
+                    sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_ACCESS_TOKEN_IDP_NAME;
                 }
             } else {
-                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                    if ((isTenantQualifiedUrlsEnabled && !isCrossTenantTokenInspectionAllowed)
-                            && tenantDomain != null) {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_TENANT_ACCESS_TOKEN_IDP_NAME;
-                    } else {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKEN_IDP_NAME;
-                    }
+                if (isTenantQualifiedLookup) {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_TENANT_ACCESS_TOKEN;
                 } else {
-                    if ((isTenantQualifiedUrlsEnabled && !isCrossTenantTokenInspectionAllowed)
-                            && tenantDomain != null) {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_TENANT_ACCESS_TOKEN;
-                    } else {
-                        sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKEN;
-                    }
+                    sql = SQLQueries.RETRIEVE_ACTIVE_EXPIRED_ACCESS_TOKEN;
+                }
+            }
+        } else {
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                if (isTenantQualifiedLookup) {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_TENANT_ACCESS_TOKEN_IDP_NAME;
+                } else {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKEN_IDP_NAME;
+                }
+            } else {
+                if (isTenantQualifiedLookup) {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_TENANT_ACCESS_TOKEN;
+                } else {
+                    sql = SQLQueries.RETRIEVE_ACTIVE_ACCESS_TOKEN;
                 }
             }
+        }
 
-            sql = OAuth2Util.getTokenPartitionedSqlByToken(sql, accessTokenIdentifier);
+        sql = OAuth2Util.getTokenPartitionedSqlByToken(sql, accessTokenIdentifier);
+        String processedTokenIdentifier = getHashingPersistenceProcessor()
+                .getProcessedAccessTokenIdentifier(accessTokenIdentifier);
+        int tenantIdOfLookup = isTenantQualifiedLookup ? IdentityTenantUtil.getTenantId(tenantDomain) : 0;
 
-            prepStmt = connection.prepareStatement(sql);
+        try (Connection connection = getDBConnection(false)) {
+            // A row is returned per scope of the token.
+            List<PersistedAccessToken> rows = JdbcUtils.executeQuery(connection, sql,
+                    (resultSet, rowNumber) -> rowNumber == 0 ? new PersistedAccessToken(resultSet)
+                            : new PersistedAccessToken(resultSet.getString(5)), prepStmt -> {
+                        prepStmt.setString(1, processedTokenIdentifier);
+                        if (isTenantQualifiedLookup) {
+                            prepStmt.setInt(2, tenantIdOfLookup);
+                        }
+                    });
+            if (rows.isEmpty()) {
+                return null;
+            }
 
-            prepStmt.setString(1,
-                    getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(accessTokenIdentifier));
-            if ((isTenantQualifiedUrlsEnabled && !isCrossTenantTokenInspectionAllowed)
-                    && tenantDomain != null) {
-                prepStmt.setInt(2, IdentityTenantUtil.getTenantId(tenantDomain));
+            PersistedAccessToken persistedToken = rows.get(0);
+            String consumerKey = getPersistenceProcessor().getPreprocessedClientId(persistedToken.consumerKey);
+            String tokenTenantDomain = OAuth2Util.getTenantDomain(persistedToken.tenantId);
+            AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(persistedToken.authorizedUser,
+                    persistedToken.userDomain, tokenTenantDomain, persistedToken.authenticatedIDP);
+            ServiceProvider serviceProvider;
+            try {
+                serviceProvider = OAuth2ServiceComponentHolder.getApplicationMgtService().
+                        getServiceProviderByClientId(consumerKey, OAuthConstants.Scope.OAUTH2, tokenTenantDomain);
+            } catch (IdentityApplicationManagementException e) {
+                throw new IdentityOAuth2Exception("Error occurred while retrieving OAuth2 application data " +
+                        "for client id " + consumerKey, e);
             }
-            resultSet = prepStmt.executeQuery();
+            user.setAuthenticatedSubjectIdentifier(persistedToken.subjectIdentifier, serviceProvider);
 
-            int iterateId = 0;
+            String[] scope = OAuth2Util.buildScopeArray(persistedToken.scope);
             List<String> scopes = new ArrayList<>();
-            while (resultSet.next()) {
-
-                if (iterateId == 0) {
-
-                    String consumerKey = getPersistenceProcessor().getPreprocessedClientId(resultSet.getString(1));
-                    String authorizedUser = resultSet.getString(2);
-                    int tenantId = resultSet.getInt(3);
-                    tenantDomain = OAuth2Util.getTenantDomain(tenantId);
-                    String userDomain = resultSet.getString(4);
-                    String[] scope = OAuth2Util.buildScopeArray(resultSet.getString(5));
-                    Timestamp issuedTime = resultSet.getTimestamp(6, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                    Timestamp refreshTokenIssuedTime = resultSet.getTimestamp(7,
-                            Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                    long validityPeriodInMillis = resultSet.getLong(8);
-                    long refreshTokenValidityPeriodMillis = resultSet.getLong(9);
-                    String tokenType = resultSet.getString(10);
-                    String refreshToken = resultSet.getString(11);
-                    String tokenId = resultSet.getString(12);
-                    String grantType = resultSet.getString(13);
-                    String subjectIdentifier = resultSet.getString(14);
-                    String authenticatedIDP = null;
-                    String tokenBindingReference = resultSet.getString(15);
-                    if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                        authenticatedIDP = resultSet.getString(16);
-                    }
-
-                    AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authorizedUser,
-                            userDomain, tenantDomain, authenticatedIDP);
-                    ServiceProvider serviceProvider;
-                    try {
-                        serviceProvider = OAuth2ServiceComponentHolder.getApplicationMgtService().
-                                getServiceProviderByClientId(consumerKey, OAuthConstants.Scope.OAUTH2, tenantDomain);
-                    } catch (IdentityApplicationManagementException e) {
-                        throw new IdentityOAuth2Exception("Error occurred while retrieving OAuth2 application data " +
-                                "for client id " + consumerKey, e);
-                    }
-
-                    user.setAuthenticatedSubjectIdentifier(subjectIdentifier, serviceProvider);
-
-                    dataDO = new AccessTokenDO(consumerKey, user, scope, issuedTime, refreshTokenIssuedTime,
-                            validityPeriodInMillis, refreshTokenValidityPeriodMillis, tokenType);
-                    dataDO.setAccessToken(accessTokenIdentifier);
-                    dataDO.setRefreshToken(refreshToken);
-                    dataDO.setTokenId(tokenId);
-                    dataDO.setGrantType(grantType);
-                    dataDO.setTenantID(tenantId);
-
-                    if (StringUtils.isNotBlank(tokenBindingReference) && !NONE.equals(tokenBindingReference)) {
-                        setTokenBindingToAccessTokenDO(dataDO, connection, tokenId);
-                    }
-                } else {
-                    scopes.add(resultSet.getString(5));
-                }
-
-                iterateId++;
+            for (PersistedAccessToken row : rows.subList(1, rows.size())) {
+                scopes.add(row.scope);
             }
-
-            if (scopes.size() > 0 && dataDO != null) {
-                dataDO.setScope((String[]) ArrayUtils.addAll(dataDO.getScope(),
-                        scopes.toArray(new String[scopes.size()])));
+            if (!scopes.isEmpty()) {
+                scope = (String[]) ArrayUtils.addAll(scope, scopes.toArray(new String[0]));
             }
 
+            AccessTokenDO dataDO = new AccessTokenDO(consumerKey, user, scope, persistedToken.issuedTime,
+                    persistedToken.refreshTokenIssuedTime, persistedToken.validityPeriodInMillis,
+                    persistedToken.refreshTokenValidityPeriodMillis, persistedToken.tokenType);
+            dataDO.setAccessToken(accessTokenIdentifier);
+            dataDO.setRefreshToken(persistedToken.refreshToken);
+            dataDO.setTokenId(persistedToken.tokenId);
+            dataDO.setGrantType(persistedToken.grantType);
+            dataDO.setTenantID(persistedToken.tenantId);
+
+            if (StringUtils.isNotBlank(persistedToken.tokenBindingReference)
+                    && !NONE.equals(persistedToken.tokenBindingReference)) {
+                setTokenBindingToAccessTokenDO(dataDO, connection, persistedToken.tokenId);
+            }
+            return dataDO;
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error when retrieving Access Token" + e);
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
         }
-
-        return dataDO;
     }
 
     private void setTokenBindingToAccessTokenDO(AccessTokenDO dataDO, Connection connection, String tokenId)
@@ -1094,25 +1144,22 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         if (log.isDebugEnabled()) {
             log.debug("Setting token binding for tokenId: " + tokenId);
         }
-        try (PreparedStatement tokenBindingPreparedStatement = connection
-                .prepareStatement(RETRIEVE_TOKEN_BINDING_BY_TOKEN_ID)) {
-            tokenBindingPreparedStatement.setString(1, tokenId);
-            try (ResultSet tokenBindingResultSet = tokenBindingPreparedStatement.executeQuery()) {
-                while (tokenBindingResultSet.next()) {
-                    if (!StringUtils.equals(DEFAULT_TOKEN_TO_SESSION_MAPPING,
-                            tokenBindingResultSet.getString("TOKEN_BINDING_TYPE"))) {
-                        TokenBinding tokenBinding = new TokenBinding();
-                        tokenBinding.setBindingType(tokenBindingResultSet.getString("TOKEN_BINDING_TYPE"));
-                        tokenBinding.setBindingReference(tokenBindingResultSet.getString("TOKEN_BINDING_REF"));
-                        tokenBinding.setBindingValue(tokenBindingResultSet.getString("TOKEN_BINDING_VALUE"));
-                        dataDO.setTokenBinding(tokenBinding);
-                        if (log.isDebugEnabled()) {
-                            log.debug("Set token binding information" +
-                                    " accessTokenId: " + tokenId +
-                                    " bindingType: " + tokenBinding.getBindingType() +
-                                    " bindingRef: " + tokenBinding.getBindingReference());
-                        }
-                    }
+        List<TokenBinding> tokenBindings = JdbcUtils.executeQuery(connection, RETRIEVE_TOKEN_BINDING_BY_TOKEN_ID,
+                (tokenBindingResultSet, rowNumber) -> {
+                    TokenBinding tokenBinding = new TokenBinding();
+                    tokenBinding.setBindingType(tokenBindingResultSet.getString("TOKEN_BINDING_TYPE"));
+                    tokenBinding.setBindingReference(tokenBindingResultSet.getString("TOKEN_BINDING_REF"));
+                    tokenBinding.setBindingValue(tokenBindingResultSet.getString("TOKEN_BINDING_VALUE"));
+                    return tokenBinding;
+                }, prepStmt -> prepStmt.setString(1, tokenId));
+        for (TokenBinding tokenBinding : tokenBindings) {
+            if (!StringUtils.equals(DEFAULT_TOKEN_TO_SESSION_MAPPING, tokenBinding.getBindingType())) {
+                dataDO.setTokenBinding(tokenBinding);
+                if (log.isDebugEnabled()) {
+                    log.debug("Set token binding information" +
+                            " accessTokenId: " + tokenId +
+                            " bindingType: " + tokenBinding.getBindingType() +
+                            " bindingRef: " + tokenBinding.getBindingReference());
                 }
             }
         }
@@ -1136,15 +1183,16 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     " bindingRef: " + sessionContextIdentifier);
         }
         if (isNotBlank(sessionContextIdentifier) && isNotBlank(tokenId)) {
-            Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-            try (PreparedStatement preparedStatement = connection.prepareStatement(STORE_TOKEN_BINDING)) {
-                preparedStatement.setString(1, tokenId);
-                preparedStatement.setString(2, DEFAULT_TOKEN_TO_SESSION_MAPPING);
-                preparedStatement.setString(3,
-                        OAuth2Util.getTokenBindingReference(sessionContextIdentifier));
-                preparedStatement.setString(4, sessionContextIdentifier);
-                preparedStatement.setInt(5, tenantId);
-                preparedStatement.execute();
+            Connection connection = getDBConnection(false);
+            try {
+                JdbcUtils.executeUpdate(connection, STORE_TOKEN_BINDING, preparedStatement -> {
+                    preparedStatement.setString(1, tokenId);
+                    preparedStatement.setString(2, DEFAULT_TOKEN_TO_SESSION_MAPPING);
+                    preparedStatement.setString(3,
+                            OAuth2Util.getTokenBindingReference(sessionContextIdentifier));
+                    preparedStatement.setString(4, sessionContextIdentifier);
+                    preparedStatement.setInt(5, tenantId);
+                });
             } catch (SQLException e) {
                 String errorMsg = "Error while persisting token to session mapping for sessionId: " +
                         sessionContextIdentifier;
@@ -1168,27 +1216,17 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     public Set<String> getTokenIdBySessionIdentifier(String sessionId) throws IdentityOAuth2Exception {
 
         String sql = SQLQueries.RETRIEVE_TOKENS_MAPPED_FOR_TOKEN_BINDING_VALUE;
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-        PreparedStatement prepStmt = null;
-        Set<String> tokenIds = new HashSet<>();
-        try {
-            prepStmt = connection.prepareStatement(sql);
-            prepStmt.setString(1, sessionId);
-            prepStmt.setString(2, DEFAULT_TOKEN_TO_SESSION_MAPPING);
-            try (ResultSet resultSet = prepStmt.executeQuery()) {
-                while (resultSet.next()) {
-                    tokenIds.add(resultSet.getString("TOKEN_ID"));
-                }
-            }
-
+        try (Connection connection = getDBConnection(false)) {
+            return new HashSet<>(JdbcUtils.executeQuery(connection, sql,
+                    (resultSet, rowNumber) -> resultSet.getString("TOKEN_ID"), prepStmt -> {
+                        prepStmt.setString(1, sessionId);
+                        prepStmt.setString(2, DEFAULT_TOKEN_TO_SESSION_MAPPING);
+                    }));
         } catch (SQLException e) {
             String errorMsg = "Error occurred while retrieving 'token id' for " +
                     "binding value : " + sessionId;
             throw new IdentityOAuth2Exception(errorMsg, e);
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, null, prepStmt);
         }
-        return tokenIds;
     }
 
     public void updateAccessTokenState(String tokenId, String tokenState) throws IdentityOAuth2Exception {
@@ -1198,18 +1236,17 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     public void updateAccessTokenState(String tokenId, String tokenState, String grantType)
             throws IdentityOAuth2Exception {
         boolean tokenUpdateSuccessful;
-        try (Connection connection = IdentityDatabaseUtil.getDBConnection(true)) {
+        try (Connection connection = getDBConnection(true)) {
             if (log.isDebugEnabled()) {
                 log.debug("Changing status of access token with id: " + tokenId + " to: " + tokenState);
             }
 
-            String sql = SQLQueries.UPDATE_TOKEN_STATE;
-            try (PreparedStatement prepStmt = connection.prepareStatement(sql)) {
-
-                prepStmt.setString(1, tokenState);
-                prepStmt.setString(2, UUID.randomUUID().toString());
-                prepStmt.setString(3, tokenId);
-                prepStmt.executeUpdate();
+            try {
+                JdbcUtils.executeUpdate(connection, SQLQueries.UPDATE_TOKEN_STATE, prepStmt -> {
+                    prepStmt.setString(1, tokenState);
+                    prepStmt.setString(2, UUID.randomUUID().toString());
+                    prepStmt.setString(3, tokenId);
+                });
                 tokenUpdateSuccessful = true;
 
                 if (isTokenCleanupFeatureEnabled && !OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState)) {
@@ -1228,6 +1265,9 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     tokenId + " to Token State : " + tokenState, e);
         }
         if (tokenUpdateSuccessful) {
+            if (!OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE.equals(tokenState)) {
+                onAccessTokensInvalidated(Collections.singletonList(tokenId), Collections.emptyList());
+            }
             if (StringUtils.equals(grantType, OAuthConstants.GrantTypes.CLIENT_CREDENTIALS) ||
                     StringUtils.equals(grantType, OAuthConstants.GrantTypes.PASSWORD)) {
                 OAuth2TokenUtil.postUpdateAccessToken(tokenId, tokenState, false);
@@ -1240,22 +1280,15 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     private boolean isPreviousTokenConsented(Connection connection, String tokenId)
             throws SQLException {
 
-        String sql = SQLQueries.GET_TOKEN_IS_CONSENTED_OR_NOT;
-        PreparedStatement prepStmt = connection.prepareStatement(sql);
-        prepStmt.setString(1, tokenId);
-        ResultSet resultSet = prepStmt.executeQuery();
-        String initialGrant = StringUtils.EMPTY;
-        while (resultSet.next()) {
-            initialGrant = resultSet.getString(1);
-        }
-        return Boolean.parseBoolean(initialGrant);
+        List<String> initialGrants = JdbcUtils.executeQuery(connection, SQLQueries.GET_TOKEN_IS_CONSENTED_OR_NOT,
+                (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setString(1, tokenId));
+        return !initialGrants.isEmpty() && Boolean.parseBoolean(initialGrants.get(initialGrants.size() - 1));
     }
 
     private void updateAccessTokenState(Connection connection, String tokenId, String tokenState, String tokenStateId,
                                         String userStoreDomain, String grantType)
             throws IdentityOAuth2Exception, SQLException {
 
-        PreparedStatement prepStmt = null;
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Changing status of access token with id: " + tokenId + " to: " + tokenState +
@@ -1264,11 +1297,11 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
 
             String sql = SQLQueries.UPDATE_TOKEN_STATE;
             sql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, userStoreDomain);
-            prepStmt = connection.prepareStatement(sql);
-            prepStmt.setString(1, tokenState);
-            prepStmt.setString(2, tokenStateId);
-            prepStmt.setString(3, tokenId);
-            prepStmt.executeUpdate();
+            JdbcUtils.executeUpdate(connection, sql, prepStmt -> {
+                prepStmt.setString(1, tokenState);
+                prepStmt.setString(2, tokenStateId);
+                prepStmt.setString(3, tokenId);
+            });
             if (StringUtils.equals(grantType, OAuthConstants.GrantTypes.CLIENT_CREDENTIALS) ||
                     StringUtils.equals(grantType, OAuthConstants.GrantTypes.PASSWORD)) {
                 OAuth2TokenUtil.postUpdateAccessToken(tokenId, tokenState, false);
@@ -1280,8 +1313,48 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             IdentityDatabaseUtil.rollbackTransaction(connection);
             throw new IdentityOAuth2Exception("Error while updating Access Token with ID : " +
                     tokenId + " to Token State : " + tokenState, e);
-        } finally {
-            IdentityDatabaseUtil.closeStatement(prepStmt);
+        }
+    }
+
+    /**
+     * Invalidate the token of a refresh token being redeemed, unless the token is already invalidated. The refresh
+     * token is validated before this update, possibly from the cache, hence the update is conditional on the token
+     * still being refreshable, so that a refresh token can only be redeemed once.
+     */
+    private void invalidateRefreshedAccessToken(Connection connection, String tokenId, String tokenState,
+                                                String tokenStateId, String userStoreDomain, String grantType)
+            throws IdentityOAuth2Exception, SQLException {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Changing status of refreshed access token with id: " + tokenId + " to: " + tokenState +
+                    " userStoreDomain: " + userStoreDomain);
+        }
+        String sql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.UPDATE_TOKEN_STATE_OF_REFRESHED_TOKEN,
+                userStoreDomain);
+        int updatedRows;
+        try {
+            updatedRows = JdbcUtils.executeUpdate(connection, sql, prepStmt -> {
+                prepStmt.setString(1, tokenState);
+                prepStmt.setString(2, tokenStateId);
+                prepStmt.setString(3, tokenId);
+                prepStmt.setString(4, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+                prepStmt.setString(5, OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED);
+            });
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error while updating Access Token with ID : " +
+                    tokenId + " to Token State : " + tokenState, e);
+        }
+        if (updatedRows == 0) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2ClientException(OAuth2ErrorCodes.INVALID_GRANT, "Refresh token of the access " +
+                    "token with ID : " + tokenId + " is already redeemed or revoked.");
+        }
+        if (StringUtils.equals(grantType, OAuthConstants.GrantTypes.CLIENT_CREDENTIALS) ||
+                StringUtils.equals(grantType, OAuthConstants.GrantTypes.PASSWORD)) {
+            OAuth2TokenUtil.postUpdateAccessToken(tokenId, tokenState, false);
+        } else {
+            OAuth2TokenUtil.postUpdateAccessToken(tokenId, tokenState, true);
         }
     }
 
@@ -1370,7 +1443,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
         }
         String accessTokenStoreTable = OAuthConstants.ACCESS_TOKEN_STORE_TABLE;
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         if (tokens.length > 1) {
             try {
@@ -1391,6 +1464,9 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                 }
                 ps.executeBatch();
                 IdentityDatabaseUtil.commitTransaction(connection);
+                if (!isHashedToken) {
+                    onAccessTokensInvalidated(Collections.emptyList(), Arrays.asList(tokens));
+                }
                 // To revoke request objects which have persisted against the access token.
                 OAuth2TokenUtil.postUpdateAccessTokens(Arrays.asList(tokens), OAuthConstants.TokenStates.
                         TOKEN_STATE_REVOKED);
@@ -1419,6 +1495,9 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     ps.setString(3, getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(tokens[0]));
                 }
                 ps.executeUpdate();
+                if (!isHashedToken) {
+                    onAccessTokensInvalidated(Collections.emptyList(), Arrays.asList(tokens));
+                }
 
                 // To revoke request objects which have persisted against the access token.
                 OAuth2TokenUtil.postUpdateAccessTokens(Arrays.asList(tokens), OAuthConstants.TokenStates.
@@ -1472,7 +1551,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         try {
             for (String token : tokens) {
@@ -1504,6 +1583,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                 }
             }
             IdentityDatabaseUtil.commitTransaction(connection);
+            onAccessTokensInvalidated(accessTokenId, Collections.emptyList());
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             throw new IdentityOAuth2Exception("Error occurred while revoking Access Token : " +
@@ -1526,7 +1606,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
         boolean revoked;
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         try {
             String sqlQuery = OAuth2Util.getTokenPartitionedSqlByUserId(SQLQueries.REVOKE_ACCESS_TOKEN_BY_TOKEN_ID,
@@ -1552,6 +1632,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             IdentityDatabaseUtil.closeAllConnections(connection, null, ps);
         }
         if (revoked) {
+            onAccessTokensInvalidated(Collections.singletonList(tokenId), Collections.emptyList());
             // To revoke the tokens from Request Object table.
             OAuth2TokenUtil.postUpdateAccessToken(tokenId, OAuthConstants.TokenStates.
                     TOKEN_STATE_REVOKED, true);
@@ -1575,7 +1656,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         boolean isUsernameCaseSensitive =
                 IdentityUtil.isUserStoreCaseSensitive(authenticatedUser.getUserStoreDomain(), tenantId);
         boolean isIdTokenIssuedForClientCredentialsGrant = isIdTokenIssuedForApplicationTokens();
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs;
         Set<String> accessTokens = new HashSet<>();
@@ -1641,7 +1722,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         int tenantId = OAuth2Util.getTenantId(authenticatedUser.getTenantDomain());
         boolean isUsernameCaseSensitive =
                 IdentityUtil.isUserStoreCaseSensitive(authenticatedUser.getUserStoreDomain(), tenantId);
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         ResultSet rs;
         Set<AccessTokenDO> accessTokens;
@@ -1781,7 +1862,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     private Set<String> getActiveAccessTokensByConsumerKey(String consumerKey, String userStoreDomain)
             throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
         Set<String> accessTokens = new HashSet<>();
@@ -1817,39 +1898,50 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
     @Override
     public Set<AccessTokenDO> getActiveAcessTokenDataByConsumerKey(String consumerKey) throws IdentityOAuth2Exception {
 
+        Set<AccessTokenDO> accessTokenDOs = new HashSet<>();
+        processActiveAccessTokensByConsumerKey(consumerKey, OAuth2Util.getAccessTokenListingBatchSize(),
+                accessTokenDOs::addAll);
+        return accessTokenDOs;
+    }
+
+    @Override
+    public void processActiveAccessTokensByConsumerKey(String consumerKey, int batchSize,
+                                                       AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
         if (log.isDebugEnabled()) {
-            log.debug("Retrieving active access tokens for client: " + consumerKey);
+            log.debug("Retrieving active access tokens for client: " + consumerKey + " in batches of " + batchSize);
         }
 
-        Set<AccessTokenDO> accessTokenDOs = getActiveAcessTokenDataByConsumerKey(consumerKey,
-                IdentityUtil.getPrimaryDomainName());
+        processActiveAccessTokensByConsumerKey(consumerKey, IdentityUtil.getPrimaryDomainName(), batchSize, consumer);
 
         if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
             Map<String, String> availableDomainMappings = OAuth2Util.getAvailableUserStoreDomainMappings();
             for (Map.Entry<String, String> availableDomainMapping : availableDomainMappings.entrySet()) {
-                accessTokenDOs.addAll(getActiveAcessTokenDataByConsumerKey(consumerKey,
-                        availableDomainMapping.getKey()));
+                processActiveAccessTokensByConsumerKey(consumerKey, availableDomainMapping.getKey(), batchSize,
+                        consumer);
             }
         }
-        return accessTokenDOs;
     }
 
     /**
-     * Retrieves active AccessTokenDOs of specified user store for the given consumer key.
+     * Streams the active AccessTokenDOs of specified user store for the given consumer key. Result rows are ordered
+     * by the token id, so the scope rows of a token are adjacent and only the current batch is kept in memory.
      *
-     * @param consumerKey
-     * @param userStoreDomain
-     * @return
-     * @throws IdentityOAuth2Exception
+     * @param consumerKey     Consumer key.
+     * @param userStoreDomain User store domain used to resolve the partitioned token tables.
+     * @param batchSize       Maximum number of access tokens handed over to the consumer at once.
+     * @param consumer        Consumer of the access token batches.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving or processing the access tokens.
      */
-    private Set<AccessTokenDO> getActiveAcessTokenDataByConsumerKey(String consumerKey, String userStoreDomain)
+    private void processActiveAccessTokensByConsumerKey(String consumerKey, String userStoreDomain, int batchSize,
+                                                        AccessTokenBatchConsumer consumer)
             throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        int effectiveBatchSize = batchSize > 0 ? batchSize : OAuth2Util.getAccessTokenListingBatchSize();
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Set<AccessTokenDO> activeDetailedTokens;
-        Map<String, AccessTokenDO> tokenMap = new HashMap<>();
 
         try {
             String sqlQuery;
@@ -1858,51 +1950,60 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             } else {
                 sqlQuery = SQLQueries.GET_ACTIVE_DETAILS_FOR_CONSUMER_KEY;
             }
-            sqlQuery = OAuth2Util.getTokenPartitionedSqlByUserStore(sqlQuery, userStoreDomain);
+            sqlQuery = OAuth2Util.getTokenPartitionedSqlByUserStore(
+                    sqlQuery + SQLQueries.GET_ACTIVE_DETAILS_FOR_CONSUMER_KEY_ORDER_BY, userStoreDomain);
 
             ps = connection.prepareStatement(sqlQuery);
+            ps.setFetchSize(effectiveBatchSize);
             ps.setString(1, consumerKey);
             ps.setString(2, OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
             rs = ps.executeQuery();
+
+            List<AccessTokenDO> batch = new ArrayList<>(effectiveBatchSize);
+            AccessTokenDO currentToken = null;
             while (rs.next()) {
                 String token = rs.getString(2);
-                if (tokenMap.containsKey(token)) {
-                    AccessTokenDO tokenObj = tokenMap.get(token);
-                    String[] previousScope = tokenObj.getScope();
-                    String[] newSope = new String[tokenObj.getScope().length + 1];
-                    System.arraycopy(previousScope, 0, newSope, 0, previousScope.length);
-                    newSope[previousScope.length] = rs.getString(5);
-                    tokenObj.setScope(newSope);
-                } else {
-                    String authzUser = rs.getString(1);
-                    int tenentId = rs.getInt(3);
-                    String userDomain = rs.getString(4);
-                    String tokenSope = rs.getString(5);
-                    String authenticatedIDP = null;
-                    if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                        authenticatedIDP = rs.getString(6);
+                if (currentToken != null && currentToken.getAccessToken().equals(token)) {
+                    currentToken.setScope((String[]) ArrayUtils.add(currentToken.getScope(), rs.getString(5)));
+                    continue;
+                }
+                if (currentToken != null) {
+                    batch.add(currentToken);
+                    if (batch.size() >= effectiveBatchSize) {
+                        consumer.consume(batch);
+                        batch = new ArrayList<>(effectiveBatchSize);
                     }
-                    String[] scope = OAuth2Util.buildScopeArray(tokenSope);
-                    AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser,
-                            userDomain, OAuth2Util.getTenantDomain(tenentId), authenticatedIDP);
-                    AccessTokenDO aTokenDetail = new AccessTokenDO();
-                    aTokenDetail.setAccessToken(token);
-                    aTokenDetail.setConsumerKey(consumerKey);
-                    aTokenDetail.setScope(scope);
-                    aTokenDetail.setAuthzUser(user);
-                    tokenMap.put(token, aTokenDetail);
                 }
+                String authzUser = rs.getString(1);
+                int tenentId = rs.getInt(3);
+                String userDomain = rs.getString(4);
+                String tokenSope = rs.getString(5);
+                String authenticatedIDP = null;
+                if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                    authenticatedIDP = rs.getString(6);
+                }
+                String[] scope = OAuth2Util.buildScopeArray(tokenSope);
+                AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser,
+                        userDomain, OAuth2Util.getTenantDomain(tenentId), authenticatedIDP);
+                currentToken = new AccessTokenDO();
+                currentToken.setAccessToken(token);
+                currentToken.setConsumerKey(consumerKey);
+                currentToken.setScope(scope);
+                currentToken.setAuthzUser(user);
+            }
+            if (currentToken != null) {
+                batch.add(currentToken);
+            }
+            if (!batch.isEmpty()) {
+                consumer.consume(batch);
             }
-            activeDetailedTokens = new HashSet<>(tokenMap.values());
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             throw new IdentityOAuth2Exception("Error occurred while getting access tokens from acces token table for " +
                     "the application with consumer key : " + consumerKey, e);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, null, ps);
+            IdentityDatabaseUtil.closeAllConnections(connection, rs, ps);
         }
-
-        return activeDetailedTokens;
     }
 
     /**
@@ -1958,15 +2059,16 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
         }
         boolean tokenUpdateSuccessful;
-        Connection connection = IdentityDatabaseUtil.getDBConnection(true);
+        Connection connection = getDBConnection(true);
         try {
             if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled() && !accessTokenDO.isConsentedToken()) {
                 // Check whether the previous token is issued for a consent required grant or not.
                 boolean isPreviousTokenConsented = isPreviousTokenConsented(connection, oldAccessTokenId);
                 accessTokenDO.setIsConsentedToken(isPreviousTokenConsented);
             }
-            // update existing token as inactive
-            updateAccessTokenState(connection, oldAccessTokenId, tokenState, tokenStateId, userStoreDomain, grantType);
+            // update existing token as inactive, unless a concurrent refresh has already done so
+            invalidateRefreshedAccessToken(connection, oldAccessTokenId, tokenState, tokenStateId, userStoreDomain,
+                    grantType);
 
             String newAccessToken = accessTokenDO.getAccessToken();
             // store new token in the DB
@@ -1989,191 +2091,425 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             IdentityDatabaseUtil.closeConnection(connection);
         }
         if (tokenUpdateSuccessful) {
-            // Post refresh access token event
-            if (StringUtils.equals(grantType, OAuthConstants.GrantTypes.CLIENT_CREDENTIALS) ||
-                    StringUtils.equals(grantType, OAuthConstants.GrantTypes.PASSWORD)) {
-                OAuth2TokenUtil.postRefreshAccessToken(oldAccessTokenId, accessTokenDO.getTokenId(), tokenState, false);
-            } else {
-                OAuth2TokenUtil.postRefreshAccessToken(oldAccessTokenId, accessTokenDO.getTokenId(), tokenState, true);
-            }
+            onAccessTokensInvalidated(Collections.singletonList(oldAccessTokenId), Collections.emptyList());
+            postRefreshAccessToken(oldAccessTokenId, accessTokenDO.getTokenId(), tokenState, grantType);
         }
     }
 
     /**
-     * Retrieves AccessTokenDOs of the given tenant.
+     * Invalidate the existing token and store the new token when the two tokens belong to different token shards.
+     * The new token is stored on its shard before the existing token is invalidated on its own shard, and is revoked
+     * again if the existing token can not be invalidated, hence a failure in between never leaves the user without
+     * an active token.
      *
-     * @param tenantId
-     * @return
-     * @throws IdentityOAuth2Exception
+     * @param shardManager     Token shard manager.
+     * @param oldTokenShard    Shard of the existing token.
+     * @param newTokenShard    Shard of the new token.
+     * @param oldAccessTokenId access token need to be updated.
+     * @param tokenState       token state before generating new token.
+     * @param consumerKey      consumer key of the existing token
+     * @param tokenStateId     new token state id to be updated
+     * @param accessTokenDO    new access token details
+     * @param userStoreDomain  user store domain which is related to this consumer
+     * @param grantType        grant type of the old access token
+     * @throws IdentityOAuth2Exception If an error occurs while updating any of the shards.
      */
-    @Override
-    public Set<AccessTokenDO> getAccessTokensByTenant(int tenantId) throws IdentityOAuth2Exception {
+    void invalidateAndCreateNewAccessToken(TokenShardManager shardManager, int oldTokenShard, int newTokenShard,
+                                           String oldAccessTokenId, String tokenState, String consumerKey,
+                                           String tokenStateId, AccessTokenDO accessTokenDO,
+                                           String userStoreDomain, String grantType)
+            throws IdentityOAuth2Exception {
 
-        if (log.isDebugEnabled()) {
-            log.debug("Retrieving all access tokens of tenant id: " + tenantId);
+        if (OAuth2ServiceComponentHolder.isConsentedTokenColumnEnabled() && !accessTokenDO.isConsentedToken()) {
+            // Check whether the previous token is issued for a consent required grant or not.
+            boolean isPreviousTokenConsented = shardManager.executeOnShard(oldTokenShard, () -> {
+                try (Connection connection = getDBConnection(false)) {
+                    return isPreviousTokenConsented(connection, oldAccessTokenId);
+                } catch (SQLException e) {
+                    throw new IdentityOAuth2Exception("Error while retrieving the consent of the access token " +
+                            "with ID : " + oldAccessTokenId, e);
+                }
+            });
+            accessTokenDO.setIsConsentedToken(isPreviousTokenConsented);
         }
-
-        Set<AccessTokenDO> accessTokenDOs = getAccessTokensByTenant(tenantId, IdentityUtil.getPrimaryDomainName());
-
-        if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
-            Map<String, String> availableDomainMappings = OAuth2Util.getAvailableUserStoreDomainMappings();
-            for (Map.Entry<String, String> availableDomainMapping : availableDomainMappings.entrySet()) {
-                accessTokenDOs.addAll(getAccessTokensByTenant(tenantId, availableDomainMapping.getKey()));
-            }
+        shardManager.executeOnShard(newTokenShard, () -> {
+            insertAndCommitAccessToken(accessTokenDO.getAccessToken(), consumerKey, accessTokenDO, userStoreDomain);
+            return null;
+        });
+        invalidateAccessToken(shardManager, oldTokenShard, newTokenShard, oldAccessTokenId, tokenState, tokenStateId,
+                userStoreDomain, grantType, accessTokenDO.getTokenId(), true);
+        if (StringUtils.equals(grantType, OAuthConstants.GrantTypes.AUTHORIZATION_CODE)) {
+            // The authorization code is placed by its own hash, hence it can be on any of the shards.
+            shardManager.executeOnAllShards(() -> {
+                try (Connection connection = getDBConnection(true)) {
+                    updateTokenIdIfAutzCodeGrantType(oldAccessTokenId, accessTokenDO.getTokenId(), connection);
+                    IdentityDatabaseUtil.commitTransaction(connection);
+                } catch (SQLException e) {
+                    throw new IdentityOAuth2Exception("Error while updating Access Token against authorization " +
+                            "code for access token with ID : " + oldAccessTokenId, e);
+                }
+                return null;
+            });
         }
-        return accessTokenDOs;
+        onAccessTokensInvalidated(Collections.singletonList(oldAccessTokenId), Collections.emptyList());
+        postRefreshAccessToken(oldAccessTokenId, accessTokenDO.getTokenId(), tokenState, grantType);
     }
 
     /**
-     * Retrieves AccessTokenDOs of specified user store of the given tenant.
+     * Expire the existing token and store the new token when the two tokens belong to different token shards. The
+     * new token is stored before the existing token is expired, as in
+     * {@link #invalidateAndCreateNewAccessToken(TokenShardManager, int, int, String, String, String, String,
+     * AccessTokenDO, String, String)}.
      *
-     * @param tenantId
-     * @param userStoreDomain
-     * @return
-     * @throws IdentityOAuth2Exception
+     * @param shardManager          Token shard manager.
+     * @param existingTokenShard    Shard of the existing token.
+     * @param newTokenShard         Shard of the new token.
+     * @param accessToken           New access token.
+     * @param consumerKey           Consumer key.
+     * @param newAccessTokenDO      New access token details.
+     * @param existingAccessTokenDO Existing access token details.
+     * @param rawUserStoreDomain    User store domain of the user.
+     * @return true if the new access token is persisted.
+     * @throws IdentityOAuth2Exception If an error occurs while updating any of the shards.
      */
-    private Set<AccessTokenDO> getAccessTokensByTenant(int tenantId, String userStoreDomain)
+    boolean insertAccessToken(TokenShardManager shardManager, int existingTokenShard, int newTokenShard,
+                              String accessToken, String consumerKey, AccessTokenDO newAccessTokenDO,
+                              AccessTokenDO existingAccessTokenDO, String rawUserStoreDomain)
             throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-        PreparedStatement prepStmt = null;
-        ResultSet resultSet = null;
-        Map<String, AccessTokenDO> accessTokenDOMap = new HashMap<>();
-        try {
-            String sql;
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                sql = SQLQueries.LIST_ALL_TOKENS_IN_TENANT_IDP_NAME;
-            } else {
-                sql = SQLQueries.LIST_ALL_TOKENS_IN_TENANT;
-            }
-            sql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, userStoreDomain);
+        if (!isPersistenceEnabled()) {
+            return false;
+        }
 
-            prepStmt = connection.prepareStatement(sql);
-            prepStmt.setInt(1, tenantId);
-            resultSet = prepStmt.executeQuery();
+        String userStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(rawUserStoreDomain);
+        shardManager.executeOnShard(newTokenShard, () -> {
+            insertAndCommitAccessToken(accessToken, consumerKey, newAccessTokenDO, userStoreDomain);
+            return null;
+        });
+        invalidateAccessToken(shardManager, existingTokenShard, newTokenShard, existingAccessTokenDO.getTokenId(),
+                OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED, UUID.randomUUID().toString(), userStoreDomain,
+                existingAccessTokenDO.getGrantType(), newAccessTokenDO.getTokenId(), false);
+        onAccessTokensInvalidated(Collections.singletonList(existingAccessTokenDO.getTokenId()),
+                Collections.emptyList());
+        return true;
+    }
 
-            while (resultSet.next()) {
-                String accessToken = getPersistenceProcessor().
-                        getPreprocessedAccessTokenIdentifier(resultSet.getString(1));
-                if (accessTokenDOMap.get(accessToken) == null) {
-                    String refreshToken = getPersistenceProcessor().getPreprocessedRefreshToken(resultSet.getString(2));
-                    Timestamp issuedTime = resultSet.getTimestamp(3, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                    Timestamp refreshTokenIssuedTime = resultSet.getTimestamp(4, Calendar.getInstance(TimeZone
-                            .getTimeZone(UTC)));
-                    long validityPeriodInMillis = resultSet.getLong(5);
-                    long refreshTokenValidityPeriodMillis = resultSet.getLong(6);
-                    String tokenType = resultSet.getString(7);
-                    String[] scope = OAuth2Util.buildScopeArray(resultSet.getString(8));
-                    String tokenId = resultSet.getString(9);
-                    String authzUser = resultSet.getString(10);
-                    userStoreDomain = resultSet.getString(11);
-                    String consumerKey = resultSet.getString(12);
-                    String authenticatedIDP = null;
-                    if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                        authenticatedIDP = resultSet.getString(13);
-                    }
+    /**
+     * Invalidate a token on its shard after its replacement is stored on another shard. The replacement is revoked
+     * if the token can not be invalidated, so that the caller fails without leaving two active tokens behind.
+     */
+    private void invalidateAccessToken(TokenShardManager shardManager, int tokenShard, int newTokenShard,
+                                       String tokenId, String tokenState, String tokenStateId,
+                                       String userStoreDomain, String grantType, String newTokenId,
+                                       boolean isRefreshedToken)
+            throws IdentityOAuth2Exception {
 
-                    AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser, userStoreDomain,
-                            OAuth2Util.getTenantDomain(tenantId), authenticatedIDP);
-                    AccessTokenDO dataDO = new AccessTokenDO(consumerKey, user, scope, issuedTime,
-                            refreshTokenIssuedTime, validityPeriodInMillis,
-                            refreshTokenValidityPeriodMillis, tokenType);
-                    dataDO.setAccessToken(accessToken);
-                    dataDO.setRefreshToken(refreshToken);
-                    dataDO.setTokenId(tokenId);
-                    dataDO.setTenantID(tenantId);
-                    accessTokenDOMap.put(accessToken, dataDO);
-                } else {
-                    String scope = resultSet.getString(8).trim();
-                    AccessTokenDO accessTokenDO = accessTokenDOMap.get(accessToken);
-                    accessTokenDO.setScope((String[]) ArrayUtils.add(accessTokenDO.getScope(), scope));
+        try {
+            shardManager.executeOnShard(tokenShard, () -> {
+                Connection connection = getDBConnection(true);
+                try {
+                    if (isRefreshedToken) {
+                        invalidateRefreshedAccessToken(connection, tokenId, tokenState, tokenStateId,
+                                userStoreDomain, grantType);
+                    } else {
+                        updateAccessTokenState(connection, tokenId, tokenState, tokenStateId, userStoreDomain,
+                                grantType);
+                    }
+                    if (isTokenCleanupFeatureEnabled) {
+                        oldTokenCleanupObject.cleanupTokenByTokenId(tokenId, connection);
+                    }
+                    IdentityDatabaseUtil.commitTransaction(connection);
+                } catch (SQLException e) {
+                    IdentityDatabaseUtil.rollbackTransaction(connection);
+                    throw new IdentityOAuth2Exception("Error while invalidating the access token with ID : " +
+                            tokenId, e);
+                } finally {
+                    IdentityDatabaseUtil.closeConnection(connection);
                 }
+                return null;
+            });
+        } catch (IdentityOAuth2Exception e) {
+            try {
+                shardManager.executeOnShard(newTokenShard, () -> {
+                    discardAccessToken(newTokenId);
+                    return null;
+                });
+            } catch (IdentityOAuth2Exception discardError) {
+                log.error("Error while revoking the access token with ID : " + newTokenId + " which replaces " +
+                        "the access token with ID : " + tokenId + " that could not be invalidated.", discardError);
             }
-        } catch (SQLException e) {
-            String errorMsg = "Error occurred while retrieving 'ACTIVE or EXPIRED' access tokens for " +
-                    "user  tenant id : " + tenantId;
-            throw new IdentityOAuth2Exception(errorMsg, e);
+            throw e;
+        }
+    }
+
+    private void insertAndCommitAccessToken(String accessToken, String consumerKey, AccessTokenDO accessTokenDO,
+                                            String userStoreDomain) throws IdentityOAuth2Exception {
+
+        Connection connection = getDBConnection(true);
+        try {
+            insertAccessToken(accessToken, consumerKey, accessTokenDO, connection, userStoreDomain);
+            IdentityDatabaseUtil.commitTransaction(connection);
         } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
+            IdentityDatabaseUtil.closeConnection(connection);
         }
+    }
 
-        return new HashSet<>(accessTokenDOMap.values());
+    /**
+     * Revoke a token which has not been handed out yet. No token update events are fired, since the token was
+     * never announced.
+     */
+    private void discardAccessToken(String tokenId) throws IdentityOAuth2Exception {
+
+        try (Connection connection = getDBConnection(true)) {
+            JdbcUtils.executeUpdate(connection, SQLQueries.UPDATE_TOKEN_STATE, prepStmt -> {
+                prepStmt.setString(1, OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+                prepStmt.setString(2, UUID.randomUUID().toString());
+                prepStmt.setString(3, tokenId);
+            });
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error while revoking the access token with ID : " + tokenId, e);
+        }
+    }
+
+    private void postRefreshAccessToken(String oldAccessTokenId, String newAccessTokenId, String tokenState,
+                                        String grantType) throws IdentityOAuth2Exception {
+
+        // Post refresh access token event
+        if (StringUtils.equals(grantType, OAuthConstants.GrantTypes.CLIENT_CREDENTIALS) ||
+                StringUtils.equals(grantType, OAuthConstants.GrantTypes.PASSWORD)) {
+            OAuth2TokenUtil.postRefreshAccessToken(oldAccessTokenId, newAccessTokenId, tokenState, false);
+        } else {
+            OAuth2TokenUtil.postRefreshAccessToken(oldAccessTokenId, newAccessTokenId, tokenState, true);
+        }
+    }
+
+    /**
+     * Retrieves AccessTokenDOs of the given tenant.
+     *
+     * @param tenantId
+     * @return
+     * @throws IdentityOAuth2Exception
+     */
+    @Override
+    public Set<AccessTokenDO> getAccessTokensByTenant(int tenantId) throws IdentityOAuth2Exception {
+
+        Set<AccessTokenDO> accessTokenDOs = new HashSet<>();
+        processAccessTokensByTenant(tenantId, OAuth2Util.getAccessTokenListingBatchSize(), accessTokenDOs::addAll);
+        return accessTokenDOs;
+    }
+
+    @Override
+    public void processAccessTokensByTenant(int tenantId, int batchSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving all access tokens of tenant id: " + tenantId + " in batches of " + batchSize);
+        }
+
+        String sql;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            sql = SQLQueries.LIST_ALL_TOKENS_IN_TENANT_IDP_NAME;
+        } else {
+            sql = SQLQueries.LIST_ALL_TOKENS_IN_TENANT;
+        }
+        processAccessTokens(sql, tenantId, IdentityUtil.getPrimaryDomainName(), null, batchSize, consumer);
+
+        if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
+            Map<String, String> availableDomainMappings = OAuth2Util.getAvailableUserStoreDomainMappings();
+            for (Map.Entry<String, String> availableDomainMapping : availableDomainMappings.entrySet()) {
+                processAccessTokens(sql, tenantId, availableDomainMapping.getKey(), null, batchSize, consumer);
+            }
+        }
     }
 
     @Override
     public Set<AccessTokenDO> getAccessTokensOfUserStore(int tenantId, String userStoreDomain) throws
             IdentityOAuth2Exception {
 
+        Set<AccessTokenDO> accessTokenDOs = new HashSet<>();
+        processAccessTokensOfUserStore(tenantId, userStoreDomain, OAuth2Util.getAccessTokenListingBatchSize(),
+                accessTokenDOs::addAll);
+        return accessTokenDOs;
+    }
+
+    @Override
+    public void processAccessTokensOfUserStore(int tenantId, String userStoreDomain, int batchSize,
+                                               AccessTokenBatchConsumer consumer) throws IdentityOAuth2Exception {
+
         if (log.isDebugEnabled()) {
             log.debug("Retrieving all ACTIVE and EXPIRED access tokens of userstore: " + userStoreDomain + " tenant " +
-                    "id: " + tenantId);
+                    "id: " + tenantId + " in batches of " + batchSize);
         }
         // we do not support access token partitioning here
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-
         userStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(userStoreDomain);
+        String sql;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            sql = SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE_IDP_NAME;
+        } else {
+            sql = SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE;
+        }
+        processAccessTokens(sql, tenantId, userStoreDomain, userStoreDomain, batchSize, consumer);
+    }
+
+    /**
+     * Streams the 'ACTIVE' and 'EXPIRED' access tokens returned by one of the token listing queries to the given
+     * consumer. Result rows are ordered by consumer key, user and token id, so consumers can rely on the tokens of a
+     * consumer key and user pair being streamed one after the other.
+     * <p>
+     * The tokens are read page by page, continuing after the last token of the previous page. Each page is read and
+     * its cursor closed before the page is handed over to the consumer, so the consumer can update the listed tokens,
+     * e.g. revoke them, without contending with an open cursor, and only the current page is kept in memory.
+     *
+     * @param sql                   Token listing query.
+     * @param tenantId              Tenant id.
+     * @param partitionDomain       User store domain used to resolve the partitioned token tables.
+     * @param userStoreDomainFilter User store domain the query is restricted to, or null for a tenant wide query.
+     * @param batchSize             Maximum number of access tokens handed over to the consumer at once.
+     * @param consumer              Consumer of the access token batches.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving or processing the access tokens.
+     */
+    private void processAccessTokens(String sql, int tenantId, String partitionDomain, String userStoreDomainFilter,
+                                     int batchSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        int effectiveBatchSize = batchSize > 0 ? batchSize : OAuth2Util.getAccessTokenListingBatchSize();
+        String partitionedSql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, partitionDomain);
+        String firstPageSql;
+        String nextPageSql;
+        if (userStoreDomainFilter == null) {
+            firstPageSql = partitionedSql + SQLQueries.LIST_ALL_TOKENS_IN_TENANT_ORDER_BY;
+            nextPageSql = partitionedSql + SQLQueries.LIST_ALL_TOKENS_IN_TENANT_AFTER +
+                    SQLQueries.LIST_ALL_TOKENS_IN_TENANT_ORDER_BY;
+        } else {
+            firstPageSql = partitionedSql + SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE_ORDER_BY;
+            nextPageSql = partitionedSql + SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE_AFTER +
+                    SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE_ORDER_BY;
+        }
+
+        // A page is limited by rows, and a token has a row per scope.
+        int maxRows = effectiveBatchSize;
+        ListedAccessTokenPage page = null;
+        do {
+            ListedAccessTokenPosition position = page == null ? null : page.lastPosition;
+            page = readAccessTokenPage(position == null ? firstPageSql : nextPageSql, tenantId,
+                    userStoreDomainFilter, position, maxRows);
+            if (!page.accessTokenDOs.isEmpty()) {
+                consumer.consume(page.accessTokenDOs);
+            } else if (!page.lastPage) {
+                // The scopes of a single token did not fit in the page.
+                maxRows *= 2;
+                page.lastPosition = position;
+            }
+        } while (!page.lastPage);
+    }
+
+    private ListedAccessTokenPage readAccessTokenPage(String sql, int tenantId, String userStoreDomainFilter,
+                                                      ListedAccessTokenPosition position, int maxRows)
+            throws IdentityOAuth2Exception {
+
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
-        Map<String, AccessTokenDO> accessTokenDOMap = new HashMap<>();
         try {
-            String sql;
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                sql = SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE_IDP_NAME;
-            } else {
-                sql = SQLQueries.LIST_ALL_TOKENS_IN_USER_STORE;
-            }
-            sql = OAuth2Util.getTokenPartitionedSqlByUserStore(sql, userStoreDomain);
-
             prepStmt = connection.prepareStatement(sql);
-            prepStmt.setInt(1, tenantId);
-            prepStmt.setString(2, userStoreDomain);
+            prepStmt.setMaxRows(maxRows);
+            prepStmt.setFetchSize(maxRows);
+            int parameterIndex = 1;
+            prepStmt.setInt(parameterIndex++, tenantId);
+            if (userStoreDomainFilter != null) {
+                prepStmt.setString(parameterIndex++, userStoreDomainFilter);
+            }
+            if (position != null) {
+                prepStmt.setString(parameterIndex++, position.consumerKey);
+                prepStmt.setString(parameterIndex++, position.consumerKey);
+                prepStmt.setString(parameterIndex++, position.authzUser);
+                prepStmt.setString(parameterIndex++, position.authzUser);
+                if (userStoreDomainFilter == null) {
+                    prepStmt.setString(parameterIndex++, position.userDomain);
+                    prepStmt.setString(parameterIndex++, position.userDomain);
+                }
+                prepStmt.setString(parameterIndex, position.tokenId);
+            }
             resultSet = prepStmt.executeQuery();
 
+            ListedAccessTokenPage page = new ListedAccessTokenPage();
+            int rowCount = 0;
+            AccessTokenDO currentToken = null;
+            ListedAccessTokenPosition currentPosition = null;
             while (resultSet.next()) {
-                String accessToken =
-                        getPersistenceProcessor().getPreprocessedAccessTokenIdentifier(resultSet.getString(1));
-                if (accessTokenDOMap.get(accessToken) == null) {
-                    String refreshToken = getPersistenceProcessor().getPreprocessedRefreshToken(resultSet.getString(2));
-                    Timestamp issuedTime = resultSet.getTimestamp(3, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                    Timestamp refreshTokenIssuedTime = resultSet.getTimestamp(4, Calendar.getInstance(TimeZone
-                            .getTimeZone(UTC)));
-                    long validityPeriodInMillis = resultSet.getLong(5);
-                    long refreshTokenValidityPeriodMillis = resultSet.getLong(6);
-                    String tokenType = resultSet.getString(7);
-                    String[] scope = OAuth2Util.buildScopeArray(resultSet.getString(8));
-                    String tokenId = resultSet.getString(9);
-                    String authzUser = resultSet.getString(10);
-                    String consumerKey = resultSet.getString(11);
-                    String authenticatedIDP = null;
-                    if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                        authenticatedIDP = resultSet.getString(12);
-                    }
-
-                    AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser, userStoreDomain,
-                            OAuth2Util.getTenantDomain(tenantId), authenticatedIDP);
-                    AccessTokenDO dataDO = new AccessTokenDO(consumerKey, user, scope, issuedTime,
-                            refreshTokenIssuedTime, validityPeriodInMillis,
-                            refreshTokenValidityPeriodMillis, tokenType);
-                    dataDO.setAccessToken(accessToken);
-                    dataDO.setRefreshToken(refreshToken);
-                    dataDO.setTokenId(tokenId);
-                    dataDO.setTenantID(tenantId);
-                    accessTokenDOMap.put(accessToken, dataDO);
-                } else {
+                rowCount++;
+                String tokenId = resultSet.getString(9);
+                if (currentToken != null && currentToken.getTokenId().equals(tokenId)) {
                     String scope = resultSet.getString(8).trim();
-                    AccessTokenDO accessTokenDO = accessTokenDOMap.get(accessToken);
-                    accessTokenDO.setScope((String[]) ArrayUtils.add(accessTokenDO.getScope(), scope));
+                    currentToken.setScope((String[]) ArrayUtils.add(currentToken.getScope(), scope));
+                    continue;
                 }
+                if (currentToken != null) {
+                    page.accessTokenDOs.add(currentToken);
+                    page.lastPosition = currentPosition;
+                }
+                currentToken = buildListedAccessToken(resultSet, tenantId, userStoreDomainFilter);
+                currentPosition = new ListedAccessTokenPosition(resultSet, userStoreDomainFilter);
+            }
+            // When the page is full, the scope rows of its last token may continue in the next page.
+            page.lastPage = rowCount < maxRows;
+            if (page.lastPage && currentToken != null) {
+                page.accessTokenDOs.add(currentToken);
+                page.lastPosition = currentPosition;
             }
+            return page;
         } catch (SQLException e) {
-            String errorMsg = "Error occurred while retrieving 'ACTIVE or EXPIRED' access tokens for " +
-                    "user in store domain : " + userStoreDomain + " and tenant id : " + tenantId;
+            String errorMsg;
+            if (userStoreDomainFilter == null) {
+                errorMsg = "Error occurred while retrieving 'ACTIVE or EXPIRED' access tokens for " +
+                        "user  tenant id : " + tenantId;
+            } else {
+                errorMsg = "Error occurred while retrieving 'ACTIVE or EXPIRED' access tokens for " +
+                        "user in store domain : " + userStoreDomainFilter + " and tenant id : " + tenantId;
+            }
             throw new IdentityOAuth2Exception(errorMsg, e);
         } finally {
             IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
         }
+    }
+
+    private AccessTokenDO buildListedAccessToken(ResultSet resultSet, int tenantId, String userStoreDomainFilter)
+            throws SQLException, IdentityOAuth2Exception {
+
+        String accessToken = getPersistenceProcessor().getPreprocessedAccessTokenIdentifier(resultSet.getString(1));
+        String refreshToken = getPersistenceProcessor().getPreprocessedRefreshToken(resultSet.getString(2));
+        Timestamp issuedTime = resultSet.getTimestamp(3, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+        Timestamp refreshTokenIssuedTime = resultSet.getTimestamp(4, Calendar.getInstance(TimeZone
+                .getTimeZone(UTC)));
+        long validityPeriodInMillis = resultSet.getLong(5);
+        long refreshTokenValidityPeriodMillis = resultSet.getLong(6);
+        String tokenType = resultSet.getString(7);
+        String[] scope = OAuth2Util.buildScopeArray(resultSet.getString(8));
+        String tokenId = resultSet.getString(9);
+        String authzUser = resultSet.getString(10);
+
+        // Tenant wide queries return the user store domain of the token before the consumer key.
+        int column = 11;
+        String userStoreDomain = userStoreDomainFilter;
+        if (userStoreDomainFilter == null) {
+            userStoreDomain = resultSet.getString(column++);
+        }
+        String consumerKey = resultSet.getString(column++);
+        String authenticatedIDP = null;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            authenticatedIDP = resultSet.getString(column);
+        }
 
-        return new HashSet<>(accessTokenDOMap.values());
+        AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser, userStoreDomain,
+                OAuth2Util.getTenantDomain(tenantId), authenticatedIDP);
+        AccessTokenDO dataDO = new AccessTokenDO(consumerKey, user, scope, issuedTime, refreshTokenIssuedTime,
+                validityPeriodInMillis, refreshTokenValidityPeriodMillis, tokenType);
+        dataDO.setAccessToken(accessToken);
+        dataDO.setRefreshToken(refreshToken);
+        dataDO.setTokenId(tokenId);
+        dataDO.setTenantID(tenantId);
+        return dataDO;
     }
 
     @Override
@@ -2187,7 +2523,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         // we do not support access token partitioning here
         currentUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(currentUserStoreDomain);
         newUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(newUserStoreDomain);
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         try {
 
@@ -2210,6 +2546,99 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    @Override
+    public void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                              int chunkSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        // we do not support access token partitioning here
+        currentUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(currentUserStoreDomain);
+        newUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(newUserStoreDomain);
+        String lastTokenId = null;
+        while (true) {
+            List<AccessTokenDO> accessTokenDOs = updateUserStoreDomainOfNextChunk(tenantId, currentUserStoreDomain,
+                    newUserStoreDomain, lastTokenId, chunkSize);
+            if (!accessTokenDOs.isEmpty()) {
+                consumer.consume(accessTokenDOs);
+            }
+            if (accessTokenDOs.size() >= chunkSize) {
+                lastTokenId = accessTokenDOs.get(accessTokenDOs.size() - 1).getTokenId();
+            } else if (lastTokenId != null) {
+                // Start over once, for the tokens added behind the last token id while the chunks were updated.
+                lastTokenId = null;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rename the user store domain of the chunk of access tokens which follows the given token id.
+     *
+     * @return Access tokens updated in this chunk, in the order of the token id.
+     */
+    private List<AccessTokenDO> updateUserStoreDomainOfNextChunk(int tenantId, String currentUserStoreDomain,
+                                                                 String newUserStoreDomain, String lastTokenId,
+                                                                 int chunkSize) throws IdentityOAuth2Exception {
+
+        List<AccessTokenDO> accessTokenDOs = new ArrayList<>();
+        Connection connection = getDBConnection();
+        PreparedStatement ps = null;
+        ResultSet resultSet = null;
+        try {
+            ps = connection.prepareStatement(lastTokenId == null ?
+                    SQLQueries.LIST_ACCESS_TOKENS_OF_USER_STORE_ORDER_BY_TOKEN_ID :
+                    SQLQueries.LIST_ACCESS_TOKENS_OF_USER_STORE_AFTER_TOKEN_ID);
+            ps.setMaxRows(chunkSize);
+            ps.setInt(1, tenantId);
+            ps.setString(2, currentUserStoreDomain);
+            if (lastTokenId != null) {
+                ps.setString(3, lastTokenId);
+            }
+            resultSet = ps.executeQuery();
+            while (resultSet.next()) {
+                AccessTokenDO accessTokenDO = new AccessTokenDO();
+                accessTokenDO.setTokenId(resultSet.getString(1));
+                accessTokenDO.setAccessToken(getPersistenceProcessor().getPreprocessedAccessTokenIdentifier(
+                        resultSet.getString(2)));
+                accessTokenDOs.add(accessTokenDO);
+            }
+            IdentityDatabaseUtil.closeResultSet(resultSet);
+            IdentityDatabaseUtil.closeStatement(ps);
+            resultSet = null;
+            if (accessTokenDOs.isEmpty()) {
+                IdentityDatabaseUtil.commitTransaction(connection);
+                return accessTokenDOs;
+            }
+
+            String chunkEndTokenId = accessTokenDOs.get(accessTokenDOs.size() - 1).getTokenId();
+            ps = connection.prepareStatement(lastTokenId == null ?
+                    SQLQueries.RENAME_USER_STORE_IN_ACCESS_TOKENS_TABLE_UP_TO_TOKEN_ID :
+                    SQLQueries.RENAME_USER_STORE_IN_ACCESS_TOKENS_TABLE_AFTER_TOKEN_ID);
+            ps.setString(1, newUserStoreDomain);
+            ps.setInt(2, tenantId);
+            ps.setString(3, currentUserStoreDomain);
+            ps.setString(4, chunkEndTokenId);
+            if (lastTokenId != null) {
+                ps.setString(5, lastTokenId);
+            }
+            int count = ps.executeUpdate();
+            if (log.isDebugEnabled()) {
+                log.debug("Renamed userstore domain: " + currentUserStoreDomain + " as: " + newUserStoreDomain +
+                        " of " + count + " access tokens up to token id: " + chunkEndTokenId + " in tenant id: " +
+                        tenantId);
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while renaming user store : " + currentUserStoreDomain +
+                    " in tenant :" + tenantId, e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, ps);
+        }
+        return accessTokenDOs;
+    }
+
     /**
      * Retrieves token id of the given token.
      *
@@ -2250,31 +2679,18 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
      */
     private String getTokenIdByAccessToken(String token, String userStoreDomain) throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-
-        PreparedStatement prepStmt = null;
-        ResultSet resultSet = null;
-        try {
-            String sql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.RETRIEVE_TOKEN_ID_BY_TOKEN,
-                    userStoreDomain);
-
-            prepStmt = connection.prepareStatement(sql);
-            prepStmt.setString(1, getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(token));
-            resultSet = prepStmt.executeQuery();
-
-            if (resultSet.next()) {
-                return resultSet.getString("TOKEN_ID");
-            }
-            return null;
-
+        String sql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.RETRIEVE_TOKEN_ID_BY_TOKEN,
+                userStoreDomain);
+        String processedToken = getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(token);
+        try (Connection connection = getDBConnection(false)) {
+            return JdbcUtils.fetchSingleRecord(connection, sql,
+                    (resultSet, rowNumber) -> resultSet.getString("TOKEN_ID"),
+                    prepStmt -> prepStmt.setString(1, processedToken));
         } catch (SQLException e) {
             String errorMsg = "Error occurred while retrieving 'Token ID' for " +
                     "token : " + token;
             throw new IdentityOAuth2Exception(errorMsg, e);
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
         }
-
     }
 
     @Override
@@ -2310,30 +2726,21 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
      */
     private String getAccessTokenByTokenId(String tokenId, String userStoreDomain) throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-        PreparedStatement prepStmt = null;
-        ResultSet resultSet = null;
-        try {
-            String sql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.RETRIEVE_TOKEN_BY_TOKEN_ID,
-                    userStoreDomain);
-
-            prepStmt = connection.prepareStatement(sql);
-            prepStmt.setString(1, tokenId);
-            resultSet = prepStmt.executeQuery();
-
-            if (resultSet.next()) {
-                String persistedAccessToken = resultSet.getString("ACCESS_TOKEN");
-                return getPersistenceProcessor().getPreprocessedAccessTokenIdentifier(persistedAccessToken);
-            }
-            return null;
-
+        String sql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.RETRIEVE_TOKEN_BY_TOKEN_ID,
+                userStoreDomain);
+        String persistedAccessToken;
+        try (Connection connection = getDBConnection(false)) {
+            persistedAccessToken = JdbcUtils.fetchSingleRecord(connection, sql,
+                    (resultSet, rowNumber) -> resultSet.getString("ACCESS_TOKEN"),
+                    prepStmt -> prepStmt.setString(1, tokenId));
         } catch (SQLException e) {
             String errorMsg = "Error occurred while retrieving 'Access Token' for token id: " + tokenId;
             throw new IdentityOAuth2Exception(errorMsg, e);
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, prepStmt);
         }
-
+        if (persistedAccessToken == null) {
+            return null;
+        }
+        return getPersistenceProcessor().getPreprocessedAccessTokenIdentifier(persistedAccessToken);
     }
 
     private void updateTokenIdIfAutzCodeGrantType(String oldAccessTokenId, String newAccessTokenId, Connection
@@ -2344,18 +2751,14 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     oldAccessTokenId + " by new access token id:" + newAccessTokenId);
         }
 
-        PreparedStatement prepStmt = null;
         try {
-            String updateNewTokenAgaintAuthzCodeSql = SQLQueries.UPDATE_NEW_TOKEN_AGAINST_AUTHZ_CODE;
-            prepStmt = connection.prepareStatement(updateNewTokenAgaintAuthzCodeSql);
-            prepStmt.setString(1, newAccessTokenId);
-            prepStmt.setString(2, oldAccessTokenId);
-            prepStmt.executeUpdate();
+            JdbcUtils.executeUpdate(connection, SQLQueries.UPDATE_NEW_TOKEN_AGAINST_AUTHZ_CODE, prepStmt -> {
+                prepStmt.setString(1, newAccessTokenId);
+                prepStmt.setString(2, oldAccessTokenId);
+            });
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error while updating Access Token against authorization code for " +
                     "access token with ID : " + oldAccessTokenId, e);
-        } finally {
-            IdentityDatabaseUtil.closeStatement(prepStmt);
         }
     }
 
@@ -2516,7 +2919,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         String userDomain = OAuth2Util.getUserStoreDomain(authzUser);
         String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(authzUser);
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
         boolean sqlAltered = false;
@@ -2734,7 +3137,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                                                                                   String userStoreDomain)
             throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
         Set<AccessTokenDO> accessTokens = new HashSet<>();
@@ -2793,7 +3196,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
                     "reference " + bindingRef);
         }
 
-        JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
         try {
             String sqlQuery = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries
                     .GET_ACCESS_TOKENS_BY_BINDING_REFERENCE_AND_USER, user.getUserStoreDomain());
@@ -2861,57 +3264,13 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             log.debug("Retrieving active access tokens issued with binding reference : " + bindingRef);
         }
 
-        JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
         try {
             String sqlQuery = GET_ACCESS_TOKENS_BY_BINDING_REFERENCE;
             Map<String, AccessTokenDO> tokenMap = new HashMap<>();
             jdbcTemplate.executeQuery(sqlQuery,
                     rethrowRowMapper((resultSet, i) -> {
-                        String token = getPersistenceProcessor()
-                                .getPreprocessedAccessTokenIdentifier(resultSet.getString("ACCESS_TOKEN"));
-                        AccessTokenDO accessTokenDO = new AccessTokenDO();
-                        if (tokenMap.containsKey(token)) {
-                            AccessTokenDO tokenObj = tokenMap.get(token);
-                            String[] previousScope = tokenObj.getScope();
-                            String[] newScope = new String[tokenObj.getScope().length + 1];
-                            System.arraycopy(previousScope, 0, newScope, 0, previousScope.length);
-                            newScope[previousScope.length] = resultSet.getString("TOKEN_SCOPE");
-                            tokenObj.setScope(newScope);
-                        } else {
-                            String consumerKey = resultSet.getString("CONSUMER_KEY");
-                            String tokenScope = resultSet.getString("TOKEN_SCOPE");
-                            String refreshToken = resultSet.getString("REFRESH_TOKEN");
-                            String tokenId = resultSet.getString("TOKEN_ID");
-                            int tenantId = resultSet.getInt("TENANT_ID");
-                            String authzUser = resultSet.getString("AUTHZ_USER");
-                            String userDomain = resultSet.getString("USER_DOMAIN");
-                            String authenticatedIDPName = resultSet.getString("NAME");
-                            AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser,
-                                    userDomain, OAuth2Util.getTenantDomain(tenantId), authenticatedIDPName);
-                            Timestamp issuedTime = resultSet
-                                    .getTimestamp("TIME_CREATED", Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-                            Timestamp refreshTokenIssuedTime =
-                                    resultSet.getTimestamp("REFRESH_TOKEN_TIME_CREATED", Calendar.getInstance(TimeZone
-                                            .getTimeZone(UTC)));
-                            long validityPeriodInMillis = resultSet.getLong("VALIDITY_PERIOD");
-                            long refreshTokenValidityPeriodMillis = resultSet.getLong("REFRESH_TOKEN_VALIDITY_PERIOD");
-                            String tokenType = resultSet.getString("USER_TYPE");
-
-                            String[] scope = OAuth2Util.buildScopeArray(tokenScope);
-                            accessTokenDO.setAccessToken(token);
-                            accessTokenDO.setConsumerKey(consumerKey);
-                            accessTokenDO.setScope(scope);
-                            accessTokenDO.setAuthzUser(user);
-                            accessTokenDO.setTenantID(tenantId);
-                            accessTokenDO.setRefreshToken(refreshToken);
-                            accessTokenDO.setTokenId(tokenId);
-                            accessTokenDO.setIssuedTime(issuedTime);
-                            accessTokenDO.setRefreshTokenIssuedTime(refreshTokenIssuedTime);
-                            accessTokenDO.setValidityPeriod(validityPeriodInMillis);
-                            accessTokenDO.setRefreshTokenValidityPeriod(refreshTokenValidityPeriodMillis);
-                            accessTokenDO.setTokenType(tokenType);
-                            tokenMap.put(token, accessTokenDO);
-                        }
+                        addAccessTokenWithScope(resultSet, tokenMap);
                         return Collections.emptySet();
                     }),
                     (PreparedStatement preparedStatement) -> {
@@ -2923,6 +3282,181 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
         }
     }
 
+    /**
+     * Retrieve the active access tokens mapped to the given session with a single query over the token to session
+     * mappings. Returns null when access token partitioning is enabled, since the tokens are then spread across the
+     * partitioned tables.
+     *
+     * @param sessionId Session context identifier.
+     * @return Set of active access tokens mapped to the session.
+     * @throws IdentityOAuth2Exception If the retrieval fails.
+     */
+    @Override
+    public Set<AccessTokenDO> getActiveAccessTokensBySessionIdentifier(String sessionId)
+            throws IdentityOAuth2Exception {
+
+        if (OAuth2Util.checkAccessTokenPartitioningEnabled()) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving active access tokens mapped to the session : " + sessionId);
+        }
+
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        try {
+            Map<String, AccessTokenDO> tokenMap = new HashMap<>();
+            jdbcTemplate.executeQuery(GET_ACTIVE_ACCESS_TOKENS_BY_SESSION_IDENTIFIER,
+                    rethrowRowMapper((resultSet, i) -> {
+                        AccessTokenDO accessTokenDO = addAccessTokenWithScope(resultSet, tokenMap);
+                        String tokenBindingRef = resultSet.getString("TOKEN_BINDING_REF");
+                        if (accessTokenDO != null && isNotBlank(tokenBindingRef) && !NONE.equals(tokenBindingRef)) {
+                            TokenBinding tokenBinding = new TokenBinding();
+                            tokenBinding.setTokenId(accessTokenDO.getTokenId());
+                            tokenBinding.setBindingReference(tokenBindingRef);
+                            accessTokenDO.setTokenBinding(tokenBinding);
+                        }
+                        return Collections.emptySet();
+                    }),
+                    (PreparedStatement preparedStatement) -> {
+                        preparedStatement.setString(1, sessionId);
+                        preparedStatement.setString(2, DEFAULT_TOKEN_TO_SESSION_MAPPING);
+                    });
+            return new HashSet<>(tokenMap.values());
+        } catch (DataAccessException e) {
+            throw new IdentityOAuth2Exception("Error occurred while retrieving access tokens mapped to the session.",
+                    e);
+        }
+    }
+
+    /**
+     * Revoke the given access tokens with set based updates keyed on the token id, instead of one update per token.
+     * The side effects of {@link #revokeAccessTokensInBatch(String[], boolean)} are preserved.
+     *
+     * @param accessTokenDOs Access tokens to be revoked.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    @Override
+    public void revokeAccessTokensByTokenIds(Collection<AccessTokenDO> accessTokenDOs)
+            throws IdentityOAuth2Exception {
+
+        if (CollectionUtils.isEmpty(accessTokenDOs)) {
+            return;
+        }
+        if (OAuth2Util.checkAccessTokenPartitioningEnabled()) {
+            AccessTokenDAO.super.revokeAccessTokensByTokenIds(accessTokenDOs);
+            return;
+        }
+
+        List<String> tokenIds = new ArrayList<>(accessTokenDOs.size());
+        List<String> tokens = new ArrayList<>(accessTokenDOs.size());
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            tokenIds.add(accessTokenDO.getTokenId());
+            tokens.add(accessTokenDO.getAccessToken());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Revoking " + tokenIds.size() + " access tokens by token id.");
+        }
+
+        Connection connection = getDBConnection();
+        try {
+            for (int from = 0; from < tokenIds.size(); from += REVOKE_BY_TOKEN_ID_CHUNK_SIZE) {
+                List<String> chunk = tokenIds.subList(from,
+                        Math.min(from + REVOKE_BY_TOKEN_ID_CHUNK_SIZE, tokenIds.size()));
+                String sqlQuery = SQLQueries.REVOKE_ACCESS_TOKENS_BY_TOKEN_ID
+                        .replace(IDN_OAUTH2_ACCESS_TOKEN, OAuthConstants.ACCESS_TOKEN_STORE_TABLE)
+                        .replace(TOKEN_ID_PLACEHOLDER, String.join(", ", Collections.nCopies(chunk.size(), "?")));
+                try (PreparedStatement ps = connection.prepareStatement(sqlQuery)) {
+                    // Active tokens of a session differ in their unique key columns, hence a single state id is
+                    // enough to keep the revoked rows unique.
+                    ps.setString(1, OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+                    ps.setString(2, UUID.randomUUID().toString());
+                    int index = 3;
+                    for (String tokenId : chunk) {
+                        ps.setString(index++, tokenId);
+                    }
+                    ps.executeUpdate();
+                }
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+            // To revoke request objects which have persisted against the access token.
+            OAuth2TokenUtil.postUpdateAccessTokens(tokens, OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+            if (isTokenCleanupFeatureEnabled) {
+                List<String> oldTokens = new ArrayList<>(tokens.size());
+                for (String token : tokens) {
+                    oldTokens.add(getHashingPersistenceProcessor().getProcessedAccessTokenIdentifier(token));
+                }
+                oldTokenCleanupObject.cleanupTokensInBatch(oldTokens, connection);
+            }
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while revoking access tokens by token id : " +
+                    tokenIds, e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Map a row of an access token query joined with the scope table. Rows of a token already in the map only add
+     * their scope to it.
+     *
+     * @param resultSet Result set positioned on the row.
+     * @param tokenMap  Access tokens mapped so far, keyed by the access token.
+     * @return The access token created for the row, or null if the row added a scope to an existing token.
+     * @throws SQLException            If reading the row fails.
+     * @throws IdentityOAuth2Exception If the tenant domain of the token cannot be resolved.
+     */
+    private AccessTokenDO addAccessTokenWithScope(ResultSet resultSet, Map<String, AccessTokenDO> tokenMap)
+            throws SQLException, IdentityOAuth2Exception {
+
+        String token = getPersistenceProcessor()
+                .getPreprocessedAccessTokenIdentifier(resultSet.getString("ACCESS_TOKEN"));
+        if (tokenMap.containsKey(token)) {
+            AccessTokenDO tokenObj = tokenMap.get(token);
+            String[] previousScope = tokenObj.getScope();
+            String[] newScope = new String[tokenObj.getScope().length + 1];
+            System.arraycopy(previousScope, 0, newScope, 0, previousScope.length);
+            newScope[previousScope.length] = resultSet.getString("TOKEN_SCOPE");
+            tokenObj.setScope(newScope);
+            return null;
+        }
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        String consumerKey = resultSet.getString("CONSUMER_KEY");
+        String tokenScope = resultSet.getString("TOKEN_SCOPE");
+        String refreshToken = resultSet.getString("REFRESH_TOKEN");
+        String tokenId = resultSet.getString("TOKEN_ID");
+        int tenantId = resultSet.getInt("TENANT_ID");
+        String authzUser = resultSet.getString("AUTHZ_USER");
+        String userDomain = resultSet.getString("USER_DOMAIN");
+        String authenticatedIDPName = resultSet.getString("NAME");
+        AuthenticatedUser user = OAuth2Util.createAuthenticatedUser(authzUser,
+                userDomain, OAuth2Util.getTenantDomain(tenantId), authenticatedIDPName);
+        Timestamp issuedTime = resultSet
+                .getTimestamp("TIME_CREATED", Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+        Timestamp refreshTokenIssuedTime =
+                resultSet.getTimestamp("REFRESH_TOKEN_TIME_CREATED", Calendar.getInstance(TimeZone
+                        .getTimeZone(UTC)));
+        long validityPeriodInMillis = resultSet.getLong("VALIDITY_PERIOD");
+        long refreshTokenValidityPeriodMillis = resultSet.getLong("REFRESH_TOKEN_VALIDITY_PERIOD");
+        String tokenType = resultSet.getString("USER_TYPE");
+
+        String[] scope = OAuth2Util.buildScopeArray(tokenScope);
+        accessTokenDO.setAccessToken(token);
+        accessTokenDO.setConsumerKey(consumerKey);
+        accessTokenDO.setScope(scope);
+        accessTokenDO.setAuthzUser(user);
+        accessTokenDO.setTenantID(tenantId);
+        accessTokenDO.setRefreshToken(refreshToken);
+        accessTokenDO.setTokenId(tokenId);
+        accessTokenDO.setIssuedTime(issuedTime);
+        accessTokenDO.setRefreshTokenIssuedTime(refreshTokenIssuedTime);
+        accessTokenDO.setValidityPeriod(validityPeriodInMillis);
+        accessTokenDO.setRefreshTokenValidityPeriod(refreshTokenValidityPeriodMillis);
+        accessTokenDO.setTokenType(tokenType);
+        tokenMap.put(token, accessTokenDO);
+        return accessTokenDO;
+    }
+
     public void updateTokenIsConsented(String tokenId, boolean isConsentedGrant)
             throws IdentityOAuth2Exception {
 
@@ -2933,7 +3467,7 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
 
             String sql = SQLQueries.UPDATE_TOKEN_CONSENTED_TOKEN;
-            try (Connection connection = IdentityDatabaseUtil.getDBConnection(true)) {
+            try (Connection connection = getDBConnection(true)) {
                 try (PreparedStatement prepStmt = connection.prepareStatement(sql)) {
                     prepStmt.setString(1, Boolean.toString(isConsentedGrant));
                     prepStmt.setString(2, tokenId);
@@ -2954,4 +3488,89 @@ public class AccessTokenDAOImpl extends AbstractOAuthDAO implements AccessTokenD
             }
         }
     }
+
+    /**
+     * Access token row as returned by the token retrieval queries. Only the scope is read from the rows that follow
+     * the first row of a token.
+     */
+    private static class PersistedAccessToken {
+
+        private String consumerKey;
+        private String authorizedUser;
+        private int tenantId;
+        private String userDomain;
+        private final String scope;
+        private Timestamp issuedTime;
+        private Timestamp refreshTokenIssuedTime;
+        private long validityPeriodInMillis;
+        private long refreshTokenValidityPeriodMillis;
+        private String tokenType;
+        private String refreshToken;
+        private String tokenId;
+        private String grantType;
+        private String subjectIdentifier;
+        private String tokenBindingReference;
+        private String authenticatedIDP;
+
+        PersistedAccessToken(String scope) {
+
+            this.scope = scope;
+        }
+
+        PersistedAccessToken(ResultSet resultSet) throws SQLException {
+
+            consumerKey = resultSet.getString(1);
+            authorizedUser = resultSet.getString(2);
+            tenantId = resultSet.getInt(3);
+            userDomain = resultSet.getString(4);
+            scope = resultSet.getString(5);
+            issuedTime = resultSet.getTimestamp(6, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+            refreshTokenIssuedTime = resultSet.getTimestamp(7, Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+            validityPeriodInMillis = resultSet.getLong(8);
+            refreshTokenValidityPeriodMillis = resultSet.getLong(9);
+            tokenType = resultSet.getString(10);
+            refreshToken = resultSet.getString(11);
+            tokenId = resultSet.getString(12);
+            grantType = resultSet.getString(13);
+            subjectIdentifier = resultSet.getString(14);
+            tokenBindingReference = resultSet.getString(15);
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                authenticatedIDP = resultSet.getString(16);
+            }
+        }
+    }
+
+    /**
+     * Access tokens of a page of a token listing.
+     */
+    private static class ListedAccessTokenPage {
+
+        private final List<AccessTokenDO> accessTokenDOs = new ArrayList<>();
+        private ListedAccessTokenPosition lastPosition;
+        private boolean lastPage;
+    }
+
+    /**
+     * Sort key of a listed access token, which the next page of a token listing continues after.
+     */
+    private static class ListedAccessTokenPosition {
+
+        private final String consumerKey;
+        private final String authzUser;
+        private final String userDomain;
+        private final String tokenId;
+
+        private ListedAccessTokenPosition(ResultSet resultSet, String userStoreDomainFilter) throws SQLException {
+
+            this.tokenId = resultSet.getString(9);
+            this.authzUser = resultSet.getString(10);
+            if (userStoreDomainFilter == null) {
+                this.userDomain = resultSet.getString(11);
+                this.consumerKey = resultSet.getString(12);
+            } else {
+                this.userDomain = userStoreDomainFilter;
+                this.consumerKey = resultSet.getString(11);
+            }
+        }
+    }
 }
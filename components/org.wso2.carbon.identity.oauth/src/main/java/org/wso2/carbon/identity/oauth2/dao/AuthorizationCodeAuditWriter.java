@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes authorization codes and their state transitions to the authorization code table in the background. Writes
+ * are collected and flushed in batches either periodically or when the number of pending codes reaches the batch
+ * size. State transitions of the same code within a flush are coalesced, so that a code which is redeemed in the
+ * same window as it was revoked results in a single deactivation. Writes which fail are queued again for the next
+ * flush, and are dropped only after {@value #MAX_WRITE_ATTEMPTS} failed attempts.
+ * <p>
+ * The pending writes of a single code, such as a code being redeemed, can be written right away with
+ * {@link #persistPendingWrites(String)}, without waiting for the writes of the other codes.
+ */
+public class AuthorizationCodeAuditWriter {
+
+    private static final Log log = LogFactory.getLog(AuthorizationCodeAuditWriter.class);
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final AuthorizationCodeDAO delegate;
+    private final int batchSize;
+    private final Object lock = new Object();
+    // Flushes are serialized, so that a flush can not apply state changes before the inserts taken by another one.
+    private final Object flushLock = new Object();
+    private Map<String, AuthzCodeDO> pendingInserts = new LinkedHashMap<>();
+    private Map<String, AuthzCodeDO> pendingDeactivations = new LinkedHashMap<>();
+    private Map<String, String> pendingStateChanges = new LinkedHashMap<>();
+    // Codes whose writes are taken by a flush and not yet completed, guarded by the lock.
+    private final Set<String> inFlightCodes = new HashSet<>();
+    private final Map<String, Integer> failedAttempts = new HashMap<>();
+    private ScheduledExecutorService executor;
+
+    public AuthorizationCodeAuditWriter(AuthorizationCodeDAO delegate, int batchSize) {
+
+        this.delegate = delegate;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Start flushing the pending writes periodically.
+     *
+     * @param flushIntervalMillis Interval between two periodic flushes.
+     */
+    public void start(long flushIntervalMillis) {
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AuthorizationCodeAuditWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue an issued authorization code to be persisted.
+     *
+     * @param authzCodeDO Authorization code data.
+     */
+    public void addInsert(AuthzCodeDO authzCodeDO) {
+
+        boolean batchFull;
+        synchronized (lock) {
+            pendingInserts.put(authzCodeDO.getAuthorizationCode(), authzCodeDO);
+            batchFull = pendingInserts.size() >= batchSize;
+        }
+        if (batchFull && executor != null) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Queue the deactivation of a redeemed authorization code against the token issued for it. A pending state
+     * change of the same code is superseded by the deactivation.
+     *
+     * @param authzCodeDO Authorization code data holding the code and the id of the issued token.
+     */
+    public void addDeactivation(AuthzCodeDO authzCodeDO) {
+
+        synchronized (lock) {
+            pendingStateChanges.remove(authzCodeDO.getAuthorizationCode());
+            pendingDeactivations.put(authzCodeDO.getAuthorizationCode(), authzCodeDO);
+        }
+    }
+
+    /**
+     * Queue a state change of an authorization code. State changes are applied after the pending deactivations.
+     *
+     * @param authzCode Authorization code.
+     * @param newState  New state of the authorization code.
+     */
+    public void addStateChange(String authzCode, String newState) {
+
+        synchronized (lock) {
+            pendingStateChanges.put(authzCode, newState);
+        }
+    }
+
+    /**
+     * Write the pending insert, deactivation and state change of a single authorization code. If the writes of the
+     * code are taken by a flush in progress, waits for that flush to complete them instead.
+     *
+     * @param authzCode Authorization code.
+     * @throws IdentityOAuth2Exception If the writes of the code fail. The writes are queued again in that case.
+     */
+    public void persistPendingWrites(String authzCode) throws IdentityOAuth2Exception {
+
+        AuthzCodeDO insert;
+        AuthzCodeDO deactivation;
+        String stateChange;
+        synchronized (lock) {
+            while (inFlightCodes.contains(authzCode)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IdentityOAuth2Exception("Interrupted while waiting for the pending writes of an " +
+                            "authorization code.", e);
+                }
+            }
+            insert = pendingInserts.remove(authzCode);
+            deactivation = pendingDeactivations.remove(authzCode);
+            stateChange = pendingStateChanges.remove(authzCode);
+            if (insert == null && deactivation == null && stateChange == null) {
+                return;
+            }
+            inFlightCodes.add(authzCode);
+        }
+
+        try {
+            if (insert != null) {
+                delegate.insertAuthorizationCodes(Collections.singletonList(insert));
+                insert = null;
+            }
+            if (deactivation != null) {
+                delegate.deactivateAuthorizationCodes(Collections.singletonList(deactivation));
+                deactivation = null;
+            }
+            if (stateChange != null) {
+                delegate.updateAuthorizationCodeState(authzCode, stateChange);
+                stateChange = null;
+            }
+        } finally {
+            synchronized (lock) {
+                // The writes which are not completed are left to the next flush.
+                requeue(authzCode, insert, deactivation, stateChange);
+                inFlightCodes.remove(authzCode);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Write all the pending inserts, deactivations and state changes to the authorization code table.
+     */
+    public void flush() {
+
+        synchronized (flushLock) {
+            flushPendingWrites();
+        }
+    }
+
+    private void flushPendingWrites() {
+
+        Map<String, AuthzCodeDO> inserts;
+        Map<String, AuthzCodeDO> deactivations;
+        Map<String, String> stateChanges;
+        synchronized (lock) {
+            if (pendingInserts.isEmpty() && pendingDeactivations.isEmpty() && pendingStateChanges.isEmpty()) {
+                return;
+            }
+            inserts = pendingInserts;
+            deactivations = pendingDeactivations;
+            stateChanges = pendingStateChanges;
+            pendingInserts = new LinkedHashMap<>();
+            pendingDeactivations = new LinkedHashMap<>();
+            pendingStateChanges = new LinkedHashMap<>();
+            inFlightCodes.addAll(inserts.keySet());
+            inFlightCodes.addAll(deactivations.keySet());
+            inFlightCodes.addAll(stateChanges.keySet());
+        }
+
+        Map<String, AuthzCodeDO> failedInserts = new HashMap<>();
+        Map<String, AuthzCodeDO> failedDeactivations = new HashMap<>();
+        Map<String, String> failedStateChanges = new HashMap<>();
+        try {
+            List<AuthzCodeDO> insertList = new ArrayList<>(inserts.values());
+            for (int from = 0; from < insertList.size(); from += batchSize) {
+                List<AuthzCodeDO> batch = insertList.subList(from, Math.min(from + batchSize, insertList.size()));
+                try {
+                    delegate.insertAuthorizationCodes(batch);
+                } catch (IdentityOAuth2Exception e) {
+                    log.error("Error while persisting " + batch.size() + " authorization codes. The codes are " +
+                            "queued to be persisted again.", e);
+                    for (AuthzCodeDO authzCodeDO : batch) {
+                        failedInserts.put(authzCodeDO.getAuthorizationCode(), authzCodeDO);
+                    }
+                }
+            }
+
+            // State transitions of codes which are not persisted are kept until their insert succeeds.
+            List<AuthzCodeDO> deactivationList = new ArrayList<>();
+            for (Map.Entry<String, AuthzCodeDO> deactivation : deactivations.entrySet()) {
+                if (failedInserts.containsKey(deactivation.getKey())) {
+                    failedDeactivations.put(deactivation.getKey(), deactivation.getValue());
+                } else {
+                    deactivationList.add(deactivation.getValue());
+                }
+            }
+            if (!deactivationList.isEmpty()) {
+                try {
+                    delegate.deactivateAuthorizationCodes(deactivationList);
+                } catch (IdentityOAuth2Exception e) {
+                    log.error("Error while deactivating " + deactivationList.size() + " authorization codes. The " +
+                            "codes are queued to be deactivated again.", e);
+                    for (AuthzCodeDO authzCodeDO : deactivationList) {
+                        failedDeactivations.put(authzCodeDO.getAuthorizationCode(), authzCodeDO);
+                    }
+                }
+            }
+            for (Map.Entry<String, String> stateChange : stateChanges.entrySet()) {
+                if (failedInserts.containsKey(stateChange.getKey()) ||
+                        failedDeactivations.containsKey(stateChange.getKey())) {
+                    failedStateChanges.put(stateChange.getKey(), stateChange.getValue());
+                    continue;
+                }
+                try {
+                    delegate.updateAuthorizationCodeState(stateChange.getKey(), stateChange.getValue());
+                } catch (IdentityOAuth2Exception e) {
+                    log.error("Error while changing the state of an authorization code to: " +
+                            stateChange.getValue() + ". The state change is queued to be applied again.", e);
+                    failedStateChanges.put(stateChange.getKey(), stateChange.getValue());
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                Set<String> flushedCodes = new HashSet<>(inserts.keySet());
+                flushedCodes.addAll(deactivations.keySet());
+                flushedCodes.addAll(stateChanges.keySet());
+                for (String authzCode : flushedCodes) {
+                    requeue(authzCode, failedInserts.get(authzCode), failedDeactivations.get(authzCode),
+                            failedStateChanges.get(authzCode));
+                }
+                inFlightCodes.removeAll(flushedCodes);
+                lock.notifyAll();
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Flushed " + inserts.size() + " authorization codes, " + deactivations.size() +
+                    " deactivations and " + stateChanges.size() + " state changes, of which " +
+                    (failedInserts.size() + failedDeactivations.size() + failedStateChanges.size()) + " failed.");
+        }
+    }
+
+    /**
+     * Queue the failed writes of a code again, unless the writes of the code have failed too often. Writes queued
+     * for the code in the meantime take precedence. Must be called holding the lock.
+     */
+    private void requeue(String authzCode, AuthzCodeDO insert, AuthzCodeDO deactivation, String stateChange) {
+
+        if (insert == null && deactivation == null && stateChange == null) {
+            failedAttempts.remove(authzCode);
+            return;
+        }
+        int attempts = failedAttempts.merge(authzCode, 1, Integer::sum);
+        if (attempts >= MAX_WRITE_ATTEMPTS) {
+            log.error("Dropping the pending writes of an authorization code after " + attempts +
+                    " failed attempts.");
+            failedAttempts.remove(authzCode);
+            return;
+        }
+        if (insert != null) {
+            pendingInserts.putIfAbsent(authzCode, insert);
+        }
+        if (deactivation != null) {
+            pendingDeactivations.putIfAbsent(authzCode, deactivation);
+        }
+        // A deactivation queued in the meantime supersedes the state change, as in addDeactivation.
+        if (stateChange != null && (deactivation != null || !pendingDeactivations.containsKey(authzCode))) {
+            pendingStateChanges.putIfAbsent(authzCode, stateChange);
+        }
+    }
+
+    /**
+     * Stop the periodic flushes and write the pending changes.
+     */
+    public void shutdown() {
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+        flush();
+    }
+}
@@ -27,6 +27,7 @@ import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntConsumer;
 
 /**
  * Authorization code data access interface.
@@ -36,6 +37,21 @@ public interface AuthorizationCodeDAO {
     void insertAuthorizationCode(String authzCode, String consumerKey, String callbackUrl,
                                  AuthzCodeDO authzCodeDO) throws IdentityOAuth2Exception;
 
+    /**
+     * Persist a batch of authorization codes. The authorization code, consumer key and callback URL of each code are
+     * taken from the given authorization code data objects.
+     *
+     * @param authzCodeDOs Authorization codes to be persisted.
+     * @throws IdentityOAuth2Exception If an error occurs while persisting the authorization codes.
+     */
+    default void insertAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception {
+
+        for (AuthzCodeDO authzCodeDO : authzCodeDOs) {
+            insertAuthorizationCode(authzCodeDO.getAuthorizationCode(), authzCodeDO.getConsumerKey(),
+                    authzCodeDO.getCallbackUrl(), authzCodeDO);
+        }
+    }
+
     void deactivateAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception;
 
     AuthorizationCodeValidationResult validateAuthorizationCode(String consumerKey, String authorizationKey)
@@ -43,6 +59,18 @@ public interface AuthorizationCodeDAO {
 
     void updateAuthorizationCodeState(String authzCode, String newState) throws IdentityOAuth2Exception;
 
+    /**
+     * Atomically change the state of an authorization code, only if the code is in the expected state.
+     *
+     * @param authzCode     Authorization code.
+     * @param expectedState State the authorization code is expected to be in.
+     * @param newState      New state of the authorization code.
+     * @return True if the state of the authorization code is changed by this call.
+     * @throws IdentityOAuth2Exception If an error occurs while updating the authorization code.
+     */
+    boolean updateAuthorizationCodeState(String authzCode, String expectedState, String newState)
+            throws IdentityOAuth2Exception;
+
     void deactivateAuthorizationCode(AuthzCodeDO authzCodeDO) throws
             IdentityOAuth2Exception;
 
@@ -66,6 +94,22 @@ public interface AuthorizationCodeDAO {
     void updateUserStoreDomain(int tenantId, String currentUserStoreDomain, String
             newUserStoreDomain) throws IdentityOAuth2Exception;
 
+    /**
+     * Rename the user store domain of the authorization codes of a user store in chunks ordered by the code id. Each
+     * chunk continues after the last code id of the previous chunk and is updated in its own short transaction. A
+     * re-run resumes from the first code which is not yet processed.
+     *
+     * @param tenantId               Tenant id.
+     * @param currentUserStoreDomain Current user store domain.
+     * @param newUserStoreDomain     New user store domain.
+     * @param chunkSize              Maximum number of authorization codes to be updated in a transaction.
+     * @param consumer               Consumer of the number of codes updated by each committed chunk. It may be
+     *                               invoked concurrently if the codes are stored in more than one database.
+     * @throws IdentityOAuth2Exception If an error occurs while updating the authorization codes.
+     */
+    void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                       int chunkSize, IntConsumer consumer) throws IdentityOAuth2Exception;
+
     String getCodeIdByAuthorizationCode(String authzCode) throws IdentityOAuth2Exception;
 
     default Set<AuthzCodeDO> getAuthorizationCodeDOSetByConsumerKeyForOpenidScope(String consumerKey) throws
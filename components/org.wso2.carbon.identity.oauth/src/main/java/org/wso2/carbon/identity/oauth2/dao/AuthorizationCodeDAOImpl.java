@@ -42,6 +42,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -50,6 +51,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.function.IntConsumer;
 
 import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenBindings.NONE;
 import static org.wso2.carbon.identity.oauth2.dao.SQLQueries.RETRIEVE_TOKEN_BINDING_REFERENCE_TOKEN_ID;
@@ -81,43 +83,18 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
                         .getAuthorizedUser().getLoggableUserId());
             }
         }
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement prepStmt = null;
-        String userDomain = OAuth2Util.getUserStoreDomain(authzCodeDO.getAuthorizedUser());
-        String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(authzCodeDO.getAuthorizedUser());
         try {
-            String sql;
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                sql = SQLQueries.STORE_AUTHORIZATION_CODE_WITH_PKCE_IDP_NAME;
-            } else {
-                sql = SQLQueries.STORE_AUTHORIZATION_CODE_WITH_PKCE;
-            }
-            prepStmt = connection.prepareStatement(sql);
-
-            prepStmt.setString(1, authzCodeDO.getAuthzCodeId());
-            prepStmt.setString(2, getPersistenceProcessor().getProcessedAuthzCode(authzCode));
-            prepStmt.setString(3, callbackUrl);
-            prepStmt.setString(4, "");
-            prepStmt.setString(5, authzCodeDO.getAuthorizedUser().getUserName());
-            prepStmt.setString(6, userDomain);
-            int tenantId = OAuth2Util.getTenantId(authzCodeDO.getAuthorizedUser().getTenantDomain());
-            prepStmt.setInt(7, tenantId);
-            prepStmt.setTimestamp(8, authzCodeDO.getIssuedTime(),
-                    Calendar.getInstance(TimeZone.getTimeZone(UTC)));
-            prepStmt.setLong(9, authzCodeDO.getValidityPeriod());
-            prepStmt.setString(10, authzCodeDO.getAuthorizedUser().getAuthenticatedSubjectIdentifier());
-            prepStmt.setString(11, authzCodeDO.getPkceCodeChallenge());
-            prepStmt.setString(12, authzCodeDO.getPkceCodeChallengeMethod());
-            //insert the hash value of the authorization code
-            prepStmt.setString(13, getHashingPersistenceProcessor().getProcessedAuthzCode(authzCode));
-            prepStmt.setString(14, getPersistenceProcessor().getProcessedClientId(consumerKey));
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                prepStmt.setString(15, authenticatedIDP);
-                prepStmt.setInt(16, tenantId);
+            prepStmt = connection.prepareStatement(getStoreAuthorizationCodeQuery());
+            int tenantId = setStoreAuthorizationCodeParams(prepStmt, authzCode, consumerKey, callbackUrl, authzCodeDO);
+            int insertedRows = prepStmt.executeUpdate();
+            if (isOnTokenShard() && insertedRows != 1) {
+                IdentityDatabaseUtil.rollbackTransaction(connection);
+                throw new IdentityOAuth2Exception("Authorization code of client: " + consumerKey + " is not stored " +
+                        "in the token shard. Inserted rows: " + insertedRows);
             }
 
-            prepStmt.execute();
-
             addAuthorizationCodeScopes(authzCodeDO, connection, tenantId);
             IdentityDatabaseUtil.commitTransaction(connection);
         } catch (SQLException e) {
@@ -129,10 +106,112 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         }
     }
 
+    @Override
+    public void insertAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception {
+
+        if (!isPersistenceEnabled() || authzCodeDOs.isEmpty()) {
+            return;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Persisting a batch of " + authzCodeDOs.size() + " authorization codes.");
+        }
+        Connection connection = getDBConnection();
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = connection.prepareStatement(getStoreAuthorizationCodeQuery());
+            int[] tenantIds = new int[authzCodeDOs.size()];
+            for (int i = 0; i < authzCodeDOs.size(); i++) {
+                AuthzCodeDO authzCodeDO = authzCodeDOs.get(i);
+                tenantIds[i] = setStoreAuthorizationCodeParams(prepStmt, authzCodeDO.getAuthorizationCode(),
+                        authzCodeDO.getConsumerKey(), authzCodeDO.getCallbackUrl(), authzCodeDO);
+                prepStmt.addBatch();
+            }
+            int[] insertedRows = prepStmt.executeBatch();
+            if (isOnTokenShard()) {
+                for (int insertedRow : insertedRows) {
+                    if (insertedRow != 1 && insertedRow != Statement.SUCCESS_NO_INFO) {
+                        IdentityDatabaseUtil.rollbackTransaction(connection);
+                        throw new IdentityOAuth2Exception("A batch of " + authzCodeDOs.size() + " authorization " +
+                                "codes is not stored in the token shard.");
+                    }
+                }
+            }
+
+            for (int i = 0; i < authzCodeDOs.size(); i++) {
+                addAuthorizationCodeScopes(authzCodeDOs.get(i), connection, tenantIds[i]);
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error when storing a batch of " + authzCodeDOs.size() +
+                    " authorization codes", e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, null, prepStmt);
+        }
+    }
+
+    private String getStoreAuthorizationCodeQuery() {
+
+        if (isOnTokenShard()) {
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                return SQLQueries.STORE_AUTHORIZATION_CODE_WITH_PKCE_IDP_ID_TO_SHARD;
+            }
+            return SQLQueries.STORE_AUTHORIZATION_CODE_WITH_PKCE_TO_SHARD;
+        }
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            return SQLQueries.STORE_AUTHORIZATION_CODE_WITH_PKCE_IDP_NAME;
+        }
+        return SQLQueries.STORE_AUTHORIZATION_CODE_WITH_PKCE;
+    }
+
+    /**
+     * Set the parameters of the store authorization code statement.
+     *
+     * @return Tenant id of the authorized user.
+     */
+    private int setStoreAuthorizationCodeParams(PreparedStatement prepStmt, String authzCode, String consumerKey,
+                                                String callbackUrl, AuthzCodeDO authzCodeDO)
+            throws SQLException, IdentityOAuth2Exception {
+
+        String userDomain = OAuth2Util.getUserStoreDomain(authzCodeDO.getAuthorizedUser());
+        String authenticatedIDP = OAuth2Util.getAuthenticatedIDP(authzCodeDO.getAuthorizedUser());
+        prepStmt.setString(1, authzCodeDO.getAuthzCodeId());
+        prepStmt.setString(2, getPersistenceProcessor().getProcessedAuthzCode(authzCode));
+        prepStmt.setString(3, callbackUrl);
+        prepStmt.setString(4, "");
+        prepStmt.setString(5, authzCodeDO.getAuthorizedUser().getUserName());
+        prepStmt.setString(6, userDomain);
+        int tenantId = OAuth2Util.getTenantId(authzCodeDO.getAuthorizedUser().getTenantDomain());
+        prepStmt.setInt(7, tenantId);
+        prepStmt.setTimestamp(8, authzCodeDO.getIssuedTime(),
+                Calendar.getInstance(TimeZone.getTimeZone(UTC)));
+        prepStmt.setLong(9, authzCodeDO.getValidityPeriod());
+        prepStmt.setString(10, authzCodeDO.getAuthorizedUser().getAuthenticatedSubjectIdentifier());
+        prepStmt.setString(11, authzCodeDO.getPkceCodeChallenge());
+        prepStmt.setString(12, authzCodeDO.getPkceCodeChallengeMethod());
+        //insert the hash value of the authorization code
+        prepStmt.setString(13, getHashingPersistenceProcessor().getProcessedAuthzCode(authzCode));
+        if (isOnTokenShard()) {
+            // Token shards store the ids of the application and the identity provider in the identity datasource.
+            prepStmt.setInt(14, getConsumerAppId(consumerKey));
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                prepStmt.setInt(15, getIdPId(authenticatedIDP, tenantId));
+            }
+            return tenantId;
+        }
+        prepStmt.setString(14, getPersistenceProcessor().getProcessedClientId(consumerKey));
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            prepStmt.setString(15, authenticatedIDP);
+            prepStmt.setInt(16, tenantId);
+        }
+        return tenantId;
+    }
+
     @Override
     public void deactivateAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement prepStmt = null;
         boolean deactivateAuthorizationCode;
         if (log.isDebugEnabled()) {
@@ -193,7 +272,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
                 log.debug("Validating authorization code for client: " + consumerKey);
             }
         }
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
         AuthorizationCodeValidationResult result = null;
@@ -311,7 +390,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         }
         boolean tokenUpdateSuccessful;
         String authCodeStoreTable = OAuthConstants.AUTHORIZATION_CODE_STORE_TABLE;
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement prepStmt = null;
         try {
             prepStmt = connection.prepareStatement(SQLQueries.UPDATE_AUTHORIZATION_CODE_STATE);
@@ -334,6 +413,36 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         }
     }
 
+    @Override
+    public boolean updateAuthorizationCodeState(String authzCode, String expectedState, String newState)
+            throws IdentityOAuth2Exception {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Changing state of authorization code from: " + expectedState + " to: " + newState);
+        }
+        boolean stateChanged;
+        Connection connection = getDBConnection();
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = connection.prepareStatement(SQLQueries.UPDATE_AUTHORIZATION_CODE_STATE_IF_CURRENT);
+            prepStmt.setString(1, newState);
+            prepStmt.setString(2, getHashingPersistenceProcessor().getProcessedAuthzCode(authzCode));
+            prepStmt.setString(3, expectedState);
+            stateChanged = prepStmt.executeUpdate() == 1;
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while updating the state of an authorization code " +
+                    "from: " + expectedState + " to: " + newState, e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, null, prepStmt);
+        }
+        if (stateChanged) {
+            OAuth2TokenUtil.postRevokeCode(authzCode, newState, null, null);
+        }
+        return stateChanged;
+    }
+
     @Override
     public void deactivateAuthorizationCode(AuthzCodeDO authzCodeDO) throws
             IdentityOAuth2Exception {
@@ -349,7 +458,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         }
         boolean deactivateAuthorizationCode;
         PreparedStatement prepStmt = null;
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         try {
             prepStmt = connection.prepareStatement(SQLQueries.DEACTIVATE_AUTHZ_CODE_AND_INSERT_CURRENT_TOKEN);
             prepStmt.setString(1, authzCodeDO.getOauthTokenId());
@@ -386,7 +495,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
             log.debug("Retrieving authorization codes of user: " + authenticatedUser.toString());
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
         Set<String> authorizationCodes = new HashSet<>();
@@ -445,7 +554,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
             log.debug("Retrieving authorization codes of user: " + authenticatedUser.toString());
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         ResultSet rs;
         List<AuthzCodeDO> authorizationCodes = new ArrayList<>();
@@ -516,7 +625,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
             log.debug("Retrieving authorization codes for client: " + consumerKey);
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
         Set<String> authorizationCodes = new HashSet<>();
@@ -547,7 +656,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
             log.debug("Retrieving active authorization codes for client: " + consumerKey);
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
         Set<String> authorizationCodes = new HashSet<>();
@@ -579,7 +688,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
             log.debug("Retrieving latest authorization codes of tenant id: " + tenantId);
         }
         //we do not support access token partitioning here
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
 
@@ -642,7 +751,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
                     tenantId);
         }
         //we do not support access token partitioning here
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement ps = null;
         ResultSet rs = null;
 
@@ -706,7 +815,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
                     + " tenant id: " + tenantId + " in IDN_OAUTH2_AUTHORIZATION_CODE table");
         }
         //we do not support access token partitioning here
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         currentUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(currentUserStoreDomain);
         newUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(newUserStoreDomain);
@@ -730,6 +839,94 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         }
     }
 
+    @Override
+    public void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                              int chunkSize, IntConsumer consumer) throws IdentityOAuth2Exception {
+
+        //we do not support access token partitioning here
+        currentUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(currentUserStoreDomain);
+        newUserStoreDomain = OAuth2Util.getSanitizedUserStoreDomain(newUserStoreDomain);
+        String lastCodeId = null;
+        while (true) {
+            List<String> codeIds = updateUserStoreDomainOfNextChunk(tenantId, currentUserStoreDomain,
+                    newUserStoreDomain, lastCodeId, chunkSize);
+            if (!codeIds.isEmpty()) {
+                consumer.accept(codeIds.size());
+            }
+            if (codeIds.size() >= chunkSize) {
+                lastCodeId = codeIds.get(codeIds.size() - 1);
+            } else if (lastCodeId != null) {
+                // Start over once, for the codes added behind the last code id while the chunks were updated.
+                lastCodeId = null;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rename the user store domain of the chunk of authorization codes which follows the given code id.
+     *
+     * @return Ids of the authorization codes updated in this chunk, in order.
+     */
+    private List<String> updateUserStoreDomainOfNextChunk(int tenantId, String currentUserStoreDomain,
+                                                          String newUserStoreDomain, String lastCodeId,
+                                                          int chunkSize) throws IdentityOAuth2Exception {
+
+        List<String> codeIds = new ArrayList<>();
+        Connection connection = getDBConnection();
+        PreparedStatement ps = null;
+        ResultSet resultSet = null;
+        try {
+            ps = connection.prepareStatement(lastCodeId == null ?
+                    SQLQueries.LIST_AUTHORIZATION_CODE_IDS_OF_USER_STORE_ORDER_BY_CODE_ID :
+                    SQLQueries.LIST_AUTHORIZATION_CODE_IDS_OF_USER_STORE_AFTER_CODE_ID);
+            ps.setMaxRows(chunkSize);
+            ps.setInt(1, tenantId);
+            ps.setString(2, currentUserStoreDomain);
+            if (lastCodeId != null) {
+                ps.setString(3, lastCodeId);
+            }
+            resultSet = ps.executeQuery();
+            while (resultSet.next()) {
+                codeIds.add(resultSet.getString(1));
+            }
+            IdentityDatabaseUtil.closeResultSet(resultSet);
+            IdentityDatabaseUtil.closeStatement(ps);
+            resultSet = null;
+            if (codeIds.isEmpty()) {
+                IdentityDatabaseUtil.commitTransaction(connection);
+                return codeIds;
+            }
+
+            String chunkEndCodeId = codeIds.get(codeIds.size() - 1);
+            ps = connection.prepareStatement(lastCodeId == null ?
+                    SQLQueries.RENAME_USER_STORE_IN_AUTHORIZATION_CODES_TABLE_UP_TO_CODE_ID :
+                    SQLQueries.RENAME_USER_STORE_IN_AUTHORIZATION_CODES_TABLE_AFTER_CODE_ID);
+            ps.setString(1, newUserStoreDomain);
+            ps.setInt(2, tenantId);
+            ps.setString(3, currentUserStoreDomain);
+            ps.setString(4, chunkEndCodeId);
+            if (lastCodeId != null) {
+                ps.setString(5, lastCodeId);
+            }
+            int updatedCodes = ps.executeUpdate();
+            if (log.isDebugEnabled()) {
+                log.debug("Renamed userstore domain: " + currentUserStoreDomain + " as: " + newUserStoreDomain +
+                        " of " + updatedCodes + " authorization codes up to code id: " + chunkEndCodeId +
+                        " in tenant id: " + tenantId);
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(connection);
+            throw new IdentityOAuth2Exception("Error occurred while renaming user store : " + currentUserStoreDomain +
+                    " in tenant :" + tenantId, e);
+        } finally {
+            IdentityDatabaseUtil.closeAllConnections(connection, resultSet, ps);
+        }
+        return codeIds;
+    }
+
     private void addAuthorizationCodeScopes(AuthzCodeDO authzCodeDO, Connection connection, int tenantId)
             throws SQLException {
 
@@ -771,7 +968,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         if (log.isDebugEnabled()) {
             log.debug("Retrieving authorization code by code id: " + codeId);
         }
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
 
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
@@ -803,7 +1000,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.ACCESS_TOKEN)) {
             log.debug("Retrieving id of authorization code(hashed): " + DigestUtils.sha256Hex(authzCode));
         }
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
 
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
@@ -859,7 +1056,7 @@ public class AuthorizationCodeDAOImpl extends AbstractOAuthDAO implements Author
         if (log.isDebugEnabled()) {
             log.debug("Retrieving active authorization code data objects for client: " + consumerKey);
         }
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
         Set<AuthzCodeDO> authzCodeDOs = new HashSet<>();
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationCodeStoreCache;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2TokenUtil;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Authorization code DAO which keeps issued authorization codes in the {@link AuthorizationCodeStoreCache} and
+ * writes them to the authorization code table asynchronously, in batches, through an
+ * {@link AuthorizationCodeAuditWriter}. Issuing and looking up a code does not wait for the database.
+ * <p>
+ * Validating a stored code redeems it. The database stays authoritative for redemption: the pending writes of the
+ * code are persisted and the code is moved from the active to the revoked state with a conditional update, hence
+ * only the request whose update changes the row observes the code as active, even across nodes. A redemption only
+ * writes the code being redeemed, the writes of the other codes are left to the background flush. Codes which are not in the
+ * store, such as codes issued before the store was enabled, are served by the underlying DAO. Bulk lookups flush the
+ * pending writes first so that they observe the recently issued codes.
+ */
+public class CacheBackedAuthorizationCodeDAO implements AuthorizationCodeDAO {
+
+    private static final Log log = LogFactory.getLog(CacheBackedAuthorizationCodeDAO.class);
+
+    private static final String ENABLE = "OAuth.AuthorizationCodeStore.CacheBacked.Enable";
+    private static final String BATCH_SIZE = "OAuth.AuthorizationCodeStore.CacheBacked.BatchSize";
+    private static final String FLUSH_INTERVAL = "OAuth.AuthorizationCodeStore.CacheBacked.FlushInterval";
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int REDEMPTION_LOCK_STRIPES = 64;
+
+    private final AuthorizationCodeDAO delegate;
+    private final AuthorizationCodeAuditWriter auditWriter;
+    private final Object[] redemptionLocks = new Object[REDEMPTION_LOCK_STRIPES];
+
+    public CacheBackedAuthorizationCodeDAO(AuthorizationCodeDAO delegate) {
+
+        this(delegate, new AuthorizationCodeAuditWriter(delegate, getIntProperty(BATCH_SIZE, DEFAULT_BATCH_SIZE)));
+        auditWriter.start(getIntProperty(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL_MILLIS));
+    }
+
+    CacheBackedAuthorizationCodeDAO(AuthorizationCodeDAO delegate, AuthorizationCodeAuditWriter auditWriter) {
+
+        this.delegate = delegate;
+        this.auditWriter = auditWriter;
+        for (int i = 0; i < REDEMPTION_LOCK_STRIPES; i++) {
+            redemptionLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Check whether authorization codes are kept in the cache backed authorization code store.
+     *
+     * @return True if the cache backed authorization code store is enabled.
+     */
+    public static boolean isEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(ENABLE));
+    }
+
+    @Override
+    public void insertAuthorizationCode(String authzCode, String consumerKey, String callbackUrl,
+                                        AuthzCodeDO authzCodeDO) throws IdentityOAuth2Exception {
+
+        AuthzCodeDO storedCode = new AuthzCodeDO(authzCodeDO.getAuthorizedUser(), authzCodeDO.getScope(),
+                authzCodeDO.getIssuedTime(), authzCodeDO.getValidityPeriod(), callbackUrl, consumerKey, authzCode,
+                authzCodeDO.getAuthzCodeId(), OAuthConstants.AuthorizationCodeState.ACTIVE,
+                authzCodeDO.getPkceCodeChallenge(), authzCodeDO.getPkceCodeChallengeMethod(),
+                authzCodeDO.getTokenBindingReference());
+        AuthorizationCodeStoreCache.getInstance().addToCacheByCode(authzCode, storedCode);
+        auditWriter.addInsert(copyOf(storedCode, storedCode.getState()));
+    }
+
+    @Override
+    public void deactivateAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception {
+
+        for (AuthzCodeDO authzCodeDO : authzCodeDOs) {
+            auditWriter.persistPendingWrites(authzCodeDO.getAuthorizationCode());
+        }
+        delegate.deactivateAuthorizationCodes(authzCodeDOs);
+        for (AuthzCodeDO authzCodeDO : authzCodeDOs) {
+            AuthorizationCodeStoreCache.getInstance().clearCacheEntryByCode(authzCodeDO.getAuthorizationCode());
+        }
+    }
+
+    @Override
+    public AuthorizationCodeValidationResult validateAuthorizationCode(String consumerKey, String authorizationKey)
+            throws IdentityOAuth2Exception {
+
+        AuthorizationCodeStoreCache store = AuthorizationCodeStoreCache.getInstance();
+        synchronized (getRedemptionLock(authorizationKey)) {
+            AuthzCodeDO storedCode = store.getValueFromCacheByCode(authorizationKey);
+            if (storedCode == null) {
+                return delegate.validateAuthorizationCode(consumerKey, authorizationKey);
+            }
+            if (!StringUtils.equals(consumerKey, storedCode.getConsumerKey())) {
+                return null;
+            }
+            if (OAuthConstants.AuthorizationCodeState.ACTIVE.equals(storedCode.getState())) {
+                if (!redeem(authorizationKey, storedCode)) {
+                    // The code is redeemed on another node or could not be persisted, hence the state of the code
+                    // is taken from the database.
+                    store.clearCacheEntryByCode(authorizationKey);
+                    return delegate.validateAuthorizationCode(consumerKey, authorizationKey);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Redeemed authorization code from the code store for client: " + consumerKey);
+                }
+            }
+            return new AuthorizationCodeValidationResult(copyOf(storedCode, storedCode.getState()),
+                    storedCode.getOauthTokenId());
+        }
+    }
+
+    @Override
+    public void updateAuthorizationCodeState(String authzCode, String newState) throws IdentityOAuth2Exception {
+
+        AuthorizationCodeStoreCache store = AuthorizationCodeStoreCache.getInstance();
+        synchronized (getRedemptionLock(authzCode)) {
+            AuthzCodeDO storedCode = store.getValueFromCacheByCode(authzCode);
+            if (storedCode == null) {
+                delegate.updateAuthorizationCodeState(authzCode, newState);
+                return;
+            }
+            store.addToCacheByCode(authzCode, copyOf(storedCode, newState));
+        }
+        auditWriter.addStateChange(authzCode, newState);
+    }
+
+    @Override
+    public boolean updateAuthorizationCodeState(String authzCode, String expectedState, String newState)
+            throws IdentityOAuth2Exception {
+
+        auditWriter.persistPendingWrites(authzCode);
+        AuthorizationCodeStoreCache store = AuthorizationCodeStoreCache.getInstance();
+        synchronized (getRedemptionLock(authzCode)) {
+            if (!delegate.updateAuthorizationCodeState(authzCode, expectedState, newState)) {
+                return false;
+            }
+            AuthzCodeDO storedCode = store.getValueFromCacheByCode(authzCode);
+            if (storedCode != null) {
+                store.addToCacheByCode(authzCode, copyOf(storedCode, newState));
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void deactivateAuthorizationCode(AuthzCodeDO authzCodeDO) throws IdentityOAuth2Exception {
+
+        String authzCode = authzCodeDO.getAuthorizationCode();
+        AuthorizationCodeStoreCache store = AuthorizationCodeStoreCache.getInstance();
+        AuthzCodeDO deactivatedCode;
+        synchronized (getRedemptionLock(authzCode)) {
+            AuthzCodeDO storedCode = store.getValueFromCacheByCode(authzCode);
+            if (storedCode == null) {
+                delegate.deactivateAuthorizationCode(authzCodeDO);
+                return;
+            }
+            deactivatedCode = copyOf(storedCode, OAuthConstants.AuthorizationCodeState.INACTIVE);
+            deactivatedCode.setOauthTokenId(authzCodeDO.getOauthTokenId());
+            store.addToCacheByCode(authzCode, deactivatedCode);
+        }
+        auditWriter.addDeactivation(copyOf(deactivatedCode, deactivatedCode.getState()));
+        // Move the request object reference to the issued token right away, so that it does not lag behind the
+        // asynchronous write of the authorization code table.
+        OAuth2TokenUtil.postRevokeCode(deactivatedCode.getAuthzCodeId(),
+                OAuthConstants.AuthorizationCodeState.INACTIVE, deactivatedCode.getOauthTokenId(), authzCode);
+    }
+
+    @Override
+    public Set<String> getAuthorizationCodesByUser(AuthenticatedUser authenticatedUser)
+            throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getAuthorizationCodesByUser(authenticatedUser);
+    }
+
+    @Override
+    public List<AuthzCodeDO> getAuthorizationCodesByUserForOpenidScope(AuthenticatedUser authenticatedUser)
+            throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getAuthorizationCodesByUserForOpenidScope(authenticatedUser);
+    }
+
+    @Override
+    public Set<String> getAuthorizationCodesByConsumerKey(String consumerKey) throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getAuthorizationCodesByConsumerKey(consumerKey);
+    }
+
+    @Override
+    public Set<String> getActiveAuthorizationCodesByConsumerKey(String consumerKey) throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getActiveAuthorizationCodesByConsumerKey(consumerKey);
+    }
+
+    @Override
+    public List<AuthzCodeDO> getLatestAuthorizationCodesByTenant(int tenantId) throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getLatestAuthorizationCodesByTenant(tenantId);
+    }
+
+    @Override
+    public List<AuthzCodeDO> getLatestAuthorizationCodesByUserStore(int tenantId, String userStorDomain)
+            throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getLatestAuthorizationCodesByUserStore(tenantId, userStorDomain);
+    }
+
+    @Override
+    public void updateUserStoreDomain(int tenantId, String currentUserStoreDomain, String newUserStoreDomain)
+            throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        delegate.updateUserStoreDomain(tenantId, currentUserStoreDomain, newUserStoreDomain);
+    }
+
+    @Override
+    public void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                              int chunkSize, IntConsumer consumer) throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        delegate.updateUserStoreDomainInChunks(tenantId, currentUserStoreDomain, newUserStoreDomain, chunkSize,
+                consumer);
+    }
+
+    @Override
+    public String getCodeIdByAuthorizationCode(String authzCode) throws IdentityOAuth2Exception {
+
+        AuthzCodeDO storedCode = AuthorizationCodeStoreCache.getInstance().getValueFromCacheByCode(authzCode);
+        if (storedCode != null) {
+            return storedCode.getAuthzCodeId();
+        }
+        return delegate.getCodeIdByAuthorizationCode(authzCode);
+    }
+
+    @Override
+    public Set<AuthzCodeDO> getAuthorizationCodeDOSetByConsumerKeyForOpenidScope(String consumerKey)
+            throws IdentityOAuth2Exception {
+
+        auditWriter.flush();
+        return delegate.getAuthorizationCodeDOSetByConsumerKeyForOpenidScope(consumerKey);
+    }
+
+    /**
+     * Stop the periodic writes of the authorization code table and write the pending changes.
+     */
+    public void shutdown() {
+
+        auditWriter.shutdown();
+    }
+
+    /**
+     * Redeem an active code held in the store, by moving it to the revoked state in the database. Must be called
+     * holding the redemption lock of the code.
+     *
+     * @return True if the code is redeemed by this call.
+     */
+    private boolean redeem(String authzCode, AuthzCodeDO storedCode) throws IdentityOAuth2Exception {
+
+        // The insert of the code may still be pending.
+        auditWriter.persistPendingWrites(authzCode);
+        if (!delegate.updateAuthorizationCodeState(authzCode, OAuthConstants.AuthorizationCodeState.ACTIVE,
+                OAuthConstants.AuthorizationCodeState.REVOKED)) {
+            return false;
+        }
+        AuthorizationCodeStoreCache.getInstance().addToCacheByCode(authzCode,
+                copyOf(storedCode, OAuthConstants.AuthorizationCodeState.REVOKED));
+        return true;
+    }
+
+    private Object getRedemptionLock(String authzCode) {
+
+        return redemptionLocks[(authzCode.hashCode() & Integer.MAX_VALUE) % REDEMPTION_LOCK_STRIPES];
+    }
+
+    private static AuthzCodeDO copyOf(AuthzCodeDO authzCodeDO, String state) {
+
+        AuthzCodeDO copy = new AuthzCodeDO(authzCodeDO.getAuthorizedUser(), authzCodeDO.getScope(),
+                authzCodeDO.getIssuedTime(), authzCodeDO.getValidityPeriod(), authzCodeDO.getCallbackUrl(),
+                authzCodeDO.getConsumerKey(), authzCodeDO.getAuthorizationCode(), authzCodeDO.getAuthzCodeId(), state,
+                authzCodeDO.getPkceCodeChallenge(), authzCodeDO.getPkceCodeChallengeMethod(),
+                authzCodeDO.getTokenBindingReference());
+        copy.setOauthTokenId(authzCodeDO.getOauthTokenId());
+        return copy;
+    }
+
+    private static int getIntProperty(String propertyName, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + value + " configured for " + propertyName + ". Using the default " +
+                        "value: " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -31,6 +31,7 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2ScopeServerException;
 import org.wso2.carbon.identity.oauth2.Oauth2ScopeConstants;
 import org.wso2.carbon.identity.oauth2.bean.Scope;
 import org.wso2.carbon.identity.oauth2.bean.ScopeBinding;
+import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
 import org.wso2.carbon.identity.oauth2.util.NamedPreparedStatement;
 import org.wso2.carbon.identity.oauth2.util.Oauth2ScopeUtils;
 import org.wso2.carbon.utils.DBUtils;
@@ -69,6 +70,7 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
     @Override
     public void addScope(Scope scope, int tenantID) throws IdentityOAuth2ScopeException {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantID);
         if (scope == null || scope.getName() == null) {
             if (log.isDebugEnabled()) {
                 log.debug("Scope is not defined");
@@ -493,10 +495,18 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
                     includeOIDCScopes);
         }
 
+        return ReadReplicaManager.read(ReadReplicaManager.SCOPE + tenantID,
+                () -> getScopesWithPaginationFromStore(offset, limit, tenantID, includeOIDCScopes));
+    }
+
+    private Set<Scope> getScopesWithPaginationFromStore(Integer offset, Integer limit, int tenantID,
+                                                        Boolean includeOIDCScopes)
+            throws IdentityOAuth2ScopeServerException {
+
         Set<Scope> scopes = new HashSet<>();
         Map<Integer, Scope> scopeMap = new HashMap<>();
 
-        try (Connection conn = IdentityDatabaseUtil.getDBConnection(false)) {
+        try (Connection conn = ReadReplicaManager.getDBConnection(false)) {
 
             NamedPreparedStatement namedPreparedStatement;
             if (includeOIDCScopes) {
@@ -744,6 +754,7 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
     @Override
     public void deleteScopeByName(String name, int tenantID) throws IdentityOAuth2ScopeServerException {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantID);
         if (log.isDebugEnabled()) {
             log.debug("Delete scope by name for scope name:" + name);
         }
@@ -773,6 +784,7 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
     @Override
     public void updateScopeByName(Scope updatedScope, int tenantID) throws IdentityOAuth2ScopeServerException {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantID);
         if (log.isDebugEnabled()) {
             log.debug("Update scope by name for scope name:" + updatedScope.getName());
         }
@@ -970,14 +982,10 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
             log.debug("Retrieving bindings of scope: " + scopeName + " tenant id: " + tenantId);
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
-
-        PreparedStatement ps = null;
-        ResultSet rs = null;
         Set<String> bindings = new HashSet<>();
         String sql;
 
-        try {
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
 
             if (connection.getMetaData().getDriverName().contains(Oauth2ScopeConstants.DataBaseType.ORACLE)) {
                 sql = SQLQueries.RETRIEVE_BINDINGS_OF_SCOPE_FOR_TENANT_ORACLE;
@@ -985,13 +993,11 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
                 sql = SQLQueries.RETRIEVE_BINDINGS_OF_SCOPE_FOR_TENANT;
             }
 
-            ps = connection.prepareStatement(sql);
-            ps.setString(1, scopeName);
-            ps.setInt(2, tenantId);
-            rs = ps.executeQuery();
-
-            while (rs.next()) {
-                String binding = rs.getString("SCOPE_BINDING");
+            for (String binding : JdbcUtils.executeQuery(connection, sql,
+                    (rs, rowNumber) -> rs.getString("SCOPE_BINDING"), ps -> {
+                        ps.setString(1, scopeName);
+                        ps.setInt(2, tenantId);
+                    })) {
                 if (StringUtils.isNotEmpty(binding)) {
                     bindings.add(binding);
                 }
@@ -1008,8 +1014,6 @@ public class OAuthScopeDAOImpl implements OAuthScopeDAO {
         } catch (SQLException e) {
             String errorMsg = "Error getting bindings of scope - " + scopeName;
             throw new IdentityOAuth2Exception(errorMsg, e);
-        } finally {
-            IdentityDatabaseUtil.closeAllConnections(connection, rs, ps);
         }
     }
 
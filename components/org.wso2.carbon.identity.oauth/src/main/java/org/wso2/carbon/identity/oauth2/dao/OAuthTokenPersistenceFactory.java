@@ -20,6 +20,8 @@
 
 package org.wso2.carbon.identity.oauth2.dao;
 
+import org.wso2.carbon.identity.base.IdentityRuntimeException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.openidconnect.dao.CacheBackedScopeClaimMappingDAOImpl;
 import org.wso2.carbon.identity.openidconnect.dao.RequestObjectDAO;
 import org.wso2.carbon.identity.openidconnect.dao.RequestObjectDAOImpl;
@@ -39,17 +41,33 @@ public class OAuthTokenPersistenceFactory {
     private ScopeClaimMappingDAO scopeClaimMappingDAO;
     private TokenBindingMgtDAO tokenBindingMgtDAO;
     private OAuthUserConsentedScopesDAO oauthUserConsentedScopesDAO;
+    private TokenShardManager tokenShardManager;
 
     public OAuthTokenPersistenceFactory() {
 
+        AccessTokenDAOImpl accessTokenDAO = new AccessTokenDAOImpl();
         this.authorizationCodeDAO = new AuthorizationCodeDAOImpl();
-        this.tokenDAO = new AccessTokenDAOImpl();
+        this.tokenDAO = accessTokenDAO;
         this.scopeDAO = new OAuthScopeDAOImpl();
         this.managementDAO = new TokenManagementDAOImpl();
         this.requestObjectDAO = new RequestObjectDAOImpl();
         this.scopeClaimMappingDAO = new CacheBackedScopeClaimMappingDAOImpl();
         this.tokenBindingMgtDAO = new TokenBindingMgtDAOImpl();
         this.oauthUserConsentedScopesDAO = new CacheBackedOAuthUserConsentedScopesDAOImpl();
+        if (TokenShardManager.isShardingEnabled()) {
+            // Falling back to the identity datasource would hide the tokens already persisted on the shards.
+            try {
+                this.tokenShardManager = TokenShardManager.build();
+            } catch (IdentityOAuth2Exception e) {
+                throw IdentityRuntimeException.error("Error while initializing the token shards.", e);
+            }
+            this.authorizationCodeDAO = new ShardedAuthorizationCodeDAO(authorizationCodeDAO, tokenShardManager);
+            this.tokenDAO = new ShardedAccessTokenDAO(accessTokenDAO, tokenShardManager);
+            this.managementDAO = new ShardedTokenManagementDAO(managementDAO, tokenShardManager);
+        }
+        if (CacheBackedAuthorizationCodeDAO.isEnabled()) {
+            this.authorizationCodeDAO = new CacheBackedAuthorizationCodeDAO(authorizationCodeDAO);
+        }
     }
 
     public static OAuthTokenPersistenceFactory getInstance() {
@@ -96,4 +114,14 @@ public class OAuthTokenPersistenceFactory {
 
         return oauthUserConsentedScopesDAO;
     }
+
+    /**
+     * Get the token shard manager.
+     *
+     * @return Token shard manager, or null if token sharding is not enabled.
+     */
+    public TokenShardManager getTokenShardManager() {
+
+        return tokenShardManager;
+    }
 }
@@ -23,9 +23,9 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.OldAccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -51,10 +51,10 @@ public class OldTokensCleanDAO {
                 } else {
                     sql = SQLQueries.RETRIEVE_AND_STORE_IN_AUDIT;
                 }
-                PreparedStatement prepStmt = connection.prepareStatement(sql);
-                prepStmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
-                prepStmt.setString(2, tokenId);
-                prepStmt.executeUpdate();
+                JdbcUtils.executeUpdate(connection, sql, prepStmt -> {
+                    prepStmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                    prepStmt.setString(2, tokenId);
+                });
             }
             removeTokenFromMainTable(tokenId, connection);
             connection.commit();
@@ -65,7 +65,6 @@ public class OldTokensCleanDAO {
     }
 
     public void cleanupTokenByTokenValue(String token, Connection connection) throws SQLException {
-        OldAccessTokenDO oldAccessTokenObject = new OldAccessTokenDO();
 
         String sql;
         if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
@@ -74,33 +73,10 @@ public class OldTokensCleanDAO {
             sql = SQLQueries.RETRIEVE_OLD_TOKEN_BY_TOKEN_HASH;
         }
 
-        PreparedStatement prepStmt = connection.prepareStatement(sql);
-        prepStmt.setString(1, token);
-        ResultSet resultSet = prepStmt.executeQuery();
-        //iterate result set and insert to AccessTokenDO object.
-        if (resultSet.next()) {
-            oldAccessTokenObject.setTokenId(resultSet.getString(1));
-            oldAccessTokenObject.setAccessToken(resultSet.getString(2));
-            oldAccessTokenObject.setRefreshToken(resultSet.getString(3));
-            oldAccessTokenObject.setConsumerKeyId(resultSet.getInt(4));
-            oldAccessTokenObject.setAuthzUser(resultSet.getString(5));
-            oldAccessTokenObject.setTenantId(resultSet.getInt(6));
-            oldAccessTokenObject.setUserDomain(resultSet.getString(7));
-            oldAccessTokenObject.setUserType(resultSet.getString(8));
-            oldAccessTokenObject.setGrantType(resultSet.getString(9));
-            oldAccessTokenObject.setTimeCreated(resultSet.getTimestamp(10));
-            oldAccessTokenObject.setRefreshTokenTimeCreated(resultSet.getTimestamp(11));
-            oldAccessTokenObject.setValdityPeriod(resultSet.getLong(12));
-            oldAccessTokenObject.setRefreshTokenValidityPeriod(resultSet.getLong(13));
-            oldAccessTokenObject.setTokenScopeHash(resultSet.getString(14));
-            oldAccessTokenObject.setTokenState(resultSet.getString(15));
-            oldAccessTokenObject.setTokenStateId(resultSet.getString(16));
-            oldAccessTokenObject.setSubjectIdentifier(resultSet.getString(17));
-            oldAccessTokenObject.setAccessTokenHash(resultSet.getString(18));
-            oldAccessTokenObject.setRefreshTokenHash(resultSet.getString(19));
-            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-                oldAccessTokenObject.setIdpId(resultSet.getInt(20));
-            }
+        OldAccessTokenDO oldAccessTokenObject = JdbcUtils.fetchSingleRecord(connection, sql,
+                (resultSet, rowNumber) -> buildOldAccessToken(resultSet), prepStmt -> prepStmt.setString(1, token));
+        if (oldAccessTokenObject == null) {
+            oldAccessTokenObject = new OldAccessTokenDO();
         }
         if (OAuthServerConfiguration.getInstance().useRetainOldAccessTokens()) {
             saveTokenInAuditTable(oldAccessTokenObject, connection);
@@ -108,6 +84,34 @@ public class OldTokensCleanDAO {
         removeTokenFromMainTable(oldAccessTokenObject.getTokenId(), connection);
     }
 
+    private OldAccessTokenDO buildOldAccessToken(ResultSet resultSet) throws SQLException {
+
+        OldAccessTokenDO oldAccessTokenObject = new OldAccessTokenDO();
+        oldAccessTokenObject.setTokenId(resultSet.getString(1));
+        oldAccessTokenObject.setAccessToken(resultSet.getString(2));
+        oldAccessTokenObject.setRefreshToken(resultSet.getString(3));
+        oldAccessTokenObject.setConsumerKeyId(resultSet.getInt(4));
+        oldAccessTokenObject.setAuthzUser(resultSet.getString(5));
+        oldAccessTokenObject.setTenantId(resultSet.getInt(6));
+        oldAccessTokenObject.setUserDomain(resultSet.getString(7));
+        oldAccessTokenObject.setUserType(resultSet.getString(8));
+        oldAccessTokenObject.setGrantType(resultSet.getString(9));
+        oldAccessTokenObject.setTimeCreated(resultSet.getTimestamp(10));
+        oldAccessTokenObject.setRefreshTokenTimeCreated(resultSet.getTimestamp(11));
+        oldAccessTokenObject.setValdityPeriod(resultSet.getLong(12));
+        oldAccessTokenObject.setRefreshTokenValidityPeriod(resultSet.getLong(13));
+        oldAccessTokenObject.setTokenScopeHash(resultSet.getString(14));
+        oldAccessTokenObject.setTokenState(resultSet.getString(15));
+        oldAccessTokenObject.setTokenStateId(resultSet.getString(16));
+        oldAccessTokenObject.setSubjectIdentifier(resultSet.getString(17));
+        oldAccessTokenObject.setAccessTokenHash(resultSet.getString(18));
+        oldAccessTokenObject.setRefreshTokenHash(resultSet.getString(19));
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            oldAccessTokenObject.setIdpId(resultSet.getInt(20));
+        }
+        return oldAccessTokenObject;
+    }
+
     private void saveTokenInAuditTable(OldAccessTokenDO oldAccessTokenDAO, Connection connection) throws SQLException {
 
         String sql;
@@ -117,31 +121,31 @@ public class OldTokensCleanDAO {
             sql = SQLQueries.STORE_OLD_TOKEN_IN_AUDIT;
         }
 
-        PreparedStatement insertintoaudittable = connection.prepareStatement(sql);
-        insertintoaudittable.setString(1, oldAccessTokenDAO.getTokenId());
-        insertintoaudittable.setString(2, oldAccessTokenDAO.getAccessToken());
-        insertintoaudittable.setString(3, oldAccessTokenDAO.getRefreshToken());
-        insertintoaudittable.setInt(4, oldAccessTokenDAO.getConsumerKeyId());
-        insertintoaudittable.setString(5, oldAccessTokenDAO.getAuthzUserValue());
-        insertintoaudittable.setInt(6, oldAccessTokenDAO.getTenantId());
-        insertintoaudittable.setString(7, oldAccessTokenDAO.getUserDomain());
-        insertintoaudittable.setString(8, oldAccessTokenDAO.getUserType());
-        insertintoaudittable.setString(9, oldAccessTokenDAO.getGrantType());
-        insertintoaudittable.setTimestamp(10, oldAccessTokenDAO.getTimeCreated());
-        insertintoaudittable.setTimestamp(11, oldAccessTokenDAO.getRefreshTokenTimeCreated());
-        insertintoaudittable.setLong(12, oldAccessTokenDAO.getValdityPeriod());
-        insertintoaudittable.setLong(13, oldAccessTokenDAO.getRefreshTokenValidityPeriod());
-        insertintoaudittable.setString(14, oldAccessTokenDAO.getTokenScopeHash());
-        insertintoaudittable.setString(15, oldAccessTokenDAO.getTokenState());
-        insertintoaudittable.setString(16, oldAccessTokenDAO.getTokenStateId());
-        insertintoaudittable.setString(17, oldAccessTokenDAO.getSubjectIdentifier());
-        insertintoaudittable.setString(18, oldAccessTokenDAO.getAccessTokenHash());
-        insertintoaudittable.setString(19, oldAccessTokenDAO.getRefreshTokenHash());
-        insertintoaudittable.setTimestamp(20, new Timestamp(System.currentTimeMillis()));
-        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
-            insertintoaudittable.setInt(21, oldAccessTokenDAO.getIdpId());
-        }
-        insertintoaudittable.execute();
+        JdbcUtils.executeUpdate(connection, sql, insertintoaudittable -> {
+            insertintoaudittable.setString(1, oldAccessTokenDAO.getTokenId());
+            insertintoaudittable.setString(2, oldAccessTokenDAO.getAccessToken());
+            insertintoaudittable.setString(3, oldAccessTokenDAO.getRefreshToken());
+            insertintoaudittable.setInt(4, oldAccessTokenDAO.getConsumerKeyId());
+            insertintoaudittable.setString(5, oldAccessTokenDAO.getAuthzUserValue());
+            insertintoaudittable.setInt(6, oldAccessTokenDAO.getTenantId());
+            insertintoaudittable.setString(7, oldAccessTokenDAO.getUserDomain());
+            insertintoaudittable.setString(8, oldAccessTokenDAO.getUserType());
+            insertintoaudittable.setString(9, oldAccessTokenDAO.getGrantType());
+            insertintoaudittable.setTimestamp(10, oldAccessTokenDAO.getTimeCreated());
+            insertintoaudittable.setTimestamp(11, oldAccessTokenDAO.getRefreshTokenTimeCreated());
+            insertintoaudittable.setLong(12, oldAccessTokenDAO.getValdityPeriod());
+            insertintoaudittable.setLong(13, oldAccessTokenDAO.getRefreshTokenValidityPeriod());
+            insertintoaudittable.setString(14, oldAccessTokenDAO.getTokenScopeHash());
+            insertintoaudittable.setString(15, oldAccessTokenDAO.getTokenState());
+            insertintoaudittable.setString(16, oldAccessTokenDAO.getTokenStateId());
+            insertintoaudittable.setString(17, oldAccessTokenDAO.getSubjectIdentifier());
+            insertintoaudittable.setString(18, oldAccessTokenDAO.getAccessTokenHash());
+            insertintoaudittable.setString(19, oldAccessTokenDAO.getRefreshTokenHash());
+            insertintoaudittable.setTimestamp(20, new Timestamp(System.currentTimeMillis()));
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                insertintoaudittable.setInt(21, oldAccessTokenDAO.getIdpId());
+            }
+        });
         if (log.isDebugEnabled()) {
             log.debug(
                     "Successfully saved old access token in audit table. Token ID: " + oldAccessTokenDAO.getTokenId());
@@ -153,10 +157,8 @@ public class OldTokensCleanDAO {
 
         connection.setAutoCommit(false);
         try {
-            PreparedStatement deletefromaccesstokentable =
-                    connection.prepareStatement(SQLQueries.DELETE_OLD_TOKEN_BY_ID);
-            deletefromaccesstokentable.setString(1, oldAccessTokenID);
-            deletefromaccesstokentable.executeUpdate();
+            JdbcUtils.executeUpdate(connection, SQLQueries.DELETE_OLD_TOKEN_BY_ID,
+                    deletefromaccesstokentable -> deletefromaccesstokentable.setString(1, oldAccessTokenID));
             if (log.isDebugEnabled()) {
                 log.debug(
                         "Successfully old access token deleted from access token table. Token ID: " + oldAccessTokenID);
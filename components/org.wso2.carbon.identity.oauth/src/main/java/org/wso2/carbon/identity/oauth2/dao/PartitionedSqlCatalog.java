@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable catalog of access token queries rewritten for the partitioned token tables of each user store domain,
+ * used when access token partitioning and username assertion are enabled.
+ * <p>
+ * The catalog parses the 'AccessTokenPartitioningDomains' configuration once and rewrites every query in
+ * {@link SQLQueries} which refers to the token tables for each mapped domain when it is built. Looking up a
+ * partitioned statement on the request path is then a map lookup. Queries or unmapped domains which are not in the
+ * catalog are rewritten on first use and published with a new copy of the catalog.
+ */
+public class PartitionedSqlCatalog {
+
+    private static final Log log = LogFactory.getLog(PartitionedSqlCatalog.class);
+
+    private static final String ACCESS_TOKEN_SCOPE_TABLE = "IDN_OAUTH2_ACCESS_TOKEN_SCOPE";
+    private static final Pattern ACCESS_TOKEN_TABLE_PATTERN =
+            Pattern.compile("\\b" + OAuthConstants.ACCESS_TOKEN_STORE_TABLE + "\\b");
+    private static final Pattern ACCESS_TOKEN_SCOPE_TABLE_PATTERN =
+            Pattern.compile("\\b" + ACCESS_TOKEN_SCOPE_TABLE + "\\b");
+    private static final int MAX_STATEMENTS_PER_DOMAIN = 1024;
+
+    private static volatile PartitionedSqlCatalog instance;
+
+    private final String partitioningDomains;
+    private final Map<String, String> domainMappings;
+    // Table suffix -> (original SQL -> partitioned SQL).
+    private volatile Map<String, Map<String, String>> statements;
+
+    private PartitionedSqlCatalog(String partitioningDomains) throws IdentityOAuth2Exception {
+
+        this.partitioningDomains = partitioningDomains;
+        Map<String, String> mappings = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        mappings.putAll(OAuth2Util.getAvailableUserStoreDomainMappings());
+        this.domainMappings = Collections.unmodifiableMap(mappings);
+
+        Set<String> tokenQueries = getTokenQueries();
+        Map<String, Map<String, String>> catalog = new HashMap<>();
+        for (String tableSuffix : new HashSet<>(domainMappings.values())) {
+            Map<String, String> statementsOfDomain = new HashMap<>();
+            for (String sql : tokenQueries) {
+                statementsOfDomain.put(sql, partition(sql, tableSuffix));
+            }
+            catalog.put(tableSuffix, Collections.unmodifiableMap(statementsOfDomain));
+        }
+        this.statements = Collections.unmodifiableMap(catalog);
+        if (log.isDebugEnabled()) {
+            log.debug("Built partitioned SQL catalog with " + tokenQueries.size() + " token queries for " +
+                    catalog.size() + " mapped user store domains.");
+        }
+    }
+
+    /**
+     * Get the catalog for the current access token partitioning configuration. The catalog is rebuilt if the
+     * configuration has changed since it was built.
+     *
+     * @return Partitioned SQL catalog.
+     * @throws IdentityOAuth2Exception If the user store domain mappings are invalid.
+     */
+    public static PartitionedSqlCatalog getInstance() throws IdentityOAuth2Exception {
+
+        PartitionedSqlCatalog catalog = instance;
+        String partitioningDomains = OAuth2Util.getAccessTokenPartitioningDomains();
+        if (catalog == null || !Objects.equals(catalog.partitioningDomains, partitioningDomains)) {
+            synchronized (PartitionedSqlCatalog.class) {
+                catalog = instance;
+                if (catalog == null || !Objects.equals(catalog.partitioningDomains, partitioningDomains)) {
+                    catalog = new PartitionedSqlCatalog(partitioningDomains);
+                    instance = catalog;
+                }
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Rebuild the catalog, dropping the statements derived for user store domains which are no longer in use.
+     *
+     * @throws IdentityOAuth2Exception If the user store domain mappings are invalid.
+     */
+    public static void reload() throws IdentityOAuth2Exception {
+
+        synchronized (PartitionedSqlCatalog.class) {
+            instance = new PartitionedSqlCatalog(OAuth2Util.getAccessTokenPartitioningDomains());
+        }
+    }
+
+    /**
+     * Get the given access token query rewritten for the partitioned token tables of the given user store domain.
+     *
+     * @param sql             Access token query.
+     * @param userStoreDomain User store domain.
+     * @return Partitioned query, or the original query for the primary user store domain.
+     */
+    public String getPartitionedSql(String sql, String userStoreDomain) {
+
+        if (StringUtils.isBlank(userStoreDomain) || IdentityUtil.getPrimaryDomainName()
+                .equalsIgnoreCase(userStoreDomain)) {
+            return sql;
+        }
+        String tableSuffix = domainMappings.get(userStoreDomain);
+        if (tableSuffix == null) {
+            tableSuffix = userStoreDomain;
+        }
+
+        Map<String, String> statementsOfDomain = statements.get(tableSuffix);
+        String partitionedSql = statementsOfDomain == null ? null : statementsOfDomain.get(sql);
+        if (partitionedSql == null) {
+            partitionedSql = addStatement(sql, tableSuffix);
+        }
+        return partitionedSql;
+    }
+
+    private synchronized String addStatement(String sql, String tableSuffix) {
+
+        Map<String, String> statementsOfDomain = statements.get(tableSuffix);
+        String partitionedSql = statementsOfDomain == null ? null : statementsOfDomain.get(sql);
+        if (partitionedSql != null) {
+            return partitionedSql;
+        }
+
+        partitionedSql = partition(sql, tableSuffix);
+        if (statementsOfDomain != null && statementsOfDomain.size() >= MAX_STATEMENTS_PER_DOMAIN) {
+            // Avoid growing the catalog without a bound for dynamically built queries.
+            return partitionedSql;
+        }
+        Map<String, String> newStatementsOfDomain = statementsOfDomain == null ? new HashMap<>() :
+                new HashMap<>(statementsOfDomain);
+        newStatementsOfDomain.put(sql, partitionedSql);
+        Map<String, Map<String, String>> newStatements = new HashMap<>(statements);
+        newStatements.put(tableSuffix, Collections.unmodifiableMap(newStatementsOfDomain));
+        statements = Collections.unmodifiableMap(newStatements);
+        return partitionedSql;
+    }
+
+    private static String partition(String sql, String tableSuffix) {
+
+        String partitionedAccessTokenTable = OAuthConstants.ACCESS_TOKEN_STORE_TABLE + "_" + tableSuffix;
+        String partitionedAccessTokenScopeTable = ACCESS_TOKEN_SCOPE_TABLE + "_" + tableSuffix;
+        String partitionedSql = ACCESS_TOKEN_TABLE_PATTERN.matcher(sql)
+                .replaceAll(Matcher.quoteReplacement(partitionedAccessTokenTable));
+        partitionedSql = ACCESS_TOKEN_SCOPE_TABLE_PATTERN.matcher(partitionedSql)
+                .replaceAll(Matcher.quoteReplacement(partitionedAccessTokenScopeTable));
+        if (log.isDebugEnabled()) {
+            log.debug("Original SQL: " + sql);
+            log.debug("Partitioned SQL: " + partitionedSql);
+        }
+        return partitionedSql;
+    }
+
+    private static Set<String> getTokenQueries() {
+
+        Set<String> tokenQueries = new HashSet<>();
+        for (Field field : SQLQueries.class.getFields()) {
+            if (field.getType() != String.class || !Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            try {
+                String sql = (String) field.get(null);
+                if (sql != null && (ACCESS_TOKEN_TABLE_PATTERN.matcher(sql).find() ||
+                        ACCESS_TOKEN_SCOPE_TABLE_PATTERN.matcher(sql).find())) {
+                    tokenQueries.add(sql);
+                }
+            } catch (IllegalAccessException e) {
+                log.warn("Unable to read the query: " + field.getName() + " to build the partitioned SQL catalog.");
+            }
+        }
+        return tokenQueries;
+    }
+}
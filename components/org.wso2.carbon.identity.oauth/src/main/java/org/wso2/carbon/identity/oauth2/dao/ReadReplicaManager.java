@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.database.utils.jdbc.JdbcTemplate;
+import org.wso2.carbon.identity.base.IdentityRuntimeException;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * Routes listing and reporting queries of OAuth to a read replica of the identity database, when one is configured.
+ * Lookups on the request path, such as access token validation and client authentication, are always served by the
+ * primary, as a lagging replica could still show a revoked token or application as active.
+ * <p>
+ * Replicas lag behind the primary. To keep listings consistent with the writes of this node, a write marks the
+ * affected tenant scope set, and reads of a marked key are served by the primary until the consistency window of
+ * the mark elapses. Reads which find nothing on the replica, or fail on it, are retried on the primary as well.
+ */
+public class ReadReplicaManager {
+
+    private static final Log log = LogFactory.getLog(ReadReplicaManager.class);
+
+    private static final String REPLICA_DATASOURCE = "OAuth.TokenPersistence.ReadReplica.DataSource";
+    private static final String CONSISTENCY_WINDOW = "OAuth.TokenPersistence.ReadReplica.ConsistencyWindow";
+    private static final long DEFAULT_CONSISTENCY_WINDOW = 5000;
+    private static final int PRUNE_THRESHOLD = 10000;
+
+    public static final String SCOPE = "SCOPE:";
+
+    private static final ThreadLocal<Boolean> readingFromReplica = new ThreadLocal<>();
+    private static final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+
+    private static volatile DataSource replica;
+    private static volatile boolean replicaResolved;
+    private static long consistencyWindow = -1;
+
+    /**
+     * Read operation which can be executed on either the replica or the primary database.
+     *
+     * @param <T> Result type of the operation.
+     * @param <E> Exception thrown by the operation.
+     */
+    @FunctionalInterface
+    public interface ReadOperation<T, E extends Exception> {
+
+        T execute() throws E;
+    }
+
+    private ReadReplicaManager() {
+
+    }
+
+    /**
+     * Check whether a read replica is configured.
+     *
+     * @return true if a read replica datasource is configured.
+     */
+    public static boolean isEnabled() {
+
+        return StringUtils.isNotBlank(IdentityUtil.getProperty(REPLICA_DATASOURCE));
+    }
+
+    /**
+     * Record a write of the given key, so that the reads of the key are served by the primary database for the
+     * consistency window.
+     *
+     * @param key Key of the written entity, prefixed with its type. Eg: {@link #SCOPE} + tenant id.
+     */
+    public static void markWritten(String key) {
+
+        if (key == null || getReplica() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (recentWrites.size() >= PRUNE_THRESHOLD) {
+            pruneExpiredWrites(now);
+        }
+        recentWrites.put(key, now + getConsistencyWindow());
+    }
+
+    /**
+     * Check whether the given key was written within its consistency window.
+     *
+     * @param key Key of the entity.
+     * @return true if the key was written recently.
+     */
+    public static boolean isRecentlyWritten(String key) {
+
+        Long expiry = recentWrites.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            recentWrites.remove(key, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Execute the read operation on the read replica, unless the key was written recently. The operation is
+     * executed again on the primary when it finds nothing on the replica, or fails on it.
+     *
+     * @param key       Key of the entity read by the operation, prefixed with its type.
+     * @param operation Read operation which obtains its connections from {@link #getDBConnection(boolean)} or
+     *                  {@link #getJdbcTemplate()}.
+     * @param <T>       Result type of the operation.
+     * @param <E>       Exception thrown by the operation.
+     * @return Result of the operation.
+     * @throws E If the operation fails on the primary.
+     */
+    public static <T, E extends Exception> T read(String key, ReadOperation<T, E> operation) throws E {
+
+        if (isReadingFromReplica() || getReplica() == null || isRecentlyWritten(key)) {
+            return operation.execute();
+        }
+        readingFromReplica.set(Boolean.TRUE);
+        try {
+            T result = operation.execute();
+            if (!isMiss(result)) {
+                return result;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("No result found on the read replica. Retrying the read on the primary database.");
+            }
+        } catch (Exception e) {
+            log.warn("Error while reading from the read replica. Retrying the read on the primary database. " +
+                    "Cause: " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Error while reading from the read replica.", e);
+            }
+        } finally {
+            readingFromReplica.remove();
+        }
+        return operation.execute();
+    }
+
+    /**
+     * Get a transactional connection to the read replica when the current thread executes a replica read, or to the
+     * identity datasource otherwise.
+     *
+     * @return Database connection.
+     */
+    public static Connection getDBConnection() {
+
+        if (!isReadingFromReplica()) {
+            return IdentityDatabaseUtil.getDBConnection();
+        }
+        return getReplicaConnection(true);
+    }
+
+    /**
+     * Get a connection to the read replica when the current thread executes a replica read, or to the identity
+     * datasource otherwise.
+     *
+     * @param shouldApplyTransaction Whether the connection should be transactional.
+     * @return Database connection.
+     */
+    public static Connection getDBConnection(boolean shouldApplyTransaction) {
+
+        if (!isReadingFromReplica()) {
+            return IdentityDatabaseUtil.getDBConnection(shouldApplyTransaction);
+        }
+        return getReplicaConnection(shouldApplyTransaction);
+    }
+
+    /**
+     * Get a JDBC template over the read replica when the current thread executes a replica read, or over the
+     * identity datasource otherwise.
+     *
+     * @return JDBC template.
+     */
+    public static JdbcTemplate getJdbcTemplate() {
+
+        if (!isReadingFromReplica()) {
+            return JdbcUtils.getNewTemplate();
+        }
+        return new JdbcTemplate(replica);
+    }
+
+    /**
+     * Check whether the current thread executes a replica read.
+     *
+     * @return true if the current thread reads from the replica.
+     */
+    private static boolean isReadingFromReplica() {
+
+        return Boolean.TRUE.equals(readingFromReplica.get());
+    }
+
+    private static Connection getReplicaConnection(boolean shouldApplyTransaction) {
+
+        Connection connection = null;
+        try {
+            connection = replica.getConnection();
+            connection.setReadOnly(true);
+            if (shouldApplyTransaction) {
+                connection.setAutoCommit(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+            return connection;
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.closeConnection(connection);
+            throw IdentityRuntimeException.error("Error while obtaining a connection to the read replica.", e);
+        }
+    }
+
+    static void setReplica(DataSource dataSource) {
+
+        replica = dataSource;
+        replicaResolved = dataSource != null;
+    }
+
+    static void clearRecentWrites() {
+
+        recentWrites.clear();
+    }
+
+    private static DataSource getReplica() {
+
+        if (!replicaResolved) {
+            synchronized (ReadReplicaManager.class) {
+                if (!replicaResolved) {
+                    String dataSourceName = IdentityUtil.getProperty(REPLICA_DATASOURCE);
+                    if (StringUtils.isNotBlank(dataSourceName)) {
+                        try {
+                            replica = (DataSource) new InitialContext().lookup(dataSourceName.trim());
+                        } catch (NamingException e) {
+                            log.error("Error while looking up the read replica datasource: " + dataSourceName +
+                                    ". Read only queries are served by the primary database.", e);
+                        }
+                    }
+                    replicaResolved = true;
+                }
+            }
+        }
+        return replica;
+    }
+
+    private static boolean isMiss(Object result) {
+
+        return result == null || (result instanceof Collection && ((Collection) result).isEmpty());
+    }
+
+    private static void pruneExpiredWrites(long now) {
+
+        Iterator<Map.Entry<String, Long>> iterator = recentWrites.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long getConsistencyWindow() {
+
+        if (consistencyWindow < 0) {
+            long window = DEFAULT_CONSISTENCY_WINDOW;
+            String value = IdentityUtil.getProperty(CONSISTENCY_WINDOW);
+            if (StringUtils.isNotBlank(value)) {
+                try {
+                    window = Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid value: " + value + " configured for: " + CONSISTENCY_WINDOW +
+                            ". Using the default value: " + DEFAULT_CONSISTENCY_WINDOW);
+                }
+            }
+            consistencyWindow = window;
+        }
+        return consistencyWindow;
+    }
+}
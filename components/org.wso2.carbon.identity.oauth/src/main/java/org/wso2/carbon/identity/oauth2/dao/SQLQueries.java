@@ -44,6 +44,18 @@ public class SQLQueries {
             "AUTHORIZATION_CODE_HASH, IDP_ID) SELECT ?,?,IDN_OAUTH_CONSUMER_APPS.ID,?,?,?,?,?,?,?,?,?,?,?,IDP.ID " +
             "FROM IDN_OAUTH_CONSUMER_APPS, IDP WHERE CONSUMER_KEY=? AND IDP.NAME=? AND IDP.TENANT_ID=?";
 
+    public static final String STORE_AUTHORIZATION_CODE_WITH_PKCE_TO_SHARD = "INSERT INTO " +
+            "IDN_OAUTH2_AUTHORIZATION_CODE (CODE_ID, AUTHORIZATION_CODE, CALLBACK_URL, SCOPE, AUTHZ_USER, " +
+            "USER_DOMAIN, TENANT_ID, TIME_CREATED, VALIDITY_PERIOD, SUBJECT_IDENTIFIER, PKCE_CODE_CHALLENGE, " +
+            "PKCE_CODE_CHALLENGE_METHOD, AUTHORIZATION_CODE_HASH, CONSUMER_KEY_ID) " +
+            "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    public static final String STORE_AUTHORIZATION_CODE_WITH_PKCE_IDP_ID_TO_SHARD = "INSERT INTO " +
+            "IDN_OAUTH2_AUTHORIZATION_CODE (CODE_ID, AUTHORIZATION_CODE, CALLBACK_URL, SCOPE, AUTHZ_USER, " +
+            "USER_DOMAIN, TENANT_ID, TIME_CREATED, VALIDITY_PERIOD, SUBJECT_IDENTIFIER, PKCE_CODE_CHALLENGE, " +
+            "PKCE_CODE_CHALLENGE_METHOD, AUTHORIZATION_CODE_HASH, CONSUMER_KEY_ID, IDP_ID) " +
+            "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
     public static final String VALIDATE_AUTHZ_CODE = "SELECT AUTHZ_USER, USER_DOMAIN, TENANT_ID, SCOPE, " +
             "CALLBACK_URL, TIME_CREATED,VALIDITY_PERIOD, STATE, TOKEN_ID, AUTHORIZATION_CODE, CODE_ID, " +
             "SUBJECT_IDENTIFIER FROM IDN_OAUTH2_AUTHORIZATION_CODE WHERE CONSUMER_KEY_ID = (SELECT ID FROM " +
@@ -443,6 +455,10 @@ public class SQLQueries {
     public static final String UPDATE_TOKEN_STATE = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET TOKEN_STATE=?, " +
             "TOKEN_STATE_ID=? WHERE TOKEN_ID=?";
 
+    // Only one of the concurrent refresh grants presenting the same refresh token matches the token row.
+    public static final String UPDATE_TOKEN_STATE_OF_REFRESHED_TOKEN = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET " +
+            "TOKEN_STATE=?, TOKEN_STATE_ID=? WHERE TOKEN_ID=? AND TOKEN_STATE IN (?,?)";
+
     public static final String UPDATE_TOKEN_CONSENTED_TOKEN = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET " +
             "CONSENTED_TOKEN=? WHERE TOKEN_ID=?";
     @Deprecated
@@ -454,6 +470,9 @@ public class SQLQueries {
     public static final String REVOKE_ACCESS_TOKEN = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET TOKEN_STATE=?, " +
             "TOKEN_STATE_ID=? WHERE ACCESS_TOKEN_HASH=?";
 
+    public static final String REVOKE_ACCESS_TOKENS_BY_TOKEN_ID = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET " +
+            "TOKEN_STATE=?, TOKEN_STATE_ID=? WHERE TOKEN_ID IN ($tokenIds) AND TOKEN_STATE='ACTIVE'";
+
     public static final String REVOKE_APP_ACCESS_TOKEN = "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET TOKEN_STATE=?, " +
             "TOKEN_STATE_ID=? WHERE CONSUMER_KEY_ID = (SELECT ID FROM " +
             "IDN_OAUTH_CONSUMER_APPS WHERE CONSUMER_KEY = ?) AND TOKEN_STATE=?";
@@ -482,6 +501,19 @@ public class SQLQueries {
             "JOIN IDN_OAUTH2_ACCESS_TOKEN_SCOPE ON ACCESS_TOKEN_TABLE.TOKEN_ID = " +
             "IDN_OAUTH2_ACCESS_TOKEN_SCOPE.TOKEN_ID JOIN IDP IDP_TABLE ON IDP_TABLE.ID = IDP_ID";
 
+    public static final String GET_ACTIVE_ACCESS_TOKENS_BY_SESSION_IDENTIFIER = "SELECT ACCESS_TOKEN, " +
+            "CONSUMER_KEY, TOKEN_SCOPE, REFRESH_TOKEN, ACCESS_TOKEN_TABLE.TOKEN_ID, TIME_CREATED, " +
+            "REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, USER_TYPE, " +
+            "ACCESS_TOKEN_TABLE.TENANT_ID, AUTHZ_USER, ACCESS_TOKEN_TABLE.USER_DOMAIN, TOKEN_BINDING_REF, IDP_ID, " +
+            "IDP_TABLE.NAME FROM (SELECT ACCESS_TOKEN, CONSUMER_KEY_ID, TOKEN_ID, REFRESH_TOKEN, TIME_CREATED, " +
+            "REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, USER_TYPE, REFRESH_TOKEN_VALIDITY_PERIOD, TENANT_ID, " +
+            "AUTHZ_USER, USER_DOMAIN, TOKEN_BINDING_REF, IDP_ID FROM IDN_OAUTH2_ACCESS_TOKEN WHERE TOKEN_ID IN " +
+            "(SELECT TOKEN_ID FROM IDN_OAUTH2_TOKEN_BINDING WHERE TOKEN_BINDING_VALUE = ? AND " +
+            "TOKEN_BINDING_TYPE = ?) AND TOKEN_STATE = 'ACTIVE') ACCESS_TOKEN_TABLE JOIN IDN_OAUTH_CONSUMER_APPS ON " +
+            "IDN_OAUTH_CONSUMER_APPS.ID = CONSUMER_KEY_ID LEFT JOIN IDN_OAUTH2_ACCESS_TOKEN_SCOPE ON " +
+            "ACCESS_TOKEN_TABLE.TOKEN_ID = IDN_OAUTH2_ACCESS_TOKEN_SCOPE.TOKEN_ID JOIN IDP IDP_TABLE ON " +
+            "IDP_TABLE.ID = IDP_ID";
+
     public static final String GET_ACCESS_TOKEN_BY_AUTHZUSER = "SELECT DISTINCT ACCESS_TOKEN, USER_TYPE " +
             "FROM IDN_OAUTH2_ACCESS_TOKEN WHERE AUTHZ_USER=? AND TENANT_ID=? AND TOKEN_STATE=? AND USER_DOMAIN=?";
 
@@ -514,6 +546,9 @@ public class SQLQueries {
             " JOIN  IDP ON IDN_OAUTH2_ACCESS_TOKEN.IDP_ID=IDP.ID WHERE " +
             "CONSUMER_KEY_ID = (SELECT ID FROM IDN_OAUTH_CONSUMER_APPS WHERE CONSUMER_KEY=?) AND TOKEN_STATE=?";
 
+    public static final String GET_ACTIVE_DETAILS_FOR_CONSUMER_KEY_ORDER_BY = " ORDER BY " +
+            "IDN_OAUTH2_ACCESS_TOKEN.TOKEN_ID";
+
     public static final String GET_AUTHORIZATION_CODES_FOR_CONSUMER_KEY = "SELECT AUTHORIZATION_CODE   FROM " +
             "IDN_OAUTH2_AUTHORIZATION_CODE WHERE CONSUMER_KEY_ID IN (SELECT ID FROM IDN_OAUTH_CONSUMER_APPS WHERE " +
             "CONSUMER_KEY = ?) ";
@@ -529,6 +564,9 @@ public class SQLQueries {
     public static final String UPDATE_AUTHORIZATION_CODE_STATE = "UPDATE IDN_OAUTH2_AUTHORIZATION_CODE SET STATE=? " +
             "WHERE AUTHORIZATION_CODE_HASH=?";
 
+    public static final String UPDATE_AUTHORIZATION_CODE_STATE_IF_CURRENT = "UPDATE IDN_OAUTH2_AUTHORIZATION_CODE " +
+            "SET STATE=? WHERE AUTHORIZATION_CODE_HASH=? AND STATE=?";
+
     public static final String GET_AUTHORIZATION_CODES_BY_AUTHZUSER = "SELECT DISTINCT AUTHORIZATION_CODE, " +
             "TIME_CREATED, VALIDITY_PERIOD " +
             " FROM IDN_OAUTH2_AUTHORIZATION_CODE WHERE AUTHZ_USER=? AND TENANT_ID=? AND USER_DOMAIN=? AND STATE=?";
@@ -548,6 +586,19 @@ public class SQLQueries {
             "ID WHERE AUTHZ_USER=? AND IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID=? AND IDN_OAUTH2_ACCESS_TOKEN.USER_DOMAIN=? " +
             "AND (TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED')";
 
+    public static final String GET_APPS_AUTHORIZED_BY_USER_WITH_LATEST_TOKEN = "SELECT CONSUMER_KEY, APP_NAME, " +
+            "MAX(IDN_OAUTH2_ACCESS_TOKEN.TIME_CREATED) FROM IDN_OAUTH2_ACCESS_TOKEN JOIN IDN_OAUTH_CONSUMER_APPS ON " +
+            "CONSUMER_KEY_ID = ID WHERE AUTHZ_USER=? AND IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID=? AND " +
+            "IDN_OAUTH2_ACCESS_TOKEN.USER_DOMAIN=? AND (TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED') " +
+            "GROUP BY CONSUMER_KEY, APP_NAME";
+
+    public static final String GET_APPS_AUTHORIZED_BY_USER_WITH_LATEST_TOKEN_IDP_NAME = "SELECT CONSUMER_KEY, " +
+            "APP_NAME, MAX(IDN_OAUTH2_ACCESS_TOKEN.TIME_CREATED) FROM IDN_OAUTH2_ACCESS_TOKEN JOIN " +
+            "IDN_OAUTH_CONSUMER_APPS ON CONSUMER_KEY_ID = ID WHERE AUTHZ_USER=? AND " +
+            "IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID=? AND IDN_OAUTH2_ACCESS_TOKEN.USER_DOMAIN=? AND " +
+            "(TOKEN_STATE='ACTIVE' OR TOKEN_STATE='EXPIRED') AND IDP_ID=(SELECT IDP.ID FROM IDP WHERE IDP.NAME=? AND " +
+            "IDP.TENANT_ID=IDN_OAUTH2_ACCESS_TOKEN.TENANT_ID) GROUP BY CONSUMER_KEY, APP_NAME";
+
     public static final String RETRIEVE_ACCESS_TOKEN_VALIDATION_DATA_MYSQL = "SELECT ACCESS_TOKEN, AUTHZ_USER, " +
             "ACCESS_TOKEN_SELECTED.TENANT_ID, USER_DOMAIN, TOKEN_SCOPE, TOKEN_STATE, REFRESH_TOKEN_TIME_CREATED, " +
             "REFRESH_TOKEN_VALIDITY_PERIOD, ACCESS_TOKEN_SELECTED.TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, " +
@@ -748,6 +799,52 @@ public class SQLQueries {
             "CONSENTED_TOKEN) SELECT ?,?,IDN_OAUTH_CONSUMER_APPS.ID,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,IDP.ID,?,? FROM " +
             "IDN_OAUTH_CONSUMER_APPS, IDP WHERE IDP.NAME=? AND IDP.TENANT_ID=? AND CONSUMER_KEY=?";
 
+    // Inserts into a token shard. The application and identity provider ids are resolved from the identity
+    // datasource and bound, as the copies of those tables in the shards are not used to store tokens.
+    public static final String INSERT_OAUTH2_ACCESS_TOKEN_TO_SHARD = "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN " +
+            "(ACCESS_TOKEN, REFRESH_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TIME_CREATED, " +
+            "REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_SCOPE_HASH, " +
+            "TOKEN_STATE, USER_TYPE, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, ACCESS_TOKEN_HASH, " +
+            "REFRESH_TOKEN_HASH, TOKEN_BINDING_REF, CONSUMER_KEY_ID) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    public static final String INSERT_OAUTH2_ACCESS_TOKEN_WITH_CONSENTED_TOKEN_TO_SHARD =
+            "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN " +
+            "(ACCESS_TOKEN, REFRESH_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TIME_CREATED, " +
+            "REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_SCOPE_HASH, " +
+            "TOKEN_STATE, USER_TYPE, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, ACCESS_TOKEN_HASH, " +
+            "REFRESH_TOKEN_HASH, TOKEN_BINDING_REF, CONSENTED_TOKEN, CONSUMER_KEY_ID) " +
+            "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    public static final String INSERT_OAUTH2_ACCESS_TOKEN_WITH_IDP_ID_TO_SHARD =
+            "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN " +
+            "(ACCESS_TOKEN, REFRESH_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TIME_CREATED, " +
+            "REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_SCOPE_HASH, " +
+            "TOKEN_STATE, USER_TYPE, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, ACCESS_TOKEN_HASH, " +
+            "REFRESH_TOKEN_HASH, TOKEN_BINDING_REF, CONSUMER_KEY_ID, IDP_ID) " +
+            "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    public static final String INSERT_OAUTH2_ACCESS_TOKEN_WITH_IDP_ID_WITH_CONSENTED_TOKEN_TO_SHARD =
+            "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN " +
+            "(ACCESS_TOKEN, REFRESH_TOKEN, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TIME_CREATED, " +
+            "REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, TOKEN_SCOPE_HASH, " +
+            "TOKEN_STATE, USER_TYPE, TOKEN_ID, GRANT_TYPE, SUBJECT_IDENTIFIER, ACCESS_TOKEN_HASH, " +
+            "REFRESH_TOKEN_HASH, TOKEN_BINDING_REF, CONSENTED_TOKEN, CONSUMER_KEY_ID, IDP_ID) " +
+            "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    public static final String GET_IDP_ID_BY_NAME = "SELECT ID FROM IDP WHERE NAME=? AND TENANT_ID=?";
+
+    // Rows referred by the token queries, copied from the identity datasource to the token shards.
+    public static final String GET_CONSUMER_APP_OF_TOKEN_SHARD = "SELECT ID, CONSUMER_KEY, USERNAME, TENANT_ID, " +
+            "USER_DOMAIN, APP_NAME, APP_STATE FROM IDN_OAUTH_CONSUMER_APPS WHERE ID=?";
+
+    public static final String INSERT_CONSUMER_APP_TO_TOKEN_SHARD = "INSERT INTO IDN_OAUTH_CONSUMER_APPS (ID, " +
+            "CONSUMER_KEY, USERNAME, TENANT_ID, USER_DOMAIN, APP_NAME, APP_STATE) VALUES (?,?,?,?,?,?,?)";
+
+    public static final String GET_IDP_OF_TOKEN_SHARD = "SELECT ID, TENANT_ID, NAME, UUID FROM IDP WHERE ID=?";
+
+    public static final String INSERT_IDP_TO_TOKEN_SHARD = "INSERT INTO IDP (ID, TENANT_ID, NAME, UUID) VALUES " +
+            "(?,?,?,?)";
+
     public static final String INSERT_OAUTH2_TOKEN_SCOPE = "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN_SCOPE (TOKEN_ID, " +
             "TOKEN_SCOPE, TENANT_ID) VALUES (?,?,?)";
     public static final String INSERT_OAUTH2_CODE_SCOPE = "INSERT INTO IDN_OAUTH2_AUTHZ_CODE_SCOPE (CODE_ID, " +
@@ -816,6 +913,34 @@ public class SQLQueries {
     public static final String RENAME_USER_STORE_IN_AUTHORIZATION_CODES_TABLE = "UPDATE IDN_OAUTH2_AUTHORIZATION_CODE" +
             " SET USER_DOMAIN=? WHERE TENANT_ID=? AND USER_DOMAIN=?";
 
+    public static final String LIST_ACCESS_TOKENS_OF_USER_STORE_ORDER_BY_TOKEN_ID = "SELECT TOKEN_ID, ACCESS_TOKEN " +
+            "FROM IDN_OAUTH2_ACCESS_TOKEN WHERE TENANT_ID=? AND USER_DOMAIN=? ORDER BY TOKEN_ID";
+
+    // Keyset pages of a user store rename. These expect an index on (TENANT_ID, USER_DOMAIN, TOKEN_ID) and
+    // (TENANT_ID, USER_DOMAIN, CODE_ID), so that each chunk is a range scan instead of a sort of the whole domain.
+    public static final String LIST_ACCESS_TOKENS_OF_USER_STORE_AFTER_TOKEN_ID = "SELECT TOKEN_ID, ACCESS_TOKEN " +
+            "FROM IDN_OAUTH2_ACCESS_TOKEN WHERE TENANT_ID=? AND USER_DOMAIN=? AND TOKEN_ID>? ORDER BY TOKEN_ID";
+
+    public static final String RENAME_USER_STORE_IN_ACCESS_TOKENS_TABLE_UP_TO_TOKEN_ID = "UPDATE " +
+            "IDN_OAUTH2_ACCESS_TOKEN SET USER_DOMAIN=? WHERE TENANT_ID=? AND USER_DOMAIN=? AND TOKEN_ID<=?";
+
+    public static final String RENAME_USER_STORE_IN_ACCESS_TOKENS_TABLE_AFTER_TOKEN_ID = "UPDATE " +
+            "IDN_OAUTH2_ACCESS_TOKEN SET USER_DOMAIN=? WHERE TENANT_ID=? AND USER_DOMAIN=? AND TOKEN_ID<=? AND " +
+            "TOKEN_ID>?";
+
+    public static final String LIST_AUTHORIZATION_CODE_IDS_OF_USER_STORE_ORDER_BY_CODE_ID = "SELECT CODE_ID FROM " +
+            "IDN_OAUTH2_AUTHORIZATION_CODE WHERE TENANT_ID=? AND USER_DOMAIN=? ORDER BY CODE_ID";
+
+    public static final String LIST_AUTHORIZATION_CODE_IDS_OF_USER_STORE_AFTER_CODE_ID = "SELECT CODE_ID FROM " +
+            "IDN_OAUTH2_AUTHORIZATION_CODE WHERE TENANT_ID=? AND USER_DOMAIN=? AND CODE_ID>? ORDER BY CODE_ID";
+
+    public static final String RENAME_USER_STORE_IN_AUTHORIZATION_CODES_TABLE_UP_TO_CODE_ID = "UPDATE " +
+            "IDN_OAUTH2_AUTHORIZATION_CODE SET USER_DOMAIN=? WHERE TENANT_ID=? AND USER_DOMAIN=? AND CODE_ID<=?";
+
+    public static final String RENAME_USER_STORE_IN_AUTHORIZATION_CODES_TABLE_AFTER_CODE_ID = "UPDATE " +
+            "IDN_OAUTH2_AUTHORIZATION_CODE SET USER_DOMAIN=? WHERE TENANT_ID=? AND USER_DOMAIN=? AND CODE_ID<=? " +
+            "AND CODE_ID>?";
+
     public static final String LIST_ALL_TOKENS_IN_TENANT = "SELECT ACCESS_TOKEN, REFRESH_TOKEN, " +
             "TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, USER_TYPE, " +
             "TOKEN_SCOPE, ACCESS_TOKEN_TABLE.TOKEN_ID, AUTHZ_USER, ACCESS_TOKEN_TABLE.USER_DOMAIN, CONSUMER_KEY FROM " +
@@ -837,6 +962,21 @@ public class SQLQueries {
             "ON ACCESS_TOKEN_TABLE.TOKEN_ID = IDN_OAUTH2_ACCESS_TOKEN_SCOPE.TOKEN_ID " +
             "JOIN IDP ON IDP.ID=IDP_ID";
 
+    public static final String LIST_ALL_TOKENS_IN_TENANT_ORDER_BY = " ORDER BY CONSUMER_KEY, " +
+            "ACCESS_TOKEN_TABLE.AUTHZ_USER, ACCESS_TOKEN_TABLE.USER_DOMAIN, ACCESS_TOKEN_TABLE.TOKEN_ID";
+
+    public static final String LIST_ALL_TOKENS_IN_USER_STORE_ORDER_BY = " ORDER BY CONSUMER_KEY, " +
+            "ACCESS_TOKEN_TABLE.AUTHZ_USER, ACCESS_TOKEN_TABLE.TOKEN_ID";
+
+    public static final String LIST_ALL_TOKENS_IN_TENANT_AFTER = " WHERE (CONSUMER_KEY > ? OR (CONSUMER_KEY = ? " +
+            "AND (ACCESS_TOKEN_TABLE.AUTHZ_USER > ? OR (ACCESS_TOKEN_TABLE.AUTHZ_USER = ? AND " +
+            "(ACCESS_TOKEN_TABLE.USER_DOMAIN > ? OR (ACCESS_TOKEN_TABLE.USER_DOMAIN = ? AND " +
+            "ACCESS_TOKEN_TABLE.TOKEN_ID > ?))))))";
+
+    public static final String LIST_ALL_TOKENS_IN_USER_STORE_AFTER = " WHERE (CONSUMER_KEY > ? OR " +
+            "(CONSUMER_KEY = ? AND (ACCESS_TOKEN_TABLE.AUTHZ_USER > ? OR (ACCESS_TOKEN_TABLE.AUTHZ_USER = ? AND " +
+            "ACCESS_TOKEN_TABLE.TOKEN_ID > ?))))";
+
     public static final String LIST_ALL_TOKENS_IN_USER_STORE = "SELECT ACCESS_TOKEN, REFRESH_TOKEN, " +
             "TIME_CREATED, REFRESH_TOKEN_TIME_CREATED, VALIDITY_PERIOD, REFRESH_TOKEN_VALIDITY_PERIOD, USER_TYPE, " +
             "TOKEN_SCOPE, ACCESS_TOKEN_TABLE.TOKEN_ID, AUTHZ_USER, CONSUMER_KEY FROM (SELECT AUTHZ_USER, " +
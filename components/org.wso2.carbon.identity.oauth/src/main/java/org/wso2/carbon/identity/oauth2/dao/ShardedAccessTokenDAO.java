@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Access token DAO which spreads the access token rows across the token shards. A token is placed on the shard
+ * owning the hash of its token id, which is derived from its persisted identifier, hence lookups by token or token
+ * id are served by a single shard. Lookups and updates by client, user or tenant are executed on every shard and
+ * the results are merged. Token to session mappings are not sharded and are kept in the identity datasource.
+ */
+public class ShardedAccessTokenDAO implements AccessTokenDAO {
+
+    private static final Comparator<AccessTokenDO> LATEST_FIRST = Comparator.comparing(AccessTokenDO::getIssuedTime,
+            Comparator.nullsLast(Comparator.<Timestamp>reverseOrder()));
+
+    private final AccessTokenDAOImpl delegate;
+    private final TokenShardManager shardManager;
+
+    public ShardedAccessTokenDAO(AccessTokenDAOImpl delegate, TokenShardManager shardManager) {
+
+        this.delegate = delegate;
+        this.shardManager = shardManager;
+    }
+
+    @Override
+    public void insertAccessToken(String accessToken, String consumerKey, AccessTokenDO accessTokenDO,
+                                  String userStoreDomain) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(getShardOfNewToken(accessToken, consumerKey, accessTokenDO), () -> {
+            delegate.insertAccessToken(accessToken, consumerKey, accessTokenDO, userStoreDomain);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean insertAccessToken(String accessToken, String consumerKey, AccessTokenDO newAccessTokenDO,
+                                     AccessTokenDO existingAccessTokenDO, String rawUserStoreDomain)
+            throws IdentityOAuth2Exception {
+
+        int newTokenShard = getShardOfNewToken(accessToken, consumerKey, newAccessTokenDO);
+        if (existingAccessTokenDO == null ||
+                shardManager.getShardIndexOfTokenId(existingAccessTokenDO.getTokenId()) == newTokenShard) {
+            return shardManager.executeOnShard(newTokenShard, () -> delegate.insertAccessToken(accessToken,
+                    consumerKey, newAccessTokenDO, existingAccessTokenDO, rawUserStoreDomain));
+        }
+        return delegate.insertAccessToken(shardManager, shardManager.getShardIndexOfTokenId(
+                existingAccessTokenDO.getTokenId()), newTokenShard, accessToken, consumerKey, newAccessTokenDO,
+                existingAccessTokenDO, rawUserStoreDomain);
+    }
+
+    @Override
+    public AccessTokenDO getLatestAccessToken(String consumerKey, AuthenticatedUser authzUser, String userStoreDomain,
+                                              String scope, boolean includeExpiredTokens)
+            throws IdentityOAuth2Exception {
+
+        return latest(shardManager.executeOnAllShards(() -> delegate.getLatestAccessToken(consumerKey, authzUser,
+                userStoreDomain, scope, includeExpiredTokens)));
+    }
+
+    @Override
+    public AccessTokenDO getLatestAccessToken(String consumerKey, AuthenticatedUser authzUser, String userStoreDomain,
+                                              String scope, String tokenBindingReference,
+                                              boolean includeExpiredTokens) throws IdentityOAuth2Exception {
+
+        return latest(shardManager.executeOnAllShards(() -> delegate.getLatestAccessToken(consumerKey, authzUser,
+                userStoreDomain, scope, tokenBindingReference, includeExpiredTokens)));
+    }
+
+    @Override
+    public Set<String> getTokenIdBySessionIdentifier(String bindingRef) throws IdentityOAuth2Exception {
+
+        return delegate.getTokenIdBySessionIdentifier(bindingRef);
+    }
+
+    @Override
+    public void storeTokenToSessionMapping(String sessionIdentifier, String tokenId, int tenantId)
+            throws IdentityOAuth2Exception {
+
+        delegate.storeTokenToSessionMapping(sessionIdentifier, tokenId, tenantId);
+    }
+
+    @Override
+    public Set<AccessTokenDO> getActiveAccessTokensBySessionIdentifier(String sessionIdentifier)
+            throws IdentityOAuth2Exception {
+
+        // Token to session mappings live in the identity datasource, hence they can not be joined with the token
+        // rows of the shards. Callers resolve the tokens one by one instead.
+        return null;
+    }
+
+    @Override
+    public Set<AccessTokenDO> getAccessTokens(String consumerKey, AuthenticatedUser userName, String userStoreDomain,
+                                              boolean includeExpired) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAccessTokens(consumerKey, userName,
+                userStoreDomain, includeExpired)));
+    }
+
+    @Override
+    public AccessTokenDO getAccessToken(String accessTokenIdentifier, boolean includeExpired)
+            throws IdentityOAuth2Exception {
+
+        return shardManager.executeOnShard(getShardOfToken(accessTokenIdentifier),
+                () -> delegate.getAccessToken(accessTokenIdentifier, includeExpired));
+    }
+
+    @Override
+    public Set<String> getAccessTokensByUser(AuthenticatedUser authenticatedUser) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAccessTokensByUser(authenticatedUser)));
+    }
+
+    @Override
+    public Set<AccessTokenDO> getAccessTokensByUserForOpenidScope(AuthenticatedUser authenticatedUser)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(
+                () -> delegate.getAccessTokensByUserForOpenidScope(authenticatedUser)));
+    }
+
+    @Override
+    public Set<String> getActiveTokensByConsumerKey(String consumerKey) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getActiveTokensByConsumerKey(consumerKey)));
+    }
+
+    @Override
+    public Set<AccessTokenDO> getActiveAcessTokenDataByConsumerKey(String consumerKey)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(
+                () -> delegate.getActiveAcessTokenDataByConsumerKey(consumerKey)));
+    }
+
+    @Override
+    public Set<AccessTokenDO> getAccessTokensByTenant(int tenantId) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAccessTokensByTenant(tenantId)));
+    }
+
+    @Override
+    public Set<AccessTokenDO> getAccessTokensOfUserStore(int tenantId, String userStoreDomain)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(
+                () -> delegate.getAccessTokensOfUserStore(tenantId, userStoreDomain)));
+    }
+
+    @Override
+    public void processAccessTokensByTenant(int tenantId, int batchSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        // Shards are streamed one after the other, as batch consumers are not expected to be thread safe.
+        for (int shardIndex = 0; shardIndex < shardManager.getShardCount(); shardIndex++) {
+            shardManager.executeOnShard(shardIndex, () -> {
+                delegate.processAccessTokensByTenant(tenantId, batchSize, consumer);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void processActiveAccessTokensByConsumerKey(String consumerKey, int batchSize,
+                                                       AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        for (int shardIndex = 0; shardIndex < shardManager.getShardCount(); shardIndex++) {
+            shardManager.executeOnShard(shardIndex, () -> {
+                delegate.processActiveAccessTokensByConsumerKey(consumerKey, batchSize, consumer);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void processAccessTokensOfUserStore(int tenantId, String userStoreDomain, int batchSize,
+                                               AccessTokenBatchConsumer consumer) throws IdentityOAuth2Exception {
+
+        for (int shardIndex = 0; shardIndex < shardManager.getShardCount(); shardIndex++) {
+            shardManager.executeOnShard(shardIndex, () -> {
+                delegate.processAccessTokensOfUserStore(tenantId, userStoreDomain, batchSize, consumer);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void revokeAccessTokens(String[] tokens) throws IdentityOAuth2Exception {
+
+        revokeAccessTokens(tokens, false);
+    }
+
+    @Override
+    public void revokeAccessTokensInBatch(String[] tokens) throws IdentityOAuth2Exception {
+
+        revokeAccessTokensInBatch(tokens, false);
+    }
+
+    @Override
+    public void revokeAccessTokensIndividually(String[] tokens) throws IdentityOAuth2Exception {
+
+        revokeAccessTokensIndividually(tokens, false);
+    }
+
+    @Override
+    public void revokeAccessTokens(String[] tokens, boolean isHashedToken) throws IdentityOAuth2Exception {
+
+        for (Map.Entry<Integer, String[]> shardTokens : groupByShard(tokens, isHashedToken).entrySet()) {
+            shardManager.executeOnShard(shardTokens.getKey(), () -> {
+                delegate.revokeAccessTokens(shardTokens.getValue(), isHashedToken);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void revokeAccessTokensInBatch(String[] tokens, boolean isHashedToken) throws IdentityOAuth2Exception {
+
+        for (Map.Entry<Integer, String[]> shardTokens : groupByShard(tokens, isHashedToken).entrySet()) {
+            shardManager.executeOnShard(shardTokens.getKey(), () -> {
+                if (isHashedToken) {
+                    delegate.revokeAccessTokensInBatch(shardTokens.getValue(), true);
+                } else {
+                    delegate.revokeAccessTokensInBatch(shardTokens.getValue());
+                }
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void revokeAccessTokensIndividually(String[] tokens, boolean isHashedToken)
+            throws IdentityOAuth2Exception {
+
+        for (Map.Entry<Integer, String[]> shardTokens : groupByShard(tokens, isHashedToken).entrySet()) {
+            shardManager.executeOnShard(shardTokens.getKey(), () -> {
+                if (isHashedToken) {
+                    delegate.revokeAccessTokensIndividually(shardTokens.getValue(), true);
+                } else {
+                    delegate.revokeAccessTokensIndividually(shardTokens.getValue());
+                }
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void revokeAccessToken(String tokenId, String userId) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndexOfTokenId(tokenId), () -> {
+            delegate.revokeAccessToken(tokenId, userId);
+            return null;
+        });
+    }
+
+    @Override
+    public void invalidateAndCreateNewAccessToken(String oldAccessTokenId, String tokenState, String consumerKey,
+                                                  String tokenStateId, AccessTokenDO accessTokenDO,
+                                                  String userStoreDomain) throws IdentityOAuth2Exception {
+
+        invalidateAndCreateNewAccessToken(oldAccessTokenId, tokenState, consumerKey, tokenStateId, accessTokenDO,
+                userStoreDomain, null);
+    }
+
+    @Override
+    public void invalidateAndCreateNewAccessToken(String oldAccessTokenId, String tokenState, String consumerKey,
+                                                  String tokenStateId, AccessTokenDO accessTokenDO,
+                                                  String userStoreDomain, String grantType)
+            throws IdentityOAuth2Exception {
+
+        int newTokenShard = getShardOfNewToken(accessTokenDO.getAccessToken(), consumerKey, accessTokenDO);
+        int oldTokenShard = shardManager.getShardIndexOfTokenId(oldAccessTokenId);
+        if (oldTokenShard == newTokenShard) {
+            shardManager.executeOnShard(newTokenShard, () -> {
+                delegate.invalidateAndCreateNewAccessToken(oldAccessTokenId, tokenState, consumerKey, tokenStateId,
+                        accessTokenDO, userStoreDomain, grantType);
+                return null;
+            });
+            return;
+        }
+        delegate.invalidateAndCreateNewAccessToken(shardManager, oldTokenShard, newTokenShard, oldAccessTokenId,
+                tokenState, consumerKey, tokenStateId, accessTokenDO, userStoreDomain, grantType);
+    }
+
+    @Override
+    public void updateUserStoreDomain(int tenantId, String currentUserStoreDomain, String newUserStoreDomain)
+            throws IdentityOAuth2Exception {
+
+        shardManager.executeOnAllShards(() -> {
+            delegate.updateUserStoreDomain(tenantId, currentUserStoreDomain, newUserStoreDomain);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                              int chunkSize, AccessTokenBatchConsumer consumer)
+            throws IdentityOAuth2Exception {
+
+        shardManager.executeOnAllShards(() -> {
+            delegate.updateUserStoreDomainInChunks(tenantId, currentUserStoreDomain, newUserStoreDomain, chunkSize,
+                    consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public String getTokenIdByAccessToken(String token) throws IdentityOAuth2Exception {
+
+        return shardManager.executeOnShard(getShardOfToken(token), () -> delegate.getTokenIdByAccessToken(token));
+    }
+
+    @Override
+    public List<AccessTokenDO> getLatestAccessTokens(String consumerKey, AuthenticatedUser authzUser,
+                                                     String userStoreDomain, String scope,
+                                                     boolean includeExpiredTokens, int limit)
+            throws IdentityOAuth2Exception {
+
+        return latest(shardManager.executeOnAllShards(() -> delegate.getLatestAccessTokens(consumerKey, authzUser,
+                userStoreDomain, scope, includeExpiredTokens, limit)), limit);
+    }
+
+    @Override
+    public List<AccessTokenDO> getLatestAccessTokens(String consumerKey, AuthenticatedUser authzUser,
+                                                     String userStoreDomain, String scope,
+                                                     String tokenBindingReference, boolean includeExpiredTokens,
+                                                     int limit) throws IdentityOAuth2Exception {
+
+        return latest(shardManager.executeOnAllShards(() -> delegate.getLatestAccessTokens(consumerKey, authzUser,
+                userStoreDomain, scope, tokenBindingReference, includeExpiredTokens, limit)), limit);
+    }
+
+    @Override
+    public void updateAccessTokenState(String tokenId, String tokenState) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndexOfTokenId(tokenId), () -> {
+            delegate.updateAccessTokenState(tokenId, tokenState);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateAccessTokenState(String tokenId, String tokenState, String grantType)
+            throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndexOfTokenId(tokenId), () -> {
+            delegate.updateAccessTokenState(tokenId, tokenState, grantType);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<AccessTokenDO> getActiveTokenSetWithTokenIdByConsumerKeyForOpenidScope(String consumerKey)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(
+                () -> delegate.getActiveTokenSetWithTokenIdByConsumerKeyForOpenidScope(consumerKey)));
+    }
+
+    @Override
+    public Set<AccessTokenDO> getAccessTokensByBindingRef(AuthenticatedUser user, String bindingRef)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAccessTokensByBindingRef(user, bindingRef)));
+    }
+
+    @Override
+    public Set<AccessTokenDO> getAccessTokensByBindingRef(String bindingRef) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAccessTokensByBindingRef(bindingRef)));
+    }
+
+    @Override
+    public String getAccessTokenByTokenId(String tokenId) throws IdentityOAuth2Exception {
+
+        return shardManager.executeOnShard(shardManager.getShardIndexOfTokenId(tokenId),
+                () -> delegate.getAccessTokenByTokenId(tokenId));
+    }
+
+    @Override
+    public void updateTokenIsConsented(String tokenId, boolean isConsentedGrant) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndexOfTokenId(tokenId), () -> {
+            delegate.updateTokenIsConsented(tokenId, isConsentedGrant);
+            return null;
+        });
+    }
+
+    private int getShardOfToken(String accessTokenIdentifier) throws IdentityOAuth2Exception {
+
+        return shardManager.getShardIndexOfAccessToken(accessTokenIdentifier);
+    }
+
+    /**
+     * Resolve the shard of a new token. The token id of the token is replaced by the one derived from its persisted
+     * identifier, so that the token can be located by either of them.
+     */
+    private int getShardOfNewToken(String accessToken, String consumerKey, AccessTokenDO accessTokenDO)
+            throws IdentityOAuth2Exception {
+
+        String tokenId = TokenShardManager.getTokenId(delegate.getPersistenceProcessor()
+                .getProcessedAccessTokenIdentifier(delegate.getPersistedAccessTokenIdentifier(accessToken,
+                        consumerKey)));
+        accessTokenDO.setTokenId(tokenId);
+        return shardManager.getShardIndexOfTokenId(tokenId);
+    }
+
+    private Map<Integer, String[]> groupByShard(String[] tokens, boolean isHashedToken)
+            throws IdentityOAuth2Exception {
+
+        Map<Integer, List<String>> tokensByShard = new LinkedHashMap<>();
+        for (String token : tokens) {
+            int shardIndex = isHashedToken ? shardManager.getShardIndexOfTokenId(TokenShardManager.getTokenId(token)) :
+                    getShardOfToken(token);
+            tokensByShard.computeIfAbsent(shardIndex, index -> new ArrayList<>()).add(token);
+        }
+        Map<Integer, String[]> groupedTokens = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<String>> shardTokens : tokensByShard.entrySet()) {
+            groupedTokens.put(shardTokens.getKey(), shardTokens.getValue().toArray(new String[0]));
+        }
+        return groupedTokens;
+    }
+
+    private static <T> Set<T> union(List<? extends Collection<T>> shardResults) {
+
+        Set<T> merged = new HashSet<>();
+        for (Collection<T> shardResult : shardResults) {
+            if (shardResult != null) {
+                merged.addAll(shardResult);
+            }
+        }
+        return merged;
+    }
+
+    private static AccessTokenDO latest(List<AccessTokenDO> shardResults) {
+
+        return shardResults.stream().filter(Objects::nonNull).min(LATEST_FIRST).orElse(null);
+    }
+
+    private static List<AccessTokenDO> latest(List<List<AccessTokenDO>> shardResults, int limit) {
+
+        List<AccessTokenDO> merged = new ArrayList<>();
+        for (List<AccessTokenDO> shardResult : shardResults) {
+            if (shardResult != null) {
+                merged.addAll(shardResult);
+            }
+        }
+        merged.sort(LATEST_FIRST);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+}
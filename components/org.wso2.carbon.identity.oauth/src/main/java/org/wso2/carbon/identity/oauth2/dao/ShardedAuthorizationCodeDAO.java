@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Authorization code DAO which spreads the authorization code rows across the token shards. A code is placed on the
+ * shard owning the hash of the code, hence validating and updating a code are served by a single shard, while
+ * lookups by client, user or tenant are executed on every shard and the results are merged.
+ */
+public class ShardedAuthorizationCodeDAO implements AuthorizationCodeDAO {
+
+    private final AuthorizationCodeDAO delegate;
+    private final TokenShardManager shardManager;
+
+    public ShardedAuthorizationCodeDAO(AuthorizationCodeDAO delegate, TokenShardManager shardManager) {
+
+        this.delegate = delegate;
+        this.shardManager = shardManager;
+    }
+
+    @Override
+    public void insertAuthorizationCode(String authzCode, String consumerKey, String callbackUrl,
+                                        AuthzCodeDO authzCodeDO) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndex(authzCode), () -> {
+            delegate.insertAuthorizationCode(authzCode, consumerKey, callbackUrl, authzCodeDO);
+            return null;
+        });
+    }
+
+    @Override
+    public void insertAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception {
+
+        for (Map.Entry<Integer, List<AuthzCodeDO>> shardCodes : groupByShard(authzCodeDOs).entrySet()) {
+            shardManager.executeOnShard(shardCodes.getKey(), () -> {
+                delegate.insertAuthorizationCodes(shardCodes.getValue());
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void deactivateAuthorizationCodes(List<AuthzCodeDO> authzCodeDOs) throws IdentityOAuth2Exception {
+
+        for (Map.Entry<Integer, List<AuthzCodeDO>> shardCodes : groupByShard(authzCodeDOs).entrySet()) {
+            shardManager.executeOnShard(shardCodes.getKey(), () -> {
+                delegate.deactivateAuthorizationCodes(shardCodes.getValue());
+                return null;
+            });
+        }
+    }
+
+    private Map<Integer, List<AuthzCodeDO>> groupByShard(List<AuthzCodeDO> authzCodeDOs) {
+
+        Map<Integer, List<AuthzCodeDO>> codesByShard = new LinkedHashMap<>();
+        for (AuthzCodeDO authzCodeDO : authzCodeDOs) {
+            codesByShard.computeIfAbsent(shardManager.getShardIndex(authzCodeDO.getAuthorizationCode()),
+                    index -> new ArrayList<>()).add(authzCodeDO);
+        }
+        return codesByShard;
+    }
+
+    @Override
+    public AuthorizationCodeValidationResult validateAuthorizationCode(String consumerKey, String authorizationKey)
+            throws IdentityOAuth2Exception {
+
+        return shardManager.executeOnShard(shardManager.getShardIndex(authorizationKey),
+                () -> delegate.validateAuthorizationCode(consumerKey, authorizationKey));
+    }
+
+    @Override
+    public void updateAuthorizationCodeState(String authzCode, String newState) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndex(authzCode), () -> {
+            delegate.updateAuthorizationCodeState(authzCode, newState);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean updateAuthorizationCodeState(String authzCode, String expectedState, String newState)
+            throws IdentityOAuth2Exception {
+
+        return shardManager.executeOnShard(shardManager.getShardIndex(authzCode),
+                () -> delegate.updateAuthorizationCodeState(authzCode, expectedState, newState));
+    }
+
+    @Override
+    public void deactivateAuthorizationCode(AuthzCodeDO authzCodeDO) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnShard(shardManager.getShardIndex(authzCodeDO.getAuthorizationCode()), () -> {
+            delegate.deactivateAuthorizationCode(authzCodeDO);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<String> getAuthorizationCodesByUser(AuthenticatedUser authenticatedUser)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAuthorizationCodesByUser(authenticatedUser)));
+    }
+
+    @Override
+    public List<AuthzCodeDO> getAuthorizationCodesByUserForOpenidScope(AuthenticatedUser authenticatedUser)
+            throws IdentityOAuth2Exception {
+
+        return concat(shardManager.executeOnAllShards(
+                () -> delegate.getAuthorizationCodesByUserForOpenidScope(authenticatedUser)));
+    }
+
+    @Override
+    public Set<String> getAuthorizationCodesByConsumerKey(String consumerKey) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(() -> delegate.getAuthorizationCodesByConsumerKey(consumerKey)));
+    }
+
+    @Override
+    public Set<String> getActiveAuthorizationCodesByConsumerKey(String consumerKey) throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(
+                () -> delegate.getActiveAuthorizationCodesByConsumerKey(consumerKey)));
+    }
+
+    @Override
+    public List<AuthzCodeDO> getLatestAuthorizationCodesByTenant(int tenantId) throws IdentityOAuth2Exception {
+
+        return concat(shardManager.executeOnAllShards(() -> delegate.getLatestAuthorizationCodesByTenant(tenantId)));
+    }
+
+    @Override
+    public List<AuthzCodeDO> getLatestAuthorizationCodesByUserStore(int tenantId, String userStorDomain)
+            throws IdentityOAuth2Exception {
+
+        return concat(shardManager.executeOnAllShards(
+                () -> delegate.getLatestAuthorizationCodesByUserStore(tenantId, userStorDomain)));
+    }
+
+    @Override
+    public void updateUserStoreDomain(int tenantId, String currentUserStoreDomain, String newUserStoreDomain)
+            throws IdentityOAuth2Exception {
+
+        shardManager.executeOnAllShards(() -> {
+            delegate.updateUserStoreDomain(tenantId, currentUserStoreDomain, newUserStoreDomain);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateUserStoreDomainInChunks(int tenantId, String currentUserStoreDomain, String newUserStoreDomain,
+                                              int chunkSize, IntConsumer consumer) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnAllShards(() -> {
+            delegate.updateUserStoreDomainInChunks(tenantId, currentUserStoreDomain, newUserStoreDomain, chunkSize,
+                    consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public String getCodeIdByAuthorizationCode(String authzCode) throws IdentityOAuth2Exception {
+
+        return shardManager.executeOnShard(shardManager.getShardIndex(authzCode),
+                () -> delegate.getCodeIdByAuthorizationCode(authzCode));
+    }
+
+    @Override
+    public Set<AuthzCodeDO> getAuthorizationCodeDOSetByConsumerKeyForOpenidScope(String consumerKey)
+            throws IdentityOAuth2Exception {
+
+        return union(shardManager.executeOnAllShards(
+                () -> delegate.getAuthorizationCodeDOSetByConsumerKeyForOpenidScope(consumerKey)));
+    }
+
+    private static <T> Set<T> union(List<? extends Collection<T>> shardResults) {
+
+        Set<T> merged = new HashSet<>();
+        for (Collection<T> shardResult : shardResults) {
+            if (shardResult != null) {
+                merged.addAll(shardResult);
+            }
+        }
+        return merged;
+    }
+
+    private static <T> List<T> concat(List<? extends Collection<T>> shardResults) {
+
+        List<T> merged = new ArrayList<>();
+        for (Collection<T> shardResult : shardResults) {
+            if (shardResult != null) {
+                merged.addAll(shardResult);
+            }
+        }
+        return merged;
+    }
+}
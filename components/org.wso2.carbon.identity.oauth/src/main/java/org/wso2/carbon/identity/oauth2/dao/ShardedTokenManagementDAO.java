@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.common.IdentityApplicationManagementException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.AuthorizedClientDO;
+import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Token management DAO for sharded token persistence. Refresh tokens are not used to place the token rows, hence
+ * refresh token validation and lookups, and the application wide token updates are executed on every shard. Consent
+ * and scope data are kept in the identity datasource.
+ */
+public class ShardedTokenManagementDAO implements TokenManagementDAO {
+
+    private final TokenManagementDAO delegate;
+    private final TokenShardManager shardManager;
+
+    public ShardedTokenManagementDAO(TokenManagementDAO delegate, TokenShardManager shardManager) {
+
+        this.delegate = delegate;
+        this.shardManager = shardManager;
+    }
+
+    @Override
+    public RefreshTokenValidationDataDO validateRefreshToken(String consumerKey, String refreshToken)
+            throws IdentityOAuth2Exception {
+
+        List<RefreshTokenValidationDataDO> shardResults = shardManager.executeOnAllShards(
+                () -> delegate.validateRefreshToken(consumerKey, refreshToken));
+        for (RefreshTokenValidationDataDO validationDataDO : shardResults) {
+            if (validationDataDO != null && validationDataDO.getTokenId() != null) {
+                return validationDataDO;
+            }
+        }
+        // No shard holds the refresh token, hence any of the empty results describes it.
+        return shardResults.get(0);
+    }
+
+    @Override
+    public AccessTokenDO getRefreshToken(String refreshToken) throws IdentityOAuth2Exception {
+
+        for (AccessTokenDO accessTokenDO : shardManager.executeOnAllShards(
+                () -> delegate.getRefreshToken(refreshToken))) {
+            if (accessTokenDO != null) {
+                return accessTokenDO;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Pair<String, Integer> findTenantAndScopeOfResource(String resourceUri) throws IdentityOAuth2Exception {
+
+        return delegate.findTenantAndScopeOfResource(resourceUri);
+    }
+
+    @Override
+    public void revokeOAuthConsentByApplicationAndUser(String username, String tenantDomain, String applicationName)
+            throws IdentityOAuth2Exception {
+
+        delegate.revokeOAuthConsentByApplicationAndUser(username, tenantDomain, applicationName);
+    }
+
+    @Override
+    public void revokeOAuthConsentsByApplication(String applicationName, String tenantDomain)
+            throws IdentityOAuth2Exception {
+
+        delegate.revokeOAuthConsentsByApplication(applicationName, tenantDomain);
+    }
+
+    @Override
+    public void updateApproveAlwaysForAppConsentByResourceOwner(String tenantAwareUserName, String tenantDomain,
+                                                                String applicationName, String state)
+            throws IdentityOAuth2Exception {
+
+        delegate.updateApproveAlwaysForAppConsentByResourceOwner(tenantAwareUserName, tenantDomain, applicationName,
+                state);
+    }
+
+    /**
+     * Update the application in the identity datasource and then on every shard, which keeps the copy of the
+     * application table used by the token queries in sync while revoking the tokens and codes held by the shard.
+     */
+    @Override
+    public void updateAppAndRevokeTokensAndAuthzCodes(String consumerKey, Properties properties,
+                                                      String[] authorizationCodes, String[] accessTokens)
+            throws IdentityOAuth2Exception, IdentityApplicationManagementException {
+
+        delegate.updateAppAndRevokeTokensAndAuthzCodes(consumerKey, properties, authorizationCodes, accessTokens);
+        shardManager.executeOnAllShards(() -> {
+            try {
+                delegate.updateAppAndRevokeTokensAndAuthzCodes(consumerKey, properties, authorizationCodes,
+                        accessTokens);
+            } catch (IdentityApplicationManagementException e) {
+                throw new IdentityOAuth2Exception("Error while revoking the tokens of the application: " +
+                        consumerKey, e);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void revokeSaaSTokensOfOtherTenants(String consumerKey, int tenantId) throws IdentityOAuth2Exception {
+
+        shardManager.executeOnAllShards(() -> {
+            delegate.revokeSaaSTokensOfOtherTenants(consumerKey, tenantId);
+            return null;
+        });
+    }
+
+    @Override
+    public void revokeSaaSTokensOfOtherTenants(String consumerKey, String userStoreDomain, int tenantId)
+            throws IdentityOAuth2Exception {
+
+        shardManager.executeOnAllShards(() -> {
+            delegate.revokeSaaSTokensOfOtherTenants(consumerKey, userStoreDomain, tenantId);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<String> getAllTimeAuthorizedClientIds(AuthenticatedUser authzUser) throws IdentityOAuth2Exception {
+
+        Set<String> clientIds = new HashSet<>();
+        for (Set<String> shardClientIds : shardManager.executeOnAllShards(
+                () -> delegate.getAllTimeAuthorizedClientIds(authzUser))) {
+            if (shardClientIds != null) {
+                clientIds.addAll(shardClientIds);
+            }
+        }
+        return clientIds;
+    }
+
+    @Override
+    public List<AuthorizedClientDO> getAuthorizedClients(AuthenticatedUser authzUser) throws IdentityOAuth2Exception {
+
+        Map<String, AuthorizedClientDO> authorizedClients = new LinkedHashMap<>();
+        for (List<AuthorizedClientDO> shardClients : shardManager.executeOnAllShards(
+                () -> delegate.getAuthorizedClients(authzUser))) {
+            for (AuthorizedClientDO client : shardClients) {
+                authorizedClients.merge(client.getConsumerKey(), client, (current, candidate) ->
+                        isIssuedAfter(candidate, current) ? candidate : current);
+            }
+        }
+        return new ArrayList<>(authorizedClients.values());
+    }
+
+    private static boolean isIssuedAfter(AuthorizedClientDO candidate, AuthorizedClientDO current) {
+
+        return candidate.getLatestTokenIssuedTime() != null && (current.getLatestTokenIssuedTime() == null ||
+                candidate.getLatestTokenIssuedTime().after(current.getLatestTokenIssuedTime()));
+    }
+}
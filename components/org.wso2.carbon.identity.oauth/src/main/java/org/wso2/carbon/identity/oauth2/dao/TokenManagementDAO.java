@@ -25,8 +25,11 @@ import org.wso2.carbon.identity.application.authentication.framework.model.Authe
 import org.wso2.carbon.identity.application.common.IdentityApplicationManagementException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.AuthorizedClientDO;
 import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
@@ -73,4 +76,22 @@ public interface TokenManagementDAO {
             IdentityOAuth2Exception;
 
     Set<String> getAllTimeAuthorizedClientIds(AuthenticatedUser authzUser) throws IdentityOAuth2Exception;
+
+    /**
+     * Get the applications for which the user holds an 'ACTIVE' or 'EXPIRED' access token, one entry per
+     * application, along with the issued time of the latest such token.
+     *
+     * @param authzUser Authorized user.
+     * @return Applications authorized by the user.
+     * @throws IdentityOAuth2Exception If an error occurs while retrieving the applications.
+     */
+    default List<AuthorizedClientDO> getAuthorizedClients(AuthenticatedUser authzUser)
+            throws IdentityOAuth2Exception {
+
+        List<AuthorizedClientDO> authorizedClients = new ArrayList<>();
+        for (String consumerKey : getAllTimeAuthorizedClientIds(authzUser)) {
+            authorizedClients.add(new AuthorizedClientDO(consumerKey, null, null));
+        }
+        return authorizedClients;
+    }
 }
@@ -37,6 +37,7 @@ import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.Oauth2ScopeConstants;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.model.AuthorizedClientDO;
 import org.wso2.carbon.identity.oauth2.model.RefreshTokenValidationDataDO;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
@@ -90,7 +91,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
         }
 
         RefreshTokenValidationDataDO validationDataDO = new RefreshTokenValidationDataDO();
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
         String sql;
@@ -216,7 +217,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
         }
 
         AccessTokenDO validationDataDO = null;
-        Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+        Connection connection = getDBConnection(false);
         PreparedStatement prepStmt = null;
         ResultSet resultSet = null;
 
@@ -311,7 +312,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
             log.debug("Retrieving tenant and scope for resource: " + resourceUri);
         }
         String sql;
-        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
+        try (Connection connection = getDBConnection(false)) {
 
             if (connection.getMetaData().getDriverName().contains(Oauth2ScopeConstants.DataBaseType.ORACLE)) {
                 sql = SQLQueries.RETRIEVE_SCOPE_WITH_TENANT_FOR_RESOURCE_ORACLE;
@@ -362,7 +363,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
             return;
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
 
         try {
@@ -408,7 +409,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
             return;
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
 
         try {
@@ -450,7 +451,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
         }
 
         int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
-        try (Connection connection = IdentityDatabaseUtil.getDBConnection(true)) {
+        try (Connection connection = getDBConnection(true)) {
             try (PreparedStatement ps = connection.prepareStatement(SQLQueries.DELETE_USER_RPS_OF_APPLICATION)) {
                 ps.setInt(1, tenantId);
                 ps.setString(2, applicationName);
@@ -490,7 +491,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
             return;
         }
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
 
         try {
@@ -537,7 +538,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
         PreparedStatement revokeActiveTokensStatement = null;
         PreparedStatement deactivateActiveCodesStatement = null;
         try {
-            connection = IdentityDatabaseUtil.getDBConnection();
+            connection = getDBConnection();
             if (OAuthConstants.ACTION_REVOKE.equals(action)) {
                 String newAppState;
                 if (properties.containsKey(OAuthConstants.OAUTH_APP_NEW_STATE)) {
@@ -622,6 +623,9 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
             deactivateActiveCodesStatement.executeUpdate();
 
             IdentityDatabaseUtil.commitTransaction(connection);
+            if (ArrayUtils.isNotEmpty(accessTokens)) {
+                onClientAccessTokensInvalidated(consumerKey);
+            }
 
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
@@ -678,7 +682,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
     public void revokeSaaSTokensOfOtherTenants(String consumerKey, String userStoreDomain, int tenantId) throws
             IdentityOAuth2Exception {
 
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         PreparedStatement ps = null;
         try {
             String sql = OAuth2Util.getTokenPartitionedSqlByUserStore(SQLQueries.REVOKE_SAAS_TOKENS_OF_OTHER_TENANTS,
@@ -716,7 +720,7 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
         }
 
         PreparedStatement ps = null;
-        Connection connection = IdentityDatabaseUtil.getDBConnection();
+        Connection connection = getDBConnection();
         ResultSet rs = null;
         Set<String> distinctConsumerKeys = new HashSet<>();
         boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(authzUser.toString());
@@ -763,4 +767,50 @@ public class TokenManagementDAOImpl extends AbstractOAuthDAO implements TokenMan
         return distinctConsumerKeys;
     }
 
+    @Override
+    public List<AuthorizedClientDO> getAuthorizedClients(AuthenticatedUser authzUser) throws IdentityOAuth2Exception {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving authorized clients along with their latest access token by user: " + authzUser);
+        }
+
+        boolean isUsernameCaseSensitive = IdentityUtil.isUserStoreInUsernameCaseSensitive(authzUser.toString());
+        String tenantAwareUsernameWithNoUserDomain = authzUser.getUserName();
+        String userDomain = OAuth2Util.getSanitizedUserStoreDomain(authzUser.getUserStoreDomain());
+        int tenantId = OAuth2Util.getTenantId(authzUser.getTenantDomain());
+
+        String sqlQuery;
+        if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+            sqlQuery = SQLQueries.GET_APPS_AUTHORIZED_BY_USER_WITH_LATEST_TOKEN_IDP_NAME;
+        } else {
+            sqlQuery = SQLQueries.GET_APPS_AUTHORIZED_BY_USER_WITH_LATEST_TOKEN;
+        }
+        sqlQuery = OAuth2Util.getTokenPartitionedSqlByUserStore(sqlQuery, authzUser.getUserStoreDomain());
+        if (!isUsernameCaseSensitive) {
+            sqlQuery = sqlQuery.replace(AUTHZ_USER, LOWER_AUTHZ_USER);
+            tenantAwareUsernameWithNoUserDomain = tenantAwareUsernameWithNoUserDomain.toLowerCase();
+        }
+
+        List<AuthorizedClientDO> authorizedClients = new ArrayList<>();
+        try (Connection connection = getDBConnection(false);
+             PreparedStatement ps = connection.prepareStatement(sqlQuery)) {
+            ps.setString(1, tenantAwareUsernameWithNoUserDomain);
+            ps.setInt(2, tenantId);
+            ps.setString(3, userDomain);
+            if (OAuth2ServiceComponentHolder.isIDPIdColumnEnabled()) {
+                ps.setString(4, OAuth2Util.getAuthenticatedIDP(authzUser));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    authorizedClients.add(new AuthorizedClientDO(
+                            getPersistenceProcessor().getPreprocessedClientId(rs.getString(1)), rs.getString(2),
+                            rs.getTimestamp(3, Calendar.getInstance(TimeZone.getTimeZone(UTC)))));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error occurred while retrieving the clients authorized by User ID : " +
+                    authzUser, e);
+        }
+        return authorizedClients;
+    }
 }
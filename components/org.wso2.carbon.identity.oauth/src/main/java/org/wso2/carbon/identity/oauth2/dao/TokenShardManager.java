@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.base.IdentityRuntimeException;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.tokenprocessor.TokenPersistenceProcessor;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * Routes the rows of the access token, access token scope and authorization code tables to one of the datasources
+ * configured under 'OAuth.TokenPersistence.Shards.DataSources'. A row is placed by a consistent hash of its own
+ * key, hence adding a shard only relocates the share of keys it takes over, and tokens are generated as is.
+ * <p>
+ * The key of an access token is its token id, which the token DAO derives from the persisted token identifier,
+ * that is the access token or its alias as stored. Lookups by token and by token id are therefore served by a
+ * single shard. Authorization codes are placed by the code.
+ * <p>
+ * The token DAOs obtain their connections through {@link AbstractOAuthDAO}, which uses the shard bound to the
+ * current thread by {@link #executeOnShard(int, ShardOperation)} and falls back to the identity datasource
+ * otherwise. Queries by client, user or tenant are executed on every shard in parallel.
+ * <p>
+ * The token queries join the application and identity provider tables, hence every shard keeps a copy of the rows
+ * referred by the tokens it holds. These are copied from the identity datasource on the first token of an
+ * application or identity provider stored in a shard, under the same ids, hence the shard copies of those tables
+ * should not generate their ids.
+ */
+public class TokenShardManager {
+
+    private static final Log log = LogFactory.getLog(TokenShardManager.class);
+
+    private static final String SHARD_DATASOURCES = "OAuth.TokenPersistence.Shards.DataSources";
+    private static final String VIRTUAL_NODES = "OAuth.TokenPersistence.Shards.VirtualNodes";
+    private static final String FAN_OUT_POOL_SIZE = "OAuth.TokenPersistence.Shards.FanOutPoolSize";
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final ThreadLocal<TokenShard> currentShard = new ThreadLocal<>();
+
+    private final List<String> shardNames;
+    private final List<TokenShard> shards;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final ExecutorService fanOutExecutor;
+    private final TokenPersistenceProcessor persistenceProcessor;
+
+    /**
+     * Operation executed against a token shard.
+     *
+     * @param <T> Result type of the operation.
+     */
+    @FunctionalInterface
+    public interface ShardOperation<T> {
+
+        T execute() throws IdentityOAuth2Exception;
+    }
+
+    TokenShardManager(Map<String, DataSource> shards, int virtualNodes, int fanOutPoolSize,
+                      TokenPersistenceProcessor persistenceProcessor) {
+
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one token shard should be provided.");
+        }
+        this.shardNames = Collections.unmodifiableList(new ArrayList<>(shards.keySet()));
+        List<TokenShard> tokenShards = new ArrayList<>(shards.size());
+        for (DataSource dataSource : shards.values()) {
+            tokenShards.add(new TokenShard(dataSource));
+        }
+        this.shards = Collections.unmodifiableList(tokenShards);
+        for (int shardIndex = 0; shardIndex < shardNames.size(); shardIndex++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash(shardNames.get(shardIndex) + "#" + node), shardIndex);
+            }
+        }
+        this.fanOutExecutor = Executors.newFixedThreadPool(Math.max(1, fanOutPoolSize));
+        this.persistenceProcessor = persistenceProcessor;
+    }
+
+    /**
+     * Check whether token sharding is configured.
+     *
+     * @return true if at least one token shard datasource is configured.
+     */
+    public static boolean isShardingEnabled() {
+
+        return StringUtils.isNotBlank(IdentityUtil.getProperty(SHARD_DATASOURCES));
+    }
+
+    /**
+     * Build a shard manager by looking up the configured shard datasources.
+     *
+     * @return Shard manager over the configured datasources.
+     * @throws IdentityOAuth2Exception If a configured datasource cannot be looked up.
+     */
+    public static TokenShardManager build() throws IdentityOAuth2Exception {
+
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        try {
+            InitialContext context = new InitialContext();
+            for (String dataSourceName : StringUtils.split(IdentityUtil.getProperty(SHARD_DATASOURCES), ",")) {
+                String name = dataSourceName.trim();
+                if (StringUtils.isNotEmpty(name) && !shards.containsKey(name)) {
+                    shards.put(name, (DataSource) context.lookup(name));
+                }
+            }
+        } catch (NamingException e) {
+            throw new IdentityOAuth2Exception("Error while looking up the token shard datasources.", e);
+        }
+        int virtualNodes = getIntProperty(VIRTUAL_NODES, DEFAULT_VIRTUAL_NODES);
+        int fanOutPoolSize = getIntProperty(FAN_OUT_POOL_SIZE, shards.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Token persistence is sharded across the datasources: " + shards.keySet());
+        }
+        return new TokenShardManager(shards, virtualNodes, fanOutPoolSize,
+                OAuthServerConfiguration.getInstance().getPersistenceProcessor());
+    }
+
+    /**
+     * Get the datasource bound to the current thread.
+     *
+     * @return Datasource of the shard the current thread operates on, or null outside a shard operation.
+     */
+    static DataSource getCurrentShard() {
+
+        TokenShard shard = currentShard.get();
+        return shard == null ? null : shard.dataSource;
+    }
+
+    /**
+     * Get a connection from the shard bound to the current thread.
+     *
+     * @param shouldApplyTransaction Whether the connection should be transactional.
+     * @return Connection to the current shard.
+     */
+    static Connection getCurrentShardConnection(boolean shouldApplyTransaction) {
+
+        Connection connection = null;
+        try {
+            connection = currentShard.get().dataSource.getConnection();
+            if (shouldApplyTransaction) {
+                connection.setAutoCommit(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+            return connection;
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.closeConnection(connection);
+            throw IdentityRuntimeException.error("Error while obtaining a connection to the token shard.", e);
+        }
+    }
+
+    public int getShardCount() {
+
+        return shards.size();
+    }
+
+    public String getShardName(int shardIndex) {
+
+        return shardNames.get(shardIndex);
+    }
+
+    /**
+     * Resolve the shard of the given routing key.
+     *
+     * @param key Token id, or authorization code.
+     * @return Index of the shard owning the key.
+     */
+    public int getShardIndex(String key) {
+
+        SortedMap<Long, Integer> tail = ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * Resolve the shard of an access token by its persisted identifier, which is the access token or its alias,
+     * processed the same way as the persisted value.
+     *
+     * @param accessTokenIdentifier Access token or its alias.
+     * @return Index of the shard owning the access token.
+     * @throws IdentityOAuth2Exception If the identifier cannot be processed.
+     */
+    public int getShardIndexOfAccessToken(String accessTokenIdentifier) throws IdentityOAuth2Exception {
+
+        return getShardIndexOfTokenId(getTokenId(persistenceProcessor.getProcessedAccessTokenIdentifier(
+                accessTokenIdentifier)));
+    }
+
+    /**
+     * Resolve the shard of an access token by its token id.
+     *
+     * @param tokenId Token id.
+     * @return Index of the shard owning the access token.
+     */
+    public int getShardIndexOfTokenId(String tokenId) {
+
+        return getShardIndex(tokenId);
+    }
+
+    /**
+     * Get the token id of an access token stored in a token shard, which is derived from the access token, or its
+     * alias, as persisted. The token id is a name based UUID, hence it does not disclose the token.
+     *
+     * @param processedAccessTokenIdentifier Access token or its alias, processed the same way as the persisted value.
+     * @return Token id of the access token.
+     */
+    public static String getTokenId(String processedAccessTokenIdentifier) {
+
+        return UUID.nameUUIDFromBytes(processedAccessTokenIdentifier.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Copy the application row with the given id from the identity datasource to the shard bound to the current
+     * thread, unless the shard already holds it.
+     *
+     * @param consumerAppId Id of the application.
+     * @throws IdentityOAuth2Exception If the row cannot be copied.
+     */
+    static void provisionConsumerApp(int consumerAppId) throws IdentityOAuth2Exception {
+
+        provisionRow(SQLQueries.GET_CONSUMER_APP_OF_TOKEN_SHARD, SQLQueries.INSERT_CONSUMER_APP_TO_TOKEN_SHARD,
+                "IDN_OAUTH_CONSUMER_APPS", consumerAppId);
+    }
+
+    /**
+     * Copy the identity provider row with the given id from the identity datasource to the shard bound to the
+     * current thread, unless the shard already holds it.
+     *
+     * @param idpId Id of the identity provider.
+     * @throws IdentityOAuth2Exception If the row cannot be copied.
+     */
+    static void provisionIdP(int idpId) throws IdentityOAuth2Exception {
+
+        provisionRow(SQLQueries.GET_IDP_OF_TOKEN_SHARD, SQLQueries.INSERT_IDP_TO_TOKEN_SHARD, "IDP", idpId);
+    }
+
+    private static void provisionRow(String selectQuery, String insertQuery, String table, int id)
+            throws IdentityOAuth2Exception {
+
+        TokenShard shard = currentShard.get();
+        String rowKey = table + ":" + id;
+        if (shard == null || shard.provisionedRows.contains(rowKey)) {
+            return;
+        }
+        Connection shardConnection = getCurrentShardConnection(true);
+        try {
+            if (!hasRow(shardConnection, selectQuery, id)) {
+                try (Connection connection = IdentityDatabaseUtil.getDBConnection(false);
+                     PreparedStatement selectStmt = connection.prepareStatement(selectQuery)) {
+                    selectStmt.setInt(1, id);
+                    try (ResultSet resultSet = selectStmt.executeQuery();
+                         PreparedStatement insertStmt = shardConnection.prepareStatement(insertQuery)) {
+                        if (!resultSet.next()) {
+                            throw new IdentityOAuth2Exception("No row with id: " + id + " found in: " + table);
+                        }
+                        for (int column = 1; column <= resultSet.getMetaData().getColumnCount(); column++) {
+                            insertStmt.setObject(column, resultSet.getObject(column));
+                        }
+                        insertStmt.executeUpdate();
+                    }
+                }
+                IdentityDatabaseUtil.commitTransaction(shardConnection);
+                if (log.isDebugEnabled()) {
+                    log.debug("Copied the row with id: " + id + " of: " + table + " to the token shard.");
+                }
+            }
+            shard.provisionedRows.add(rowKey);
+        } catch (SQLException e) {
+            IdentityDatabaseUtil.rollbackTransaction(shardConnection);
+            // Another node or thread may have copied the row in the meantime.
+            try {
+                if (hasRow(shardConnection, selectQuery, id)) {
+                    shard.provisionedRows.add(rowKey);
+                    return;
+                }
+            } catch (SQLException ignored) {
+                // The original error is reported below.
+            }
+            throw new IdentityOAuth2Exception("Error while copying the row with id: " + id + " of: " + table +
+                    " to the token shard.", e);
+        } finally {
+            IdentityDatabaseUtil.closeConnection(shardConnection);
+        }
+    }
+
+    private static boolean hasRow(Connection connection, String selectQuery, int id) throws SQLException {
+
+        try (PreparedStatement prepStmt = connection.prepareStatement(selectQuery)) {
+            prepStmt.setInt(1, id);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * Execute the operation with the given shard bound to the current thread.
+     *
+     * @param shardIndex Index of the shard.
+     * @param operation  Operation to be executed.
+     * @param <T>        Result type of the operation.
+     * @return Result of the operation.
+     * @throws IdentityOAuth2Exception If the operation fails.
+     */
+    public <T> T executeOnShard(int shardIndex, ShardOperation<T> operation) throws IdentityOAuth2Exception {
+
+        TokenShard previousShard = currentShard.get();
+        currentShard.set(shards.get(shardIndex));
+        try {
+            return operation.execute();
+        } finally {
+            if (previousShard == null) {
+                currentShard.remove();
+            } else {
+                currentShard.set(previousShard);
+            }
+        }
+    }
+
+    /**
+     * Execute the operation on every shard. The shards are queried in parallel, unless the caller is already
+     * operating on a shard, in which case they are queried one after the other to avoid waiting on the pool from
+     * within one of its own workers.
+     *
+     * @param operation Operation to be executed.
+     * @param <T>       Result type of the operation.
+     * @return Results of the operation, in the order of the shards.
+     * @throws IdentityOAuth2Exception If the operation fails on any of the shards.
+     */
+    public <T> List<T> executeOnAllShards(ShardOperation<T> operation) throws IdentityOAuth2Exception {
+
+        List<T> results = new ArrayList<>(shards.size());
+        if (shards.size() == 1 || currentShard.get() != null) {
+            for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+                results.add(executeOnShard(shardIndex, operation));
+            }
+            return results;
+        }
+
+        String tenantDomain = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantDomain();
+        int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+            final int index = shardIndex;
+            Callable<T> task = () -> {
+                PrivilegedCarbonContext.startTenantFlow();
+                try {
+                    PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain);
+                    PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
+                    return executeOnShard(index, operation);
+                } finally {
+                    PrivilegedCarbonContext.endTenantFlow();
+                }
+            };
+            futures.add(fanOutExecutor.submit(task));
+        }
+        for (int shardIndex = 0; shardIndex < futures.size(); shardIndex++) {
+            try {
+                results.add(futures.get(shardIndex).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdentityOAuth2Exception("Interrupted while querying the token shard: " +
+                        shardNames.get(shardIndex), e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IdentityOAuth2Exception) {
+                    throw (IdentityOAuth2Exception) e.getCause();
+                }
+                throw new IdentityOAuth2Exception("Error while querying the token shard: " +
+                        shardNames.get(shardIndex), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stop the fan out workers.
+     */
+    public void shutdown() {
+
+        fanOutExecutor.shutdown();
+    }
+
+    /**
+     * Datasource of a token shard, along with the application and identity provider rows already copied to it.
+     */
+    private static class TokenShard {
+
+        private final DataSource dataSource;
+        private final Set<String> provisionedRows = ConcurrentHashMap.newKeySet();
+
+        private TokenShard(DataSource dataSource) {
+
+            this.dataSource = dataSource;
+        }
+    }
+
+    private static long hash(String key) {
+
+        return ByteBuffer.wrap(DigestUtils.md5(key)).getLong();
+    }
+
+    private static int getIntProperty(String property, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + value + " configured for: " + property + ". Using the default value: "
+                        + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+}
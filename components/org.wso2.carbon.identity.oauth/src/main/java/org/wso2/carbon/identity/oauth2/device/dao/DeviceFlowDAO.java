@@ -172,6 +172,22 @@ public interface DeviceFlowDAO {
      */
     void setDeviceCodeExpired(String deviceCode, String status) throws IdentityOAuth2Exception;
 
+    /**
+     * Set device code as expired, only if the device code is still in the given status.
+     *
+     * @param deviceCode    Code that is used to identify the device.
+     * @param currentStatus Status the device code is expected to be in.
+     * @param status        Status of the device code.
+     * @return true if the status of the device code was changed by this call.
+     * @throws IdentityOAuth2Exception Error while setting device code as expired.
+     */
+    default boolean setDeviceCodeExpired(String deviceCode, String currentStatus, String status)
+            throws IdentityOAuth2Exception {
+
+        setDeviceCodeExpired(deviceCode, status);
+        return true;
+    }
+
     /**
      * Set callback uri of the service provider.
      *
@@ -30,6 +30,8 @@ import org.wso2.carbon.identity.oauth2.device.codegenerator.GenerateKeys;
 import org.wso2.carbon.identity.oauth2.device.constants.Constants;
 import org.wso2.carbon.identity.oauth2.device.model.DeviceFlowDO;
 import org.wso2.carbon.identity.oauth2.device.util.DeviceFlowUtil;
+import org.wso2.carbon.identity.oauth2.util.AuthorizationStatusNotifier;
+import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.sql.Connection;
@@ -38,7 +40,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -90,22 +92,13 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
         if (log.isDebugEnabled()) {
             log.debug("Getting client_id for user_code: " + userCode);
         }
-        String clientId = null;
         try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
-            try (PreparedStatement prepStmt = connection
-                    .prepareStatement(SQLQueries.DeviceFlowDAOSQLQueries.GET_CONSUMER_KEY_FOR_USER_CODE)) {
-                ResultSet resultSet;
-                prepStmt.setString(1, userCode);
-                resultSet = prepStmt.executeQuery();
-
-                while (resultSet.next()) {
-                    clientId = resultSet.getString(1);
-                }
-            }
+            return getLastValue(JdbcUtils.executeQuery(connection,
+                    SQLQueries.DeviceFlowDAOSQLQueries.GET_CONSUMER_KEY_FOR_USER_CODE,
+                    (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setString(1, userCode)));
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error when getting client id for user_code: " + userCode, e);
         }
-        return clientId;
     }
 
     @Override
@@ -290,21 +283,13 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
         if (log.isDebugEnabled()) {
             log.debug("Getting status for user_code: " + userCode);
         }
-        String status = null;
         try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
-            try (PreparedStatement prepStmt =
-                         connection.prepareStatement(SQLQueries.DeviceFlowDAOSQLQueries.GET_USER_CODE_STATUS)) {
-                ResultSet resultSet;
-                prepStmt.setString(1, userCode);
-                resultSet = prepStmt.executeQuery();
-                while (resultSet.next()) {
-                    status = resultSet.getString(1);
-                }
-            }
+            return getLastValue(JdbcUtils.executeQuery(connection,
+                    SQLQueries.DeviceFlowDAOSQLQueries.GET_USER_CODE_STATUS,
+                    (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setString(1, userCode)));
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error when getting status for user_code: " + userCode, e);
         }
-        return status;
     }
 
     @Override
@@ -314,12 +299,13 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
             log.debug("Setting last_poll_time: " + newPollTime + " for device_code: " + deviceCode);
         }
         try (Connection connection = IdentityDatabaseUtil.getDBConnection(true)) {
-            try (PreparedStatement prepStmt =
-                         connection.prepareStatement(SQLQueries.DeviceFlowDAOSQLQueries.SET_LAST_POLL_TIME)) {
-                prepStmt.setTimestamp(1, newPollTime, Calendar.getInstance(TimeZone
-                        .getTimeZone(Constants.UTC)));
-                prepStmt.setString(2, deviceCode);
-                prepStmt.execute();
+            try {
+                JdbcUtils.executeUpdate(connection, SQLQueries.DeviceFlowDAOSQLQueries.SET_LAST_POLL_TIME,
+                        prepStmt -> {
+                            prepStmt.setTimestamp(1, newPollTime, Calendar.getInstance(TimeZone
+                                    .getTimeZone(Constants.UTC)));
+                            prepStmt.setString(2, deviceCode);
+                        });
                 IdentityDatabaseUtil.commitTransaction(connection);
             } catch (SQLException e) {
                 IdentityDatabaseUtil.rollbackTransaction(connection);
@@ -353,6 +339,7 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
                 prepStmt.setString(7, userCode);
                 prepStmt.execute();
                 IdentityDatabaseUtil.commitTransaction(connection);
+                notifyAuthenticationStatusChange(userCode);
             } catch (SQLException e) {
                 IdentityDatabaseUtil.rollbackTransaction(connection);
                 throw new IdentityOAuth2Exception("Error when setting authenticated user for user_code: " +
@@ -364,6 +351,24 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
         }
     }
 
+    /**
+     * Release the long polling token requests parked for the device_code related to the given user_code.
+     *
+     * @param userCode Code that is used to correlate user and device.
+     * @throws IdentityOAuth2Exception Error while getting details for user code.
+     */
+    private void notifyAuthenticationStatusChange(String userCode) throws IdentityOAuth2Exception {
+
+        AuthorizationStatusNotifier notifier = AuthorizationStatusNotifier.getInstance();
+        if (!notifier.isLongPollingEnabled() || !notifier.hasWaitingRequests()) {
+            return;
+        }
+        DeviceFlowDO deviceFlowDO = getDetailsForUserCode(userCode);
+        if (deviceFlowDO != null) {
+            notifier.notifyStatusChange(deviceFlowDO.getDeviceCode());
+        }
+    }
+
     @Override
     public void setDeviceCodeExpired(String deviceCode, String status) throws IdentityOAuth2Exception {
 
@@ -388,6 +393,34 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
         }
     }
 
+    @Override
+    public boolean setDeviceCodeExpired(String deviceCode, String currentStatus, String status)
+            throws IdentityOAuth2Exception {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Setting status as " + status + " for device_code: " + deviceCode + " in status: " +
+                    currentStatus);
+        }
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(true)) {
+            try (PreparedStatement prepStmt = connection.prepareStatement(
+                    SQLQueries.DeviceFlowDAOSQLQueries.SET_DEVICE_CODE_EXPIRED_IF_STATUS)) {
+                prepStmt.setString(1, status);
+                prepStmt.setString(2, deviceCode);
+                prepStmt.setString(3, currentStatus);
+                int updatedRows = prepStmt.executeUpdate();
+                IdentityDatabaseUtil.commitTransaction(connection);
+                return updatedRows == 1;
+            } catch (SQLException e) {
+                IdentityDatabaseUtil.rollbackTransaction(connection);
+                throw new IdentityOAuth2Exception("Error when setting expired status for device_code: " +
+                        deviceCode, e);
+            }
+        } catch (SQLException e) {
+            throw new IdentityOAuth2Exception("Error when setting expired status for device_code: " +
+                    deviceCode, e);
+        }
+    }
+
     @Override
     public void setCallbackURI(String clientId, String callbackUri) throws IdentityOAuth2Exception {
 
@@ -418,17 +451,11 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
         if (log.isDebugEnabled()) {
             log.debug("Getting scopes for user_code: " + userCode);
         }
-        List<String> scopeSet = new ArrayList<>();
+        List<String> scopeSet;
         try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
-            try (PreparedStatement prepStmt =
-                         connection.prepareStatement(SQLQueries.DeviceFlowDAOSQLQueries.GET_SCOPES_FOR_USER_CODE)) {
-                ResultSet resultSet;
-                prepStmt.setString(1, userCode);
-                resultSet = prepStmt.executeQuery();
-                while (resultSet.next()) {
-                    scopeSet.add(resultSet.getString(1));
-                }
-            }
+            scopeSet = JdbcUtils.executeQuery(connection,
+                    SQLQueries.DeviceFlowDAOSQLQueries.GET_SCOPES_FOR_USER_CODE,
+                    (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setString(1, userCode));
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error when getting scopes for user_code: " + userCode, e);
         }
@@ -441,17 +468,11 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
         if (log.isDebugEnabled()) {
             log.debug("Getting scopes for device_code: " + deviceCode);
         }
-        List<String> scopeSet = new ArrayList<>();
+        List<String> scopeSet;
         try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
-            try (PreparedStatement prepStmt =
-                         connection.prepareStatement(SQLQueries.DeviceFlowDAOSQLQueries.GET_SCOPES_FOR_DEVICE_CODE)) {
-                ResultSet resultSet;
-                prepStmt.setString(1, deviceCode);
-                resultSet = prepStmt.executeQuery();
-                while (resultSet.next()) {
-                    scopeSet.add(resultSet.getString(1));
-                }
-            }
+            scopeSet = JdbcUtils.executeQuery(connection,
+                    SQLQueries.DeviceFlowDAOSQLQueries.GET_SCOPES_FOR_DEVICE_CODE,
+                    (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setString(1, deviceCode));
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error when getting scopes for device_code: " + deviceCode, e);
         }
@@ -479,8 +500,6 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
             String tempUserCode;
             long currentQuantifier;
             long timeExpired;
-            PreparedStatement prepStmt = null;
-            ResultSet rs = null;
             try {
                 if (isUserCodeAndQuantifierExists(userCode, quantifier, connection)) {
                     tempUserCode = GenerateKeys.getKey(keyLength);
@@ -488,26 +507,26 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
                     return storeIntoDeviceFlow(codeId, deviceCode, tempUserCode, currentQuantifier, consumerKey,
                             connection, ++retryAttempt, keyLength, pollingInterval);
                 }
-                prepStmt = connection.prepareStatement(
-                        SQLQueries.DeviceFlowDAOSQLQueries.STORE_DEVICE_CODE_WITH_QUANTIFIER);
                 Date date = new Date();
                 Timestamp timeCreated = new Timestamp(date.getTime());
                 timeExpired = timeCreated.getTime() + (DeviceFlowUtil.getConfiguredExpiryTime() * 1000);
                 Timestamp expiredTime = new Timestamp(timeExpired);
-                prepStmt.setString(1, codeId);
-                prepStmt.setString(2, deviceCode);
-                prepStmt.setString(3, userCode);
-                prepStmt.setTimestamp(4, timeCreated, Calendar.getInstance(TimeZone
-                        .getTimeZone(Constants.UTC)));
-                prepStmt.setTimestamp(5, timeCreated, Calendar.getInstance(TimeZone
-                        .getTimeZone(Constants.UTC)));
-                prepStmt.setTimestamp(6, expiredTime, Calendar.getInstance(TimeZone
-                        .getTimeZone(Constants.UTC)));
-                prepStmt.setLong(7, pollingInterval);
-                prepStmt.setString(8, Constants.PENDING);
-                prepStmt.setLong(9, quantifier);
-                prepStmt.setString(10, consumerKey);
-                prepStmt.execute();
+                JdbcUtils.executeUpdate(connection,
+                        SQLQueries.DeviceFlowDAOSQLQueries.STORE_DEVICE_CODE_WITH_QUANTIFIER, prepStmt -> {
+                            prepStmt.setString(1, codeId);
+                            prepStmt.setString(2, deviceCode);
+                            prepStmt.setString(3, userCode);
+                            prepStmt.setTimestamp(4, timeCreated, Calendar.getInstance(TimeZone
+                                    .getTimeZone(Constants.UTC)));
+                            prepStmt.setTimestamp(5, timeCreated, Calendar.getInstance(TimeZone
+                                    .getTimeZone(Constants.UTC)));
+                            prepStmt.setTimestamp(6, expiredTime, Calendar.getInstance(TimeZone
+                                    .getTimeZone(Constants.UTC)));
+                            prepStmt.setLong(7, pollingInterval);
+                            prepStmt.setString(8, Constants.PENDING);
+                            prepStmt.setLong(9, quantifier);
+                            prepStmt.setString(10, consumerKey);
+                        });
                 IdentityDatabaseUtil.commitTransaction(connection);
             } catch (SQLException e) {
                 IdentityDatabaseUtil.rollbackTransaction(connection);
@@ -522,11 +541,6 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
                 }
                 throw new IdentityOAuth2Exception("Error when storing the device flow parameters for consumer_key: "
                         + consumerKey, e);
-            } finally {
-                if (prepStmt != null && rs != null) {
-                    prepStmt.close();
-                    rs.close();
-                }
             }
             return userCode;
         }
@@ -544,16 +558,13 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
             throws IdentityOAuth2Exception {
 
         try {
-            ResultSet resultSet;
-            PreparedStatement prepStmt = connection.prepareStatement(
-                    SQLQueries.DeviceFlowDAOSQLQueries.CHECK_UNIQUE_USER_CODE_AND_QUANTIFIER);
-            prepStmt.setString(1, userCode);
-            prepStmt.setLong(2, quantifier);
-            resultSet = prepStmt.executeQuery();
-            if (resultSet.next()) {
-                return resultSet.getBoolean(1);
-            }
-            return false;
+            Boolean exists = JdbcUtils.fetchSingleRecord(connection,
+                    SQLQueries.DeviceFlowDAOSQLQueries.CHECK_UNIQUE_USER_CODE_AND_QUANTIFIER,
+                    (resultSet, rowNumber) -> resultSet.getBoolean(1), prepStmt -> {
+                        prepStmt.setString(1, userCode);
+                        prepStmt.setLong(2, quantifier);
+                    });
+            return Boolean.TRUE.equals(exists);
         } catch (SQLException e) {
             throw new IdentityOAuth2Exception("Error when checking the existence for user_code: " +
                     DigestUtils.sha256Hex(userCode) + " and quantifier: " + quantifier, e);
@@ -572,14 +583,12 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
             IdentityOAuth2Exception {
 
         String[] scopeSet = OAuth2Util.buildScopeArray(scope);
-        try (PreparedStatement prepStmt =
-                     connection.prepareStatement(SQLQueries.DeviceFlowDAOSQLQueries.STORE_DEVICE_FLOW_SCOPES)) {
-            for (String scopes : scopeSet) {
-                prepStmt.setString(1, codeId);
-                prepStmt.setString(2, scopes);
-                prepStmt.execute();
-            }
-
+        try {
+            JdbcUtils.executeBatch(connection, SQLQueries.DeviceFlowDAOSQLQueries.STORE_DEVICE_FLOW_SCOPES,
+                    Arrays.asList(scopeSet), (prepStmt, scopes) -> {
+                        prepStmt.setString(1, codeId);
+                        prepStmt.setString(2, scopes);
+                    });
         } catch (SQLException e) {
             IdentityDatabaseUtil.rollbackTransaction(connection);
             throw new IdentityOAuth2Exception("Error when storing scopes for device_code: " +
@@ -615,4 +624,9 @@ public class DeviceFlowDAOImpl implements DeviceFlowDAO {
                     DigestUtils.sha256Hex(userCode), e);
         }
     }
+
+    private static String getLastValue(List<String> values) {
+
+        return values.isEmpty() ? null : values.get(values.size() - 1);
+    }
 }
@@ -75,6 +75,9 @@ public class SQLQueries {
         public static final String SET_DEVICE_CODE_EXPIRED = "UPDATE IDN_OAUTH2_DEVICE_FLOW SET STATUS = ? WHERE " +
                 "DEVICE_CODE = ?";
 
+        public static final String SET_DEVICE_CODE_EXPIRED_IF_STATUS = "UPDATE IDN_OAUTH2_DEVICE_FLOW SET STATUS = ? " +
+                "WHERE DEVICE_CODE = ? AND STATUS = ?";
+
         public static final String SET_CALLBACK_URL = "UPDATE IDN_OAUTH_CONSUMER_APPS SET CALLBACK_URL = ? WHERE " +
                 "CONSUMER_KEY = ?";
 
@@ -31,6 +31,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
 import org.wso2.carbon.identity.oauth2.model.RequestParameter;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AbstractAuthorizationGrantHandler;
+import org.wso2.carbon.identity.oauth2.util.AuthorizationStatusNotifier;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.sql.Timestamp;
@@ -78,13 +79,15 @@ public class DeviceFlowGrant extends AbstractAuthorizationGrantHandler {
                     DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN);
         } else if (Constants.AUTHORIZED.equals(deviceStatus)) {
             authStatus = true;
-            DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setDeviceCodeExpired(deviceCode,
-                    Constants.EXPIRED);
+            expireAuthorizedDeviceCode(deviceCode);
             setPropertiesForTokenGeneration(oAuthTokenReqMessageContext, deviceFlowDO);
         } else if (Constants.USED.equals(deviceStatus) || Constants.PENDING.equals(deviceStatus)) {
             Timestamp newPollTime = new Timestamp(date.getTime());
             if (isValidPollTime(newPollTime, deviceFlowDO)) {
                 DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setLastPollTime(deviceCode, newPollTime);
+                if (isAuthorizedAfterLongPolling(oAuthTokenReqMessageContext, deviceFlowDO, clientId)) {
+                    return true;
+                }
                 throw new IdentityOAuth2Exception(DeviceErrorCodes.SubDeviceErrorCodes.AUTHORIZATION_PENDING,
                         DeviceErrorCodes.SubDeviceErrorCodes.AUTHORIZATION_PENDING);
             } else {
@@ -96,6 +99,67 @@ public class DeviceFlowGrant extends AbstractAuthorizationGrantHandler {
         return authStatus;
     }
 
+    /**
+     * Park the token request until the device_code gets authorized or the long polling timeout passes, and prepare
+     * the token generation if the device_code got authorized in the meantime.
+     *
+     * @param tokReqMsgCtx Token request message context.
+     * @param deviceFlowDO Device flow DO set read at the beginning of the request.
+     * @param clientId     Consumer key of the application.
+     * @return true if the device_code got authorized while the request was parked.
+     * @throws IdentityOAuth2Exception Error while reading or updating the device flow details, or if the device_code
+     *                                 expired while the request was parked.
+     */
+    private boolean isAuthorizedAfterLongPolling(OAuthTokenReqMessageContext tokReqMsgCtx, DeviceFlowDO deviceFlowDO,
+                                                 String clientId) throws IdentityOAuth2Exception {
+
+        AuthorizationStatusNotifier notifier = AuthorizationStatusNotifier.getInstance();
+        if (!notifier.isLongPollingEnabled()) {
+            return false;
+        }
+        String deviceCode = deviceFlowDO.getDeviceCode();
+        boolean notified = notifier.awaitStatusChange(deviceCode, deviceFlowDO.getExpiryTime().getTime());
+        if (log.isDebugEnabled()) {
+            log.debug("Long polling token request for device_code: " + deviceCode + " released by " +
+                    (notified ? "a status change." : "timeout."));
+        }
+        DeviceFlowDO updatedDeviceFlowDO = DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO()
+                .getAuthenticationDetails(deviceCode, clientId);
+        if (Constants.EXPIRED.equals(updatedDeviceFlowDO.getStatus()) ||
+                isExpiredDeviceCode(deviceFlowDO, new Date())) {
+            throw new IdentityOAuth2Exception(DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN,
+                    DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN);
+        }
+        if (!Constants.AUTHORIZED.equals(updatedDeviceFlowDO.getStatus())) {
+            return false;
+        }
+        updatedDeviceFlowDO.setScope(deviceFlowDO.getScope());
+        updatedDeviceFlowDO.setDeviceCode(deviceCode);
+        expireAuthorizedDeviceCode(deviceCode);
+        setPropertiesForTokenGeneration(tokReqMsgCtx, updatedDeviceFlowDO);
+        return true;
+    }
+
+    /**
+     * Expire an authorized device_code, so that a token is issued for it only once. Concurrent token requests of the
+     * same device_code can all read it as authorized, hence only the request which moves it out of the authorized
+     * status issues the token.
+     *
+     * @param deviceCode Code that is used to identify the device.
+     * @throws IdentityOAuth2Exception If the device_code was already used by another token request.
+     */
+    private void expireAuthorizedDeviceCode(String deviceCode) throws IdentityOAuth2Exception {
+
+        if (!DeviceFlowPersistenceFactory.getInstance().getDeviceFlowDAO().setDeviceCodeExpired(deviceCode,
+                Constants.AUTHORIZED, Constants.EXPIRED)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token is already issued for device_code: " + deviceCode);
+            }
+            throw new IdentityOAuth2Exception(DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN,
+                    DeviceErrorCodes.SubDeviceErrorCodes.EXPIRED_TOKEN);
+        }
+    }
+
     /**
      * To set the properties of the token generation.
      *
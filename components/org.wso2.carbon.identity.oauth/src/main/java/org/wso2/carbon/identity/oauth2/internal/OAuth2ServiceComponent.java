@@ -37,12 +37,14 @@ import org.wso2.carbon.identity.application.authentication.framework.util.Framew
 import org.wso2.carbon.identity.application.mgt.ApplicationManagementService;
 import org.wso2.carbon.identity.application.mgt.listener.ApplicationMgtListener;
 import org.wso2.carbon.identity.core.util.IdentityCoreInitializedEvent;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.token.bindings.TokenBinderInfo;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.OAuth2ScopeService;
 import org.wso2.carbon.identity.oauth2.OAuth2Service;
 import org.wso2.carbon.identity.oauth2.OAuth2TokenValidationService;
@@ -52,7 +54,10 @@ import org.wso2.carbon.identity.oauth2.client.authentication.BasicAuthClientAuth
 import org.wso2.carbon.identity.oauth2.client.authentication.OAuthClientAuthenticator;
 import org.wso2.carbon.identity.oauth2.client.authentication.OAuthClientAuthnService;
 import org.wso2.carbon.identity.oauth2.client.authentication.PublicClientAuthenticator;
+import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeDAO;
+import org.wso2.carbon.identity.oauth2.dao.CacheBackedAuthorizationCodeDAO;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dao.PartitionedSqlCatalog;
 import org.wso2.carbon.identity.oauth2.device.api.DeviceAuthService;
 import org.wso2.carbon.identity.oauth2.device.api.DeviceAuthServiceImpl;
 import org.wso2.carbon.identity.oauth2.keyidprovider.DefaultKeyIDProviderImpl;
@@ -64,6 +69,9 @@ import org.wso2.carbon.identity.oauth2.token.bindings.impl.CookieBasedTokenBinde
 import org.wso2.carbon.identity.oauth2.token.bindings.impl.DeviceFlowTokenBinder;
 import org.wso2.carbon.identity.oauth2.token.bindings.impl.SSOSessionBasedTokenBinder;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.oauth2.util.OIDCScopeBootstrapJob;
+import org.wso2.carbon.identity.oauth2.util.UserStoreDomainRenameJob;
+import org.wso2.carbon.identity.oauth2.validators.TokenValidationHandler;
 import org.wso2.carbon.identity.oauth2.validators.scope.ScopeValidator;
 import org.wso2.carbon.identity.openidconnect.OpenIDConnectClaimFilter;
 import org.wso2.carbon.identity.openidconnect.OpenIDConnectClaimFilterImpl;
@@ -112,6 +120,7 @@ public class OAuth2ServiceComponent {
     private static final String DESCRIPTION = "description";
     private static final String PERMISSION = "Permission";
     private static final String CLAIM = "Claim";
+    private static final String EAGER_HANDLER_INITIALIZATION = "OAuth.EagerHandlerInitialization.Enable";
     private BundleContext bundleContext;
 
     @Reference(
@@ -310,6 +319,48 @@ public class OAuth2ServiceComponent {
                         "setting consentedColumnAvailable to false.");
             }
         }
+
+        if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
+            try {
+                PartitionedSqlCatalog.reload();
+            } catch (IdentityOAuth2Exception e) {
+                log.error("Error while building the partitioned SQL catalog for access token partitioning.", e);
+            }
+        }
+
+        if (isEagerHandlerInitializationEnabled()) {
+            OAuthServerConfiguration.getInstance().initializeHandlers();
+            TokenValidationHandler.getInstance();
+        }
+
+        if (OIDCScopeBootstrapJob.isEnabled()) {
+            OIDCScopeBootstrapJob.startForAllTenants();
+        }
+        UserStoreDomainRenameJob.resumePendingJobs();
+    }
+
+    protected void deactivate(ComponentContext context) {
+
+        UserStoreDomainRenameJob.shutdown();
+        AuthorizationCodeDAO authorizationCodeDAO = OAuthTokenPersistenceFactory.getInstance()
+                .getAuthorizationCodeDAO();
+        if (authorizationCodeDAO instanceof CacheBackedAuthorizationCodeDAO) {
+            // Write the authorization codes which are only held in the code store.
+            ((CacheBackedAuthorizationCodeDAO) authorizationCodeDAO).shutdown();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Identity OAuth2 bundle is deactivated");
+        }
+    }
+
+    /**
+     * Eager handler initialization is disabled by default. Handlers which are shipped in other bundles may not be
+     * resolvable yet when this bundle is activated, and a handler which fails to load is left out of the handler
+     * tables for the lifetime of the server.
+     */
+    private boolean isEagerHandlerInitializationEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(EAGER_HANDLER_INITIALIZATION));
     }
 
     /**
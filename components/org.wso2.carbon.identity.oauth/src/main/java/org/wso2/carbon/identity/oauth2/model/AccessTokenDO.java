@@ -70,6 +70,8 @@ public class AccessTokenDO extends CacheEntry {
 
     private TokenBinding tokenBinding;
 
+    private String sessionContextIdentifier;
+
     public AccessTokenDO(String consumerKey, AuthenticatedUser authzUser, String[] scope, Timestamp issuedTime,
                          Timestamp refreshTokenIssuedTime, long validityPeriodInMillis,
                          long refreshTokenValidityPeriodInMillis, String tokenType) {
@@ -302,4 +304,21 @@ public class AccessTokenDO extends CacheEntry {
 
         this.tokenBinding = tokenBinding;
     }
+
+    /**
+     * Session context identifier of the SSO session the token is issued for. When set on a new token, the token to
+     * session mapping is persisted in the same transaction as the token. This is an insertion time attribute, hence
+     * it is neither loaded from the database nor copied by {@link #clone(AccessTokenDO)}.
+     *
+     * @return Session context identifier, or null if the mapping is not persisted along with the token.
+     */
+    public String getSessionContextIdentifier() {
+
+        return sessionContextIdentifier;
+    }
+
+    public void setSessionContextIdentifier(String sessionContextIdentifier) {
+
+        this.sessionContextIdentifier = sessionContextIdentifier;
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.model;
+
+import java.sql.Timestamp;
+
+/**
+ * An application authorized by a user, along with the time its latest 'ACTIVE' or 'EXPIRED' access token for the
+ * user was issued.
+ */
+public class AuthorizedClientDO {
+
+    private final String consumerKey;
+    private final String applicationName;
+    private final Timestamp latestTokenIssuedTime;
+
+    public AuthorizedClientDO(String consumerKey, String applicationName, Timestamp latestTokenIssuedTime) {
+
+        this.consumerKey = consumerKey;
+        this.applicationName = applicationName;
+        this.latestTokenIssuedTime = latestTokenIssuedTime;
+    }
+
+    public String getConsumerKey() {
+
+        return consumerKey;
+    }
+
+    public String getApplicationName() {
+
+        return applicationName;
+    }
+
+    public Timestamp getLatestTokenIssuedTime() {
+
+        return latestTokenIssuedTime;
+    }
+}
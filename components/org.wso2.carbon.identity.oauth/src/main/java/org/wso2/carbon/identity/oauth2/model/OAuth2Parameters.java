@@ -18,8 +18,12 @@
 
 package org.wso2.carbon.identity.oauth2.model;
 
+import org.wso2.carbon.identity.openidconnect.model.RequestedClaim;
+
 import java.io.Serializable;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -53,6 +57,7 @@ public class OAuth2Parameters implements Serializable {
     private String sessionDataKey;
     private String loginTenantDomain;
     private boolean isRequestObjectFlow;
+    private Map<String, List<RequestedClaim>> requestedClaims;
 
     public String getSessionDataKey() {
         return sessionDataKey;
@@ -298,4 +303,26 @@ public class OAuth2Parameters implements Serializable {
 
         this.isRequestObjectFlow = isRequestObjectFlow;
     }
+
+    /**
+     * Get the claims requested through the request object or the claims parameter, grouped by the claim requestor
+     * (id_token or userinfo). Only set when the requested claims are kept in the cache instead of the request object
+     * tables.
+     *
+     * @return Requested claims or null if they are not carried with this request.
+     */
+    public Map<String, List<RequestedClaim>> getRequestedClaims() {
+
+        return requestedClaims;
+    }
+
+    /**
+     * Set the claims requested through the request object or the claims parameter.
+     *
+     * @param requestedClaims Requested claims grouped by the claim requestor.
+     */
+    public void setRequestedClaims(Map<String, List<RequestedClaim>> requestedClaims) {
+
+        this.requestedClaims = requestedClaims;
+    }
 }
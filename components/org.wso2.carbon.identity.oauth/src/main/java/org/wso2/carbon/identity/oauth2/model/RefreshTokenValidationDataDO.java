@@ -20,12 +20,15 @@ package org.wso2.carbon.identity.oauth2.model;
 
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 
+import java.io.Serializable;
 import java.sql.Timestamp;
 
 /**
  * Results holder for refresh token validation query.
  */
-public class RefreshTokenValidationDataDO {
+public class RefreshTokenValidationDataDO implements Serializable {
+
+    private static final long serialVersionUID = -3428610752958135437L;
 
     private String tokenId;
 
@@ -48,8 +48,11 @@ import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth.event.AsyncOAuthEventDispatcher;
 import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
+import org.wso2.carbon.identity.oauth.event.OAuthLifecycleEvent;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth.util.RequestScopedUserClaimCache;
 import org.wso2.carbon.identity.oauth2.IDTokenValidationFailureException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.ResponseHeader;
@@ -70,6 +73,7 @@ import org.wso2.carbon.utils.CarbonUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -141,6 +145,18 @@ public class AccessTokenIssuer {
     public OAuth2AccessTokenRespDTO issue(OAuth2AccessTokenReqDTO tokenReqDTO)
             throws IdentityException {
 
+        // User claims retrieved while issuing the token, including the ID token, are shared by the downstream
+        // handlers.
+        RequestScopedUserClaimCache.startScope();
+        try {
+            return issueToken(tokenReqDTO);
+        } finally {
+            RequestScopedUserClaimCache.endScope();
+        }
+    }
+
+    private OAuth2AccessTokenRespDTO issueToken(OAuth2AccessTokenReqDTO tokenReqDTO) throws IdentityException {
+
         String grantType = tokenReqDTO.getGrantType();
         OAuth2AccessTokenRespDTO tokenRespDTO = null;
 
@@ -652,8 +668,13 @@ public class AccessTokenIssuer {
                 .getRealm(authenticatedUser.getTenantDomain(), authenticatedUser.toFullQualifiedUsername())
                 .getUserStoreManager();
 
-        return userStoreManager
-                .getUserClaimValueWithID(authenticatedUser.getUserId(), subjectClaimUri, null);
+        String userId = authenticatedUser.getUserId();
+        // Reuse the claim values if they are retrieved again while issuing the token, e.g. for the ID token.
+        return RequestScopedUserClaimCache.getClaimValues(authenticatedUser.toFullQualifiedUsername(),
+                authenticatedUser.getTenantDomain(), RequestScopedUserClaimCache.LOCAL_CLAIM_DIALECT,
+                Collections.singletonList(subjectClaimUri),
+                claimURIs -> userStoreManager.getUserClaimValuesWithID(userId, claimURIs, null))
+                .get(subjectClaimUri);
     }
 
     private String getSubjectClaimUriInLocalDialect(ServiceProvider serviceProvider) {
@@ -828,6 +849,24 @@ public class AccessTokenIssuer {
                 }
             }
         }
+        publishAsyncPostTokenEvent(tokenReqDTO, tokenRespDTO, tokReqMsgCtx, isRefresh);
+    }
+
+    private void publishAsyncPostTokenEvent(OAuth2AccessTokenReqDTO tokenReqDTO,
+                                            OAuth2AccessTokenRespDTO tokenRespDTO,
+                                            OAuthTokenReqMessageContext tokReqMsgCtx, boolean isRefresh) {
+
+        AsyncOAuthEventDispatcher asyncEventDispatcher = AsyncOAuthEventDispatcher.getInstance();
+        if (!asyncEventDispatcher.hasInterceptors() || tokenRespDTO == null || tokenRespDTO.isError()) {
+            return;
+        }
+        OAuthLifecycleEvent.Type eventType = isRefresh ? OAuthLifecycleEvent.Type.POST_TOKEN_RENEWAL :
+                OAuthLifecycleEvent.Type.POST_TOKEN_ISSUE;
+        AuthenticatedUser authorizedUser = tokReqMsgCtx != null ? tokReqMsgCtx.getAuthorizedUser() : null;
+        String[] scopes = tokReqMsgCtx != null ? tokReqMsgCtx.getScope() : null;
+        asyncEventDispatcher.publish(new OAuthLifecycleEvent(eventType, tokenReqDTO.getClientId(),
+                tokenReqDTO.getTenantDomain(), tokenReqDTO.getGrantType(), authorizedUser, tokenRespDTO.getTokenId(),
+                scopes, null));
     }
 
     /**
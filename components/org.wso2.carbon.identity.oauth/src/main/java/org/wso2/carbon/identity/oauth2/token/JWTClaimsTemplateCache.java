@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node local cache of JWT access token claim templates for application tokens.
+ * <p>
+ * Tokens issued to the same client for the same set of scopes through the client credentials grant only differ in
+ * the jti, iat, nbf and exp claims. A template holding the remaining claims is cached against the client, tenant,
+ * subject and scope set, together with the outcome of the custom claim lookup, so that the claims callback is not
+ * invoked again for applications without requested claims. Entries are evicted when the application is updated and
+ * are bounded by a configurable time to live.
+ */
+public class JWTClaimsTemplateCache {
+
+    private static final Log log = LogFactory.getLog(JWTClaimsTemplateCache.class);
+
+    private static final String ENABLE = "OAuth.JWTAccessToken.ClaimsTemplateCache.Enable";
+    private static final String MAX_ENTRIES = "OAuth.JWTAccessToken.ClaimsTemplateCache.MaxEntries";
+    private static final String TIME_TO_LIVE = "OAuth.JWTAccessToken.ClaimsTemplateCache.TimeToLive";
+    private static final int DEFAULT_MAX_ENTRIES = 5000;
+    // Time to live of an entry in milliseconds. Bounds the time issuer or claim configuration changes take to apply
+    // on the other nodes of a cluster.
+    private static final long DEFAULT_TIME_TO_LIVE = 300000;
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private static final JWTClaimsTemplateCache instance = new JWTClaimsTemplateCache();
+
+    private final Map<String, ClaimsTemplate> templates = new ConcurrentHashMap<>();
+    private volatile Boolean enabled;
+    private volatile int maxEntries = -1;
+    private volatile long timeToLive = -1;
+
+    JWTClaimsTemplateCache() {
+
+    }
+
+    public static JWTClaimsTemplateCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the claims template cached for the given client, tenant, subject and scopes.
+     *
+     * @param clientId     Client id of the application.
+     * @param tenantDomain Tenant domain of the application.
+     * @param subject      Subject of the token.
+     * @param scopes       Scopes of the token.
+     * @return Cached template, or null if there is no valid template.
+     */
+    ClaimsTemplate getTemplate(String clientId, String tenantDomain, String subject, String[] scopes) {
+
+        if (!isEnabled()) {
+            return null;
+        }
+        String key = getKey(clientId, tenantDomain, subject, scopes);
+        ClaimsTemplate template = templates.get(key);
+        if (template == null) {
+            return null;
+        }
+        if (template.expiry < System.currentTimeMillis()) {
+            templates.remove(key, template);
+            return null;
+        }
+        return template;
+    }
+
+    /**
+     * Cache the claims template of the given client, tenant, subject and scopes.
+     *
+     * @param clientId     Client id of the application.
+     * @param tenantDomain Tenant domain of the application.
+     * @param subject      Subject of the token.
+     * @param scopes       Scopes of the token.
+     * @param claimsSet    Claims common to all tokens of the key, or null if the tokens need custom claims.
+     * @return Cached template.
+     */
+    ClaimsTemplate addTemplate(String clientId, String tenantDomain, String subject, String[] scopes,
+                               JWTClaimsSet claimsSet) {
+
+        long now = System.currentTimeMillis();
+        ClaimsTemplate template = new ClaimsTemplate(clientId, claimsSet, now + getTimeToLive());
+        if (!isEnabled()) {
+            return template;
+        }
+        if (templates.size() >= getMaxEntries()) {
+            pruneExpiredEntries(now);
+            if (templates.size() >= getMaxEntries()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("JWT claims template cache is full. Not caching the template of client: " + clientId);
+                }
+                return template;
+            }
+        }
+        templates.put(getKey(clientId, tenantDomain, subject, scopes), template);
+        return template;
+    }
+
+    /**
+     * Evict the templates of an application.
+     *
+     * @param clientId Client id of the application.
+     */
+    public void invalidate(String clientId) {
+
+        if (StringUtils.isEmpty(clientId) || templates.isEmpty()) {
+            return;
+        }
+        templates.values().removeIf(template -> clientId.equals(template.clientId));
+    }
+
+    /**
+     * Remove all the cached templates.
+     */
+    public void clear() {
+
+        templates.clear();
+    }
+
+    int size() {
+
+        return templates.size();
+    }
+
+    boolean isEnabled() {
+
+        if (enabled == null) {
+            enabled = !Boolean.FALSE.toString().equalsIgnoreCase(StringUtils.trim(IdentityUtil.getProperty(ENABLE)));
+        }
+        return enabled;
+    }
+
+    private String getKey(String clientId, String tenantDomain, String subject, String[] scopes) {
+
+        String[] sortedScopes = ArrayUtils.isEmpty(scopes) ? new String[0] : scopes.clone();
+        Arrays.sort(sortedScopes);
+        return clientId + KEY_SEPARATOR + tenantDomain + KEY_SEPARATOR + subject + KEY_SEPARATOR +
+                StringUtils.join(sortedScopes, " ");
+    }
+
+    private void pruneExpiredEntries(long now) {
+
+        Iterator<Map.Entry<String, ClaimsTemplate>> iterator = templates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiry < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private int getMaxEntries() {
+
+        if (maxEntries < 0) {
+            maxEntries = (int) getLongProperty(MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+        }
+        return maxEntries;
+    }
+
+    private long getTimeToLive() {
+
+        if (timeToLive < 0) {
+            timeToLive = getLongProperty(TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE);
+        }
+        return timeToLive;
+    }
+
+    private static long getLongProperty(String property, long defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                long parsedValue = Long.parseLong(value.trim());
+                if (parsedValue >= 0) {
+                    return parsedValue;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the default value.
+            }
+            log.warn("Invalid value: " + value + " configured for: " + property + ". Using the default value: " +
+                    defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Claims shared by the tokens issued for a client and scope set.
+     */
+    static class ClaimsTemplate {
+
+        private final String clientId;
+        private final JWTClaimsSet claimsSet;
+        private final long expiry;
+
+        ClaimsTemplate(String clientId, JWTClaimsSet claimsSet, long expiry) {
+
+            this.clientId = clientId;
+            this.claimsSet = claimsSet;
+            this.expiry = expiry;
+        }
+
+        /**
+         * Get the template claims.
+         *
+         * @return Template claims, or null if the tokens need claims from the claims callback.
+         */
+        JWTClaimsSet getClaimsSet() {
+
+            return claimsSet;
+        }
+    }
+}
@@ -36,6 +36,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.oltu.oauth2.common.exception.OAuthSystemException;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.common.model.ClaimConfig;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
@@ -48,6 +50,8 @@ import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AuthorizationGrantHandler;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.openidconnect.CustomClaimsCallbackHandler;
+import org.wso2.carbon.identity.openidconnect.DefaultOIDCClaimsCallbackHandler;
+import org.wso2.carbon.identity.openidconnect.SAMLAssertionClaimsCallback;
 
 import java.security.Key;
 import java.security.interfaces.RSAPrivateKey;
@@ -59,6 +63,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.wso2.carbon.identity.oauth2.util.OAuth2Util.getPrivateKey;
 
@@ -92,6 +97,9 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
     private static final Log log = LogFactory.getLog(JWTTokenIssuer.class);
     private static final String INBOUND_AUTH2_TYPE = "oauth2";
     private Algorithm signatureAlgorithm = null;
+    // JWS headers of the RSA signed tokens against the signing tenant id. The certificates of the tenants are
+    // cached for the lifetime of the server, hence the key id and the thumbprint are computed only once.
+    private final Map<Integer, JWSHeader> rsaJWSHeaders = new ConcurrentHashMap<>();
 
     public JWTTokenIssuer() throws IdentityOAuth2Exception {
 
@@ -174,6 +182,10 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
         if (request.getScope() != null && Arrays.asList((request.getScope())).contains(AUDIENCE)) {
             jwtClaimsSetBuilder.audience(Arrays.asList(request.getScope()));
         }
+        if (Boolean.TRUE.equals(request.getProperty(OAuth2Util.STATELESS_ACCESS_TOKEN))) {
+            // Set after the claims template is applied, as templates are shared by stateful and stateless tokens.
+            jwtClaimsSetBuilder.claim(OAuth2Util.STATELESS_ACCESS_TOKEN_CLAIM, true);
+        }
         jwtClaimsSet = jwtClaimsSetBuilder.build();
         if (JWSAlgorithm.NONE.getName().equals(signatureAlgorithm.getName())) {
             return new PlainJWT(jwtClaimsSet).serialize();
@@ -332,6 +344,18 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
 
             Key privateKey = getPrivateKey(tenantDomain, tenantId);
             JWSSigner signer = OAuth2Util.createJWSSigner((RSAPrivateKey) privateKey);
+            SignedJWT signedJWT = new SignedJWT(getRSAJWSHeader(tenantDomain, tenantId), jwtClaimsSet);
+            signedJWT.sign(signer);
+            return signedJWT.serialize();
+        } catch (JOSEException e) {
+            throw new IdentityOAuth2Exception("Error occurred while signing JWT", e);
+        }
+    }
+
+    private JWSHeader getRSAJWSHeader(String tenantDomain, int tenantId) throws IdentityOAuth2Exception {
+
+        JWSHeader header = rsaJWSHeaders.get(tenantId);
+        if (header == null) {
             JWSHeader.Builder headerBuilder = new JWSHeader.Builder((JWSAlgorithm) signatureAlgorithm);
             String certThumbPrint = OAuth2Util.getThumbPrint(tenantDomain, tenantId);
             headerBuilder.keyID(OAuth2Util.getKID(OAuth2Util.getCertificate(tenantDomain, tenantId),
@@ -339,12 +363,10 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
             // Set the required "typ" header "at+jwt" for access tokens issued by the issuer
             headerBuilder.type(new JOSEObjectType(DEFAULT_TYP_HEADER_VALUE));
             headerBuilder.x509CertThumbprint(new Base64URL(certThumbPrint));
-            SignedJWT signedJWT = new SignedJWT(headerBuilder.build(), jwtClaimsSet);
-            signedJWT.sign(signer);
-            return signedJWT.serialize();
-        } catch (JOSEException e) {
-            throw new IdentityOAuth2Exception("Error occurred while signing JWT", e);
+            header = headerBuilder.build();
+            rsaJWSHeaders.put(tenantId, header);
         }
+        return header;
     }
 
     // TODO: Implement JWT signing with HMAC SHA (SHA-256, SHA-384, SHA-512).
@@ -438,12 +460,22 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
             spTenantDomain = tokenReqMessageContext.getOauth2AccessTokenReqDTO().getTenantDomain();
         }
 
-        String issuer = OAuth2Util.getIdTokenIssuer(spTenantDomain);
-        long curTimeInMillis = Calendar.getInstance().getTimeInMillis();
-
         AuthenticatedUser authenticatedUser = getAuthenticatedUser(authAuthzReqMessageContext, tokenReqMessageContext);
         String sub = getSubjectClaim(consumerKey, spTenantDomain, authenticatedUser);
 
+        JWTClaimsTemplateCache.ClaimsTemplate claimsTemplate = null;
+        if (isClaimsTemplateApplicable(tokenReqMessageContext)) {
+            claimsTemplate = JWTClaimsTemplateCache.getInstance().getTemplate(consumerKey, spTenantDomain, sub,
+                    tokenReqMessageContext.getScope());
+            if (claimsTemplate != null && claimsTemplate.getClaimsSet() != null) {
+                return createJWTClaimSetFromTemplate(claimsTemplate.getClaimsSet(), consumerKey, oAuthAppDO,
+                        accessTokenLifeTimeInMillis);
+            }
+        }
+
+        String issuer = OAuth2Util.getIdTokenIssuer(spTenantDomain);
+        long curTimeInMillis = Calendar.getInstance().getTimeInMillis();
+
         // Set the default claims.
         JWTClaimsSet.Builder jwtClaimsSetBuilder = new JWTClaimsSet.Builder();
         jwtClaimsSetBuilder.issuer(issuer);
@@ -471,6 +503,20 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
         jwtClaimsSetBuilder.audience(audience);
         JWTClaimsSet jwtClaimsSet;
 
+        if (claimsTemplate == null && isClaimsTemplateApplicable(tokenReqMessageContext)) {
+            // The template is built only after a cache miss. Tokens of applications with requested claims are
+            // cached without a template so that the service provider is not looked up for each token.
+            JWTClaimsSet templateClaimsSet = null;
+            if (!hasRequestedClaims(consumerKey, spTenantDomain)) {
+                templateClaimsSet = jwtClaimsSetBuilder.build();
+            }
+            JWTClaimsTemplateCache.getInstance().addTemplate(consumerKey, spTenantDomain, sub,
+                    tokenReqMessageContext.getScope(), templateClaimsSet);
+            if (templateClaimsSet != null) {
+                return templateClaimsSet;
+            }
+        }
+
         // Handle custom claims
         if (authAuthzReqMessageContext != null) {
             jwtClaimsSet = handleCustomClaims(jwtClaimsSetBuilder, authAuthzReqMessageContext);
@@ -487,6 +533,80 @@ public class JWTTokenIssuer extends OauthTokenIssuerImpl {
         return jwtClaimsSet;
     }
 
+    /**
+     * Create the claim set of an application token from the cached template, by setting the claims unique to each
+     * token.
+     *
+     * @param templateClaimsSet           Template claims of the client and scope set.
+     * @param consumerKey                 Consumer key of the application.
+     * @param oAuthAppDO                  Application of the token.
+     * @param accessTokenLifeTimeInMillis Lifetime of the token.
+     * @return JWT claim set.
+     * @throws IdentityOAuth2Exception
+     */
+    private JWTClaimsSet createJWTClaimSetFromTemplate(JWTClaimsSet templateClaimsSet, String consumerKey,
+                                                       OAuthAppDO oAuthAppDO, long accessTokenLifeTimeInMillis)
+            throws IdentityOAuth2Exception {
+
+        long curTimeInMillis = Calendar.getInstance().getTimeInMillis();
+        JWTClaimsSet.Builder jwtClaimsSetBuilder = new JWTClaimsSet.Builder(templateClaimsSet);
+        jwtClaimsSetBuilder.issueTime(new Date(curTimeInMillis));
+        jwtClaimsSetBuilder.jwtID(UUID.randomUUID().toString());
+        jwtClaimsSetBuilder.notBeforeTime(new Date(curTimeInMillis));
+        jwtClaimsSetBuilder.expirationTime(calculateAccessTokenExpiryTime(accessTokenLifeTimeInMillis,
+                curTimeInMillis));
+        // The audiences are read from the application each time, as they are not part of the template key.
+        jwtClaimsSetBuilder.audience(OAuth2Util.getOIDCAudience(consumerKey, oAuthAppDO));
+        return jwtClaimsSetBuilder.build();
+    }
+
+    /**
+     * Check whether the claims of the token can be taken from a template. Only the application tokens issued with
+     * the default claims callback handler, without token binding or confirmation claims are templated.
+     *
+     * @param tokenReqMessageContext Token request message context.
+     * @return True if a claims template can be used for the token.
+     */
+    private boolean isClaimsTemplateApplicable(OAuthTokenReqMessageContext tokenReqMessageContext) {
+
+        if (tokenReqMessageContext == null || !JWTTokenIssuer.class.equals(getClass()) ||
+                !JWTClaimsTemplateCache.getInstance().isEnabled()) {
+            return false;
+        }
+        if (!OAuthConstants.GrantTypes.CLIENT_CREDENTIALS.equals(
+                tokenReqMessageContext.getOauth2AccessTokenReqDTO().getGrantType()) ||
+                !OAuthConstants.UserType.APPLICATION.equals(
+                        tokenReqMessageContext.getProperty(OAuthConstants.UserType.USER_TYPE))) {
+            return false;
+        }
+        if (tokenReqMessageContext.getTokenBinding() != null || tokenReqMessageContext.getProperty(CNF) != null) {
+            return false;
+        }
+        Class<?> claimsCallbackHandlerClass =
+                OAuthServerConfiguration.getInstance().getOpenIDConnectCustomClaimsCallbackHandler().getClass();
+        return DefaultOIDCClaimsCallbackHandler.class.equals(claimsCallbackHandlerClass) ||
+                SAMLAssertionClaimsCallback.class.equals(claimsCallbackHandlerClass);
+    }
+
+    /**
+     * Check whether the service provider of the client has requested claims, which the default claims callback
+     * handler adds to the token.
+     *
+     * @param clientId     Client id of the application.
+     * @param tenantDomain Tenant domain of the application.
+     * @return True if the service provider has requested claims or could not be found.
+     * @throws IdentityOAuth2Exception
+     */
+    private boolean hasRequestedClaims(String clientId, String tenantDomain) throws IdentityOAuth2Exception {
+
+        ServiceProvider serviceProvider = OAuth2Util.getServiceProvider(clientId, tenantDomain);
+        if (serviceProvider == null) {
+            return true;
+        }
+        ClaimConfig claimConfig = serviceProvider.getClaimConfig();
+        return claimConfig != null && ArrayUtils.isNotEmpty(claimConfig.getClaimMappings());
+    }
+
     /**
      * Calculates access token expiry time.
      *
@@ -39,6 +39,7 @@ import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.OAuth2Constants;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenDAO;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
@@ -47,6 +48,7 @@ import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -304,9 +306,14 @@ public class TokenBindingExpiryEventHandler extends AbstractEventHandler {
      */
     private void revokeTokensMappedToSession(String sessionId) throws IdentityOAuth2Exception {
 
-        Set<String> tokenIds =
-                OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
-                        .getTokenIdBySessionIdentifier(sessionId);
+        AccessTokenDAO accessTokenDAO = OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO();
+        Set<AccessTokenDO> sessionTokens = accessTokenDAO.getActiveAccessTokensBySessionIdentifier(sessionId);
+        if (sessionTokens != null) {
+            revokeSessionTokens(sessionId, sessionTokens);
+            return;
+        }
+
+        Set<String> tokenIds = accessTokenDAO.getTokenIdBySessionIdentifier(sessionId);
 
         if (tokenIds.isEmpty()) {
             if (log.isDebugEnabled()) {
@@ -348,6 +355,60 @@ public class TokenBindingExpiryEventHandler extends AbstractEventHandler {
         }
     }
 
+    /**
+     * Revoke the active access tokens of a session. The caches of all tokens are cleared and the system revocation
+     * listeners are invoked around a single set based revocation of the tokens, instead of one revocation per token.
+     *
+     * @param sessionId     Session context identifier.
+     * @param sessionTokens Active access tokens mapped to the session.
+     * @throws IdentityOAuth2Exception If the revocation fails.
+     */
+    private void revokeSessionTokens(String sessionId, Set<AccessTokenDO> sessionTokens)
+            throws IdentityOAuth2Exception {
+
+        if (sessionTokens.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Could not find active tokens mapped for the sessionId reference: %s",
+                        sessionId));
+            }
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Revoking %d tokens mapped for the sessionId reference: %s",
+                    sessionTokens.size(), sessionId));
+        }
+
+        // Tokens of a session mostly share the user and the application, hence the user and scope level cache
+        // entries are cleared once per distinct combination.
+        Set<String> clearedCacheKeys = new HashSet<>();
+        for (AccessTokenDO accessTokenDO : sessionTokens) {
+            String consumerKey = accessTokenDO.getConsumerKey();
+            AuthenticatedUser authzUser = accessTokenDO.getAuthzUser();
+            String scope = OAuth2Util.buildScopeString(accessTokenDO.getScope());
+            String tokenBindingRef = OAuthConstants.TokenBindings.NONE;
+            if (accessTokenDO.getTokenBinding() != null) {
+                tokenBindingRef = accessTokenDO.getTokenBinding().getBindingReference();
+            }
+            String userCacheKey = consumerKey + ":" + authzUser;
+            String scopeCacheKey = userCacheKey + ":" + scope;
+            if (clearedCacheKeys.add(scopeCacheKey + ":" + tokenBindingRef)) {
+                OAuthUtil.clearOAuthCache(consumerKey, authzUser, scope, tokenBindingRef);
+            }
+            if (clearedCacheKeys.add(scopeCacheKey)) {
+                OAuthUtil.clearOAuthCache(consumerKey, authzUser, scope);
+            }
+            if (clearedCacheKeys.add(userCacheKey)) {
+                OAuthUtil.clearOAuthCache(consumerKey, authzUser);
+            }
+            OAuthUtil.clearOAuthCache(accessTokenDO);
+            OAuthUtil.invokePreRevocationBySystemListeners(accessTokenDO, Collections.emptyMap());
+        }
+        OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().revokeAccessTokensByTokenIds(sessionTokens);
+        for (AccessTokenDO accessTokenDO : sessionTokens) {
+            OAuthUtil.invokePostRevocationBySystemListeners(accessTokenDO, Collections.emptyMap());
+        }
+    }
+
     private void revokeTokens(String consumerKey, AccessTokenDO accessTokenDO, String tokenBindingReference)
             throws IdentityOAuth2Exception {
 
@@ -43,6 +43,7 @@ import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientExcepti
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth.listener.OAuthTokenSessionMappingEventHandler;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.OAuth2Service;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
@@ -50,6 +51,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.token.JWTTokenIssuer;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
 import org.wso2.carbon.identity.oauth2.token.OauthTokenIssuer;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
@@ -145,6 +147,10 @@ public abstract class AbstractAuthorizationGrantHandler implements Authorization
                     "Error while retrieving oauth issuer for the app with clientId: " + consumerKey, e);
         }
 
+        if (isStatelessAccessToken(tokReqMsgCtx, oauthTokenIssuer)) {
+            return generateStatelessAccessToken(tokReqMsgCtx, scope, consumerKey, oauthTokenIssuer);
+        }
+
         synchronized ((consumerKey + ":" + authorizedUserId + ":" + scope + ":" + tokenBindingReference).intern()) {
             AccessTokenDO existingTokenBean = null;
             if (isHashDisabled) {
@@ -430,6 +436,37 @@ public abstract class AbstractAuthorizationGrantHandler implements Authorization
         return createResponseWithTokenBean(newTokenBean, validityPeriodInMillis, scope);
     }
 
+    /**
+     * Stateless JWT access tokens are neither persisted nor reused. Only application tokens without refresh tokens
+     * can be stateless, since the token itself carries all the details needed to validate it.
+     */
+    private boolean isStatelessAccessToken(OAuthTokenReqMessageContext tokReqMsgCtx, OauthTokenIssuer oauthTokenIssuer)
+            throws IdentityOAuth2Exception {
+
+        return oauthTokenIssuer instanceof JWTTokenIssuer && !isOfTypeApplicationUser() && !issueRefreshToken()
+                && OAuth2Util.isStatelessJWTAccessTokenGrant(tokReqMsgCtx.getOauth2AccessTokenReqDTO().getGrantType());
+    }
+
+    private OAuth2AccessTokenRespDTO generateStatelessAccessToken(OAuthTokenReqMessageContext tokReqMsgCtx,
+                                                                  String scope, String consumerKey,
+                                                                  OauthTokenIssuer oauthTokenIssuer)
+            throws IdentityOAuth2Exception {
+
+        OAuthAppDO oAuthAppBean = getoAuthApp(consumerKey);
+        Timestamp timestamp = new Timestamp(new Date().getTime());
+        long validityPeriodInMillis = getConfiguredExpiryTimeForApplication(tokReqMsgCtx, consumerKey, oAuthAppBean);
+        // Marks the token as stateless, so that validation can accept it without a database record.
+        tokReqMsgCtx.addProperty(OAuth2Util.STATELESS_ACCESS_TOKEN, true);
+        AccessTokenDO newTokenBean = createNewTokenBean(tokReqMsgCtx, oAuthAppBean, null, timestamp,
+                validityPeriodInMillis, oauthTokenIssuer);
+        setDetailsToMessageContext(tokReqMsgCtx, validityPeriodInMillis, newTokenBean, timestamp);
+        if (log.isDebugEnabled()) {
+            log.debug("Issued a stateless access token for client Id: " + consumerKey + " and scope: " + scope +
+                    ". The token is not persisted.");
+        }
+        return createResponseWithTokenBean(newTokenBean, validityPeriodInMillis, scope);
+    }
+
     private boolean isExistingTokenValid(AccessTokenDO existingTokenBean, long expireTime) {
 
         if (TOKEN_STATE_ACTIVE.equals(existingTokenBean.getTokenState()) && expireTime != 0) {
@@ -521,8 +558,16 @@ public abstract class AbstractAuthorizationGrantHandler implements Authorization
                     ", bindingType: " + getTokenBindingType(tokReqMsgCtx) +
                     " and bindingRef: " + getTokenBindingReference(tokReqMsgCtx));
         }
+        boolean sessionMappingWithToken = false;
+        if (OAuthConstants.GrantTypes.AUTHORIZATION_CODE.equals(tokenReq.getGrantType())) {
+            sessionMappingWithToken = OAuthTokenSessionMappingEventHandler.bindSessionContextIdentifierByCode(
+                    newTokenBean, tokenReq.getAuthorizationCode());
+        }
         storeAccessToken(tokenReq, getUserStoreDomain(tokReqMsgCtx.getAuthorizedUser()), newTokenBean, newAccessToken,
                 existingTokenBean);
+        if (sessionMappingWithToken) {
+            tokReqMsgCtx.addProperty(OAuthTokenSessionMappingEventHandler.TOKEN_SESSION_MAPPING_PERSISTED, true);
+        }
     }
 
     private void updateCacheIfEnabled(AccessTokenDO newTokenBean, String scope, OauthTokenIssuer oauthTokenIssuer)
@@ -38,6 +38,7 @@ import org.wso2.carbon.identity.oauth.event.OAuthEventInterceptor;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeValidationResult;
+import org.wso2.carbon.identity.oauth2.dao.CacheBackedAuthorizationCodeDAO;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
@@ -247,8 +248,9 @@ public class AuthorizationCodeGrantHandler extends AbstractAuthorizationGrantHan
     private AuthzCodeDO getPersistedAuthzCode(OAuth2AccessTokenReqDTO tokenReqDTO) throws IdentityOAuth2Exception {
 
         AuthzCodeDO authzCodeDO;
-        // If cache is enabled, check in the cache first.
-        if (cacheEnabled) {
+        // If cache is enabled, check in the cache first. The cache backed authorization code store is consulted
+        // through the DAO instead, so that the code is redeemed atomically.
+        if (cacheEnabled && !CacheBackedAuthorizationCodeDAO.isEnabled()) {
             OAuthCacheKey cacheKey = new OAuthCacheKey(OAuth2Util.buildCacheKeyStringForAuthzCode(
                     tokenReqDTO.getClientId(), tokenReqDTO.getAuthorizationCode()));
             authzCodeDO = (AuthzCodeDO) OAuthCache.getInstance().getValueFromCache(cacheKey);
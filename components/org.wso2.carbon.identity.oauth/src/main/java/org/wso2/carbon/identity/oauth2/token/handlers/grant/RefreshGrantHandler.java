@@ -32,11 +32,14 @@ import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheEntry;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
 import org.wso2.carbon.identity.oauth.cache.OAuthCache;
 import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
+import org.wso2.carbon.identity.oauth.cache.RefreshTokenValidationCache;
+import org.wso2.carbon.identity.oauth.cache.RefreshTokenValidationCacheEntry;
 import org.wso2.carbon.identity.oauth.common.OAuth2ErrorCodes;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.ResponseHeader;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
@@ -81,11 +84,25 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
 
         super.validateGrant(tokReqMsgCtx);
         OAuth2AccessTokenReqDTO tokenReq = tokReqMsgCtx.getOauth2AccessTokenReqDTO();
-        RefreshTokenValidationDataDO validationBean = OAuthTokenPersistenceFactory.getInstance()
-                .getTokenManagementDAO().validateRefreshToken(tokenReq.getClientId(), tokenReq.getRefreshToken());
-
-        validatePersistedAccessToken(validationBean, tokenReq.getClientId());
-        validateRefreshTokenInRequest(tokenReq, validationBean);
+        RefreshTokenValidationDataDO validationBean;
+        RefreshTokenValidationCacheEntry cacheEntry = getValidationDataFromCache(tokenReq);
+        if (cacheEntry != null) {
+            validationBean = cacheEntry.getValidationData();
+            validatePersistedAccessToken(validationBean, tokenReq.getClientId());
+            validateRefreshTokenStatus(validationBean, tokenReq.getClientId());
+            if (!cacheEntry.isLatestRefreshToken()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Cached refresh token of client: " + tokenReq.getClientId() + " is not the latest");
+                }
+                throw new IdentityOAuth2Exception("Invalid refresh token value in the request");
+            }
+        } else {
+            validationBean = OAuthTokenPersistenceFactory.getInstance().getTokenManagementDAO()
+                    .validateRefreshToken(tokenReq.getClientId(), tokenReq.getRefreshToken());
+            validatePersistedAccessToken(validationBean, tokenReq.getClientId());
+            validateRefreshTokenInRequest(tokenReq, validationBean);
+            addValidationDataToCache(tokenReq.getClientId(), tokenReq.getRefreshToken(), validationBean, true);
+        }
         validateTokenBindingReference(tokenReq, validationBean);
 
         if (log.isDebugEnabled()) {
@@ -113,7 +130,15 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
         }
 
         AccessTokenDO accessTokenBean = createAccessTokenBean(tokReqMsgCtx, tokenReq, validationBean);
-        persistNewToken(tokReqMsgCtx, accessTokenBean, tokenReq.getClientId());
+        try {
+            persistNewToken(tokReqMsgCtx, accessTokenBean, tokenReq.getClientId());
+        } catch (IdentityOAuth2ClientException e) {
+            // A concurrent request has redeemed or revoked the refresh token after it was validated.
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage(), e);
+            }
+            return handleError(OAuth2ErrorCodes.INVALID_GRANT, "Refresh token is not valid.", tokenReq);
+        }
         if (log.isDebugEnabled()) {
             log.debug("Persisted an access token for the refresh token, " +
                     "Client ID : " + tokenReq.getClientId() +
@@ -218,6 +243,7 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
             if (log.isDebugEnabled()) {
                 log.debug("Refresh token: " + tokenReq.getRefreshToken() + " is not the latest");
             }
+            addValidationDataToCache(tokenReq.getClientId(), tokenReq.getRefreshToken(), validationBean, false);
             removeIfCached(tokenReq, validationBean);
             return false;
         }
@@ -261,6 +287,67 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
         return accessTokenBeans;
     }
 
+    private boolean isRefreshTokenValidationCacheEnabled() {
+
+        // Revocation flows can only invalidate cached validation data when the refresh token is known in plain text.
+        return isHashDisabled && cacheEnabled;
+    }
+
+    private RefreshTokenValidationCacheEntry getValidationDataFromCache(OAuth2AccessTokenReqDTO tokenReq) {
+
+        if (!isRefreshTokenValidationCacheEnabled()) {
+            return null;
+        }
+        RefreshTokenValidationCacheEntry cacheEntry = RefreshTokenValidationCache.getInstance()
+                .getValueFromCacheByRefreshToken(tokenReq.getRefreshToken());
+        if (cacheEntry == null || !StringUtils.equals(tokenReq.getClientId(), cacheEntry.getConsumerKey())) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Refresh token validation data of client: " + tokenReq.getClientId() + " found in the cache.");
+        }
+        return cacheEntry;
+    }
+
+    private void addValidationDataToCache(String clientId, String refreshToken,
+                                          RefreshTokenValidationDataDO validationBean, boolean latestRefreshToken) {
+
+        if (isRefreshTokenValidationCacheEnabled()) {
+            RefreshTokenValidationCache.getInstance().addToCacheByRefreshToken(refreshToken,
+                    new RefreshTokenValidationCacheEntry(clientId, validationBean, latestRefreshToken));
+        }
+    }
+
+    /**
+     * Build the validation data of the refresh token issued with the given access token, matching what
+     * {@link org.wso2.carbon.identity.oauth2.dao.TokenManagementDAO#validateRefreshToken(String, String)} returns for
+     * the persisted token.
+     *
+     * @param accessTokenBean Newly persisted access token.
+     * @return Validation data of the refresh token of the access token.
+     */
+    private RefreshTokenValidationDataDO buildRefreshTokenValidationData(AccessTokenDO accessTokenBean) {
+
+        RefreshTokenValidationDataDO validationData = new RefreshTokenValidationDataDO();
+        validationData.setTokenId(accessTokenBean.getTokenId());
+        validationData.setAccessToken(accessTokenBean.getAccessToken());
+        validationData.setAuthorizedUser(accessTokenBean.getAuthzUser());
+        validationData.setScope(accessTokenBean.getScope());
+        validationData.setRefreshTokenState(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        validationData.setGrantType(accessTokenBean.getGrantType());
+        validationData.setIssuedTime(accessTokenBean.getRefreshTokenIssuedTime());
+        validationData.setValidityPeriodInMillis(accessTokenBean.getRefreshTokenValidityPeriodInMillis());
+        validationData.setAccessTokenIssuedTime(accessTokenBean.getIssuedTime());
+        validationData.setAccessTokenValidityInMillis(accessTokenBean.getValidityPeriodInMillis());
+        if (accessTokenBean.getTokenBinding() != null
+                && StringUtils.isNotBlank(accessTokenBean.getTokenBinding().getBindingReference())) {
+            validationData.setTokenBindingReference(accessTokenBean.getTokenBinding().getBindingReference());
+        } else {
+            validationData.setTokenBindingReference(NONE);
+        }
+        return validationData;
+    }
+
     private boolean validateRefreshTokenStatus(RefreshTokenValidationDataDO validationBean, String clientId)
             throws IdentityOAuth2Exception {
 
@@ -326,6 +413,8 @@ public class RefreshGrantHandler extends AbstractAuthorizationGrantHandler {
                         OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE, clientId,
                         UUID.randomUUID().toString(), accessTokenBean, userStoreDomain, oldAccessToken.getGrantType());
         updateCacheIfEnabled(tokReqMsgCtx, accessTokenBean, clientId, oldAccessToken);
+        addValidationDataToCache(clientId, accessTokenBean.getRefreshToken(),
+                buildRefreshTokenValidationData(accessTokenBean), true);
     }
 
     private void updateCacheIfEnabled(OAuthTokenReqMessageContext tokReqMsgCtx, AccessTokenDO accessTokenBean,
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant.saml;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node local cache of the SAML2 assertions already exchanged for tokens, used to reject replayed assertions.
+ * <p>
+ * Only the issuer and ID of an assertion are kept, together with the time the assertion stops being valid, i.e. its
+ * NotOnOrAfter plus the allowed clock skew. Entries are dropped once that time passes, since an expired assertion is
+ * rejected by the time window validation anyway, so the cache never holds more than the assertions that are still
+ * usable. When the cache is full of assertions which are still usable, new assertions are rejected rather than
+ * accepted without replay protection.
+ */
+class SAML2AssertionReplayCache {
+
+    private static final Log log = LogFactory.getLog(SAML2AssertionReplayCache.class);
+
+    private static final String ENABLE = "OAuth.SAML2Grant.ReplayProtection.Enable";
+    private static final String MAX_ENTRIES = "OAuth.SAML2Grant.ReplayProtection.MaxEntries";
+    private static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private final Map<String, Long> usedAssertions = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxEntries;
+
+    SAML2AssertionReplayCache() {
+
+        enabled = !Boolean.FALSE.toString().equalsIgnoreCase(StringUtils.trim(IdentityUtil.getProperty(ENABLE)));
+        maxEntries = getMaxEntries();
+    }
+
+    boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Record the use of an assertion.
+     *
+     * @param issuer Issuer of the assertion.
+     * @param id     ID of the assertion.
+     * @param expiry Time in milliseconds after which the assertion is no longer valid.
+     * @return false if the assertion was used before and is still valid, true otherwise.
+     * @throws IdentityOAuth2Exception if the use of the assertion can not be recorded since the cache is full.
+     */
+    boolean markUsed(String issuer, String id, long expiry) throws IdentityOAuth2Exception {
+
+        long now = System.currentTimeMillis();
+        if (usedAssertions.size() >= maxEntries) {
+            pruneExpiredEntries(now);
+            if (usedAssertions.size() >= maxEntries) {
+                log.warn("SAML2 assertion replay cache is full. Rejecting the assertion: " + id + " of issuer: " +
+                        issuer);
+                throw new IdentityOAuth2Exception("Unable to record the use of the assertion. Replay protection " +
+                        "capacity exceeded");
+            }
+        }
+        String key = issuer + "|" + id;
+        Long previousExpiry = usedAssertions.putIfAbsent(key, expiry);
+        if (previousExpiry == null) {
+            return true;
+        }
+        if (previousExpiry < now && usedAssertions.replace(key, previousExpiry, expiry)) {
+            // The earlier entry had expired but was not pruned yet.
+            return true;
+        }
+        return false;
+    }
+
+    int size() {
+
+        return usedAssertions.size();
+    }
+
+    private void pruneExpiredEntries(long now) {
+
+        Iterator<Map.Entry<String, Long>> iterator = usedAssertions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static int getMaxEntries() {
+
+        String value = IdentityUtil.getProperty(MAX_ENTRIES);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                int maxEntries = Integer.parseInt(value.trim());
+                if (maxEntries > 0) {
+                    return maxEntries;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the default value.
+            }
+            log.warn("Invalid value: " + value + " configured for: " + MAX_ENTRIES + ". Using the default value: " +
+                    DEFAULT_MAX_ENTRIES);
+        }
+        return DEFAULT_MAX_ENTRIES;
+    }
+}
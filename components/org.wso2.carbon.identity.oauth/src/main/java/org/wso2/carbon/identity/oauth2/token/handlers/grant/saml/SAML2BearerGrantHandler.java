@@ -100,9 +100,12 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This implements SAML 2.0 Bearer Assertion Profile for OAuth 2.0 -
@@ -115,6 +118,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
     private static final Log log = LogFactory.getLog(SAML2BearerGrantHandler.class);
     private static final String SAMLSSO_AUTHENTICATOR = "samlsso";
     private static final String SAML2SSO_AUTHENTICATOR_NAME = "SAMLSSOAuthenticator";
+    private static final int MAX_CACHED_IDPS = 1000;
 
     public static final String SECURITY_SAML_SIGN_KEY_STORE_LOCATION = "Security.SAMLSignKeyStore.Location";
     public static final String SECURITY_SAML_SIGN_KEY_STORE_TYPE = "Security.SAMLSignKeyStore.Type";
@@ -123,6 +127,10 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
     public static final String SECURITY_SAML_SIGN_KEY_STORE_KEY_PASSWORD = "Security.SAMLSignKeyStore.KeyPassword";
 
     SAMLSignatureProfileValidator profileValidator = null;
+    // Decoded certificates of the identity providers, keyed by tenant domain and IdP name, and then by the encoded
+    // certificate value.
+    private final Map<String, Map<String, X509Credential>> idpCredentials = new ConcurrentHashMap<>();
+    private SAML2AssertionReplayCache replayCache;
 
     @Override
     public void init() throws IdentityOAuth2Exception {
@@ -143,6 +151,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         }
 
         profileValidator = new SAMLSignatureProfileValidator();
+        replayCache = new SAML2AssertionReplayCache();
     }
 
     /**
@@ -164,12 +173,12 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
     public boolean validateGrant(OAuthTokenReqMessageContext tokReqMsgCtx) throws IdentityOAuth2Exception {
 
         super.validateGrant(tokReqMsgCtx);
+        String decodedAssertion = new String(Base64.decodeBase64(
+                tokReqMsgCtx.getOauth2AccessTokenReqDTO().getAssertion()), StandardCharsets.UTF_8);
         if (log.isDebugEnabled() && IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.SAML_ASSERTION)) {
-            log.debug("Received SAML assertion : " +
-                    new String(Base64.decodeBase64(tokReqMsgCtx.getOauth2AccessTokenReqDTO().getAssertion()),
-                            StandardCharsets.UTF_8));
+            log.debug("Received SAML assertion : " + decodedAssertion);
         }
-        Assertion assertion = getAssertionObject(tokReqMsgCtx);
+        Assertion assertion = getAssertionObject(decodedAssertion);
         validateSubject(tokReqMsgCtx, assertion);
         validateIssuer(tokReqMsgCtx, assertion);
         validateSignature(assertion);
@@ -199,10 +208,39 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         // TODO: Throw the SAML request through the general SAML2 validation routines
 
         setValuesInMessageContext(tokReqMsgCtx, assertion, identityProvider, tenantDomain);
+        validateAssertionNotReplayed(tokReqMsgCtx, assertion, timestampSkewInMillis);
         invokeExtension(tokReqMsgCtx);
         return true;
     }
 
+    /**
+     * Reject an assertion which was already exchanged for a token while it is still valid. The assertion is recorded
+     * only after the validations of the assertion pass, so an invalid request can be retried, and before the SAML2
+     * token callback is invoked, so a replayed assertion never reaches the callback.
+     */
+    private void validateAssertionNotReplayed(OAuthTokenReqMessageContext tokReqMsgCtx, Assertion assertion,
+                                              long timestampSkewInMillis) throws IdentityOAuth2Exception {
+
+        if (replayCache == null || !replayCache.isEnabled()) {
+            return;
+        }
+        if (StringUtils.isBlank(assertion.getID())) {
+            if (log.isDebugEnabled()) {
+                log.debug("Assertion does not have an ID. Skipping the replay validation.");
+            }
+            return;
+        }
+        String issuer = assertion.getIssuer() != null ? assertion.getIssuer().getValue() : null;
+        long expiry = System.currentTimeMillis() + tokReqMsgCtx.getValidityPeriod() + timestampSkewInMillis;
+        if (!replayCache.markUsed(issuer, assertion.getID(), expiry)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Assertion with ID: " + assertion.getID() + " of issuer: " + issuer +
+                        " has already been used.");
+            }
+            throw new IdentityOAuth2Exception("Assertion has already been used");
+        }
+    }
+
     @Override
     public boolean issueRefreshToken() throws IdentityOAuth2Exception {
 
@@ -555,6 +593,7 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
                     + identityProvider.getIdentityProviderName() + " of tenant domain " + tenantDomain);
         }
 
+        Map<String, X509Credential> credentials = getIdpCredentials(tenantDomain, identityProvider, certificateInfos);
         try {
             /*
               The process mentioned below is done because OpenSAML3 does not support OSGi refer
@@ -571,9 +610,15 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
             try {
                 int index = 0;
                 for (CertificateInfo certificateInfo : certificateInfos) {
-                    X509Certificate x509Certificate = getIdpCertificate(tenantDomain, identityProvider,
-                            certificateInfo);
-                    X509Credential x509Credential = new X509CredentialImpl(x509Certificate);
+                    X509Credential x509Credential = credentials.get(certificateInfo.getCertValue());
+                    if (x509Credential == null) {
+                        X509Certificate x509Certificate = getIdpCertificate(tenantDomain, identityProvider,
+                                certificateInfo);
+                        x509Credential = new X509CredentialImpl(x509Certificate);
+                        if (certificateInfo.getCertValue() != null) {
+                            credentials.put(certificateInfo.getCertValue(), x509Credential);
+                        }
+                    }
 
                     try {
                         if (log.isDebugEnabled()) {
@@ -610,6 +655,36 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         }
     }
 
+    /**
+     * Get the cached credentials of an identity provider. The cached credentials are discarded when the identity
+     * provider no longer has one of the cached certificates, i.e. when its certificates were updated.
+     */
+    private Map<String, X509Credential> getIdpCredentials(String tenantDomain, IdentityProvider identityProvider,
+                                                          CertificateInfo[] certificateInfos) {
+
+        String idpKey = tenantDomain + ":" + identityProvider.getIdentityProviderName();
+        Map<String, X509Credential> credentials = idpCredentials.get(idpKey);
+        if (credentials != null) {
+            Set<String> certValues = new HashSet<>();
+            for (CertificateInfo certificateInfo : certificateInfos) {
+                certValues.add(certificateInfo.getCertValue());
+            }
+            if (certValues.containsAll(credentials.keySet())) {
+                return credentials;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Certificates of Identity Provider " + identityProvider.getIdentityProviderName() +
+                        " of tenant domain " + tenantDomain + " have been updated. Discarding the cached credentials.");
+            }
+        }
+        if (idpCredentials.size() >= MAX_CACHED_IDPS) {
+            idpCredentials.clear();
+        }
+        credentials = new ConcurrentHashMap<>();
+        idpCredentials.put(idpKey, credentials);
+        return credentials;
+    }
+
     private X509Certificate getIdpCertificate(String tenantDomain, IdentityProvider identityProvider,
                                               CertificateInfo certificateInfo) throws IdentityOAuth2Exception {
 
@@ -1174,10 +1249,9 @@ public class SAML2BearerGrantHandler extends AbstractAuthorizationGrantHandler {
         }
     }
 
-    private Assertion getAssertionObject(OAuthTokenReqMessageContext tokReqMsgCtx) throws IdentityOAuth2Exception {
+    private Assertion getAssertionObject(String decodedAssertion) throws IdentityOAuth2Exception {
         try {
-            XMLObject samlObject = UnmarshallUtils.unmarshall(new String(Base64.decodeBase64(
-                    tokReqMsgCtx.getOauth2AccessTokenReqDTO().getAssertion()), StandardCharsets.UTF_8));
+            XMLObject samlObject = UnmarshallUtils.unmarshall(decodedAssertion);
             validateAssertionList(samlObject);
             return getAssertion(samlObject);
         } catch (IdentityUnmarshallingException e) {
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parks polling token requests (device_code and CIBA grants) until the authentication status of the corresponding
+ * request changes or a bounded timeout passes. The component which updates the authentication status is expected to
+ * call {@link #notifyStatusChange(String)} once the status is persisted.
+ * <p>
+ * Notifications are delivered in-process. In a clustered deployment a request parked on a node other than the one
+ * that handled the authentication is released when the timeout passes, and the caller is expected to re-read the
+ * persisted status at that point.
+ */
+public class AuthorizationStatusNotifier {
+
+    private static final Log log = LogFactory.getLog(AuthorizationStatusNotifier.class);
+
+    private static final String LONG_POLLING_ENABLE = "OAuth.LongPolling.Enable";
+    private static final String LONG_POLLING_TIMEOUT = "OAuth.LongPolling.Timeout";
+    private static final String LONG_POLLING_MAX_WAITING_REQUESTS = "OAuth.LongPolling.MaxWaitingRequests";
+    private static final long DEFAULT_LONG_POLLING_TIMEOUT_MILLIS = 20000L;
+    // Kept well below the default size of the servlet container's request thread pool, since every parked request
+    // holds a request thread for the duration of the wait.
+    private static final int DEFAULT_MAX_WAITING_REQUESTS = 20;
+
+    private static volatile AuthorizationStatusNotifier instance;
+
+    private final ConcurrentHashMap<String, CountDownLatch> waitingRequests = new ConcurrentHashMap<>();
+    private final boolean longPollingEnabled;
+    private final long longPollingTimeout;
+    private final Semaphore waitingRequestPermits;
+
+    private AuthorizationStatusNotifier() {
+
+        this(Boolean.parseBoolean(IdentityUtil.getProperty(LONG_POLLING_ENABLE)),
+                readLongProperty(LONG_POLLING_TIMEOUT, DEFAULT_LONG_POLLING_TIMEOUT_MILLIS),
+                (int) readLongProperty(LONG_POLLING_MAX_WAITING_REQUESTS, DEFAULT_MAX_WAITING_REQUESTS));
+    }
+
+    AuthorizationStatusNotifier(boolean longPollingEnabled, long longPollingTimeout, int maxWaitingRequests) {
+
+        this.longPollingEnabled = longPollingEnabled;
+        this.longPollingTimeout = longPollingTimeout;
+        this.waitingRequestPermits = new Semaphore(maxWaitingRequests);
+    }
+
+    public static AuthorizationStatusNotifier getInstance() {
+
+        if (instance == null) {
+            synchronized (AuthorizationStatusNotifier.class) {
+                if (instance == null) {
+                    instance = new AuthorizationStatusNotifier();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether long polling is enabled for the polling grant types.
+     *
+     * @return True if token requests should be parked until the authentication status changes.
+     */
+    public boolean isLongPollingEnabled() {
+
+        return longPollingEnabled;
+    }
+
+    /**
+     * Check whether there are token requests currently parked on this node.
+     *
+     * @return True if at least one token request is waiting for a status change.
+     */
+    public boolean hasWaitingRequests() {
+
+        return !waitingRequests.isEmpty();
+    }
+
+    /**
+     * Park the calling thread until the status of the given request changes, the configured long polling timeout
+     * passes or the given deadline is reached, whichever happens first. Returns immediately if long polling is
+     * disabled or the maximum number of parked requests is already reached.
+     *
+     * @param key      Identifier of the pending request, i.e. the device_code or the CIBA auth code key.
+     * @param deadline Epoch time in milliseconds after which the request should not be parked, e.g. the expiry time
+     *                 of the device_code.
+     * @return True if the request was released by a status change notification.
+     */
+    public boolean awaitStatusChange(String key, long deadline) {
+
+        if (!longPollingEnabled || StringUtils.isBlank(key)) {
+            return false;
+        }
+        long waitTime = Math.min(longPollingTimeout, deadline - System.currentTimeMillis());
+        if (waitTime <= 0) {
+            return false;
+        }
+        if (!waitingRequestPermits.tryAcquire()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Maximum number of parked token requests reached. Responding without waiting.");
+            }
+            return false;
+        }
+        CountDownLatch latch = waitingRequests.computeIfAbsent(key, k -> new CountDownLatch(1));
+        try {
+            return latch.await(waitTime, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waitingRequests.remove(key, latch);
+            waitingRequestPermits.release();
+        }
+    }
+
+    /**
+     * Release all the token requests parked for the given request identifier.
+     *
+     * @param key Identifier of the request whose authentication status has changed.
+     */
+    public void notifyStatusChange(String key) {
+
+        if (StringUtils.isBlank(key)) {
+            return;
+        }
+        CountDownLatch latch = waitingRequests.remove(key);
+        if (latch != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Releasing parked token requests after authentication status change.");
+            }
+            latch.countDown();
+        }
+    }
+
+    private static long readLongProperty(String property, long defaultValue) {
+
+        String value = IdentityUtil.getProperty(property);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + value + " configured for: " + property + ". Using the default value: "
+                        + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+}
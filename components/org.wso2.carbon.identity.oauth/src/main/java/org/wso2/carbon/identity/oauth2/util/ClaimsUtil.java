@@ -40,12 +40,13 @@ import org.wso2.carbon.identity.application.common.util.IdentityApplicationConst
 import org.wso2.carbon.identity.application.mgt.ApplicationManagementService;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.base.IdentityException;
-import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCache;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheEntry;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMapping;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMappingCache;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
@@ -179,16 +180,18 @@ public class ClaimsUtil {
             log.debug("Requested number of local claims: " + requestedLocalClaims.size());
         }
 
-        Map<String, String> spToLocalClaimMappings = ClaimMetadataHandler.getInstance()
-                .getMappingsMapFromOtherDialectToCarbon(SP_DIALECT, null, spTenantDomain, false);
+        ClaimDialectMapping spToLocalClaimMapping = ClaimDialectMappingCache.getInstance()
+                .getMapping(SP_DIALECT, spTenantDomain);
 
-        for (Map.Entry<String, String> oidcToLocalClaimMapping : spToLocalClaimMappings.entrySet()) {
-            String value = userClaims.get(oidcToLocalClaimMapping.getValue());
-            if (value != null && requestedLocalClaims.contains(oidcToLocalClaimMapping.getValue())) {
-                mappedAppClaims.put(oidcToLocalClaimMapping.getKey(), value);
+        for (int i = 0; i < spToLocalClaimMapping.size(); i++) {
+            String localClaimUri = spToLocalClaimMapping.getLocalClaimUri(i);
+            String value = userClaims.get(localClaimUri);
+            if (value != null && requestedLocalClaims.contains(localClaimUri)) {
+                String oidcClaimUri = spToLocalClaimMapping.getExternalClaimUri(i);
+                mappedAppClaims.put(oidcClaimUri, value);
                 if (log.isDebugEnabled() &&
                         IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.USER_CLAIMS)) {
-                    log.debug("Mapped claim: key -  " + oidcToLocalClaimMapping.getKey() + " value -" + value);
+                    log.debug("Mapped claim: key -  " + oidcClaimUri + " value -" + value);
                 }
             }
         }
@@ -16,9 +16,28 @@
 
 package org.wso2.carbon.identity.oauth2.util;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.database.utils.jdbc.JdbcTemplate;
+import org.wso2.carbon.database.utils.jdbc.QueryFilter;
+import org.wso2.carbon.database.utils.jdbc.RowMapper;
 import org.wso2.carbon.database.utils.jdbc.exceptions.DataAccessException;
 import org.wso2.carbon.identity.core.persistence.JDBCPersistenceManager;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.wso2.carbon.identity.application.mgt.ApplicationConstants.DB2;
 import static org.wso2.carbon.identity.application.mgt.ApplicationConstants.H2;
@@ -32,9 +51,37 @@ import static org.wso2.carbon.identity.application.mgt.ApplicationConstants.S_MI
 
 /**
  * A util class to support the Jdbc executions.
+ * <p>
+ * Besides the {@link JdbcTemplate} which manages its own connections, this class executes statements on a connection
+ * owned by the caller, so that they take part in the transaction of the caller. The statements and result sets are
+ * closed here, while the connection and the transaction remain with the caller. Prepared statements are marked as
+ * poolable unless {@code OAuth.JDBC.StatementPooling} is false, so that a datasource with statement caching enabled
+ * reuses them. The execution time of each query is recorded per SQL string, and queries slower than
+ * {@code OAuth.JDBC.SlowQueryThreshold} milliseconds are logged as warnings.
  */
 public class JdbcUtils {
 
+    private static final Log log = LogFactory.getLog(JdbcUtils.class);
+
+    private static final String FETCH_SIZE_PROPERTY = "OAuth.JDBC.FetchSize";
+    private static final String STATEMENT_POOLING_PROPERTY = "OAuth.JDBC.StatementPooling";
+    private static final String SLOW_QUERY_THRESHOLD_PROPERTY = "OAuth.JDBC.SlowQueryThreshold";
+    // Queries with a variable number of parameters produce a SQL string per parameter count, hence the number of
+    // tracked queries is bounded.
+    static final int MAX_TRACKED_QUERIES = 512;
+    private static final Map<String, QueryStatistics> QUERY_STATISTICS = new ConcurrentHashMap<>();
+
+    /**
+     * Binds the parameters of a prepared statement for one element of a batch.
+     *
+     * @param <T> Type of the batch elements.
+     */
+    @FunctionalInterface
+    public interface BatchQueryFilter<T> {
+
+        void filter(PreparedStatement preparedStatement, T element) throws SQLException;
+    }
+
     /**
      * Get a new Jdbc Template.
      *
@@ -112,4 +159,212 @@ public class JdbcUtils {
         JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
         return jdbcTemplate.getDriverName().contains(dbType) || jdbcTemplate.getDatabaseProductName().contains(dbType);
     }
+
+    /**
+     * Execute a query on the given connection and map all the returned rows.
+     *
+     * @param connection  Database connection.
+     * @param query       SQL query.
+     * @param rowMapper   Mapper of the returned rows.
+     * @param queryFilter Binder of the query parameters.
+     * @param <T>         Type of the mapped rows.
+     * @return Mapped rows. Empty if no rows are returned.
+     * @throws SQLException If an error occurs while executing the query.
+     */
+    public static <T> List<T> executeQuery(Connection connection, String query, RowMapper<T> rowMapper,
+                                           QueryFilter queryFilter) throws SQLException {
+
+        long startTime = System.nanoTime();
+        try (PreparedStatement preparedStatement = prepareStatement(connection, query)) {
+            if (StatementConfig.FETCH_SIZE > 0) {
+                preparedStatement.setFetchSize(StatementConfig.FETCH_SIZE);
+            }
+            queryFilter.filter(preparedStatement);
+            List<T> rows = new ArrayList<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                int rowNumber = 0;
+                while (resultSet.next()) {
+                    rows.add(rowMapper.mapRow(resultSet, rowNumber++));
+                }
+            }
+            return rows;
+        } finally {
+            recordExecution(query, startTime);
+        }
+    }
+
+    /**
+     * Execute a query on the given connection and map the first returned row.
+     *
+     * @param connection  Database connection.
+     * @param query       SQL query.
+     * @param rowMapper   Mapper of the returned row.
+     * @param queryFilter Binder of the query parameters.
+     * @param <T>         Type of the mapped row.
+     * @return Mapped first row or null if no rows are returned.
+     * @throws SQLException If an error occurs while executing the query.
+     */
+    public static <T> T fetchSingleRecord(Connection connection, String query, RowMapper<T> rowMapper,
+                                          QueryFilter queryFilter) throws SQLException {
+
+        long startTime = System.nanoTime();
+        try (PreparedStatement preparedStatement = prepareStatement(connection, query)) {
+            preparedStatement.setMaxRows(1);
+            queryFilter.filter(preparedStatement);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return rowMapper.mapRow(resultSet, 0);
+                }
+            }
+            return null;
+        } finally {
+            recordExecution(query, startTime);
+        }
+    }
+
+    /**
+     * Execute an insert, update or delete statement on the given connection.
+     *
+     * @param connection  Database connection.
+     * @param query       SQL statement.
+     * @param queryFilter Binder of the statement parameters.
+     * @return Number of affected rows.
+     * @throws SQLException If an error occurs while executing the statement.
+     */
+    public static int executeUpdate(Connection connection, String query, QueryFilter queryFilter)
+            throws SQLException {
+
+        long startTime = System.nanoTime();
+        try (PreparedStatement preparedStatement = prepareStatement(connection, query)) {
+            queryFilter.filter(preparedStatement);
+            return preparedStatement.executeUpdate();
+        } finally {
+            recordExecution(query, startTime);
+        }
+    }
+
+    /**
+     * Execute a statement on the given connection once for each element, as a single JDBC batch.
+     *
+     * @param connection  Database connection.
+     * @param query       SQL statement.
+     * @param elements    Elements of the batch.
+     * @param queryFilter Binder of the statement parameters for an element.
+     * @param <T>         Type of the batch elements.
+     * @return Update counts of the batch. Empty if there are no elements.
+     * @throws SQLException If an error occurs while executing the batch.
+     */
+    public static <T> int[] executeBatch(Connection connection, String query, Collection<T> elements,
+                                         BatchQueryFilter<T> queryFilter) throws SQLException {
+
+        if (elements == null || elements.isEmpty()) {
+            return new int[0];
+        }
+        long startTime = System.nanoTime();
+        try (PreparedStatement preparedStatement = prepareStatement(connection, query)) {
+            for (T element : elements) {
+                queryFilter.filter(preparedStatement, element);
+                preparedStatement.addBatch();
+            }
+            return preparedStatement.executeBatch();
+        } finally {
+            recordExecution(query, startTime);
+        }
+    }
+
+    /**
+     * Get the execution statistics of the queries executed on caller owned connections, keyed by the SQL string.
+     * At most {@value #MAX_TRACKED_QUERIES} queries are tracked.
+     *
+     * @return Unmodifiable view of the query statistics.
+     */
+    public static Map<String, QueryStatistics> getQueryStatistics() {
+
+        return Collections.unmodifiableMap(QUERY_STATISTICS);
+    }
+
+    private static PreparedStatement prepareStatement(Connection connection, String query) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(query);
+        // Drivers differ in the default, hence the hint is always set so that pooling can also be turned off.
+        preparedStatement.setPoolable(StatementConfig.STATEMENT_POOLING);
+        return preparedStatement;
+    }
+
+    private static void recordExecution(String query, long startTime) {
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        QueryStatistics statistics = QUERY_STATISTICS.get(query);
+        if (statistics == null && QUERY_STATISTICS.size() < MAX_TRACKED_QUERIES) {
+            statistics = QUERY_STATISTICS.computeIfAbsent(query, key -> new QueryStatistics());
+        }
+        if (statistics != null) {
+            statistics.record(elapsedNanos);
+        }
+
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        if (StatementConfig.SLOW_QUERY_THRESHOLD > 0 && elapsedMillis >= StatementConfig.SLOW_QUERY_THRESHOLD) {
+            log.warn("Query took " + elapsedMillis + " ms to execute: " + query);
+        } else if (log.isDebugEnabled()) {
+            log.debug("Query took " + elapsedMillis + " ms to execute: " + query);
+        }
+    }
+
+    private static int getIntProperty(String propertyName, int defaultValue) {
+
+        String value = IdentityUtil.getProperty(propertyName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Invalid value: " + value + " configured for " + propertyName, e);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Statement configuration, read once when the first statement is executed.
+     */
+    private static class StatementConfig {
+
+        private static final int FETCH_SIZE = getIntProperty(FETCH_SIZE_PROPERTY, 0);
+        private static final int SLOW_QUERY_THRESHOLD = getIntProperty(SLOW_QUERY_THRESHOLD_PROPERTY, 0);
+        private static final boolean STATEMENT_POOLING = !"false".equalsIgnoreCase(
+                StringUtils.trim(IdentityUtil.getProperty(STATEMENT_POOLING_PROPERTY)));
+    }
+
+    /**
+     * Execution statistics of a query.
+     */
+    public static class QueryStatistics {
+
+        private final LongAdder executionCount = new LongAdder();
+        private final LongAdder totalExecutionNanos = new LongAdder();
+        private final LongAccumulator maxExecutionNanos = new LongAccumulator(Long::max, 0);
+
+        void record(long elapsedNanos) {
+
+            executionCount.increment();
+            totalExecutionNanos.add(elapsedNanos);
+            maxExecutionNanos.accumulate(elapsedNanos);
+        }
+
+        public long getExecutionCount() {
+
+            return executionCount.sum();
+        }
+
+        public long getTotalExecutionNanos() {
+
+            return totalExecutionNanos.sum();
+        }
+
+        public long getMaxExecutionNanos() {
+
+            return maxExecutionNanos.get();
+        }
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenBatchConsumer;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access token batch consumer used for bulk revocations such as tenant deactivation or user store removal. Clears
+ * the caches of every streamed token and revokes the latest token of each consumer key, user, scope and identity
+ * provider combination.
+ * <p>
+ * The token listings are ordered by consumer key and user, so the tokens of a consumer key and user pair are streamed
+ * one after the other. Only the latest tokens of the current pair are tracked. Once the listing moves on to the next
+ * pair, those tokens are queued and revoked in batches of the configured size, which keeps the memory held by the
+ * revoker bounded regardless of the number of tokens listed.
+ */
+public class LatestAccessTokenRevoker implements AccessTokenBatchConsumer {
+
+    private static final Log log = LogFactory.getLog(LatestAccessTokenRevoker.class);
+
+    private final int batchSize;
+    private final Map<String, LatestAccessToken> latestAccessTokensOfGroup = new HashMap<>();
+    private final List<String> tokensToRevoke = new ArrayList<>();
+    private String currentGroup;
+    private int revokedTokenCount;
+
+    public LatestAccessTokenRevoker(int batchSize) {
+
+        this.batchSize = batchSize > 0 ? batchSize : OAuth2Util.getAccessTokenListingBatchSize();
+    }
+
+    @Override
+    public void consume(List<AccessTokenDO> accessTokenDOs) throws IdentityOAuth2Exception {
+
+        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+            String group = getGroup(accessTokenDO);
+            if (!group.equals(currentGroup)) {
+                completeCurrentGroup();
+                currentGroup = group;
+            }
+            String scope = OAuth2Util.buildScopeString(accessTokenDO.getScope());
+            String keyString = accessTokenDO.getConsumerKey() + ":" + accessTokenDO.getAuthzUser() + ":" + scope + ":"
+                    + accessTokenDO.getAuthzUser().getFederatedIdPName();
+            long issuedTime = accessTokenDO.getIssuedTime().getTime();
+            LatestAccessToken latestAccessToken = latestAccessTokensOfGroup.get(keyString);
+            if (latestAccessToken == null || latestAccessToken.issuedTime < issuedTime) {
+                latestAccessTokensOfGroup.put(keyString, new LatestAccessToken(accessTokenDO.getAccessToken(),
+                        issuedTime));
+            }
+            clearCache(accessTokenDO);
+        }
+    }
+
+    /**
+     * Revoke the latest access tokens which are not revoked yet. To be called once all the tokens are consumed.
+     *
+     * @throws IdentityOAuth2Exception If an error occurs while revoking the access tokens.
+     */
+    public void revokeLatestAccessTokens() throws IdentityOAuth2Exception {
+
+        completeCurrentGroup();
+        currentGroup = null;
+        if (!tokensToRevoke.isEmpty()) {
+            revokeQueuedAccessTokens();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Revoked " + revokedTokenCount + " access tokens in batches of " + batchSize);
+        }
+    }
+
+    /**
+     * Clear the token caches related to the given access token.
+     *
+     * @param accessTokenDO Access token.
+     */
+    public static void clearCache(AccessTokenDO accessTokenDO) {
+
+        OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser(),
+                OAuth2Util.buildScopeString(accessTokenDO.getScope()));
+        OAuthUtil.clearOAuthCache(accessTokenDO.getConsumerKey(), accessTokenDO.getAuthzUser());
+        OAuthUtil.clearOAuthCache(accessTokenDO);
+    }
+
+    /**
+     * Get the consumer key and user pair the listings are ordered by. The user name is compared case insensitively,
+     * so that the pair stays the same for databases which order user names case insensitively.
+     */
+    private static String getGroup(AccessTokenDO accessTokenDO) {
+
+        AuthenticatedUser authzUser = accessTokenDO.getAuthzUser();
+        return accessTokenDO.getConsumerKey() + ":" + authzUser.getUserStoreDomain() + ":" +
+                StringUtils.lowerCase(authzUser.getUserName());
+    }
+
+    private void completeCurrentGroup() throws IdentityOAuth2Exception {
+
+        for (LatestAccessToken latestAccessToken : latestAccessTokensOfGroup.values()) {
+            tokensToRevoke.add(latestAccessToken.accessToken);
+            if (tokensToRevoke.size() >= batchSize) {
+                revokeQueuedAccessTokens();
+            }
+        }
+        latestAccessTokensOfGroup.clear();
+    }
+
+    private void revokeQueuedAccessTokens() throws IdentityOAuth2Exception {
+
+        OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO()
+                .revokeAccessTokens(tokensToRevoke.toArray(new String[0]), OAuth2Util.isHashEnabled());
+        revokedTokenCount += tokensToRevoke.size();
+        tokensToRevoke.clear();
+    }
+
+    private static class LatestAccessToken {
+
+        private final String accessToken;
+        private final long issuedTime;
+
+        private LatestAccessToken(String accessToken, long issuedTime) {
+
+            this.accessToken = accessToken;
+            this.issuedTime = issuedTime;
+        }
+    }
+}
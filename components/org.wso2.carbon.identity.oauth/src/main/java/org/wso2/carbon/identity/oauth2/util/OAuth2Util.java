@@ -111,6 +111,7 @@ import org.wso2.carbon.identity.oauth2.bean.Scope;
 import org.wso2.carbon.identity.oauth2.bean.ScopeBinding;
 import org.wso2.carbon.identity.oauth2.config.SpOAuth2ExpiryTimeConfiguration;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dao.PartitionedSqlCatalog;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2IntrospectionResponseDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationRequestDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
@@ -206,6 +207,9 @@ public class OAuth2Util {
     public static final String REMOTE_ACCESS_TOKEN = "REMOTE_ACCESS_TOKEN";
     public static final String JWT_ACCESS_TOKEN = "JWT_ACCESS_TOKEN";
     public static final String ACCESS_TOKEN_DO = "AccessTokenDo";
+    public static final String STATELESS_ACCESS_TOKEN_DO = "StatelessAccessTokenDO";
+    public static final String STATELESS_ACCESS_TOKEN = "StatelessAccessToken";
+    public static final String STATELESS_ACCESS_TOKEN_CLAIM = "stateless_token";
     public static final String OAUTH2_VALIDATION_MESSAGE_CONTEXT = "OAuth2TokenValidationMessageContext";
     public static final String CONFIG_ELEM_OAUTH = "OAuth";
     public static final String OPENID_CONNECT = "OpenIDConnect";
@@ -223,6 +227,12 @@ public class OAuth2Util {
 
     public static final String DEFAULT_TOKEN_TYPE = "Default";
 
+    private static final String TOKEN_LISTING_BATCH_SIZE = "OAuth.TokenPersistence.ListingBatchSize";
+    private static final int DEFAULT_TOKEN_LISTING_BATCH_SIZE = 1000;
+
+    private static final String ENABLE_STATELESS_JWT_ACCESS_TOKENS = "OAuth.JWTAccessToken.Stateless.Enable";
+    private static final String STATELESS_JWT_ACCESS_TOKEN_GRANT_TYPES = "OAuth.JWTAccessToken.Stateless.GrantTypes";
+
     /*
      * OPTIONAL. A JSON string containing a space-separated list of scopes associated with this token, in the format
      * described in Section 3.3 of OAuth 2.0
@@ -791,6 +801,29 @@ public class OAuth2Util {
         return OAuthServerConfiguration.getInstance().isUserNameAssertionEnabled();
     }
 
+    /**
+     * Get the number of access tokens to be fetched and processed at once when listing all the tokens of a tenant or
+     * a user store. Configured via 'OAuth.TokenPersistence.ListingBatchSize' in identity.xml.
+     *
+     * @return Access token listing batch size.
+     */
+    public static int getAccessTokenListingBatchSize() {
+
+        String batchSize = IdentityUtil.getProperty(TOKEN_LISTING_BATCH_SIZE);
+        if (StringUtils.isNotBlank(batchSize)) {
+            try {
+                int configuredBatchSize = Integer.parseInt(batchSize.trim());
+                if (configuredBatchSize > 0) {
+                    return configuredBatchSize;
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + batchSize + " configured for " + TOKEN_LISTING_BATCH_SIZE +
+                        ". Using the default value: " + DEFAULT_TOKEN_LISTING_BATCH_SIZE);
+            }
+        }
+        return DEFAULT_TOKEN_LISTING_BATCH_SIZE;
+    }
+
     public static String getAccessTokenPartitioningDomains() {
 
         return OAuthServerConfiguration.getInstance().getAccessTokenPartitioningDomains();
@@ -863,7 +896,8 @@ public class OAuth2Util {
      * or the original sql otherwise.
      * <p>
      * Updated sql derived by replacing original table names IDN_OAUTH2_ACCESS_TOKEN & IDN_OAUTH2_ACCESS_TOKEN_SCOPE
-     * with the updated table names which derived using {@code getPartitionedTableByUserStore()} method.
+     * with the updated table names which derived using {@code getPartitionedTableByUserStore()} method. The updated
+     * sql is served from the {@link PartitionedSqlCatalog}.
      *
      * @param sql
      * @param userStoreDomain
@@ -876,30 +910,7 @@ public class OAuth2Util {
         String partitionedSql = sql;
 
         if (OAuth2Util.checkAccessTokenPartitioningEnabled() && OAuth2Util.checkUserNameAssertionEnabled()) {
-
-            String partitionedAccessTokenTable = OAuth2Util.getPartitionedTableByUserStore(OAuthConstants.
-                    ACCESS_TOKEN_STORE_TABLE, userStoreDomain);
-
-            String accessTokenScopeTable = "IDN_OAUTH2_ACCESS_TOKEN_SCOPE";
-            String partitionedAccessTokenScopeTable = OAuth2Util.getPartitionedTableByUserStore(accessTokenScopeTable,
-                    userStoreDomain);
-
-            if (log.isDebugEnabled()) {
-                log.debug("PartitionedAccessTokenTable: " + partitionedAccessTokenTable +
-                        " & PartitionedAccessTokenScopeTable: " + partitionedAccessTokenScopeTable +
-                        " for user store domain: " + userStoreDomain);
-            }
-
-            String wordBoundaryRegex = "\\b";
-            partitionedSql = sql.replaceAll(wordBoundaryRegex + OAuthConstants.ACCESS_TOKEN_STORE_TABLE
-                    + wordBoundaryRegex, partitionedAccessTokenTable);
-            partitionedSql = partitionedSql.replaceAll(wordBoundaryRegex + accessTokenScopeTable + wordBoundaryRegex,
-                    partitionedAccessTokenScopeTable);
-
-            if (log.isDebugEnabled()) {
-                log.debug("Original SQL: " + sql);
-                log.debug("Partitioned SQL: " + partitionedSql);
-            }
+            partitionedSql = PartitionedSqlCatalog.getInstance().getPartitionedSql(sql, userStoreDomain);
         }
 
         return partitionedSql;
@@ -3344,6 +3355,40 @@ public class OAuth2Util {
         }
     }
 
+    /**
+     * Check whether stateless JWT access tokens are enabled. Stateless access tokens are not persisted and are
+     * validated using their signature and the revocation list of stateless tokens.
+     *
+     * @return true if stateless JWT access tokens are enabled.
+     */
+    public static boolean isStatelessJWTAccessTokenEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(ENABLE_STATELESS_JWT_ACCESS_TOKENS));
+    }
+
+    /**
+     * Check whether JWT access tokens issued for the given grant type should be stateless.
+     *
+     * @param grantType Grant type.
+     * @return true if stateless JWT access tokens are enabled for the grant type.
+     */
+    public static boolean isStatelessJWTAccessTokenGrant(String grantType) {
+
+        if (StringUtils.isBlank(grantType) || !isStatelessJWTAccessTokenEnabled()) {
+            return false;
+        }
+        String grantTypes = IdentityUtil.getProperty(STATELESS_JWT_ACCESS_TOKEN_GRANT_TYPES);
+        if (StringUtils.isBlank(grantTypes)) {
+            return OAuthConstants.GrantTypes.CLIENT_CREDENTIALS.equals(grantType);
+        }
+        for (String statelessGrantType : grantTypes.split(",")) {
+            if (grantType.equals(statelessGrantType.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Return true if the token identifier is JWT.
      *
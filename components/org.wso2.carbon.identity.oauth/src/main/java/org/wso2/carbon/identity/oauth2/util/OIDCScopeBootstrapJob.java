@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.openidconnect.dao.ScopeClaimMappingDAO;
+import org.wso2.carbon.user.api.Tenant;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seeds the default OIDC scopes of the tenants which do not have them yet. The tenants which already have every
+ * default OIDC scope are found with a single query and skipped, and the remaining tenants are seeded in parallel by a
+ * bounded pool. Completeness is decided per scope, so a job which is interrupted, for instance by a node restart,
+ * adds only the scopes which are still missing when it is run again, and a scope added concurrently by another node
+ * or by the tenant creation listener does not stop the remaining scopes of the tenant from being seeded.
+ * <p>
+ * The job is started at server start up when 'OAuth.OIDCScopeBootstrap.Enable' is set, and its progress can be
+ * observed through {@link #getCurrentJob()}.
+ */
+public class OIDCScopeBootstrapJob implements Runnable {
+
+    private static final Log log = LogFactory.getLog(OIDCScopeBootstrapJob.class);
+
+    private static final String ENABLE = "OAuth.OIDCScopeBootstrap.Enable";
+    private static final String POOL_SIZE = "OAuth.OIDCScopeBootstrap.PoolSize";
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int PROGRESS_LOG_INTERVAL = 1000;
+
+    private static volatile OIDCScopeBootstrapJob currentJob;
+
+    private final List<Integer> tenantIds;
+    private final int poolSize;
+
+    private volatile Status status = Status.PENDING;
+    private volatile int skippedTenants;
+    private final AtomicInteger seededTenants = new AtomicInteger();
+    private final AtomicInteger failedTenants = new AtomicInteger();
+
+    /**
+     * Status of an OIDC scope bootstrap job.
+     */
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    OIDCScopeBootstrapJob(List<Integer> tenantIds, int poolSize) {
+
+        this.tenantIds = tenantIds;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Check whether the OIDC scopes of all tenants should be bootstrapped at server start up.
+     *
+     * @return true if the bootstrap is enabled.
+     */
+    public static boolean isEnabled() {
+
+        return Boolean.parseBoolean(IdentityUtil.getProperty(ENABLE));
+    }
+
+    /**
+     * Start bootstrapping the OIDC scopes of all tenants in a background thread.
+     */
+    public static void startForAllTenants() {
+
+        List<Integer> tenantIds = new ArrayList<>();
+        tenantIds.add(MultitenantConstants.SUPER_TENANT_ID);
+        try {
+            for (Tenant tenant : OAuthComponentServiceHolder.getInstance().getRealmService().getTenantManager()
+                    .getAllTenants()) {
+                tenantIds.add(tenant.getId());
+            }
+        } catch (UserStoreException e) {
+            log.error("Error while listing the tenants. OIDC scopes of the tenants are not bootstrapped.", e);
+            return;
+        }
+        OIDCScopeBootstrapJob job = new OIDCScopeBootstrapJob(tenantIds, getConfiguredPoolSize());
+        currentJob = job;
+        Thread worker = new Thread(job, "oidc-scope-bootstrap");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Get the latest bootstrap job started in this node.
+     *
+     * @return Latest bootstrap job, or null if no job was started.
+     */
+    public static OIDCScopeBootstrapJob getCurrentJob() {
+
+        return currentJob;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            process();
+        } catch (IdentityOAuth2Exception e) {
+            log.error("Error while bootstrapping the OIDC scopes of the tenants. Seeded " + seededTenants.get() +
+                    " tenants. Re-running the bootstrap resumes from the remaining tenants.", e);
+        }
+    }
+
+    public Status getStatus() {
+
+        return status;
+    }
+
+    public int getTotalTenants() {
+
+        return tenantIds.size();
+    }
+
+    public int getSkippedTenants() {
+
+        return skippedTenants;
+    }
+
+    public int getSeededTenants() {
+
+        return seededTenants.get();
+    }
+
+    public int getFailedTenants() {
+
+        return failedTenants.get();
+    }
+
+    void process() throws IdentityOAuth2Exception {
+
+        status = Status.RUNNING;
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = null;
+        try {
+            ScopeClaimMappingDAO scopeClaimMappingDAO =
+                    OAuthTokenPersistenceFactory.getInstance().getScopeClaimMappingDAO();
+            List<ScopeDTO> scopeClaims = OAuth2ServiceComponentHolder.getInstance().getOIDCScopesClaims();
+            List<String> scopeNames = new ArrayList<>();
+            for (ScopeDTO scopeDTO : scopeClaims) {
+                scopeNames.add(scopeDTO.getName());
+            }
+            Set<Integer> populatedTenants = scopeClaimMappingDAO.getTenantsWithScopesPopulated(tenantIds, scopeNames);
+            skippedTenants = populatedTenants.size();
+            int pendingTenants = tenantIds.size() - skippedTenants;
+            log.info("Bootstrapping the OIDC scopes of " + pendingTenants + " tenants. " + skippedTenants +
+                    " tenants already have their OIDC scopes.");
+
+            executor = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, pendingTenants)));
+            for (Integer tenantId : tenantIds) {
+                if (!populatedTenants.contains(tenantId)) {
+                    executor.execute(() -> seed(scopeClaimMappingDAO, tenantId, scopeClaims));
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            status = Status.COMPLETED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = Status.FAILED;
+            throw new IdentityOAuth2Exception("Interrupted while bootstrapping the OIDC scopes of the tenants.", e);
+        } catch (IdentityOAuth2Exception | RuntimeException e) {
+            status = Status.FAILED;
+            throw e;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        log.info("Bootstrapped the OIDC scopes of " + seededTenants.get() + " tenants in " +
+                (System.currentTimeMillis() - startTime) + " ms. Failed tenants: " + failedTenants.get());
+    }
+
+    private void seed(ScopeClaimMappingDAO scopeClaimMappingDAO, int tenantId, List<ScopeDTO> scopeClaims) {
+
+        try {
+            List<String> existingScopes = scopeClaimMappingDAO.getScopeNames(tenantId);
+            for (ScopeDTO scopeDTO : scopeClaims) {
+                if (!existingScopes.contains(scopeDTO.getName())) {
+                    addScope(scopeClaimMappingDAO, tenantId, scopeDTO);
+                }
+            }
+            int seeded = seededTenants.incrementAndGet();
+            if (seeded % PROGRESS_LOG_INTERVAL == 0) {
+                log.info("Bootstrapped the OIDC scopes of " + seeded + " out of " +
+                        (tenantIds.size() - skippedTenants) + " tenants.");
+            }
+        } catch (IdentityOAuth2Exception | RuntimeException e) {
+            failedTenants.incrementAndGet();
+            log.error("Error while bootstrapping the OIDC scopes of the tenant: " + tenantId, e);
+        }
+    }
+
+    private void addScope(ScopeClaimMappingDAO scopeClaimMappingDAO, int tenantId, ScopeDTO scopeDTO)
+            throws IdentityOAuth2Exception {
+
+        try {
+            scopeClaimMappingDAO.addScope(scopeDTO, tenantId);
+        } catch (IdentityOAuth2ClientException e) {
+            // The scope was added concurrently, for instance by the tenant creation listener.
+            if (log.isDebugEnabled()) {
+                log.debug("OIDC scope: " + scopeDTO.getName() + " of the tenant: " + tenantId +
+                        " is already available.", e);
+            }
+        }
+    }
+
+    private static int getConfiguredPoolSize() {
+
+        String poolSize = IdentityUtil.getProperty(POOL_SIZE);
+        if (StringUtils.isNotBlank(poolSize)) {
+            try {
+                int configuredPoolSize = Integer.parseInt(poolSize.trim());
+                if (configuredPoolSize > 0) {
+                    return configuredPoolSize;
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + poolSize + " configured for " + POOL_SIZE + ". Using the default " +
+                        "value: " + DEFAULT_POOL_SIZE);
+            }
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+}
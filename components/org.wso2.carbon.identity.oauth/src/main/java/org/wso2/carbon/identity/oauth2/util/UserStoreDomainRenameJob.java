@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.registry.core.Registry;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.exceptions.RegistryException;
+import org.wso2.carbon.registry.core.service.RegistryService;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves the access tokens and authorization codes of a user store to a new user store domain in bounded chunks.
+ * Each chunk is updated in its own short transaction, ordered by the primary key, and the access token cache
+ * entries of the chunk are evicted once it is committed. Since processed rows no longer match the old domain, the
+ * committed rows act as the checkpoint and a re-run of the job resumes from the first unprocessed row.
+ * <p>
+ * A rename is recorded in the super tenant config registry before its first chunk is moved and the record is removed
+ * once all the rows are moved. Records left behind by a failed or interrupted job are picked up on server startup by
+ * {@link #resumePendingJobs()}: the rename is completed if the user store was renamed, and rolled back otherwise.
+ * <p>
+ * The record is shared by all the nodes of a cluster, hence a node processes a rename only while it holds the lease
+ * of the rename in the registry. The lease expires after 'OAuth.UserStoreDomainRename.LeaseTimeout' milliseconds
+ * unless it is renewed while the chunks are moved, so that the rename of a node which stopped is resumed by the next
+ * node which starts.
+ * <p>
+ * The job runs in the calling thread by default. When 'OAuth.UserStoreDomainRename.EnableAsync' is set, it is
+ * executed by a background worker and its progress can be observed through {@link #getStatus(int, String)}.
+ */
+public class UserStoreDomainRenameJob implements Runnable {
+
+    private static final Log log = LogFactory.getLog(UserStoreDomainRenameJob.class);
+
+    private static final String ENABLE_ASYNC = "OAuth.UserStoreDomainRename.EnableAsync";
+    private static final String CHUNK_SIZE = "OAuth.UserStoreDomainRename.ChunkSize";
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final String LEASE_TIMEOUT = "OAuth.UserStoreDomainRename.LeaseTimeout";
+    private static final long DEFAULT_LEASE_TIMEOUT = 300000;
+    private static final String PENDING_RENAMES_RESOURCE_PATH = "/identity/oauth2/pendingUserStoreDomainRenames";
+    private static final String RENAME_LEASES_RESOURCE_PATH = "/identity/oauth2/userStoreDomainRenameLeases";
+    private static final Object PENDING_RENAMES_LOCK = new Object();
+    // Identifies the leases taken by this node. A restarted node does not own the leases taken before the restart.
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    private static final Map<String, UserStoreDomainRenameJob> jobs = new ConcurrentHashMap<>();
+    private static ExecutorService executor;
+
+    private final int tenantId;
+    private final String currentUserStoreDomain;
+    private final String newUserStoreDomain;
+    private final int chunkSize;
+    private final AtomicLong processedAccessTokens = new AtomicLong();
+    private final AtomicLong processedAuthorizationCodes = new AtomicLong();
+
+    private volatile Status status = Status.PENDING;
+    // Key of the pending rename record, and of its lease, which this job completes.
+    private String pendingRenameKey;
+    private long leaseRenewalTime;
+
+    /**
+     * Status of a user store domain rename job.
+     */
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    public UserStoreDomainRenameJob(int tenantId, String currentUserStoreDomain, String newUserStoreDomain) {
+
+        this(tenantId, currentUserStoreDomain, newUserStoreDomain, getConfiguredChunkSize());
+    }
+
+    UserStoreDomainRenameJob(int tenantId, String currentUserStoreDomain, String newUserStoreDomain, int chunkSize) {
+
+        this.tenantId = tenantId;
+        this.currentUserStoreDomain = currentUserStoreDomain;
+        this.newUserStoreDomain = newUserStoreDomain;
+        this.chunkSize = chunkSize;
+        this.pendingRenameKey = getJobKey(tenantId, currentUserStoreDomain);
+    }
+
+    /**
+     * Execute the job, either in the calling thread or in the background worker depending on the configuration.
+     * A job which is already running for the same tenant and user store domain is not started again.
+     *
+     * @throws IdentityOAuth2Exception If the job is executed in the calling thread and fails.
+     */
+    public void execute() throws IdentityOAuth2Exception {
+
+        String jobKey = getJobKey(tenantId, currentUserStoreDomain);
+        synchronized (jobs) {
+            UserStoreDomainRenameJob existingJob = jobs.get(jobKey);
+            if (existingJob != null && existingJob.isActive()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("User store domain rename of: " + currentUserStoreDomain + " in tenant: " + tenantId +
+                            " is already in progress.");
+                }
+                return;
+            }
+            jobs.put(jobKey, this);
+        }
+
+        try {
+            addPendingRename(jobKey, currentUserStoreDomain, newUserStoreDomain);
+            if (!acquireLease()) {
+                throw new IdentityOAuth2Exception("User store domain rename of: " + currentUserStoreDomain +
+                        " in tenant: " + tenantId + " is in progress on another node.");
+            }
+        } catch (IdentityOAuth2Exception e) {
+            status = Status.FAILED;
+            throw e;
+        }
+        if (Boolean.parseBoolean(IdentityUtil.getProperty(ENABLE_ASYNC))) {
+            getExecutor().execute(this);
+        } else {
+            process();
+        }
+    }
+
+    /**
+     * Resume the renames which were recorded but not completed before the last shutdown, in the background worker.
+     * A rename is completed if the user store now carries the new domain, and rolled back to the current domain if
+     * the user store was not renamed, e.g. because the server stopped in the middle of a synchronous rename.
+     */
+    public static void resumePendingJobs() {
+
+        getExecutor().execute(() -> {
+            Map<String, List<String>> pendingRenames;
+            try {
+                pendingRenames = getPendingRenames();
+            } catch (IdentityOAuth2Exception e) {
+                log.error("Error while reading the pending user store domain renames.", e);
+                return;
+            }
+            for (Map.Entry<String, List<String>> pendingRename : pendingRenames.entrySet()) {
+                resumePendingJob(pendingRename.getKey(), pendingRename.getValue());
+            }
+        });
+    }
+
+    /**
+     * Stop the background worker. Jobs which are interrupted are resumed on the next startup.
+     */
+    public static synchronized void shutdown() {
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            process();
+        } catch (IdentityOAuth2Exception e) {
+            log.error("Error while renaming user store domain: " + currentUserStoreDomain + " as: " +
+                    newUserStoreDomain + " in tenant: " + tenantId + ". Processed " + processedAccessTokens.get() +
+                    " access tokens and " + processedAuthorizationCodes.get() + " authorization codes. The rename " +
+                    "is resumed on the next startup.", e);
+        }
+    }
+
+    /**
+     * Get the status of the latest rename job of the given user store domain.
+     *
+     * @param tenantId        Tenant id.
+     * @param userStoreDomain User store domain which is renamed.
+     * @return Status of the job, or null if no job was started for the user store domain.
+     */
+    public static Status getStatus(int tenantId, String userStoreDomain) {
+
+        UserStoreDomainRenameJob job = jobs.get(getJobKey(tenantId, userStoreDomain));
+        return job == null ? null : job.status;
+    }
+
+    public long getProcessedAccessTokens() {
+
+        return processedAccessTokens.get();
+    }
+
+    public long getProcessedAuthorizationCodes() {
+
+        return processedAuthorizationCodes.get();
+    }
+
+    public Status getStatus() {
+
+        return status;
+    }
+
+    private void process() throws IdentityOAuth2Exception {
+
+        status = Status.RUNNING;
+        if (log.isDebugEnabled()) {
+            log.debug("Renaming user store domain: " + currentUserStoreDomain + " as: " + newUserStoreDomain +
+                    " in tenant: " + tenantId + " in chunks of " + chunkSize);
+        }
+        try {
+            String tenantDomain = OAuth2Util.getTenantDomain(tenantId);
+            OAuthTokenPersistenceFactory.getInstance().getAccessTokenDAO().updateUserStoreDomainInChunks(tenantId,
+                    currentUserStoreDomain, newUserStoreDomain, chunkSize, accessTokenDOs -> {
+                        for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+                            OAuthUtil.clearOAuthCacheByTenant(accessTokenDO.getAccessToken(), tenantDomain);
+                        }
+                        processedAccessTokens.addAndGet(accessTokenDOs.size());
+                        renewLease();
+                    });
+            renewLease();
+            OAuthTokenPersistenceFactory.getInstance().getAuthorizationCodeDAO().updateUserStoreDomainInChunks(
+                    tenantId, currentUserStoreDomain, newUserStoreDomain, chunkSize,
+                    processedAuthorizationCodes::addAndGet);
+            removePendingRename(pendingRenameKey);
+            status = Status.COMPLETED;
+        } catch (IdentityOAuth2Exception | RuntimeException e) {
+            status = Status.FAILED;
+            throw e;
+        } finally {
+            releaseLease(pendingRenameKey);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Renamed user store domain: " + currentUserStoreDomain + " as: " + newUserStoreDomain +
+                    " in tenant: " + tenantId + " of " + processedAccessTokens.get() + " access tokens and " +
+                    processedAuthorizationCodes.get() + " authorization codes.");
+        }
+    }
+
+    private boolean isActive() {
+
+        return status == Status.PENDING || status == Status.RUNNING;
+    }
+
+    private static String getJobKey(int tenantId, String userStoreDomain) {
+
+        return tenantId + ":" + OAuth2Util.getSanitizedUserStoreDomain(userStoreDomain);
+    }
+
+    private static void resumePendingJob(String jobKey, List<String> domains) {
+
+        if (domains == null || domains.size() != 2) {
+            log.warn("Ignoring the invalid pending user store domain rename: " + jobKey);
+            return;
+        }
+        int tenantId = Integer.parseInt(jobKey.substring(0, jobKey.indexOf(':')));
+        String currentUserStoreDomain = domains.get(0);
+        String newUserStoreDomain = domains.get(1);
+        try {
+            UserStoreDomainRenameJob job = new UserStoreDomainRenameJob(tenantId, currentUserStoreDomain,
+                    newUserStoreDomain);
+            job.pendingRenameKey = jobKey;
+            if (!job.acquireLease()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Rename of user store domain: " + currentUserStoreDomain + " as: " +
+                            newUserStoreDomain + " in tenant: " + tenantId + " is processed by another node.");
+                }
+                return;
+            }
+            if (isUserStoreRenamed(tenantId, currentUserStoreDomain)) {
+                log.info("Resuming the rename of user store domain: " + currentUserStoreDomain + " as: " +
+                        newUserStoreDomain + " in tenant: " + tenantId);
+            } else {
+                log.info("Rolling back the incomplete rename of user store domain: " + currentUserStoreDomain +
+                        " as: " + newUserStoreDomain + " in tenant: " + tenantId);
+                job = new UserStoreDomainRenameJob(tenantId, newUserStoreDomain, currentUserStoreDomain);
+                job.pendingRenameKey = jobKey;
+            }
+            job.process();
+        } catch (IdentityOAuth2Exception | UserStoreException e) {
+            log.error("Error while resuming the rename of user store domain: " + currentUserStoreDomain + " as: " +
+                    newUserStoreDomain + " in tenant: " + tenantId + ". It is retried on the next startup.", e);
+            releaseLease(jobKey);
+        }
+    }
+
+    /**
+     * Take the lease of the pending rename of this job, unless another node holds an unexpired lease of it. Registry
+     * writes are last writer wins, so two nodes may take a free lease at the same time. Since a moved row no longer
+     * matches the old domain, moving the same chunks from two nodes is wasted work rather than an inconsistency.
+     *
+     * @return True if this node holds the lease.
+     * @throws IdentityOAuth2Exception If an error occurs while accessing the registry.
+     */
+    private boolean acquireLease() throws IdentityOAuth2Exception {
+
+        synchronized (PENDING_RENAMES_LOCK) {
+            Registry registry = getRegistry();
+            if (registry == null) {
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            long leaseTimeout = getLeaseTimeout();
+            try {
+                Resource resource = registry.resourceExists(RENAME_LEASES_RESOURCE_PATH) ?
+                        registry.get(RENAME_LEASES_RESOURCE_PATH) : registry.newResource();
+                List<String> lease = resource.getPropertyValues(pendingRenameKey);
+                if (lease != null && lease.size() == 2 && !NODE_ID.equals(lease.get(0)) &&
+                        Long.parseLong(lease.get(1)) > now) {
+                    return false;
+                }
+                resource.setProperty(pendingRenameKey, new ArrayList<>(Arrays.asList(NODE_ID,
+                        String.valueOf(now + leaseTimeout))));
+                registry.put(RENAME_LEASES_RESOURCE_PATH, resource);
+            } catch (RegistryException | NumberFormatException e) {
+                throw new IdentityOAuth2Exception("Error while taking the lease of the user store domain rename: " +
+                        pendingRenameKey, e);
+            }
+            leaseRenewalTime = now + leaseTimeout / 2;
+            return true;
+        }
+    }
+
+    /**
+     * Renew the lease once half of it has elapsed, and stop the job if the lease was taken over by another node.
+     */
+    private synchronized void renewLease() throws IdentityOAuth2Exception {
+
+        if (System.currentTimeMillis() >= leaseRenewalTime && !acquireLease()) {
+            throw new IdentityOAuth2Exception("Lost the lease of the user store domain rename: " + pendingRenameKey +
+                    " to another node.");
+        }
+    }
+
+    private static void releaseLease(String jobKey) {
+
+        synchronized (PENDING_RENAMES_LOCK) {
+            try {
+                Registry registry = getRegistry();
+                if (registry == null || !registry.resourceExists(RENAME_LEASES_RESOURCE_PATH)) {
+                    return;
+                }
+                Resource resource = registry.get(RENAME_LEASES_RESOURCE_PATH);
+                List<String> lease = resource.getPropertyValues(jobKey);
+                if (lease != null && !lease.isEmpty() && NODE_ID.equals(lease.get(0))) {
+                    resource.removeProperty(jobKey);
+                    registry.put(RENAME_LEASES_RESOURCE_PATH, resource);
+                }
+            } catch (IdentityOAuth2Exception | RegistryException e) {
+                log.warn("Error while releasing the lease of the user store domain rename: " + jobKey +
+                        ". It expires after the lease timeout.", e);
+            }
+        }
+    }
+
+    private static boolean isUserStoreRenamed(int tenantId, String currentUserStoreDomain)
+            throws UserStoreException {
+
+        UserStoreManager userStoreManager = (UserStoreManager) OAuthComponentServiceHolder.getInstance()
+                .getRealmService().getTenantUserRealm(tenantId).getUserStoreManager();
+        return userStoreManager.getSecondaryUserStoreManager(currentUserStoreDomain) == null;
+    }
+
+    private static void addPendingRename(String jobKey, String currentUserStoreDomain, String newUserStoreDomain)
+            throws IdentityOAuth2Exception {
+
+        synchronized (PENDING_RENAMES_LOCK) {
+            Registry registry = getRegistry();
+            if (registry == null) {
+                return;
+            }
+            try {
+                Resource resource = registry.resourceExists(PENDING_RENAMES_RESOURCE_PATH) ?
+                        registry.get(PENDING_RENAMES_RESOURCE_PATH) : registry.newResource();
+                resource.setProperty(jobKey, new ArrayList<>(Arrays.asList(currentUserStoreDomain,
+                        newUserStoreDomain)));
+                registry.put(PENDING_RENAMES_RESOURCE_PATH, resource);
+            } catch (RegistryException e) {
+                throw new IdentityOAuth2Exception("Error while recording the rename of user store domain: " +
+                        currentUserStoreDomain + " as: " + newUserStoreDomain, e);
+            }
+        }
+    }
+
+    private static void removePendingRename(String jobKey) throws IdentityOAuth2Exception {
+
+        synchronized (PENDING_RENAMES_LOCK) {
+            Registry registry = getRegistry();
+            if (registry == null) {
+                return;
+            }
+            try {
+                if (registry.resourceExists(PENDING_RENAMES_RESOURCE_PATH)) {
+                    Resource resource = registry.get(PENDING_RENAMES_RESOURCE_PATH);
+                    resource.removeProperty(jobKey);
+                    registry.put(PENDING_RENAMES_RESOURCE_PATH, resource);
+                }
+            } catch (RegistryException e) {
+                throw new IdentityOAuth2Exception("Error while removing the completed user store domain rename: " +
+                        jobKey, e);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> getPendingRenames() throws IdentityOAuth2Exception {
+
+        Map<String, List<String>> pendingRenames = new HashMap<>();
+        synchronized (PENDING_RENAMES_LOCK) {
+            Registry registry = getRegistry();
+            if (registry == null) {
+                return pendingRenames;
+            }
+            try {
+                if (registry.resourceExists(PENDING_RENAMES_RESOURCE_PATH)) {
+                    Resource resource = registry.get(PENDING_RENAMES_RESOURCE_PATH);
+                    for (Object jobKey : resource.getProperties().keySet()) {
+                        pendingRenames.put((String) jobKey, resource.getPropertyValues((String) jobKey));
+                    }
+                }
+            } catch (RegistryException e) {
+                throw new IdentityOAuth2Exception("Error while reading the pending user store domain renames.", e);
+            }
+        }
+        return pendingRenames;
+    }
+
+    private static Registry getRegistry() throws IdentityOAuth2Exception {
+
+        RegistryService registryService = OAuth2ServiceComponentHolder.getRegistryService();
+        if (registryService == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Registry service is not available. User store domain renames are not recorded.");
+            }
+            return null;
+        }
+        try {
+            return registryService.getConfigSystemRegistry();
+        } catch (RegistryException e) {
+            throw new IdentityOAuth2Exception("Error while loading the config registry of the super tenant.", e);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "UserStoreDomainRenameJob");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private static long getLeaseTimeout() {
+
+        String leaseTimeout = IdentityUtil.getProperty(LEASE_TIMEOUT);
+        if (StringUtils.isNotBlank(leaseTimeout)) {
+            try {
+                long configuredLeaseTimeout = Long.parseLong(leaseTimeout.trim());
+                if (configuredLeaseTimeout > 0) {
+                    return configuredLeaseTimeout;
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + leaseTimeout + " configured for " + LEASE_TIMEOUT + ". Using the " +
+                        "default value: " + DEFAULT_LEASE_TIMEOUT);
+            }
+        }
+        return DEFAULT_LEASE_TIMEOUT;
+    }
+
+    private static int getConfiguredChunkSize() {
+
+        String chunkSize = IdentityUtil.getProperty(CHUNK_SIZE);
+        if (StringUtils.isNotBlank(chunkSize)) {
+            try {
+                int configuredChunkSize = Integer.parseInt(chunkSize.trim());
+                if (configuredChunkSize > 0) {
+                    return configuredChunkSize;
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value: " + chunkSize + " configured for " + CHUNK_SIZE + ". Using the default " +
+                        "value: " + DEFAULT_CHUNK_SIZE);
+            }
+        }
+        return DEFAULT_CHUNK_SIZE;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth.cache.JWTRevocationCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Revocation list of stateless JWT access tokens.
+ * <p>
+ * Stateless JWT access tokens are not persisted, hence a revoked token cannot be marked as revoked in the database.
+ * Instead, the JWT ID of the revoked token is kept in this list until the token expires. Revocations are persisted in
+ * the session data store by the {@link JWTRevocationCache}, which the other nodes of the cluster read through when the
+ * token is not in their cache, while the revocations done on this node are also kept locally to be checked without a
+ * cache lookup. Each revocation done on this node gets an increasing sequence number, so that consumers such as
+ * gateways can poll the revocations done after the last one they have seen through {@link #getRevokedTokens(long)}.
+ * The sequence numbers and the feed are node local, hence such consumers have to poll each node.
+ */
+public class JWTRevocationList {
+
+    private static final Log log = LogFactory.getLog(JWTRevocationList.class);
+    private static final long PRUNE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final JWTRevocationList instance = new JWTRevocationList();
+
+    // Expiry time of the revoked tokens against their JWT IDs.
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, RevokedJWT> revocationFeed = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long nextPruneTime;
+
+    JWTRevocationList() {
+
+    }
+
+    public static JWTRevocationList getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Revoke a token.
+     *
+     * @param jwtId      JWT ID of the token.
+     * @param expiryTime Expiry time of the token in milliseconds. The token is kept in the list until this time.
+     * @return true if the token was not revoked already.
+     */
+    public boolean revoke(String jwtId, long expiryTime) {
+
+        if (StringUtils.isEmpty(jwtId)) {
+            return false;
+        }
+        long currentTime = System.currentTimeMillis();
+        pruneExpiredTokens(currentTime);
+        if (expiryTime <= currentTime) {
+            // An expired token is rejected on its own.
+            return false;
+        }
+        if (revokedTokens.putIfAbsent(jwtId, expiryTime) != null) {
+            return false;
+        }
+        JWTRevocationCache.getInstance().addRevokedToken(jwtId, expiryTime);
+        long revocationSequence = sequence.incrementAndGet();
+        revocationFeed.put(revocationSequence, new RevokedJWT(jwtId, expiryTime, revocationSequence));
+        if (log.isDebugEnabled()) {
+            log.debug("Added the token with JWT ID: " + jwtId + " to the revocation list with sequence: " +
+                    revocationSequence);
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a token is revoked, on this node or on any other node of the cluster.
+     *
+     * @param jwtId JWT ID of the token.
+     * @return true if the token is revoked and not expired yet.
+     */
+    public boolean isRevoked(String jwtId) {
+
+        if (StringUtils.isEmpty(jwtId)) {
+            return false;
+        }
+        Long expiryTime = revokedTokens.get(jwtId);
+        if (expiryTime != null && expiryTime > System.currentTimeMillis()) {
+            return true;
+        }
+        return JWTRevocationCache.getInstance().isRevoked(jwtId);
+    }
+
+    /**
+     * Get the revocations done after the given sequence number, in the order they were done. Tokens that are expired
+     * by now are not returned.
+     *
+     * @param afterSequence Sequence number of the last revocation known to the caller. Use 0 to get all.
+     * @return Revoked tokens.
+     */
+    public List<RevokedJWT> getRevokedTokens(long afterSequence) {
+
+        long currentTime = System.currentTimeMillis();
+        List<RevokedJWT> revocations = new ArrayList<>();
+        for (RevokedJWT revokedJWT : revocationFeed.tailMap(afterSequence, false).values()) {
+            if (revokedJWT.getExpiryTime() > currentTime) {
+                revocations.add(revokedJWT);
+            }
+        }
+        return Collections.unmodifiableList(revocations);
+    }
+
+    /**
+     * Get the sequence number of the latest revocation.
+     *
+     * @return Sequence number of the latest revocation, or 0 if nothing was revoked.
+     */
+    public long getLatestSequence() {
+
+        return sequence.get();
+    }
+
+    private void pruneExpiredTokens(long currentTime) {
+
+        if (currentTime < nextPruneTime) {
+            return;
+        }
+        nextPruneTime = currentTime + PRUNE_INTERVAL;
+        Iterator<RevokedJWT> iterator = revocationFeed.values().iterator();
+        while (iterator.hasNext()) {
+            RevokedJWT revokedJWT = iterator.next();
+            if (revokedJWT.getExpiryTime() <= currentTime) {
+                iterator.remove();
+                revokedTokens.remove(revokedJWT.getJwtId());
+            }
+        }
+    }
+
+    /**
+     * A token in the revocation list.
+     */
+    public static class RevokedJWT {
+
+        private final String jwtId;
+        private final long expiryTime;
+        private final long sequence;
+
+        RevokedJWT(String jwtId, long expiryTime, long sequence) {
+
+            this.jwtId = jwtId;
+            this.expiryTime = expiryTime;
+            this.sequence = sequence;
+        }
+
+        public String getJwtId() {
+
+            return jwtId;
+        }
+
+        public long getExpiryTime() {
+
+            return expiryTime;
+        }
+
+        public long getSequence() {
+
+            return sequence;
+        }
+    }
+}
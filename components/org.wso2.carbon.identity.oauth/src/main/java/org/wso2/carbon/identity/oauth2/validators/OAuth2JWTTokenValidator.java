@@ -35,9 +35,13 @@ import org.wso2.carbon.identity.application.common.util.IdentityApplicationConst
 import org.wso2.carbon.identity.application.common.util.IdentityApplicationManagementUtil;
 import org.wso2.carbon.identity.central.log.mgt.utils.LoggerUtils;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.oauth.cache.JWTVerificationResultCache;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.idp.mgt.IdentityProviderManagementException;
 import org.wso2.carbon.idp.mgt.IdentityProviderManager;
@@ -47,11 +51,13 @@ import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
+import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JWT Access token validator
@@ -64,36 +70,50 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
     private static final String OIDC_IDP_ENTITY_ID = "IdPEntityId";
     private static final String DOT_SEPARATOR = ".";
     private static final String TRUE = "true";
+    private static final int MAX_CACHED_CERTIFICATES = 100;
+
+    // Decoded IdP certificates and the signature verifiers built for them. A changed IdP certificate gets new entries.
+    private static final Map<String, X509Certificate> decodedCertificates = new ConcurrentHashMap<>();
+    private static final Map<X509Certificate, JWSVerifier> verifiers = new ConcurrentHashMap<>();
 
     @Override
     public boolean validateAccessToken(OAuth2TokenValidationMessageContext validationReqDTO)
             throws IdentityOAuth2Exception {
 
-        if (!isJWT(validationReqDTO.getRequestDTO().getAccessToken().getIdentifier())) {
+        String token = validationReqDTO.getRequestDTO().getAccessToken().getIdentifier();
+        if (!isJWT(token)) {
             return false;
         }
 
         try {
-            SignedJWT signedJWT = getSignedJWT(validationReqDTO);
-            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
-            if (claimsSet == null) {
-                LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
-                        OAuthConstants.LogConstants.FAILED, "Claim values are empty in the provided token.",
-                        "validate-jwt-access-token", null);
-                throw new IdentityOAuth2Exception("Claim values are empty in the given Token.");
-            }
+            String tenantDomain = getTenantDomain();
+            // Skip parsing and signature verification of a token verified earlier.
+            JWTClaimsSet claimsSet = JWTVerificationResultCache.getInstance().getVerifiedClaims(token, tenantDomain);
+            boolean verifiedEarlier = claimsSet != null;
+            if (!verifiedEarlier) {
+                SignedJWT signedJWT = getSignedJWT(validationReqDTO);
+                claimsSet = signedJWT.getJWTClaimsSet();
+                if (claimsSet == null) {
+                    LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
+                            OAuthConstants.LogConstants.FAILED, "Claim values are empty in the provided token.",
+                            "validate-jwt-access-token", null);
+                    throw new IdentityOAuth2Exception("Claim values are empty in the given Token.");
+                }
 
-            if (!validateRequiredFields(claimsSet)) {
-                return false;
-            }
+                if (!validateRequiredFields(claimsSet)) {
+                    return false;
+                }
 
-            IdentityProvider identityProvider = getResidentIDPForIssuer(claimsSet.getIssuer());
+                IdentityProvider identityProvider = getResidentIDPForIssuer(claimsSet.getIssuer());
 
-            if (!validateSignature(signedJWT, identityProvider)) {
-                LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
-                        OAuthConstants.LogConstants.FAILED, "Signature validation failed.", "validate-jwt-access-token",
-                        null);
-                return false;
+                if (!validateSignature(signedJWT, identityProvider)) {
+                    LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
+                            OAuthConstants.LogConstants.FAILED, "Signature validation failed.",
+                            "validate-jwt-access-token", null);
+                    return false;
+                }
+            } else if (log.isDebugEnabled()) {
+                log.debug("Signature of the token was verified earlier. Skipping the signature verification.");
             }
             if (!checkExpirationTime(claimsSet.getExpirationTime())) {
                 LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
@@ -101,7 +121,23 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
                 return false;
             }
             checkNotBeforeTime(claimsSet.getNotBeforeTime());
+            // Only stateless tokens are added to the revocation list, so persisted tokens skip the lookup.
+            if (Boolean.TRUE.equals(claimsSet.getClaim(OAuth2Util.STATELESS_ACCESS_TOKEN_CLAIM))
+                    && JWTRevocationList.getInstance().isRevoked(claimsSet.getJWTID())) {
+                LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
+                        OAuthConstants.LogConstants.FAILED, "Token is revoked.", "validate-jwt-access-token", null);
+                return false;
+            }
+            if (!verifiedEarlier) {
+                JWTVerificationResultCache.getInstance().addVerifiedToken(token, tenantDomain, claimsSet);
+            }
             setJWTMessageContext(validationReqDTO, claimsSet);
+            if (OAuth2Util.isStatelessJWTAccessTokenEnabled()) {
+                AccessTokenDO statelessAccessTokenDO = buildStatelessAccessTokenDO(token, claimsSet);
+                if (statelessAccessTokenDO != null) {
+                    validationReqDTO.addProperty(OAuth2Util.STATELESS_ACCESS_TOKEN_DO, statelessAccessTokenDO);
+                }
+            }
         } catch (JOSEException | ParseException e) {
             LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
                     OAuthConstants.LogConstants.FAILED, "System error occurred.", "validate-jwt-access-token", null);
@@ -133,13 +169,26 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
                                                        IdentityProvider idp) throws IdentityOAuth2Exception {
         X509Certificate x509Certificate;
         String tenantDomain = getTenantDomain();
+        String encodedCertificate = idp.getCertificate();
+        if (encodedCertificate != null) {
+            x509Certificate = decodedCertificates.get(encodedCertificate);
+            if (x509Certificate != null) {
+                return x509Certificate;
+            }
+        }
         try {
             x509Certificate = (X509Certificate) IdentityApplicationManagementUtil
-                    .decodeCertificate(idp.getCertificate());
+                    .decodeCertificate(encodedCertificate);
         } catch (CertificateException e) {
             throw new IdentityOAuth2Exception("Error occurred while decoding public certificate of Identity Provider "
                     + idp.getIdentityProviderName() + " for tenant domain " + tenantDomain, e);
         }
+        if (encodedCertificate != null && x509Certificate != null) {
+            if (decodedCertificates.size() >= MAX_CACHED_CERTIFICATES) {
+                decodedCertificates.clear();
+            }
+            decodedCertificates.put(encodedCertificate, x509Certificate);
+        }
         return x509Certificate;
     }
 
@@ -220,12 +269,7 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
             }
             if (alg.indexOf(ALGO_PREFIX) == 0 || alg.indexOf(ALGO_PREFIX_PS) == 0) {
                 // At this point 'x509Certificate' will never be null.
-                PublicKey publicKey = x509Certificate.getPublicKey();
-                if (publicKey instanceof RSAPublicKey) {
-                    verifier = new RSASSAVerifier((RSAPublicKey) publicKey);
-                } else {
-                    throw new IdentityOAuth2Exception("Public key is not an RSA public key.");
-                }
+                verifier = getVerifier(x509Certificate);
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("Signature Algorithm not supported yet: " + alg);
@@ -243,6 +287,28 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
         return isValid;
     }
 
+    /**
+     * Get the RSA signature verifier of a certificate. Verifiers are built once per certificate and reused, since
+     * they hold no state other than the public key.
+     */
+    private JWSVerifier getVerifier(X509Certificate x509Certificate) throws IdentityOAuth2Exception {
+
+        JWSVerifier verifier = verifiers.get(x509Certificate);
+        if (verifier != null) {
+            return verifier;
+        }
+        PublicKey publicKey = x509Certificate.getPublicKey();
+        if (!(publicKey instanceof RSAPublicKey)) {
+            throw new IdentityOAuth2Exception("Public key is not an RSA public key.");
+        }
+        verifier = new RSASSAVerifier((RSAPublicKey) publicKey);
+        if (verifiers.size() >= MAX_CACHED_CERTIFICATES) {
+            verifiers.clear();
+        }
+        verifiers.put(x509Certificate, verifier);
+        return verifier;
+    }
+
     private boolean checkExpirationTime(Date expirationTime) {
         long timeStampSkewMillis = OAuthServerConfiguration.getInstance().getTimeStampSkewInSeconds() * 1000;
         long expirationTimeInMillis = expirationTime.getTime();
@@ -333,6 +399,63 @@ public class OAuth2JWTTokenValidator extends DefaultOAuth2TokenValidator {
         return StringUtils.countMatches(tokenIdentifier, DOT_SEPARATOR) == 2;
     }
 
+    /**
+     * Build the token details of a stateless access token from its claims. Only tokens marked as stateless at
+     * issuance are considered, and only while their application is active. Stateless access tokens are application
+     * tokens, hence the authorized user is the owner of the application.
+     *
+     * @param token     Serialized JWT.
+     * @param claimsSet Claims of the verified token.
+     * @return Token details, or null if the token cannot be a stateless access token.
+     */
+    private AccessTokenDO buildStatelessAccessTokenDO(String token, JWTClaimsSet claimsSet)
+            throws ParseException, IdentityOAuth2Exception {
+
+        if (!Boolean.TRUE.equals(claimsSet.getClaim(OAuth2Util.STATELESS_ACCESS_TOKEN_CLAIM)) ||
+                !OAuthConstants.UserType.APPLICATION.equals(
+                        claimsSet.getClaim(OAuthConstants.AUTHORIZED_USER_TYPE))) {
+            return null;
+        }
+        String consumerKey = claimsSet.getStringClaim(OAuth2Util.CLIENT_ID);
+        if (StringUtils.isEmpty(consumerKey)) {
+            return null;
+        }
+        OAuthAppDO oAuthAppDO;
+        try {
+            oAuthAppDO = OAuth2Util.getAppInformationByClientId(consumerKey);
+        } catch (InvalidOAuthClientException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Application of the stateless access token is not found for client id: " + consumerKey, e);
+            }
+            return null;
+        }
+        if (!OAuthConstants.OauthAppStates.APP_STATE_ACTIVE.equalsIgnoreCase(oAuthAppDO.getState())) {
+            if (log.isDebugEnabled()) {
+                log.debug("Application of the stateless access token is not active for client id: " + consumerKey);
+            }
+            return null;
+        }
+
+        Date issuedTime = claimsSet.getIssueTime() != null ? claimsSet.getIssueTime() : claimsSet.getNotBeforeTime();
+        if (issuedTime == null) {
+            return null;
+        }
+        long validityPeriodInMillis = claimsSet.getExpirationTime().getTime() - issuedTime.getTime();
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        accessTokenDO.setAccessToken(token);
+        accessTokenDO.setTokenId(claimsSet.getJWTID());
+        accessTokenDO.setConsumerKey(consumerKey);
+        accessTokenDO.setAuthzUser(oAuthAppDO.getAppOwner());
+        accessTokenDO.setScope(OAuth2Util.buildScopeArray(claimsSet.getStringClaim(OAuth2Util.SCOPE)));
+        accessTokenDO.setTokenState(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        accessTokenDO.setTokenType(OAuthConstants.UserType.APPLICATION);
+        accessTokenDO.setTenantID(IdentityTenantUtil.getTenantId(OAuth2Util.getTenantDomainOfOauthApp(oAuthAppDO)));
+        accessTokenDO.setIssuedTime(new Timestamp(issuedTime.getTime()));
+        accessTokenDO.setValidityPeriodInMillis(validityPeriodInMillis);
+        accessTokenDO.setValidityPeriod(validityPeriodInMillis / 1000);
+        return accessTokenDO;
+    }
+
     private void setJWTMessageContext(OAuth2TokenValidationMessageContext validationReqDTO, JWTClaimsSet claimsSet) {
 
         validationReqDTO.addProperty(OAuth2Util.JWT_ACCESS_TOKEN, TRUE);
@@ -30,6 +30,7 @@ import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.user.UserInfoRequestContext;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.authcontext.AuthorizationContextTokenGenerator;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
@@ -174,8 +175,12 @@ public class TokenValidationHandler {
         try {
             accessTokenDO = OAuth2Util.findAccessToken(requestDTO.getAccessToken().getIdentifier(), false);
         } catch (IllegalArgumentException e) {
-            // Access token not found in the system.
-            return buildClientAppErrorResponse(e.getMessage());
+            // Access token not found in the system. It can still be a valid stateless access token.
+            accessTokenDO = findStatelessAccessToken(messageContext, tokenValidator,
+                    requestDTO.getAccessToken().getIdentifier());
+            if (accessTokenDO == null) {
+                return buildClientAppErrorResponse(e.getMessage());
+            }
         }
 
         if (hasAccessTokenExpired(accessTokenDO)) {
@@ -186,6 +191,11 @@ public class TokenValidationHandler {
 
         // Adding the AccessTokenDO as a context property for further use
         messageContext.addProperty(OAuthConstants.ACCESS_TOKEN_DO, accessTokenDO);
+        // Share the resolved token with the userinfo request being served, if any.
+        UserInfoRequestContext userInfoRequestContext = UserInfoRequestContext.get(accessToken.getIdentifier());
+        if (userInfoRequestContext != null) {
+            userInfoRequestContext.setAccessTokenDO(accessTokenDO);
+        }
 
         if (!tokenValidator.validateAccessDelegation(messageContext)) {
             return buildClientAppErrorResponse("Invalid access delegation");
@@ -441,25 +451,30 @@ public class TokenValidationHandler {
         } else {
             try {
                 accessTokenDO = OAuth2Util.findAccessToken(validationRequest.getAccessToken().getIdentifier(), false);
-                List<String> allowedScopes = OAuthServerConfiguration.getInstance().getAllowedScopes();
-                String[] requestedScopes = accessTokenDO.getScope();
-                List<String> scopesToBeValidated = new ArrayList<>();
-                if (requestedScopes != null) {
-                    for (String scope : requestedScopes) {
-                        if (OAuth2Util.isAllowedScope(allowedScopes, scope)) {
-                            requestedAllowedScopes.add(scope);
-                        } else {
-                            scopesToBeValidated.add(scope);
-                        }
+            } catch (IllegalArgumentException e) {
+                // access token not found in the system. It can still be a stateless access token verified by the
+                // token validator.
+                accessTokenDO = getStatelessAccessToken(messageContext,
+                        validationRequest.getAccessToken().getIdentifier());
+                if (accessTokenDO == null) {
+                    LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
+                            OAuthConstants.LogConstants.FAILED, "Provided token is not a valid access token.",
+                            "validate-access-token", null);
+                    return buildIntrospectionErrorResponse(e.getMessage());
+                }
+            }
+            List<String> allowedScopes = OAuthServerConfiguration.getInstance().getAllowedScopes();
+            String[] requestedScopes = accessTokenDO.getScope();
+            List<String> scopesToBeValidated = new ArrayList<>();
+            if (requestedScopes != null) {
+                for (String scope : requestedScopes) {
+                    if (OAuth2Util.isAllowedScope(allowedScopes, scope)) {
+                        requestedAllowedScopes.add(scope);
+                    } else {
+                        scopesToBeValidated.add(scope);
                     }
-                    accessTokenDO.setScope(scopesToBeValidated.toArray(new String[0]));
                 }
-            } catch (IllegalArgumentException e) {
-                // access token not found in the system.
-                LoggerUtils.triggerDiagnosticLogEvent(OAuthConstants.LogConstants.OAUTH_INBOUND_SERVICE, null,
-                        OAuthConstants.LogConstants.FAILED, "Provided token is not a valid access token.",
-                        "validate-access-token", null);
-                return buildIntrospectionErrorResponse(e.getMessage());
+                accessTokenDO.setScope(scopesToBeValidated.toArray(new String[0]));
             }
 
             if (hasAccessTokenExpired(accessTokenDO)) {
@@ -727,8 +742,55 @@ public class TokenValidationHandler {
 
     private boolean isJWTTokenValidation(String tokenIdentifier) {
 
-        return Boolean.parseBoolean(IdentityUtil.getProperty(ENABLE_JWT_TOKEN_VALIDATION)) && isParsableJWT(
-                tokenIdentifier);
+        return (Boolean.parseBoolean(IdentityUtil.getProperty(ENABLE_JWT_TOKEN_VALIDATION))
+                || OAuth2Util.isStatelessJWTAccessTokenEnabled()) && isParsableJWT(tokenIdentifier);
+    }
+
+    /**
+     * Validate a token that is not found in the database as a stateless access token.
+     *
+     * @param messageContext  Token validation message context.
+     * @param tokenValidator  Token validator selected for the token.
+     * @param tokenIdentifier Token identifier.
+     * @return Token details if the token is a valid stateless access token, null otherwise.
+     */
+    private AccessTokenDO findStatelessAccessToken(OAuth2TokenValidationMessageContext messageContext,
+                                                   OAuth2TokenValidator tokenValidator, String tokenIdentifier)
+            throws IdentityOAuth2Exception {
+
+        if (!OAuth2Util.isStatelessJWTAccessTokenEnabled() || !(tokenValidator instanceof OAuth2JWTTokenValidator)) {
+            return null;
+        }
+        if (!tokenValidator.validateAccessToken(messageContext)) {
+            return null;
+        }
+        return getStatelessAccessToken(messageContext, tokenIdentifier);
+    }
+
+    /**
+     * Get the details of a stateless access token, built by the JWT validator from the verified claims. Only tokens
+     * marked as stateless at issuance and issued to active applications are built. A token with an active or expired
+     * row in the database was persisted, hence it is never accepted from its claims.
+     *
+     * @param messageContext  Token validation message context.
+     * @param tokenIdentifier Token identifier.
+     * @return Token details if the token is a stateless access token, null otherwise.
+     */
+    private AccessTokenDO getStatelessAccessToken(OAuth2TokenValidationMessageContext messageContext,
+                                                  String tokenIdentifier) throws IdentityOAuth2Exception {
+
+        AccessTokenDO statelessAccessTokenDO =
+                (AccessTokenDO) messageContext.getProperty(OAuth2Util.STATELESS_ACCESS_TOKEN_DO);
+        if (statelessAccessTokenDO == null) {
+            return null;
+        }
+        if (OAuth2Util.findAccessToken(tokenIdentifier, true) != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token marked as stateless is found in the database. Hence it is not a stateless token.");
+            }
+            return null;
+        }
+        return statelessAccessTokenDO;
     }
 
     private boolean isSkipValidatorForJWT(OAuth2TokenValidator tokenValidator, boolean isJWTTokenValidation) {
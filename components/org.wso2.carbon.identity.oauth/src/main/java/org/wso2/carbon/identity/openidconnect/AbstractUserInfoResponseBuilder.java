@@ -17,6 +17,7 @@
 package org.wso2.carbon.identity.openidconnect;
 
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.oltu.oauth2.common.exception.OAuthSystemException;
@@ -31,6 +32,7 @@ import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.user.UserInfoEndpointException;
+import org.wso2.carbon.identity.oauth.user.UserInfoRequestContext;
 import org.wso2.carbon.identity.oauth.user.UserInfoResponseBuilder;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.RequestObjectException;
@@ -61,17 +63,24 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
     public String getResponseString(OAuth2TokenValidationResponseDTO tokenResponse)
             throws UserInfoEndpointException, OAuthSystemException {
 
-        String clientId = getClientId(OAuth2Util.getAccessTokenIdentifier(tokenResponse));
-        String spTenantDomain = getServiceProviderTenantDomain(tokenResponse);
-        // Retrieve user claims.
-        Map<String, Object> userClaims = retrieveUserClaims(tokenResponse);
-        Map<String, Object> filteredUserClaims = filterOIDCClaims(tokenResponse, clientId, spTenantDomain, userClaims);
-
-        // Handle subject claim.
-        String subjectClaim = getSubjectClaim(userClaims, clientId, spTenantDomain, tokenResponse);
-        filteredUserClaims.put(OAuth2Util.SUB, subjectClaim);
-
-        return buildResponse(tokenResponse, spTenantDomain, filteredUserClaims);
+        // Resolve the access token, app and service provider only once while building the response.
+        UserInfoRequestContext.startScope(tokenResponse.getAuthorizationContextToken().getTokenString());
+        try {
+            String clientId = getClientId(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
+            String spTenantDomain = getServiceProviderTenantDomain(tokenResponse);
+            // Retrieve user claims.
+            Map<String, Object> userClaims = retrieveUserClaims(tokenResponse);
+            Map<String, Object> filteredUserClaims =
+                    filterOIDCClaims(tokenResponse, clientId, spTenantDomain, userClaims);
+
+            // Handle subject claim.
+            String subjectClaim = getSubjectClaim(userClaims, clientId, spTenantDomain, tokenResponse);
+            filteredUserClaims.put(OAuth2Util.SUB, subjectClaim);
+
+            return buildResponse(tokenResponse, spTenantDomain, filteredUserClaims);
+        } finally {
+            UserInfoRequestContext.endScope();
+        }
     }
 
     private Map<String, Object> filterOIDCClaims(OAuth2TokenValidationResponseDTO tokenResponse,
@@ -83,7 +92,7 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
         if (MapUtils.isEmpty(userClaims)) {
             if (log.isDebugEnabled()) {
                 AuthenticatedUser authenticatedUser =
-                        getAuthenticatedUser(OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+                        getAuthenticatedUser(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
                 log.debug("No user claims available to be filtered for user: " +
                         authenticatedUser.toFullQualifiedUsername() + " for client_id: " + clientId +
                         " of tenantDomain: " + spTenantDomain);
@@ -101,12 +110,13 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
         userClaimsFilteredByScope.putAll(essentialClaims);
 
         //Handle essential claims of the request object
-        Map<String, Object> filteredClaimsFromRequestObject =
-                filterClaimsFromRequestObject(userClaims, OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+        Map<String, Object> filteredClaimsFromRequestObject = filterClaimsFromRequestObject(userClaims,
+                UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
         userClaimsFilteredByScope.putAll(filteredClaimsFromRequestObject);
 
         // Filter the user claims based on user consent
-        AuthenticatedUser authenticatedUser = getAuthenticatedUser(OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+        AuthenticatedUser authenticatedUser =
+                getAuthenticatedUser(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
         return getUserClaimsFilteredByConsent(tokenResponse, userClaimsFilteredByScope, authenticatedUser, clientId,
                 spTenantDomain);
     }
@@ -114,8 +124,7 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
     private String getGrantType(OAuth2TokenValidationResponseDTO tokenResponse) throws UserInfoEndpointException {
 
         try {
-            return OAuth2Util.getAccessTokenDOfromTokenIdentifier(
-                    OAuth2Util.getAccessTokenIdentifier(tokenResponse)).getGrantType();
+            return getAccessTokenDO(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse)).getGrantType();
         } catch (IdentityOAuth2Exception e) {
             throw new UserInfoEndpointException(
                     "Error while retrieving access token information to derive the grant type." , e);
@@ -155,7 +164,8 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
                                      OAuth2TokenValidationResponseDTO tokenResponse)
             throws UserInfoEndpointException, OAuthSystemException {
 
-        AuthenticatedUser authenticatedUser = getAuthenticatedUser(OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+        AuthenticatedUser authenticatedUser =
+                getAuthenticatedUser(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
         return authenticatedUser.getAuthenticatedSubjectIdentifier();
     }
 
@@ -196,7 +206,8 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
 
         String grantType = getGrantType(validationResponseDTO);
         return OIDCClaimUtil.filterUserClaimsBasedOnConsent(userClaims, user, clientId, tenantDomain, grantType,
-                getServiceProvider(tenantDomain, clientId));
+                getServiceProvider(UserInfoRequestContext.getAccessTokenIdentifier(validationResponseDTO), tenantDomain,
+                        clientId));
     }
 
 
@@ -242,7 +253,7 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
 
         AccessTokenDO accessTokenDO;
         try {
-            accessTokenDO = OAuth2Util.getAccessTokenDOfromTokenIdentifier(accessToken);
+            accessTokenDO = getAccessTokenDO(accessToken);
             return OAuth2Util.getAuthenticatedUser(accessTokenDO);
         } catch (IdentityOAuth2Exception e) {
             throw new OAuthSystemException();
@@ -255,8 +266,9 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
         String clientId = null;
         OAuthAppDO oAuthAppDO;
         try {
-            clientId = getClientId(OAuth2Util.getAccessTokenIdentifier(tokenResponse));
-            oAuthAppDO = OAuth2Util.getAppInformationByClientId(clientId);
+            String accessToken = UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse);
+            clientId = getClientId(accessToken);
+            oAuthAppDO = getAppInformation(accessToken, clientId);
         } catch (IdentityOAuth2Exception | InvalidOAuthClientException e) {
             throw new UserInfoEndpointException(
                     "Error while retrieving OAuth app information for clientId: " + clientId);
@@ -267,13 +279,54 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
     private String getClientId(String accessToken) throws UserInfoEndpointException {
 
         try {
-            return OAuth2Util.getClientIdForAccessToken(accessToken);
+            return getAccessTokenDO(accessToken).getConsumerKey();
         } catch (IdentityOAuth2Exception e) {
             throw new UserInfoEndpointException("Error while obtaining the client_id from accessToken.", e);
         }
     }
 
-    private ServiceProvider getServiceProvider(String tenantDomain, String clientId) throws UserInfoEndpointException {
+    /**
+     * Get the access token of the userinfo request, reusing the one resolved earlier in the active request scope.
+     */
+    private AccessTokenDO getAccessTokenDO(String accessToken) throws IdentityOAuth2Exception {
+
+        UserInfoRequestContext requestContext = UserInfoRequestContext.get(accessToken);
+        if (requestContext != null && requestContext.getAccessTokenDO() != null) {
+            return requestContext.getAccessTokenDO();
+        }
+        AccessTokenDO accessTokenDO = OAuth2Util.getAccessTokenDOfromTokenIdentifier(accessToken);
+        if (requestContext != null) {
+            requestContext.setAccessTokenDO(accessTokenDO);
+        }
+        return accessTokenDO;
+    }
+
+    private OAuthAppDO getAppInformation(String accessToken, String clientId)
+            throws IdentityOAuth2Exception, InvalidOAuthClientException {
+
+        UserInfoRequestContext requestContext = UserInfoRequestContext.get(accessToken);
+        if (requestContext != null && requestContext.getOAuthAppDO() != null) {
+            return requestContext.getOAuthAppDO();
+        }
+        OAuthAppDO oAuthAppDO = OAuth2Util.getAppInformationByClientId(clientId);
+        if (requestContext != null) {
+            requestContext.setOAuthAppDO(oAuthAppDO);
+        }
+        return oAuthAppDO;
+    }
+
+    private ServiceProvider getServiceProvider(String accessToken, String tenantDomain, String clientId)
+            throws UserInfoEndpointException {
+
+        // The cached service provider belongs to the client of the token, so only reuse it for that client.
+        UserInfoRequestContext requestContext = UserInfoRequestContext.get(accessToken);
+        if (requestContext != null && (requestContext.getAccessTokenDO() == null ||
+                !StringUtils.equals(requestContext.getAccessTokenDO().getConsumerKey(), clientId))) {
+            requestContext = null;
+        }
+        if (requestContext != null && requestContext.getServiceProvider() != null) {
+            return requestContext.getServiceProvider();
+        }
 
         ApplicationManagementService applicationMgtService = OAuth2ServiceComponentHolder.getApplicationMgtService();
         ServiceProvider serviceProvider;
@@ -285,6 +338,9 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
             throw new UserInfoEndpointException("Error while obtaining the service provider for client_id: " +
                     clientId + " of tenantDomain: " + tenantDomain, e);
         }
+        if (requestContext != null) {
+            requestContext.setServiceProvider(serviceProvider);
+        }
         return serviceProvider;
     }
 
@@ -292,7 +348,7 @@ public abstract class AbstractUserInfoResponseBuilder implements UserInfoRespons
             throws UserInfoEndpointException {
 
         AuthorizationGrantCacheKey cacheKey = new AuthorizationGrantCacheKey(
-                OAuth2Util.getAccessTokenIdentifier(tokenResponse));
+                UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse));
         AuthorizationGrantCacheEntry cacheEntry = AuthorizationGrantCache.getInstance()
                 .getValueFromCacheByToken(cacheKey);
 
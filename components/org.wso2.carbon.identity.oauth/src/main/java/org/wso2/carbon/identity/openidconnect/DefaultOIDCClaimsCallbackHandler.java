@@ -32,7 +32,6 @@ import org.wso2.carbon.identity.application.common.model.ServiceProvider;
 import org.wso2.carbon.identity.application.mgt.ApplicationManagementService;
 import org.wso2.carbon.identity.base.IdentityConstants;
 import org.wso2.carbon.identity.base.IdentityException;
-import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
 import org.wso2.carbon.identity.claim.metadata.mgt.exception.ClaimMetadataException;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
@@ -41,6 +40,9 @@ import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheEntry;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMapping;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMappingCache;
+import org.wso2.carbon.identity.oauth.util.RequestScopedUserClaimCache;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.RequestObjectException;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
@@ -205,7 +207,14 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
                 AuthorizationGrantCacheKey cacheKey = new AuthorizationGrantCacheKey(authorizationCode);
                 AuthorizationGrantCacheEntry cacheEntry =
                         AuthorizationGrantCache.getInstance().getValueFromCacheByCode(cacheKey);
-                if (cacheEntry != null && cacheEntry.isRequestObjectFlow()) {
+                if (cacheEntry != null && cacheEntry.getRequestedClaims() != null) {
+                    // Handle essential claims of the request object carried in the grant cache
+                    List<RequestedClaim> requestedClaims = OpenIDConnectServiceComponentHolder
+                            .getRequestObjectService().getRequestedClaims(cacheEntry.getRequestedClaims(), false);
+                    filteredUserClaimsByOIDCScopes.putAll(OpenIDConnectServiceComponentHolder.getInstance()
+                            .getHighestPriorityOpenIDConnectClaimFilter()
+                            .getClaimsFilteredByEssentialClaims(userClaimsInOIDCDialect, requestedClaims));
+                } else if (cacheEntry != null && cacheEntry.isRequestObjectFlow()) {
                     // Handle essential claims of the request object
                     Map<String, Object> claimsFromRequestObject =
                             filterClaimsFromRequestObject(userClaimsInOIDCDialect, accessToken);
@@ -493,7 +502,8 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
         }
 
         List<String> requestedClaimUris = getRequestedClaimUris(requestClaimMappings);
-        Map<String, String> userClaims = getUserClaimsInLocalDialect(fullQualifiedUsername, realm, requestedClaimUris);
+        Map<String, String> userClaims = getUserClaimsInLocalDialect(fullQualifiedUsername, userTenantDomain, realm,
+                requestedClaimUris);
 
         if (isEmpty(userClaims)) {
             // User claims can be empty if user does not exist in user stores. Probably a federated user.
@@ -528,21 +538,22 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
                                                            Map<String, String> userClaims)
             throws ClaimMetadataException {
         // Retrieve OIDC to Local Claim Mappings.
-        Map<String, String> oidcToLocalClaimMappings = ClaimMetadataHandler.getInstance()
-                .getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null, spTenantDomain, false);
+        ClaimDialectMapping oidcToLocalClaimMapping = ClaimDialectMappingCache.getInstance()
+                .getMapping(OIDC_DIALECT, spTenantDomain);
         // Get user claims in OIDC dialect.
-        return getUserClaimsInOidcDialect(oidcToLocalClaimMappings, userClaims);
+        return getUserClaimsInOidcDialect(oidcToLocalClaimMapping, userClaims);
     }
 
     private Map<String, String> getUserClaimsInLocalDialect(String username,
+                                                            String userTenantDomain,
                                                             UserRealm realm,
                                                             List<String> claimURIList)
             throws UserStoreException {
-        return realm.getUserStoreManager()
-                .getUserClaimValues(
-                        MultitenantUtils.getTenantAwareUsername(username),
-                        claimURIList.toArray(new String[claimURIList.size()]),
-                        null);
+        // Claims may already have been retrieved for the same user while issuing the current token.
+        return RequestScopedUserClaimCache.getClaimValues(username, userTenantDomain,
+                RequestScopedUserClaimCache.LOCAL_CLAIM_DIALECT, claimURIList,
+                claimURIs -> realm.getUserStoreManager()
+                        .getUserClaimValues(MultitenantUtils.getTenantAwareUsername(username), claimURIs, null));
     }
 
     private void handleServiceProviderRoleMappings(ServiceProvider serviceProvider,
@@ -607,20 +618,20 @@ public class DefaultOIDCClaimsCallbackHandler implements CustomClaimsCallbackHan
     /**
      * Get user claims in OIDC claim dialect.
      *
-     * @param oidcToLocalClaimMappings OIDC dialect to Local dialect claim mappings
-     * @param userClaims               User claims in local dialect
+     * @param oidcToLocalClaimMapping OIDC dialect to Local dialect claim mapping
+     * @param userClaims              User claims in local dialect
      * @return Map of user claim values in OIDC dialect.
      */
-    private Map<String, Object> getUserClaimsInOidcDialect(Map<String, String> oidcToLocalClaimMappings,
+    private Map<String, Object> getUserClaimsInOidcDialect(ClaimDialectMapping oidcToLocalClaimMapping,
                                                            Map<String, String> userClaims) {
 
         Map<String, Object> userClaimsInOidcDialect = new HashMap<>();
         if (isNotEmpty(userClaims)) {
-            // Map<"email", "http://wso2.org/claims/emailaddress">
-            for (Map.Entry<String, String> claimMapping : oidcToLocalClaimMappings.entrySet()) {
-                String claimValue = userClaims.get(claimMapping.getValue());
+            // "email" -> "http://wso2.org/claims/emailaddress"
+            for (int i = 0; i < oidcToLocalClaimMapping.size(); i++) {
+                String claimValue = userClaims.get(oidcToLocalClaimMapping.getLocalClaimUri(i));
                 if (claimValue != null) {
-                    String oidcClaimUri = claimMapping.getKey();
+                    String oidcClaimUri = oidcToLocalClaimMapping.getExternalClaimUri(i);
                     userClaimsInOidcDialect.put(oidcClaimUri, claimValue);
                     if (log.isDebugEnabled() &&
                             IdentityUtil.isTokenLoggable(IdentityConstants.IdentityTokens.USER_CLAIMS)) {
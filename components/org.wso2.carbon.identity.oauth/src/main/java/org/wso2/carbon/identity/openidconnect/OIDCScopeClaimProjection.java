@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable projection of the OIDC scope to claim mappings of a tenant.
+ * <p>
+ * Every claim URI mapped to an OIDC scope is interned into an index, and each scope is represented by the set of
+ * indexes of its claims. Filtering user claims by the requested scopes thereby becomes a union of the claim sets of
+ * the requested scopes. Claim sets resolved for a combination of requested scopes are memoized, up to a bounded number
+ * of combinations.
+ * <p>
+ * The projection is serializable so that it is shared with the scope claim mappings through the distributed OIDC
+ * scope claim cache. The memoized combinations are node-local and are not serialized.
+ */
+public class OIDCScopeClaimProjection implements Serializable {
+
+    private static final long serialVersionUID = -4613795307158162817L;
+
+    private static final String ADDRESS_PREFIX = "address.";
+    private static final String ADDRESS_SCOPE = "address";
+    private static final int MAX_MEMOIZED_SCOPE_COMBINATIONS = 256;
+
+    private final Map<String, List<String>> scopeClaimsMap;
+    private final Map<String, BitSet> scopeClaimIndexes;
+    private final String[] scopeClaimUris;
+    private final String[] oidcClaimUris;
+    private final BitSet addressClaimIndexes;
+    private transient Map<Set<String>, BitSet> memoizedScopeCombinations = new ConcurrentHashMap<>();
+
+    public OIDCScopeClaimProjection(List<ScopeDTO> scopes) {
+
+        Map<String, List<String>> scopeClaims = new LinkedHashMap<>();
+        Map<String, Integer> claimIndex = new LinkedHashMap<>();
+        Map<String, BitSet> claimIndexesOfScopes = new HashMap<>();
+        if (scopes != null) {
+            for (ScopeDTO scope : scopes) {
+                List<String> claims = scope.getClaim() == null ? Collections.emptyList() :
+                        Collections.unmodifiableList(Arrays.asList(scope.getClaim()));
+                scopeClaims.put(scope.getName(), claims);
+                BitSet claimIndexes = new BitSet();
+                for (String claim : claims) {
+                    claimIndexes.set(claimIndex.computeIfAbsent(claim, k -> claimIndex.size()));
+                }
+                claimIndexesOfScopes.put(scope.getName(), claimIndexes);
+            }
+        }
+
+        this.scopeClaimsMap = Collections.unmodifiableMap(scopeClaims);
+        this.scopeClaimIndexes = claimIndexesOfScopes;
+        this.scopeClaimUris = claimIndex.keySet().toArray(new String[0]);
+        this.oidcClaimUris = new String[scopeClaimUris.length];
+        this.addressClaimIndexes = new BitSet(scopeClaimUris.length);
+
+        List<String> addressScopeClaims = scopeClaims.getOrDefault(ADDRESS_SCOPE, Collections.emptyList());
+        for (int i = 0; i < scopeClaimUris.length; i++) {
+            String scopeClaim = scopeClaimUris[i];
+            if (StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX) || addressScopeClaims.contains(scopeClaim)) {
+                addressClaimIndexes.set(i);
+                oidcClaimUris[i] = StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX) ?
+                        StringUtils.substringAfterLast(scopeClaim, ADDRESS_PREFIX) : scopeClaim;
+            } else {
+                oidcClaimUris[i] = scopeClaim;
+            }
+        }
+    }
+
+    /**
+     * Get the scope to claim URI mappings of the tenant.
+     *
+     * @return Unmodifiable map of OIDC scope names to the claim URIs mapped to them.
+     */
+    public Map<String, List<String>> getScopeClaimsMap() {
+
+        return scopeClaimsMap;
+    }
+
+    /**
+     * Check whether the given scope is a defined OIDC scope.
+     *
+     * @param scope Scope name.
+     * @return True if the scope is a defined OIDC scope.
+     */
+    public boolean isOIDCScope(String scope) {
+
+        return scopeClaimIndexes.containsKey(scope);
+    }
+
+    /**
+     * Check whether there are no OIDC scopes defined.
+     *
+     * @return True if no OIDC scopes are defined.
+     */
+    public boolean isEmpty() {
+
+        return scopeClaimIndexes.isEmpty();
+    }
+
+    /**
+     * Filter the given user claims by the claims permitted for the requested scopes.
+     *
+     * @param userClaims         User claims in OIDC dialect.
+     * @param requestedScopes    Requested scopes.
+     * @param filteredClaims     Map to which the permitted claims, other than the address sub-claims, are added.
+     * @param addressScopeClaims Map to which the permitted address sub-claims are added, without the address prefix.
+     */
+    public void filterClaims(Map<String, Object> userClaims, String[] requestedScopes,
+                             Map<String, Object> filteredClaims, Map<String, Object> addressScopeClaims) {
+
+        BitSet permittedClaims = getPermittedClaimIndexes(requestedScopes);
+        for (int i = permittedClaims.nextSetBit(0); i >= 0; i = permittedClaims.nextSetBit(i + 1)) {
+            String oidcClaimUri = oidcClaimUris[i];
+            Object claimValue = userClaims.get(oidcClaimUri);
+            if (claimValue == null && !userClaims.containsKey(oidcClaimUri)) {
+                continue;
+            }
+            if (addressClaimIndexes.get(i)) {
+                addressScopeClaims.put(oidcClaimUri, claimValue);
+            } else {
+                filteredClaims.put(oidcClaimUri, claimValue);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        memoizedScopeCombinations = new ConcurrentHashMap<>();
+    }
+
+    private BitSet getPermittedClaimIndexes(String[] requestedScopes) {
+
+        if (requestedScopes == null || requestedScopes.length == 0) {
+            return new BitSet();
+        }
+        if (requestedScopes.length == 1) {
+            BitSet claimIndexes = scopeClaimIndexes.get(requestedScopes[0]);
+            return claimIndexes == null ? new BitSet() : claimIndexes;
+        }
+
+        // Only the OIDC scopes determine the permitted claims, so other requested scopes are not part of the key.
+        Set<String> oidcScopes = new HashSet<>();
+        for (String scope : requestedScopes) {
+            if (scopeClaimIndexes.containsKey(scope)) {
+                oidcScopes.add(scope);
+            }
+        }
+        BitSet permittedClaims = memoizedScopeCombinations.get(oidcScopes);
+        if (permittedClaims != null) {
+            return permittedClaims;
+        }
+        permittedClaims = new BitSet(scopeClaimUris.length);
+        for (String scope : oidcScopes) {
+            permittedClaims.or(scopeClaimIndexes.get(scope));
+        }
+        if (memoizedScopeCombinations.size() < MAX_MEMOIZED_SCOPE_COMBINATIONS) {
+            memoizedScopeCombinations.put(oidcScopes, permittedClaims);
+        }
+        return permittedClaims;
+    }
+}
@@ -33,7 +33,6 @@ import org.wso2.carbon.identity.claim.metadata.mgt.model.Claim;
 import org.wso2.carbon.identity.claim.metadata.mgt.model.ExternalClaim;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
-import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
@@ -78,7 +77,6 @@ import static org.wso2.carbon.identity.oauth.common.OAuthConstants.SCOPE_RESOURC
  */
 public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
 
-    private static final String ADDRESS_PREFIX = "address.";
     private static final String ADDRESS_SCOPE = "address";
     private static final String OIDC_DIALECT = "http://wso2.org/oidc/claim";
 
@@ -100,31 +98,22 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
         Map<String, Object> claimsToBeReturned = new HashMap<>();
         Map<String, Object> addressScopeClaims = new HashMap<>();
 
-        Map<String, List<String>> scopeClaimsMap = getOIDCScopeClaimMap(spTenantDomain);
-
-        if (MapUtils.isNotEmpty(scopeClaimsMap)) {
-            List<String> addressScopeClaimUris = getAddressScopeClaimUris(scopeClaimsMap);
-            // Iterate through scopes requested in the OAuth2/OIDC request to filter claims
-            for (String requestedScope : requestedScopes) {
-                // Check if requested scope is a supported OIDC scope value
+        OIDCScopeClaimProjection scopeClaimProjection = getOIDCScopeClaimProjection(spTenantDomain);
 
-                if (scopeClaimsMap.containsKey(requestedScope)) {
-                    if (log.isDebugEnabled()) {
+        if (!scopeClaimProjection.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                for (String requestedScope : requestedScopes) {
+                    if (scopeClaimProjection.isOIDCScope(requestedScope)) {
                         log.debug("Requested scope: " + requestedScope + " is a defined OIDC Scope in tenantDomain: " +
                                 spTenantDomain + ". Filtering claims based on the permitted claims in the scope.");
-                    }
-                    // Requested scope is an registered OIDC scope. Filter and return the claims belonging to the scope.
-                    Map<String, Object> filteredClaims =
-                            handleRequestedOIDCScope(userClaims, addressScopeClaims, scopeClaimsMap,
-                                    addressScopeClaimUris, requestedScope);
-                    claimsToBeReturned.putAll(filteredClaims);
-                } else {
-                    if (log.isDebugEnabled()) {
+                    } else {
                         log.debug("Requested scope: " + requestedScope + " is not a defined OIDC Scope in " +
                                 "tenantDomain: " + spTenantDomain + ".");
                     }
                 }
             }
+            // Filter and return the claims belonging to the requested OIDC scopes.
+            scopeClaimProjection.filterClaims(userClaims, requestedScopes, claimsToBeReturned, addressScopeClaims);
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("No OIDC scopes defined for tenantDomain: " + spTenantDomain + ". Cannot proceed with " +
@@ -272,15 +261,27 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
     private Map<String, List<String>> getOIDCScopeClaimMap(String spTenantDomain) {
 
         // Map<"openid", "first_name,last_name,username">
-        Map<String, List<String>> scopeClaimsMap = new HashMap<>();
-        int tenantId = IdentityTenantUtil.getTenantId(spTenantDomain);
+        return getOIDCScopeClaimProjection(spTenantDomain).getScopeClaimsMap();
+    }
+
+    /**
+     * Retrieve the precomputed OIDC scope claim projection for the given SP tenant domain. The projection is held
+     * with the OIDC scope claim cache entry of the tenant, and is therefore rebuilt whenever the scopes are updated.
+     *
+     * @param spTenantDomain Tenant domain of the SP.
+     * @return OIDC scope claim projection for the tenant.
+     */
+    private OIDCScopeClaimProjection getOIDCScopeClaimProjection(String spTenantDomain) {
 
-        // Load OIDC scopes and mapped claims from the cache or db.
-        List<ScopeDTO> oidcScopesList = getOIDCScopes(tenantId);
-        for (ScopeDTO scope : oidcScopesList) {
-            scopeClaimsMap.put(scope.getName(), Arrays.asList(scope.getClaim()));
+        int tenantId = IdentityTenantUtil.getTenantId(spTenantDomain);
+        try {
+            // Load OIDC scopes and mapped claims from the cache or db.
+            return OAuthTokenPersistenceFactory.getInstance().getScopeClaimMappingDAO()
+                    .getScopeClaimProjection(tenantId);
+        } catch (IdentityOAuth2Exception e) {
+            log.error("Error while loading oidc scopes and claims for the tenant: " + tenantId);
         }
-        return scopeClaimsMap;
+        return new OIDCScopeClaimProjection(Collections.emptyList());
     }
 
     private boolean isConsentManagementServiceDisabled(ServiceProvider serviceProvider) {
@@ -370,72 +371,6 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
         return propertiesToReturn;
     }
 
-    private List<ScopeDTO> getOIDCScopes(int tenantId) {
-
-        List<ScopeDTO> oidcScopesList = new ArrayList<>();
-        try {
-            oidcScopesList = OAuthTokenPersistenceFactory.getInstance().getScopeClaimMappingDAO().getScopes(tenantId);
-        } catch (IdentityOAuth2Exception e) {
-            log.error("Error while loading oidc scopes and claims for the tenant: " + tenantId);
-        }
-        return oidcScopesList;
-    }
-
-    private Map<String, Object> handleRequestedOIDCScope(Map<String, Object> userClaimsInOIDCDialect,
-                                                         Map<String, Object> addressScopeClaims,
-                                                         Map<String, List<String>> scopeClaimsMap,
-                                                         List<String> addressScopeClaimUris,
-                                                         String oidcScope) {
-
-        Map<String, Object> filteredClaims = new HashMap<>();
-        List<String> claimUrisInRequestedScope = getClaimUrisInSupportedOIDCScope(scopeClaimsMap, oidcScope);
-        for (String scopeClaim : claimUrisInRequestedScope) {
-            String oidcClaimUri = scopeClaim;
-            boolean isAddressClaim = false;
-            if (isAddressClaim(scopeClaim, addressScopeClaimUris)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Identified an address claim: " + scopeClaim + ". Removing \"address.\" prefix from " +
-                            "the claimUri");
-                }
-                oidcClaimUri = removeAddressPrefix(scopeClaim);
-                isAddressClaim = true;
-            }
-            // Check whether the user claims contain the permitted claim uri
-            if (userClaimsInOIDCDialect.containsKey(oidcClaimUri)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Adding claim:" + oidcClaimUri + " into the filtered claims");
-                }
-                Object claimValue = userClaimsInOIDCDialect.get(oidcClaimUri);
-                // User claim is allowed for this scope.
-                if (isAddressClaim) {
-                    addressScopeClaims.put(oidcClaimUri, claimValue);
-                } else {
-                    filteredClaims.put(oidcClaimUri, claimValue);
-                }
-            } else {
-                if (log.isDebugEnabled()) {
-                    log.debug("No valid user claim value found for the claimUri:" + oidcClaimUri);
-                }
-            }
-        }
-        return filteredClaims;
-    }
-
-    /**
-     * There can be situations where we have added a scope prefix to identify special claims.
-     * <p>
-     * For example, claims belonging to address can be prefixed as address.country, address.street. But when
-     * returning we need to remove the prefix.
-     *
-     * @param scopeClaim claim uri defined in the OIDC Scope
-     * @return Scope prefix removed claim URI
-     */
-    private String removeAddressPrefix(String scopeClaim) {
-
-        return StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX) ?
-                StringUtils.substringAfterLast(scopeClaim, ADDRESS_PREFIX) : scopeClaim;
-    }
-
     private void handleAddressClaim(Map<String, Object> returnedClaims,
                                     Map<String, Object> claimsforAddressScope) {
 
@@ -453,11 +388,6 @@ public class OpenIDConnectClaimFilterImpl implements OpenIDConnectClaimFilter {
         return getClaimUrisInSupportedOIDCScope(scopeClaimsMap, ADDRESS_SCOPE);
     }
 
-    private boolean isAddressClaim(String scopeClaim, List<String> addressScopeClaims) {
-
-        return StringUtils.startsWith(scopeClaim, ADDRESS_PREFIX) || addressScopeClaims.contains(scopeClaim);
-    }
-
     private List<String> getClaimUrisInSupportedOIDCScope(Map<String, List<String>> scopeClaimsMap,
                                                           String requestedScope) {
 
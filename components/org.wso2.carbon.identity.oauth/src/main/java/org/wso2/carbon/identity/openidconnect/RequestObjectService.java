@@ -18,6 +18,12 @@ package org.wso2.carbon.identity.openidconnect;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCache;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheEntry;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
+import org.wso2.carbon.identity.oauth.cache.SessionDataCache;
+import org.wso2.carbon.identity.oauth.cache.SessionDataCacheEntry;
+import org.wso2.carbon.identity.oauth.cache.SessionDataCacheKey;
 import org.wso2.carbon.identity.oauth.common.OAuth2ErrorCodes;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
@@ -27,6 +33,7 @@ import org.wso2.carbon.identity.openidconnect.model.RequestedClaim;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class is used to invoke RequestObjectPersistenceFactory to persist and retrieve the request object in OIDC.
@@ -83,6 +90,15 @@ public class RequestObjectService {
             log.debug("Request Object Flow is disabled, hence dropping the event");
             return Collections.emptyList();
         }
+        if (OAuthServerConfiguration.getInstance().isRequestedClaimsInGrantCacheEnabled()) {
+            SessionDataCacheEntry sessionDataCacheEntry =
+                    SessionDataCache.getInstance().getValueFromCache(new SessionDataCacheKey(sessionDataKey));
+            if (sessionDataCacheEntry != null && sessionDataCacheEntry.getoAuth2Parameters() != null &&
+                    sessionDataCacheEntry.getoAuth2Parameters().getRequestedClaims() != null) {
+                return getRequestedClaims(sessionDataCacheEntry.getoAuth2Parameters().getRequestedClaims(),
+                        isUserInfo);
+            }
+        }
         List<RequestedClaim> essentialClaims;
         if (log.isDebugEnabled()) {
             log.debug("Invoking the RequestObjectPersistenceFactory to retrieve essential claims list " +
@@ -113,6 +129,13 @@ public class RequestObjectService {
             log.debug("Request Object Flow is disabled, hence dropping the event");
             return Collections.emptyList();
         }
+        if (OAuthServerConfiguration.getInstance().isRequestedClaimsInGrantCacheEnabled()) {
+            AuthorizationGrantCacheEntry grantCacheEntry = AuthorizationGrantCache.getInstance()
+                    .getValueFromCacheByToken(new AuthorizationGrantCacheKey(token));
+            if (grantCacheEntry != null && grantCacheEntry.getRequestedClaims() != null) {
+                return getRequestedClaims(grantCacheEntry.getRequestedClaims(), isUserInfo);
+            }
+        }
         List<RequestedClaim> essentialClaims;
         if (log.isDebugEnabled()) {
             log.debug("Invoking the RequestObjectPersistenceFactory to retrieve essential claims list.");
@@ -164,4 +187,23 @@ public class RequestObjectService {
         return getRequestedClaims(token, true);
     }
 
+    /**
+     * Get the claims requested for the id_token or the userinfo response out of the requested claims carried in the
+     * session data or authorization grant cache.
+     *
+     * @param requestedClaims requested claims grouped by the claim requestor
+     * @param isUserInfo      isUserInfo
+     * @return list of claims requested for the given claim requestor.
+     */
+    public List<RequestedClaim> getRequestedClaims(Map<String, List<RequestedClaim>> requestedClaims,
+                                                   boolean isUserInfo) {
+
+        List<RequestedClaim> claims = requestedClaims.get(isUserInfo ? OIDCConstants.USERINFO :
+                OIDCConstants.ID_TOKEN);
+        if (claims == null) {
+            return Collections.emptyList();
+        }
+        return claims;
+    }
+
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect.cache;
+
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.utils.CarbonUtils;
+
+/**
+ * Cache of the serialized OpenID Connect discovery document of a tenant. The endpoint URLs of the document are built
+ * from the server configuration rather than from the request, hence a single document is kept per tenant and
+ * request headers such as the Host header never add cache entries. The document of a tenant is cleared whenever the
+ * OIDC scopes or claims of the tenant change.
+ */
+public class OIDCDiscoveryDocumentCache extends BaseCache<String, OIDCDiscoveryDocumentCacheEntry> {
+
+    public static final String OIDC_DISCOVERY_DOCUMENT_CACHE = "OIDCDiscoveryDocumentCache";
+    private static volatile OIDCDiscoveryDocumentCache instance;
+
+    private OIDCDiscoveryDocumentCache() {
+
+        super(OIDC_DISCOVERY_DOCUMENT_CACHE);
+    }
+
+    public static OIDCDiscoveryDocumentCache getInstance() {
+
+        CarbonUtils.checkSecurity();
+        if (instance == null) {
+            synchronized (OIDCDiscoveryDocumentCache.class) {
+                if (instance == null) {
+                    instance = new OIDCDiscoveryDocumentCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void addDocument(OIDCDiscoveryDocumentCacheEntry entry, String tenantDomain) {
+
+        super.addToCache(tenantDomain, entry, tenantDomain);
+    }
+
+    public OIDCDiscoveryDocumentCacheEntry getDocument(String tenantDomain) {
+
+        return super.getValueFromCache(tenantDomain, tenantDomain);
+    }
+
+    public void clearDocuments(int tenantId) {
+
+        super.clear(tenantId);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.wso2.carbon.identity.core.cache.CacheEntry;
+
+/**
+ * Cache Entry which will use in {@link OIDCDiscoveryDocumentCache}.
+ */
+public class OIDCDiscoveryDocumentCacheEntry extends CacheEntry {
+
+    private static final long serialVersionUID = -2950312046237184762L;
+
+    private final String document;
+    private final String eTag;
+
+    public OIDCDiscoveryDocumentCacheEntry(String document) {
+
+        this.document = document;
+        this.eTag = "\"" + DigestUtils.sha256Hex(document) + "\"";
+    }
+
+    public String getDocument() {
+
+        return document;
+    }
+
+    /**
+     * Get the entity tag of the document, derived from its content so that all the nodes return the same tag for the
+     * same document.
+     *
+     * @return Quoted entity tag.
+     */
+    public String getETag() {
+
+        return eTag;
+    }
+}
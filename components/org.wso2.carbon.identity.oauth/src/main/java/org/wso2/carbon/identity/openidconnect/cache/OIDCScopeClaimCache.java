@@ -55,6 +55,8 @@ public class OIDCScopeClaimCache extends BaseCache<Integer, OIDCScopeClaimCacheE
     public void clearScopeClaimMap(int tenantId) {
 
         super.clearCacheEntry(tenantId, tenantId);
+        // The discovery documents of the tenant list the OIDC scopes and claims.
+        OIDCDiscoveryDocumentCache.getInstance().clearDocuments(tenantId);
     }
 
     public OIDCScopeClaimCacheEntry getScopeClaimMap(int tenantId) {
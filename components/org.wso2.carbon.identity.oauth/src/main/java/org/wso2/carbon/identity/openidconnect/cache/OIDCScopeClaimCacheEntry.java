@@ -20,6 +20,7 @@ package org.wso2.carbon.identity.openidconnect.cache;
 
 import org.wso2.carbon.identity.core.cache.CacheEntry;
 import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+import org.wso2.carbon.identity.openidconnect.OIDCScopeClaimProjection;
 
 import java.util.List;
 
@@ -29,6 +30,9 @@ import java.util.List;
 public class OIDCScopeClaimCacheEntry extends CacheEntry {
 
     private List<ScopeDTO> scopeList;
+    // Derived from the scope list when the entry is populated, so that it is serialized with the entry and not
+    // rebuilt after the entry is read from the distributed cache.
+    private volatile OIDCScopeClaimProjection scopeClaimProjection;
 
     public List<ScopeDTO> getScopeClaimMapping() {
 
@@ -38,5 +42,21 @@ public class OIDCScopeClaimCacheEntry extends CacheEntry {
     public void setScopeClaimMapping(List<ScopeDTO> scopeList) {
 
         this.scopeList = scopeList;
+        this.scopeClaimProjection = new OIDCScopeClaimProjection(scopeList);
+    }
+
+    /**
+     * Get the precomputed scope to claim projection of the scope claim mappings held by this entry.
+     *
+     * @return Scope to claim projection.
+     */
+    public OIDCScopeClaimProjection getScopeClaimProjection() {
+
+        OIDCScopeClaimProjection projection = scopeClaimProjection;
+        if (projection == null) {
+            projection = new OIDCScopeClaimProjection(scopeList);
+            scopeClaimProjection = projection;
+        }
+        return projection;
     }
 }
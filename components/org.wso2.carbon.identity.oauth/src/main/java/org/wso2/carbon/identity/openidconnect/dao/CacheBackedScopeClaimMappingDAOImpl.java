@@ -25,11 +25,14 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.openidconnect.OIDCScopeClaimProjection;
 import org.wso2.carbon.identity.openidconnect.cache.OIDCScopeClaimCache;
 import org.wso2.carbon.identity.openidconnect.cache.OIDCScopeClaimCacheEntry;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Default cache backed implementation of {@link ScopeClaimMappingDAO}. This handles {@link OIDCScopeClaimCache}
@@ -94,6 +97,14 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
         return oidcScopeClaimCacheEntry.getScopeClaimMapping();
     }
 
+    @Override
+    public OIDCScopeClaimProjection getScopeClaimProjection(int tenantId) throws IdentityOAuth2Exception {
+
+        OIDCScopeClaimCacheEntry oidcScopeClaimCacheEntry = oidcScopeClaimCache.getScopeClaimMap(tenantId);
+        oidcScopeClaimCacheEntry = loadOIDCScopeClaims(tenantId, oidcScopeClaimCacheEntry);
+        return oidcScopeClaimCacheEntry.getScopeClaimProjection();
+    }
+
     @Override
     public void deleteScope(String scope, int tenantId) throws IdentityOAuth2Exception {
 
@@ -157,6 +168,13 @@ public class CacheBackedScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO
         return scopeClaimMappingDAOImpl.hasScopesPopulated(tenantId);
     }
 
+    @Override
+    public Set<Integer> getTenantsWithScopesPopulated(Collection<Integer> tenantIds, Collection<String> scopeNames)
+            throws IdentityOAuth2Exception {
+
+        return scopeClaimMappingDAOImpl.getTenantsWithScopesPopulated(tenantIds, scopeNames);
+    }
+
     @Override
     public boolean isScopeExist(String scope, int tenantId) throws IdentityOAuth2Exception {
 
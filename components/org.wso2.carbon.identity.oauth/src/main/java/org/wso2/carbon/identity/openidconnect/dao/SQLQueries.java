@@ -109,6 +109,12 @@ public class SQLQueries {
     public static final String GET_ALL_IDN_OIDC_SCOPES = "SELECT COUNT(SCOPE_ID) FROM IDN_OAUTH2_SCOPE " +
             "WHERE TENANT_ID=? AND SCOPE_TYPE=?";
 
+    public static final String SCOPE_NAMES_PLACEHOLDER = "$scopeNames";
+
+    public static final String GET_TENANTS_WITH_IDN_OIDC_SCOPES = "SELECT TENANT_ID FROM IDN_OAUTH2_SCOPE WHERE " +
+            "SCOPE_TYPE=? AND NAME IN (" + SCOPE_NAMES_PLACEHOLDER + ") GROUP BY TENANT_ID " +
+            "HAVING COUNT(DISTINCT NAME)=?";
+
     // 'AS' key word is not supported in Oracle, in other DBs AS keyword is an optional, hence didn't use it in the
     // following query.
     public static final String GET_IDN_OIDC_SCOPES_CLAIMS =
@@ -22,8 +22,12 @@ package org.wso2.carbon.identity.openidconnect.dao;
 
 import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.openidconnect.OIDCScopeClaimProjection;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Interface used in openid connect to handle all the scope claim mapping related db operations.
@@ -80,6 +84,18 @@ public interface ScopeClaimMappingDAO {
      */
     List<ScopeDTO> getScopes(int tenantId) throws IdentityOAuth2Exception;
 
+    /**
+     * To retrieve the scope to claim projection of all persisted oidc scopes with mapped claims.
+     *
+     * @param tenantId tenant Id
+     * @return scope to claim projection of the tenant
+     * @throws IdentityOAuth2Exception if an error occurs when loading scopes and claims.
+     */
+    default OIDCScopeClaimProjection getScopeClaimProjection(int tenantId) throws IdentityOAuth2Exception {
+
+        return new OIDCScopeClaimProjection(getScopes(tenantId));
+    }
+
     /**
      * To retrieve all persisted oidc scopes.
      *
@@ -139,6 +155,26 @@ public interface ScopeClaimMappingDAO {
      */
     boolean hasScopesPopulated(int tenantId) throws IdentityOAuth2Exception;
 
+    /**
+     * To find the tenants which have all the given oidc scopes populated, out of the given tenants.
+     *
+     * @param tenantIds  Tenant ids to check.
+     * @param scopeNames Names of the oidc scopes which a tenant should have.
+     * @return tenant ids which have every one of the given oidc scopes.
+     * @throws IdentityOAuth2Exception if an error occurs when loading the scopes of the tenants.
+     */
+    default Set<Integer> getTenantsWithScopesPopulated(Collection<Integer> tenantIds, Collection<String> scopeNames)
+            throws IdentityOAuth2Exception {
+
+        Set<Integer> populatedTenants = new HashSet<>();
+        for (Integer tenantId : tenantIds) {
+            if (getScopeNames(tenantId).containsAll(scopeNames)) {
+                populatedTenants.add(tenantId);
+            }
+        }
+        return populatedTenants;
+    }
+
     /**
      * To check whether the OIDC scope is existing.
      *
@@ -32,11 +32,14 @@ import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.Oauth2ScopeConstants;
+import org.wso2.carbon.identity.oauth2.dao.ReadReplicaManager;
 import org.wso2.carbon.identity.oauth2.util.JdbcUtils;
 
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -56,6 +59,7 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     @Override
     public void addScopes(int tenantId, List<ScopeDTO> scopeClaimsList) throws IdentityOAuth2Exception {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantId);
         JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
 
         scopeClaimsList.forEach(rethrowConsumer(scopeDTO -> {
@@ -124,6 +128,8 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     @Override
     public void addScope(ScopeDTO scope, int tenantId) throws IdentityOAuth2Exception {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantId);
+
         // We maintain the scope name as unique. We won't allow registering same scope name across OAuth2 and OIDC
         // scope endpoints. Hence we need to validate scope name exists or not across these two endpoints. If scope
         // name is exist will throw conflict error.
@@ -163,8 +169,13 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     @Override
     public List<ScopeDTO> getScopes(int tenantId) throws IdentityOAuth2Exception {
 
+        return ReadReplicaManager.read(ReadReplicaManager.SCOPE + tenantId, () -> getScopesFromStore(tenantId));
+    }
+
+    private List<ScopeDTO> getScopesFromStore(int tenantId) throws IdentityOAuth2Exception {
+
         String sql = SQLQueries.GET_IDN_OIDC_SCOPES_CLAIMS;
-        JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
+        JdbcTemplate jdbcTemplate = ReadReplicaManager.getJdbcTemplate();
         List<ScopeDTO> oidcScopeClaimList;
         try {
             Map<String, ScopeDTO> scopeClaimMap = new HashMap<>();
@@ -204,8 +215,14 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     @Override
     public List<String> getScopeNames(int tenantId) throws IdentityOAuth2Exception {
 
+        return ReadReplicaManager.read(ReadReplicaManager.SCOPE + tenantId,
+                () -> getScopeNamesFromStore(tenantId));
+    }
+
+    private List<String> getScopeNamesFromStore(int tenantId) throws IdentityOAuth2Exception {
+
         String sql = SQLQueries.GET_IDN_OIDC_SCOPES;
-        JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
+        JdbcTemplate jdbcTemplate = ReadReplicaManager.getJdbcTemplate();
         try {
             List<String> scopeList = jdbcTemplate.executeQuery(sql, (resultSet, i) -> resultSet.getString(1),
                     preparedStatement -> {
@@ -248,6 +265,7 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     @Override
     public void deleteScope(String scope, int tenantId) throws IdentityOAuth2Exception {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantId);
         JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
         try {
             if (isScopeExist(scope, tenantId)) {
@@ -273,6 +291,7 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     public void updateScope(String scope, int tenantId, List<String> addClaims, List<String> deleteClaims)
             throws IdentityOAuth2Exception {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantId);
         JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
         int scopeClaimMappingId = -1;
         try {
@@ -299,6 +318,7 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
     @Override
     public void updateScope(ScopeDTO scope, int tenantId) throws IdentityOAuth2Exception {
 
+        ReadReplicaManager.markWritten(ReadReplicaManager.SCOPE + tenantId);
         JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
 
         try {
@@ -400,6 +420,34 @@ public class ScopeClaimMappingDAOImpl implements ScopeClaimMappingDAO {
         return true;
     }
 
+    @Override
+    public Set<Integer> getTenantsWithScopesPopulated(Collection<Integer> tenantIds, Collection<String> scopeNames)
+            throws IdentityOAuth2Exception {
+
+        Set<String> requiredScopes = new HashSet<>(scopeNames);
+        if (requiredScopes.isEmpty()) {
+            return new HashSet<>(tenantIds);
+        }
+        String sql = SQLQueries.GET_TENANTS_WITH_IDN_OIDC_SCOPES.replace(SQLQueries.SCOPE_NAMES_PLACEHOLDER,
+                String.join(", ", Collections.nCopies(requiredScopes.size(), "?")));
+        JdbcTemplate jdbcTemplate = JdbcUtils.getNewTemplate();
+        try {
+            Set<Integer> populatedTenants = new HashSet<>(jdbcTemplate.executeQuery(sql,
+                    (resultSet, rowNumber) -> resultSet.getInt(1), preparedStatement -> {
+                        int parameterIndex = 0;
+                        preparedStatement.setString(++parameterIndex, Oauth2ScopeConstants.SCOPE_TYPE_OIDC);
+                        for (String scopeName : requiredScopes) {
+                            preparedStatement.setString(++parameterIndex, scopeName);
+                        }
+                        preparedStatement.setInt(++parameterIndex, requiredScopes.size());
+                    }));
+            populatedTenants.retainAll(tenantIds);
+            return populatedTenants;
+        } catch (DataAccessException e) {
+            throw new IdentityOAuth2Exception("Error while loading the tenants with oidc scopes.", e);
+        }
+    }
+
     @Override
     public boolean isScopeExist(String scope, int tenantId) throws IdentityOAuth2Exception {
 
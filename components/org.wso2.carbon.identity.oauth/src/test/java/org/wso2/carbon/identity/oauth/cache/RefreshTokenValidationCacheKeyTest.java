@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.cache;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for RefreshTokenValidationCacheKey.
+ */
+public class RefreshTokenValidationCacheKeyTest {
+
+    private static final String REFRESH_TOKEN_HASH = "refreshTokenHash";
+
+    @Test
+    public void testGetRefreshTokenHash() {
+
+        RefreshTokenValidationCacheKey cacheKey = new RefreshTokenValidationCacheKey(REFRESH_TOKEN_HASH);
+        assertEquals(cacheKey.getRefreshTokenHash(), REFRESH_TOKEN_HASH);
+    }
+
+    @Test
+    public void testEquals() {
+
+        RefreshTokenValidationCacheKey cacheKey = new RefreshTokenValidationCacheKey(REFRESH_TOKEN_HASH);
+        assertTrue(cacheKey.equals(new RefreshTokenValidationCacheKey(REFRESH_TOKEN_HASH)));
+        assertFalse(cacheKey.equals(new RefreshTokenValidationCacheKey("anotherRefreshTokenHash")));
+        assertFalse(cacheKey.equals(new OAuthCacheKey(REFRESH_TOKEN_HASH)));
+    }
+
+    @Test
+    public void testHashCode() {
+
+        RefreshTokenValidationCacheKey cacheKey = new RefreshTokenValidationCacheKey(REFRESH_TOKEN_HASH);
+        assertEquals(cacheKey.hashCode(), REFRESH_TOKEN_HASH.hashCode());
+    }
+}
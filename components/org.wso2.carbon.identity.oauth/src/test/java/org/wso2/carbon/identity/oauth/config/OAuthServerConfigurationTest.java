@@ -19,6 +19,8 @@
 package org.wso2.carbon.identity.oauth.config;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.oltu.oauth2.common.message.types.GrantType;
+import org.apache.oltu.oauth2.common.validators.OAuthValidator;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.testng.Assert;
@@ -34,6 +36,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletRequest;
+
 /**
  * Unit test covering OAuthServerConfiguration
  */
@@ -430,6 +434,15 @@ public class OAuthServerConfigurationTest extends PowerMockIdentityBaseTest {
                 .isAccessTokenPartitioningEnabled());
     }
 
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSupportedGrantTypeValidatorsAreImmutable() throws Exception {
+
+        Map<String, Class<? extends OAuthValidator<HttpServletRequest>>> validators =
+                OAuthServerConfiguration.getInstance().getSupportedGrantTypeValidators();
+        Assert.assertNotNull(validators.get(GrantType.PASSWORD.toString()));
+        validators.remove(GrantType.PASSWORD.toString());
+    }
+
     private String fillURLPlaceholdersForTest(String url) {
 
         return url.replace("${carbon.protocol}", "https")
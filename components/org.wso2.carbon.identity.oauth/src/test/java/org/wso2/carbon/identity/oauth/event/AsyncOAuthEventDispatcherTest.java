@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.event;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for AsyncOAuthEventDispatcher.
+ */
+@PrepareForTest({IdentityUtil.class})
+public class AsyncOAuthEventDispatcherTest extends PowerMockIdentityBaseTest {
+
+    private static final String CLIENT_ID = "clientId";
+    private static final String TENANT_DOMAIN = "carbon.super";
+
+    private AsyncOAuthEventDispatcher dispatcher;
+
+    @BeforeMethod
+    public void setUp() {
+
+        mockStatic(IdentityUtil.class);
+        dispatcher = new AsyncOAuthEventDispatcher();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testPublishWithoutInterceptors() {
+
+        assertFalse(dispatcher.hasInterceptors());
+        assertFalse(dispatcher.publish(getEvent("token1")));
+        assertEquals(dispatcher.getDroppedEventCount(), 0);
+    }
+
+    @Test
+    public void testDispatchEvents() throws Exception {
+
+        TestInterceptor interceptor = new TestInterceptor("recorder", 3);
+        TestInterceptor failingInterceptor = new TestInterceptor("failing", 3);
+        failingInterceptor.fail = true;
+        dispatcher.addInterceptor(failingInterceptor);
+        dispatcher.addInterceptor(interceptor);
+        try {
+            assertTrue(dispatcher.publish(getEvent("token1")));
+            assertTrue(dispatcher.publish(getEvent("token2")));
+            assertTrue(dispatcher.publish(getEvent("token3")));
+            assertTrue(interceptor.received.await(5, TimeUnit.SECONDS));
+            assertTrue(failingInterceptor.received.await(5, TimeUnit.SECONDS));
+            waitForDispatchedEvents("recorder", 3);
+            waitForDispatchedEvents("failing", 3);
+        } finally {
+            dispatcher.removeInterceptor(interceptor);
+            dispatcher.removeInterceptor(failingInterceptor);
+        }
+
+        // A failing interceptor must not affect the delivery to the others.
+        assertEquals(interceptor.events.size(), 3);
+        assertEquals(interceptor.events.get(0).getTokenId(), "token1");
+        assertEquals(interceptor.events.get(2).getTokenId(), "token3");
+
+        AsyncOAuthEventDispatcher.InterceptorMetrics metrics = dispatcher.getInterceptorMetrics().get("recorder");
+        assertEquals(metrics.getEventCount(), 3);
+        assertEquals(metrics.getFailedBatchCount(), 0);
+        assertTrue(metrics.getBatchCount() >= 1);
+        AsyncOAuthEventDispatcher.InterceptorMetrics failingMetrics =
+                dispatcher.getInterceptorMetrics().get("failing");
+        assertEquals(failingMetrics.getFailedBatchCount(), failingMetrics.getBatchCount());
+    }
+
+    @Test
+    public void testDropWhenBufferIsFull() throws Exception {
+
+        when(IdentityUtil.getProperty("OAuth.AsyncEventDispatch.BufferSize")).thenReturn("1");
+        TestInterceptor interceptor = new TestInterceptor("blocking", 2);
+        interceptor.release = new CountDownLatch(1);
+        dispatcher.addInterceptor(interceptor);
+        try {
+            assertTrue(dispatcher.publish(getEvent("token1")));
+            // Wait until the worker holds the first event, so that the buffer is empty again.
+            assertTrue(interceptor.started.await(5, TimeUnit.SECONDS));
+            assertTrue(dispatcher.publish(getEvent("token2")));
+            assertFalse(dispatcher.publish(getEvent("token3")));
+            assertEquals(dispatcher.getDroppedEventCount(), 1);
+
+            interceptor.release.countDown();
+            assertTrue(interceptor.received.await(5, TimeUnit.SECONDS));
+        } finally {
+            interceptor.release.countDown();
+            dispatcher.removeInterceptor(interceptor);
+        }
+        assertEquals(interceptor.events.size(), 2);
+        assertEquals(interceptor.events.get(1).getTokenId(), "token2");
+    }
+
+    @Test
+    public void testWorkerOutlivesInterceptors() {
+
+        TestInterceptor interceptor = new TestInterceptor("first", 0);
+        dispatcher.addInterceptor(interceptor);
+        Thread worker = WhiteboxImpl.getInternalState(dispatcher, "worker");
+        assertNotNull(worker);
+
+        dispatcher.removeInterceptor(interceptor);
+        assertSame(WhiteboxImpl.getInternalState(dispatcher, "worker"), worker);
+        assertTrue(worker.isAlive());
+
+        dispatcher.addInterceptor(new TestInterceptor("second", 0));
+        assertSame(WhiteboxImpl.getInternalState(dispatcher, "worker"), worker);
+    }
+
+    @Test
+    public void testShutdownDeliversBufferedEvents() throws Exception {
+
+        TestInterceptor interceptor = new TestInterceptor("blocking", 2);
+        interceptor.release = new CountDownLatch(1);
+        dispatcher.addInterceptor(interceptor);
+        Thread worker = WhiteboxImpl.getInternalState(dispatcher, "worker");
+        assertTrue(dispatcher.publish(getEvent("token1")));
+        assertTrue(interceptor.started.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.publish(getEvent("token2")));
+
+        Thread shutdownThread = new Thread(dispatcher::shutdown);
+        shutdownThread.start();
+        // Shutdown must wait for the batch in delivery instead of interrupting it.
+        Thread.sleep(100);
+        interceptor.release.countDown();
+        shutdownThread.join(10000);
+
+        assertFalse(worker.isAlive());
+        assertNull(WhiteboxImpl.getInternalState(dispatcher, "worker"));
+        assertFalse(interceptor.interrupted);
+        assertEquals(interceptor.events.size(), 2);
+        assertEquals(interceptor.events.get(1).getTokenId(), "token2");
+
+        // A new worker is started if an interceptor is registered again.
+        dispatcher.addInterceptor(new TestInterceptor("second", 0));
+        Thread newWorker = WhiteboxImpl.getInternalState(dispatcher, "worker");
+        assertNotNull(newWorker);
+        assertTrue(newWorker != worker);
+    }
+
+    private void waitForDispatchedEvents(String interceptorName, long eventCount) throws InterruptedException {
+
+        // Metrics are recorded once the interceptor returns.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.getInterceptorMetrics().get(interceptorName).getEventCount() < eventCount &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private OAuthLifecycleEvent getEvent(String tokenId) {
+
+        return new OAuthLifecycleEvent(OAuthLifecycleEvent.Type.POST_TOKEN_ISSUE, CLIENT_ID, TENANT_DOMAIN,
+                "client_credentials", null, tokenId, new String[]{"default"}, null);
+    }
+
+    private static class TestInterceptor implements AsyncOAuthEventInterceptor {
+
+        private final String name;
+        private final List<OAuthLifecycleEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch received;
+        private CountDownLatch release;
+        private boolean fail;
+        private volatile boolean interrupted;
+
+        TestInterceptor(String name, int expectedEvents) {
+
+            this.name = name;
+            this.received = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public String getName() {
+
+            return name;
+        }
+
+        @Override
+        public void handleEvents(List<OAuthLifecycleEvent> batch) throws IdentityOAuth2Exception {
+
+            started.countDown();
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.addAll(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                received.countDown();
+            }
+            if (fail) {
+                throw new IdentityOAuth2Exception("Interceptor failure");
+            }
+        }
+    }
+}
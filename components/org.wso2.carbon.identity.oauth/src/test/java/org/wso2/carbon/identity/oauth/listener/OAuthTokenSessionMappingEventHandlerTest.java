@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.listener;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.model.IdentityEventListenerConfig;
+import org.wso2.carbon.identity.core.model.IdentityEventListenerConfigKey;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenDAO;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeReqDTO;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for OAuthTokenSessionMappingEventHandler.
+ */
+@PrepareForTest({IdentityUtil.class})
+public class OAuthTokenSessionMappingEventHandlerTest extends PowerMockIdentityBaseTest {
+
+    private static final String SESSION_ID = "sessionContextIdentifier";
+    private static final String TOKEN_ID = "tokenId";
+    private static final int TENANT_ID = 1;
+
+    private AccessTokenDAO accessTokenDAO;
+    private AccessTokenDAO originalAccessTokenDAO;
+
+    @BeforeMethod
+    public void setUp() {
+
+        mockStatic(IdentityUtil.class);
+        OAuthTokenPersistenceFactory persistenceFactory = OAuthTokenPersistenceFactory.getInstance();
+        originalAccessTokenDAO = persistenceFactory.getAccessTokenDAO();
+        accessTokenDAO = mock(AccessTokenDAO.class);
+        WhiteboxImpl.setInternalState(persistenceFactory, "tokenDAO", accessTokenDAO);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        WhiteboxImpl.setInternalState(OAuthTokenPersistenceFactory.getInstance(), "tokenDAO",
+                originalAccessTokenDAO);
+    }
+
+    @Test
+    public void testBindSessionContextIdentifier() {
+
+        AccessTokenDO tokenDO = new AccessTokenDO();
+        assertFalse(OAuthTokenSessionMappingEventHandler.bindSessionContextIdentifier(tokenDO, null));
+        assertNull(tokenDO.getSessionContextIdentifier());
+
+        assertTrue(OAuthTokenSessionMappingEventHandler.bindSessionContextIdentifier(tokenDO, SESSION_ID));
+        assertEquals(tokenDO.getSessionContextIdentifier(), SESSION_ID);
+        assertNull(AccessTokenDO.clone(tokenDO).getSessionContextIdentifier());
+    }
+
+    @Test
+    public void testBindSessionContextIdentifierWhenNotApplicable() {
+
+        AccessTokenDO tokenDO = new AccessTokenDO();
+        when(IdentityUtil.readEventListenerProperty(anyString(), anyString())).thenReturn(
+                new IdentityEventListenerConfig("false", 1, new IdentityEventListenerConfigKey(), new Properties()));
+        assertFalse(OAuthTokenSessionMappingEventHandler.bindSessionContextIdentifier(tokenDO, SESSION_ID));
+
+        when(IdentityUtil.readEventListenerProperty(anyString(), anyString())).thenReturn(null);
+        when(IdentityUtil.getProperty("OAuth.TokenPersistence.Shards.DataSources")).thenReturn("jdbc/Shard0");
+        assertFalse(OAuthTokenSessionMappingEventHandler.bindSessionContextIdentifier(tokenDO, SESSION_ID));
+        assertNull(tokenDO.getSessionContextIdentifier());
+    }
+
+    @Test
+    public void testPostTokenIssueSkipsMappingPersistedWithToken() throws Exception {
+
+        OAuthAuthzReqMessageContext authzMsgCtx = buildAuthzMessageContext();
+        authzMsgCtx.addProperty(OAuthTokenSessionMappingEventHandler.TOKEN_SESSION_MAPPING_PERSISTED, true);
+
+        new OAuthTokenSessionMappingEventHandler().onPostTokenIssue(authzMsgCtx, buildAccessToken(), null, null);
+        verify(accessTokenDAO, never()).getTokenIdBySessionIdentifier(anyString());
+        verify(accessTokenDAO, never()).storeTokenToSessionMapping(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    public void testPostTokenIssuePersistsMapping() throws Exception {
+
+        when(accessTokenDAO.getTokenIdBySessionIdentifier(SESSION_ID)).thenReturn(Collections.emptySet());
+
+        new OAuthTokenSessionMappingEventHandler().onPostTokenIssue(buildAuthzMessageContext(), buildAccessToken(),
+                null, null);
+        verify(accessTokenDAO).storeTokenToSessionMapping(SESSION_ID, TOKEN_ID, TENANT_ID);
+    }
+
+    private OAuthAuthzReqMessageContext buildAuthzMessageContext() {
+
+        OAuth2AuthorizeReqDTO authorizeReqDTO = new OAuth2AuthorizeReqDTO();
+        authorizeReqDTO.setResponseType("token");
+        authorizeReqDTO.setIdpSessionIdentifier(SESSION_ID);
+        return new OAuthAuthzReqMessageContext(authorizeReqDTO);
+    }
+
+    private AccessTokenDO buildAccessToken() {
+
+        AccessTokenDO tokenDO = new AccessTokenDO();
+        tokenDO.setTokenId(TOKEN_ID);
+        tokenDO.setTenantID(TENANT_ID);
+        tokenDO.setConsumerKey("consumerKey");
+        return tokenDO;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.user;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2TokenValidationResponseDTO;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import static org.mockito.Mockito.times;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Test class for UserInfoRequestContext.
+ */
+@PrepareForTest({OAuth2Util.class})
+public class UserInfoRequestContextTest extends PowerMockIdentityBaseTest {
+
+    private static final String ACCESS_TOKEN = "a8f7d3ea-1c5b-3c3d-9b7e-0f3c0b8f6f11";
+    private static final String OTHER_ACCESS_TOKEN = "5b0e4d0a-7c2e-3a8b-b3f4-61a9d1f0c2d7";
+    private static final String STORED_ACCESS_TOKEN = "c6a3f0e2-9d41-3b7a-8e25-4f1d7b2a9c30";
+
+    @AfterMethod
+    public void tearDown() {
+
+        while (UserInfoRequestContext.get(ACCESS_TOKEN) != null) {
+            UserInfoRequestContext.endScope();
+        }
+        UserInfoRequestContext.endScope();
+    }
+
+    @Test
+    public void testGetWithoutScope() {
+
+        assertNull(UserInfoRequestContext.get(ACCESS_TOKEN));
+    }
+
+    @Test
+    public void testContextIsSharedWithinScope() {
+
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        UserInfoRequestContext.startScope(ACCESS_TOKEN);
+        UserInfoRequestContext.get(ACCESS_TOKEN).setAccessTokenDO(accessTokenDO);
+
+        assertSame(UserInfoRequestContext.get(ACCESS_TOKEN).getAccessTokenDO(), accessTokenDO);
+        assertNull(UserInfoRequestContext.get(OTHER_ACCESS_TOKEN));
+
+        UserInfoRequestContext.endScope();
+        assertNull(UserInfoRequestContext.get(ACCESS_TOKEN));
+    }
+
+    @Test
+    public void testNestedScopes() {
+
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        UserInfoRequestContext.startScope(ACCESS_TOKEN);
+        UserInfoRequestContext.get(ACCESS_TOKEN).setAccessTokenDO(accessTokenDO);
+        UserInfoRequestContext.startScope(ACCESS_TOKEN);
+        assertSame(UserInfoRequestContext.get(ACCESS_TOKEN).getAccessTokenDO(), accessTokenDO);
+
+        UserInfoRequestContext.endScope();
+        assertNotNull(UserInfoRequestContext.get(ACCESS_TOKEN));
+        UserInfoRequestContext.endScope();
+        assertNull(UserInfoRequestContext.get(ACCESS_TOKEN));
+    }
+
+    @Test
+    public void testScopeOfDifferentTokenReplacesContext() {
+
+        UserInfoRequestContext.startScope(ACCESS_TOKEN);
+        UserInfoRequestContext.get(ACCESS_TOKEN).setAccessTokenDO(new AccessTokenDO());
+        UserInfoRequestContext.startScope(OTHER_ACCESS_TOKEN);
+
+        assertNull(UserInfoRequestContext.get(ACCESS_TOKEN));
+        assertNull(UserInfoRequestContext.get(OTHER_ACCESS_TOKEN).getAccessTokenDO());
+    }
+
+    @Test
+    public void testAccessTokenIdentifierIsLookedUpOncePerScope() throws Exception {
+
+        OAuth2TokenValidationResponseDTO tokenResponse = new OAuth2TokenValidationResponseDTO();
+        tokenResponse.setAuthorizationContextToken(tokenResponse.new AuthorizationContextToken("bearer",
+                ACCESS_TOKEN));
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getAccessTokenIdentifier(tokenResponse)).thenReturn(STORED_ACCESS_TOKEN);
+
+        UserInfoRequestContext.startScope(ACCESS_TOKEN);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse), STORED_ACCESS_TOKEN);
+        }
+        assertSame(UserInfoRequestContext.get(STORED_ACCESS_TOKEN), UserInfoRequestContext.get(ACCESS_TOKEN));
+        verifyStatic(OAuth2Util.class, times(1));
+        OAuth2Util.getAccessTokenIdentifier(tokenResponse);
+
+        UserInfoRequestContext.endScope();
+        UserInfoRequestContext.getAccessTokenIdentifier(tokenResponse);
+        verifyStatic(OAuth2Util.class, times(2));
+        OAuth2Util.getAccessTokenIdentifier(tokenResponse);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.util;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.claim.metadata.mgt.ClaimMetadataHandler;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for ClaimDialectMappingCache.
+ */
+@PrepareForTest({ClaimMetadataHandler.class, IdentityUtil.class})
+public class ClaimDialectMappingCacheTest extends PowerMockIdentityBaseTest {
+
+    private static final String OIDC_DIALECT = "http://wso2.org/oidc/claim";
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String OTHER_TENANT_DOMAIN = "wso2.com";
+    private static final String EMAIL = "email";
+    private static final String MAIL = "mail";
+    private static final String LOCAL_EMAIL_CLAIM_URI = "http://wso2.org/claims/emailaddress";
+    private static final String USERNAME = "username";
+    private static final String LOCAL_USERNAME_CLAIM_URI = "http://wso2.org/claims/username";
+
+    private ClaimMetadataHandler claimMetadataHandler;
+    private ClaimDialectMappingCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(IdentityUtil.class);
+        mockStatic(ClaimMetadataHandler.class);
+        claimMetadataHandler = mock(ClaimMetadataHandler.class);
+        when(ClaimMetadataHandler.getInstance()).thenReturn(claimMetadataHandler);
+
+        Map<String, String> oidcToLocalClaimMappings = new HashMap<>();
+        oidcToLocalClaimMappings.put(EMAIL, LOCAL_EMAIL_CLAIM_URI);
+        oidcToLocalClaimMappings.put(USERNAME, LOCAL_USERNAME_CLAIM_URI);
+        when(claimMetadataHandler.getMappingsMapFromOtherDialectToCarbon(eq(OIDC_DIALECT), isNull(Set.class),
+                anyString(), eq(false))).thenReturn(oidcToLocalClaimMappings);
+        Map<String, String> localToOidcClaimMappings = new HashMap<>();
+        localToOidcClaimMappings.put(LOCAL_EMAIL_CLAIM_URI, EMAIL);
+        localToOidcClaimMappings.put(LOCAL_USERNAME_CLAIM_URI, USERNAME);
+        when(claimMetadataHandler.getMappingsMapFromOtherDialectToCarbon(eq(OIDC_DIALECT), isNull(Set.class),
+                anyString(), eq(true))).thenReturn(localToOidcClaimMappings);
+        cache = new ClaimDialectMappingCache();
+    }
+
+    @Test
+    public void testGetMapping() throws Exception {
+
+        ClaimDialectMapping mapping = cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN);
+        assertEquals(mapping.size(), 2);
+        assertEquals(mapping.getLocalClaimUri(EMAIL), LOCAL_EMAIL_CLAIM_URI);
+        assertNull(mapping.getLocalClaimUri("country"));
+        for (int i = 0; i < mapping.size(); i++) {
+            assertEquals(mapping.getExternalToLocalMappings().get(mapping.getExternalClaimUri(i)),
+                    mapping.getLocalClaimUri(i));
+        }
+
+        assertSame(cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN), mapping);
+        verify(claimMetadataHandler, times(1)).getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null,
+                TENANT_DOMAIN, false);
+    }
+
+    @Test
+    public void testManyToOneMappings() throws Exception {
+
+        // Two OIDC claims are mapped to the same local claim.
+        Map<String, String> oidcToLocalClaimMappings = new HashMap<>();
+        oidcToLocalClaimMappings.put(EMAIL, LOCAL_EMAIL_CLAIM_URI);
+        oidcToLocalClaimMappings.put(MAIL, LOCAL_EMAIL_CLAIM_URI);
+        when(claimMetadataHandler.getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null, TENANT_DOMAIN, false))
+                .thenReturn(oidcToLocalClaimMappings);
+        // The claim metadata handler decides the OIDC claim the local claim resolves to.
+        Map<String, String> localToOidcClaimMappings = new HashMap<>();
+        localToOidcClaimMappings.put(LOCAL_EMAIL_CLAIM_URI, MAIL);
+        when(claimMetadataHandler.getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null, TENANT_DOMAIN, true))
+                .thenReturn(localToOidcClaimMappings);
+
+        // Translating claims to the OIDC dialect yields every OIDC claim mapped to the local claim.
+        ClaimDialectMapping mapping = cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN);
+        assertEquals(mapping.size(), 2);
+        Set<String> oidcClaimUris = new HashSet<>();
+        for (int i = 0; i < mapping.size(); i++) {
+            assertEquals(mapping.getLocalClaimUri(i), LOCAL_EMAIL_CLAIM_URI);
+            oidcClaimUris.add(mapping.getExternalClaimUri(i));
+        }
+        assertEquals(oidcClaimUris, oidcToLocalClaimMappings.keySet());
+        assertEquals(mapping.getLocalClaimUri(EMAIL), LOCAL_EMAIL_CLAIM_URI);
+        assertEquals(mapping.getLocalClaimUri(MAIL), LOCAL_EMAIL_CLAIM_URI);
+
+        // Resolving a single local claim follows the claim metadata handler, not the iteration order of the mappings.
+        Map<String, String> localMappings = cache.getLocalToExternalMappings(OIDC_DIALECT, TENANT_DOMAIN);
+        assertEquals(localMappings.size(), 1);
+        assertEquals(localMappings.get(LOCAL_EMAIL_CLAIM_URI), MAIL);
+        assertSame(cache.getLocalToExternalMappings(OIDC_DIALECT, TENANT_DOMAIN), localMappings);
+        verify(claimMetadataHandler, times(1)).getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null,
+                TENANT_DOMAIN, true);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        ClaimDialectMapping mapping = cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN);
+        ClaimDialectMapping otherTenantMapping = cache.getMapping(OIDC_DIALECT, OTHER_TENANT_DOMAIN);
+        cache.getLocalToExternalMappings(OIDC_DIALECT, TENANT_DOMAIN);
+
+        cache.invalidate(TENANT_DOMAIN);
+        ClaimDialectMapping refreshedMapping = cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN);
+        assertTrue(refreshedMapping.getVersion() > mapping.getVersion());
+        assertSame(cache.getMapping(OIDC_DIALECT, OTHER_TENANT_DOMAIN), otherTenantMapping);
+        cache.getLocalToExternalMappings(OIDC_DIALECT, TENANT_DOMAIN);
+        verify(claimMetadataHandler, times(2)).getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null,
+                TENANT_DOMAIN, false);
+        verify(claimMetadataHandler, times(2)).getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null,
+                TENANT_DOMAIN, true);
+    }
+
+    @Test
+    public void testGetMappingWhenDisabled() throws Exception {
+
+        when(IdentityUtil.getProperty("OAuth.ClaimDialectMappingCache.Enable")).thenReturn("false");
+
+        cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN);
+        cache.getMapping(OIDC_DIALECT, TENANT_DOMAIN);
+        verify(claimMetadataHandler, times(2)).getMappingsMapFromOtherDialectToCarbon(OIDC_DIALECT, null,
+                TENANT_DOMAIN, false);
+    }
+}
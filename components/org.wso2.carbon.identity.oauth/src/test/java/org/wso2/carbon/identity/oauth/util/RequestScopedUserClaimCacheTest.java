@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth.util;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for RequestScopedUserClaimCache.
+ */
+public class RequestScopedUserClaimCacheTest {
+
+    private static final String USERNAME = "PRIMARY/admin@carbon.super";
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String EMAIL_CLAIM = "http://wso2.org/claims/emailaddress";
+    private static final String COUNTRY_CLAIM = "http://wso2.org/claims/country";
+    private static final String MOBILE_CLAIM = "http://wso2.org/claims/mobile";
+
+    private final AtomicInteger userStoreCalls = new AtomicInteger();
+
+    @AfterMethod
+    public void tearDown() {
+
+        while (RequestScopedUserClaimCache.isScopeActive()) {
+            RequestScopedUserClaimCache.endScope();
+        }
+        userStoreCalls.set(0);
+    }
+
+    @Test
+    public void testGetClaimValuesWithoutScope() {
+
+        getClaimValues(EMAIL_CLAIM);
+        getClaimValues(EMAIL_CLAIM);
+        assertEquals(userStoreCalls.get(), 2);
+    }
+
+    @Test
+    public void testGetClaimValuesWithinScope() {
+
+        RequestScopedUserClaimCache.startScope();
+        Map<String, String> claims = getClaimValues(EMAIL_CLAIM, MOBILE_CLAIM);
+        assertEquals(claims.get(EMAIL_CLAIM), "admin@wso2.com");
+        assertFalse(claims.containsKey(MOBILE_CLAIM));
+
+        claims = getClaimValues(EMAIL_CLAIM, MOBILE_CLAIM);
+        assertEquals(userStoreCalls.get(), 1);
+        assertEquals(claims.get(EMAIL_CLAIM), "admin@wso2.com");
+
+        // Only the claims not retrieved earlier should be requested.
+        claims = getClaimValues(EMAIL_CLAIM, COUNTRY_CLAIM);
+        assertEquals(userStoreCalls.get(), 2);
+        assertEquals(claims.get(COUNTRY_CLAIM), "Sri Lanka");
+    }
+
+    @Test
+    public void testReturnedClaimsAreNotShared() {
+
+        RequestScopedUserClaimCache.startScope();
+        getClaimValues(EMAIL_CLAIM).put(EMAIL_CLAIM, "modified");
+        assertEquals(getClaimValues(EMAIL_CLAIM).get(EMAIL_CLAIM), "admin@wso2.com");
+    }
+
+    @Test
+    public void testNestedScopes() {
+
+        RequestScopedUserClaimCache.startScope();
+        RequestScopedUserClaimCache.startScope();
+        RequestScopedUserClaimCache.endScope();
+        assertTrue(RequestScopedUserClaimCache.isScopeActive());
+        RequestScopedUserClaimCache.endScope();
+        assertFalse(RequestScopedUserClaimCache.isScopeActive());
+        assertNull(getClaimValues(MOBILE_CLAIM).get(MOBILE_CLAIM));
+    }
+
+    private Map<String, String> getClaimValues(String... claimURIs) {
+
+        return RequestScopedUserClaimCache.getClaimValues(USERNAME, TENANT_DOMAIN,
+                RequestScopedUserClaimCache.LOCAL_CLAIM_DIALECT, Arrays.asList(claimURIs), this::loadClaims);
+    }
+
+    private Map<String, String> loadClaims(String[] claimURIs) {
+
+        userStoreCalls.incrementAndGet();
+        Map<String, String> userStoreClaims = new HashMap<>();
+        userStoreClaims.put(EMAIL_CLAIM, "admin@wso2.com");
+        userStoreClaims.put(COUNTRY_CLAIM, "Sri Lanka");
+
+        Map<String, String> claimValues = new HashMap<>();
+        for (String claimURI : claimURIs) {
+            if (userStoreClaims.containsKey(claimURI)) {
+                claimValues.put(claimURI, userStoreClaims.get(claimURI));
+            }
+        }
+        return claimValues;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for AccessTokenBatchConsumer.
+ */
+public class AccessTokenBatchConsumerTest {
+
+    @Test
+    public void testConsumeInBatches() throws Exception {
+
+        List<AccessTokenDO> accessTokenDOs = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            AccessTokenDO accessTokenDO = new AccessTokenDO();
+            accessTokenDO.setAccessToken("accessToken" + i);
+            accessTokenDOs.add(accessTokenDO);
+        }
+
+        List<Integer> batchSizes = new ArrayList<>();
+        List<AccessTokenDO> consumed = new ArrayList<>();
+        AccessTokenBatchConsumer.consumeInBatches(accessTokenDOs, 3, batch -> {
+            batchSizes.add(batch.size());
+            consumed.addAll(batch);
+        });
+        assertEquals(batchSizes.size(), 3);
+        assertEquals(batchSizes.get(0).intValue(), 3);
+        assertEquals(batchSizes.get(2).intValue(), 1);
+        assertEquals(consumed, accessTokenDOs);
+    }
+
+    @Test
+    public void testConsumeInBatchesWithoutTokens() throws Exception {
+
+        List<Integer> batchSizes = new ArrayList<>();
+        AccessTokenBatchConsumer.consumeInBatches(Collections.emptyList(), 3, batch -> batchSizes.add(batch.size()));
+        AccessTokenBatchConsumer.consumeInBatches(null, 3, batch -> batchSizes.add(batch.size()));
+        assertTrue(batchSizes.isEmpty());
+    }
+}
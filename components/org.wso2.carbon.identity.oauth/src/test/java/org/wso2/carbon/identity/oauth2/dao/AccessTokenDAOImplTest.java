@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.mockito.ArgumentCaptor;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.core.persistence.JDBCPersistenceManager;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.oauth.common.OAuth2ErrorCodes;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.dao.SQLQueries;
+import org.wso2.carbon.identity.oauth.tokenprocessor.PlainTextPersistenceProcessor;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.util.DAOUtils;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.token.OauthTokenIssuer;
+import org.wso2.carbon.identity.oauth2.token.bindings.TokenBinding;
+import org.wso2.carbon.identity.oauth2.util.OAuth2TokenUtil;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.OAuthVersions.VERSION_2;
+
+/**
+ * Unit tests for the token to session mapping and the session revocation queries of AccessTokenDAOImpl.
+ */
+@WithCarbonHome
+@PrepareForTest({IdentityDatabaseUtil.class, JDBCPersistenceManager.class, OAuth2Util.class, OAuth2TokenUtil.class,
+        OAuthServerConfiguration.class})
+public class AccessTokenDAOImplTest extends PowerMockIdentityBaseTest {
+
+    private static final String DB_NAME = "testAccessTokenDB";
+    private static final int DEFAULT_TENANT_ID = 1234;
+    private static final String USER_DOMAIN = UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME;
+    private static final String APP_NAME = "myApp";
+    private static final String USER_NAME = "user1";
+    private static final String CALLBACK = "http://localhost:8080/redirect";
+    private static final String DEFAULT_TOKEN_TO_SESSION_MAPPING = "DEFAULT";
+
+    private final List<Connection> connections = new ArrayList<>();
+    private AccessTokenDAOImpl accessTokenDAO;
+    private String consumerKey;
+
+    @BeforeClass
+    public void initTest() throws Exception {
+
+        DAOUtils.initializeDataSource(DB_NAME, DAOUtils.getFilePath("identity.sql"));
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "INSERT INTO IDP (TENANT_ID, NAME, UUID) VALUES (1234, 'LOCAL', 5678)")) {
+            prepStmt.execute();
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(IdentityDatabaseUtil.class);
+        when(IdentityDatabaseUtil.getDBConnection()).thenAnswer(invocation -> getConnection());
+        when(IdentityDatabaseUtil.getDBConnection(false)).thenAnswer(invocation -> getConnection());
+        when(IdentityDatabaseUtil.getDBConnection(true)).thenAnswer(invocation -> getConnection());
+
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> getConnection());
+        JDBCPersistenceManager jdbcPersistenceManager = mock(JDBCPersistenceManager.class);
+        mockStatic(JDBCPersistenceManager.class);
+        when(JDBCPersistenceManager.getInstance()).thenReturn(jdbcPersistenceManager);
+        when(jdbcPersistenceManager.getDataSource()).thenReturn(dataSource);
+
+        OAuthServerConfiguration oAuthServerConfiguration = mock(OAuthServerConfiguration.class);
+        mockStatic(OAuthServerConfiguration.class);
+        when(OAuthServerConfiguration.getInstance()).thenReturn(oAuthServerConfiguration);
+        when(oAuthServerConfiguration.getPersistenceProcessor()).thenReturn(new PlainTextPersistenceProcessor());
+        when(oAuthServerConfiguration.getHashAlgorithm()).thenReturn("SHA-256");
+
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getOAuthTokenIssuerForOAuthApp(anyString())).thenReturn(mock(OauthTokenIssuer.class));
+        when(OAuth2Util.getSanitizedUserStoreDomain(anyString())).thenReturn(USER_DOMAIN);
+        when(OAuth2Util.getUserStoreDomain(any(AuthenticatedUser.class))).thenReturn(USER_DOMAIN);
+        when(OAuth2Util.getAuthenticatedIDP(any(AuthenticatedUser.class))).thenReturn("LOCAL");
+        when(OAuth2Util.getTokenPartitionedSqlByUserStore(anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(OAuth2Util.getTenantId(anyString())).thenReturn(DEFAULT_TENANT_ID);
+        when(OAuth2Util.hashScopes(any(String[].class))).thenReturn(DigestUtils.md5Hex("openid"));
+        when(OAuth2Util.getTokenBindingReference(anyString())).thenCallRealMethod();
+        when(OAuth2Util.buildScopeArray(anyString())).thenCallRealMethod();
+        mockStatic(OAuth2TokenUtil.class);
+
+        OAuth2ServiceComponentHolder.setIDPIdColumnEnabled(true);
+        accessTokenDAO = new AccessTokenDAOImpl();
+        consumerKey = UUID.randomUUID().toString();
+        createApplication(consumerKey);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+
+        OAuth2ServiceComponentHolder.setIDPIdColumnEnabled(false);
+        for (Connection connection : connections) {
+            if (!connection.isClosed()) {
+                connection.close();
+            }
+        }
+        connections.clear();
+    }
+
+    @Test
+    public void testInsertAccessTokenWithBindingAndSessionMapping() throws Exception {
+
+        String sessionId = UUID.randomUUID().toString();
+        TokenBinding tokenBinding = new TokenBinding("cookie", "bindingRef", "bindingValue");
+        AccessTokenDO accessTokenDO = persistAccessToken(USER_NAME, sessionId, tokenBinding);
+
+        // Both rows are written by the single batched insert along with the token.
+        Map<String, String> bindings = getTokenBindings(accessTokenDO.getTokenId());
+        assertEquals(bindings.size(), 2);
+        assertEquals(bindings.get("cookie"), "bindingValue");
+        assertEquals(bindings.get(DEFAULT_TOKEN_TO_SESSION_MAPPING), sessionId);
+
+        Set<AccessTokenDO> sessionTokens = accessTokenDAO.getActiveAccessTokensBySessionIdentifier(sessionId);
+        assertEquals(sessionTokens.size(), 1);
+        AccessTokenDO sessionToken = sessionTokens.iterator().next();
+        assertEquals(sessionToken.getTokenId(), accessTokenDO.getTokenId());
+        assertNotNull(sessionToken.getTokenBinding());
+        assertEquals(sessionToken.getTokenBinding().getBindingReference(), "bindingRef");
+    }
+
+    @Test
+    public void testInsertAccessTokenWithoutSessionMapping() throws Exception {
+
+        AccessTokenDO accessTokenDO = persistAccessToken(USER_NAME, null, null);
+        assertTrue(getTokenBindings(accessTokenDO.getTokenId()).isEmpty());
+    }
+
+    @Test
+    public void testGetActiveAccessTokensBySessionIdentifier() throws Exception {
+
+        String sessionId = UUID.randomUUID().toString();
+        AccessTokenDO firstToken = persistAccessToken("user1", sessionId, null);
+        AccessTokenDO secondToken = persistAccessToken("user2", sessionId, null);
+        persistAccessToken("user3", UUID.randomUUID().toString(), null);
+        AccessTokenDO revokedToken = persistAccessToken("user4", sessionId, null);
+        updateTokenState(revokedToken.getTokenId(), OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+
+        Set<AccessTokenDO> sessionTokens = accessTokenDAO.getActiveAccessTokensBySessionIdentifier(sessionId);
+        Set<String> tokenIds = new HashSet<>();
+        for (AccessTokenDO sessionToken : sessionTokens) {
+            tokenIds.add(sessionToken.getTokenId());
+            assertEquals(sessionToken.getConsumerKey(), consumerKey);
+            assertEquals(sessionToken.getScope(), new String[]{"openid"});
+            assertNull(sessionToken.getTokenBinding());
+        }
+        Set<String> expectedTokenIds = new HashSet<>();
+        expectedTokenIds.add(firstToken.getTokenId());
+        expectedTokenIds.add(secondToken.getTokenId());
+        assertEquals(tokenIds, expectedTokenIds);
+
+        assertTrue(accessTokenDAO.getActiveAccessTokensBySessionIdentifier(UUID.randomUUID().toString()).isEmpty());
+    }
+
+    @Test
+    public void testGetActiveAccessTokensBySessionIdentifierWithPartitioning() throws Exception {
+
+        when(OAuth2Util.checkAccessTokenPartitioningEnabled()).thenReturn(true);
+        assertNull(accessTokenDAO.getActiveAccessTokensBySessionIdentifier(UUID.randomUUID().toString()));
+    }
+
+    @Test
+    public void testRevokeAccessTokensByTokenIds() throws Exception {
+
+        // Spread the tokens of the session over more than one revocation chunk.
+        int chunkSize = WhiteboxImpl.getInternalState(AccessTokenDAOImpl.class, "REVOKE_BY_TOKEN_ID_CHUNK_SIZE");
+        int tokenCount = chunkSize + 1;
+        String sessionId = UUID.randomUUID().toString();
+        for (int i = 0; i < tokenCount; i++) {
+            persistAccessToken("user" + i, sessionId, null);
+        }
+        AccessTokenDO otherToken = persistAccessToken(USER_NAME, UUID.randomUUID().toString(), null);
+
+        Set<AccessTokenDO> sessionTokens = accessTokenDAO.getActiveAccessTokensBySessionIdentifier(sessionId);
+        assertEquals(sessionTokens.size(), tokenCount);
+        accessTokenDAO.revokeAccessTokensByTokenIds(sessionTokens);
+
+        for (AccessTokenDO sessionToken : sessionTokens) {
+            assertEquals(getTokenState(sessionToken.getTokenId()), OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+        }
+        assertEquals(getTokenState(otherToken.getTokenId()), OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        assertTrue(accessTokenDAO.getActiveAccessTokensBySessionIdentifier(sessionId).isEmpty());
+
+        ArgumentCaptor<List> revokedTokens = ArgumentCaptor.forClass(List.class);
+        verifyStatic();
+        OAuth2TokenUtil.postUpdateAccessTokens(revokedTokens.capture(),
+                eq(OAuthConstants.TokenStates.TOKEN_STATE_REVOKED));
+        assertEquals(revokedTokens.getValue().size(), tokenCount);
+    }
+
+    @Test
+    public void testRefreshTokenIsRedeemedOnce() throws Exception {
+
+        AccessTokenDO refreshedToken = persistAccessToken(USER_NAME, null, null);
+        AccessTokenDO firstToken = buildAccessToken(USER_NAME, null, null);
+        accessTokenDAO.invalidateAndCreateNewAccessToken(refreshedToken.getTokenId(),
+                OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE, consumerKey, UUID.randomUUID().toString(),
+                firstToken, USER_DOMAIN, refreshedToken.getGrantType());
+        assertEquals(getTokenState(refreshedToken.getTokenId()), OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE);
+        assertEquals(getTokenState(firstToken.getTokenId()), OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+
+        // A concurrent refresh validated the same refresh token before it was redeemed.
+        AccessTokenDO secondToken = buildAccessToken(USER_NAME, null, null);
+        try {
+            accessTokenDAO.invalidateAndCreateNewAccessToken(refreshedToken.getTokenId(),
+                    OAuthConstants.TokenStates.TOKEN_STATE_INACTIVE, consumerKey, UUID.randomUUID().toString(),
+                    secondToken, USER_DOMAIN, refreshedToken.getGrantType());
+            fail("A refresh token should not be redeemed twice.");
+        } catch (IdentityOAuth2ClientException e) {
+            assertEquals(e.getErrorCode(), OAuth2ErrorCodes.INVALID_GRANT);
+        }
+        assertNull(getTokenState(secondToken.getTokenId()));
+    }
+
+    @Test
+    public void testProcessAccessTokensOfUserStoreInPages() throws Exception {
+
+        List<String> persistedTokenIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            persistedTokenIds.add(persistAccessToken("pagedUser" + i, null, null).getTokenId());
+        }
+        // The scope rows of a token must not be split over two batches.
+        addScope(persistedTokenIds.get(1), "email");
+        addScope(persistedTokenIds.get(1), "profile");
+
+        List<String> listedTokenIds = new ArrayList<>();
+        Map<String, Integer> scopeCounts = new HashMap<>();
+        List<Integer> listingConnectionCounts = new ArrayList<>();
+        accessTokenDAO.processAccessTokensOfUserStore(DEFAULT_TENANT_ID, USER_DOMAIN, 2, accessTokenDOs -> {
+            assertTrue(accessTokenDOs.size() <= 2);
+            // Each batch is read by its own query, which is completed before the batch is consumed.
+            if (!listingConnectionCounts.isEmpty()) {
+                assertTrue(connections.size() > listingConnectionCounts.get(listingConnectionCounts.size() - 1));
+            }
+            listingConnectionCounts.add(connections.size());
+            for (AccessTokenDO accessTokenDO : accessTokenDOs) {
+                if (consumerKey.equals(accessTokenDO.getConsumerKey())) {
+                    listedTokenIds.add(accessTokenDO.getTokenId());
+                    scopeCounts.put(accessTokenDO.getTokenId(), accessTokenDO.getScope().length);
+                    // Revoking the listed tokens must not make the listing skip tokens.
+                    updateListedTokenState(accessTokenDO.getTokenId());
+                }
+            }
+        });
+
+        assertEquals(new HashSet<>(listedTokenIds), new HashSet<>(persistedTokenIds));
+        assertEquals(listedTokenIds.size(), persistedTokenIds.size());
+        assertEquals(scopeCounts.get(persistedTokenIds.get(1)), Integer.valueOf(3));
+        assertEquals(getTokenState(persistedTokenIds.get(4)), OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+    }
+
+    private void updateListedTokenState(String tokenId) throws IdentityOAuth2Exception {
+
+        try {
+            updateTokenState(tokenId, OAuthConstants.TokenStates.TOKEN_STATE_REVOKED);
+        } catch (Exception e) {
+            throw new IdentityOAuth2Exception("Error while revoking a listed token.", e);
+        }
+    }
+
+    private void addScope(String tokenId, String scope) throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "INSERT INTO IDN_OAUTH2_ACCESS_TOKEN_SCOPE (TOKEN_ID, TOKEN_SCOPE, TENANT_ID) VALUES (?, ?, ?)")) {
+            prepStmt.setString(1, tokenId);
+            prepStmt.setString(2, scope);
+            prepStmt.setInt(3, DEFAULT_TENANT_ID);
+            prepStmt.execute();
+        }
+    }
+
+    private AccessTokenDO persistAccessToken(String userName, String sessionId, TokenBinding tokenBinding)
+            throws Exception {
+
+        AccessTokenDO accessTokenDO = buildAccessToken(userName, sessionId, tokenBinding);
+        accessTokenDAO.insertAccessToken(accessTokenDO.getAccessToken(), consumerKey, accessTokenDO, USER_DOMAIN);
+        return accessTokenDO;
+    }
+
+    private AccessTokenDO buildAccessToken(String userName, String sessionId, TokenBinding tokenBinding) {
+
+        AuthenticatedUser authenticatedUser = new AuthenticatedUser();
+        authenticatedUser.setUserName(userName);
+        authenticatedUser.setTenantDomain("super.wso2");
+        authenticatedUser.setUserStoreDomain(USER_DOMAIN);
+        authenticatedUser.setAuthenticatedSubjectIdentifier(userName);
+
+        Timestamp issuedTime = new Timestamp(System.currentTimeMillis());
+        AccessTokenDO accessTokenDO = new AccessTokenDO(consumerKey, authenticatedUser, new String[]{"openid"},
+                tokenBinding, issuedTime, issuedTime, 3600000L, 84600000L, "APPLICATION_USER");
+        String accessToken = UUID.randomUUID().toString();
+        accessTokenDO.setAccessToken(accessToken);
+        accessTokenDO.setRefreshToken(UUID.randomUUID().toString());
+        accessTokenDO.setTokenId(UUID.randomUUID().toString());
+        accessTokenDO.setTokenState(OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE);
+        accessTokenDO.setGrantType("authorization_code");
+        accessTokenDO.setSessionContextIdentifier(sessionId);
+        return accessTokenDO;
+    }
+
+    private Map<String, String> getTokenBindings(String tokenId) throws Exception {
+
+        Map<String, String> bindings = new HashMap<>();
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement("SELECT TOKEN_BINDING_TYPE, " +
+                     "TOKEN_BINDING_REF, TOKEN_BINDING_VALUE FROM IDN_OAUTH2_TOKEN_BINDING WHERE TOKEN_ID = ?")) {
+            prepStmt.setString(1, tokenId);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                while (resultSet.next()) {
+                    String bindingType = resultSet.getString("TOKEN_BINDING_TYPE");
+                    String bindingValue = resultSet.getString("TOKEN_BINDING_VALUE");
+                    if (DEFAULT_TOKEN_TO_SESSION_MAPPING.equals(bindingType)) {
+                        assertEquals(resultSet.getString("TOKEN_BINDING_REF"), DigestUtils.md5Hex(bindingValue));
+                    }
+                    bindings.put(bindingType, bindingValue);
+                }
+            }
+        }
+        return bindings;
+    }
+
+    private String getTokenState(String tokenId) throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "SELECT TOKEN_STATE FROM IDN_OAUTH2_ACCESS_TOKEN WHERE TOKEN_ID = ?")) {
+            prepStmt.setString(1, tokenId);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("TOKEN_STATE") : null;
+            }
+        }
+    }
+
+    private void updateTokenState(String tokenId, String tokenState) throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "UPDATE IDN_OAUTH2_ACCESS_TOKEN SET TOKEN_STATE = ? WHERE TOKEN_ID = ?")) {
+            prepStmt.setString(1, tokenState);
+            prepStmt.setString(2, tokenId);
+            prepStmt.executeUpdate();
+        }
+    }
+
+    private void createApplication(String clientId) throws Exception {
+
+        try (Connection connection = DAOUtils.getConnection(DB_NAME);
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     SQLQueries.OAuthAppDAOSQLQueries.ADD_OAUTH_APP)) {
+            prepStmt.setString(1, clientId);
+            prepStmt.setString(2, UUID.randomUUID().toString());
+            prepStmt.setString(3, USER_NAME);
+            prepStmt.setInt(4, DEFAULT_TENANT_ID);
+            prepStmt.setString(5, USER_DOMAIN);
+            prepStmt.setString(6, APP_NAME);
+            prepStmt.setString(7, VERSION_2);
+            prepStmt.setString(8, CALLBACK);
+            prepStmt.setString(9, "authorization_code implicit refresh_token");
+            prepStmt.setLong(10, 3600L);
+            prepStmt.setLong(11, 3600L);
+            prepStmt.setLong(12, 84600L);
+            prepStmt.setLong(13, 3600L);
+            prepStmt.execute();
+        }
+    }
+
+    private Connection getConnection() throws Exception {
+
+        Connection connection = DAOUtils.getConnection(DB_NAME);
+        connections.add(connection);
+        return connection;
+    }
+}
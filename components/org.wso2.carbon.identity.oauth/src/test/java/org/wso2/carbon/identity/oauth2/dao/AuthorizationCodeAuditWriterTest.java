@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+
+import java.util.List;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for AuthorizationCodeAuditWriter.
+ */
+public class AuthorizationCodeAuditWriterTest {
+
+    private AuthorizationCodeDAO delegate;
+    private AuthorizationCodeAuditWriter auditWriter;
+
+    @BeforeMethod
+    public void setUp() {
+
+        delegate = mock(AuthorizationCodeDAO.class);
+        auditWriter = new AuthorizationCodeAuditWriter(delegate, 2);
+    }
+
+    @Test
+    public void testFlushWritesInsertsInBatches() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            auditWriter.addInsert(buildAuthzCode("code" + i, null));
+        }
+        auditWriter.flush();
+
+        ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+        verify(delegate, times(3)).insertAuthorizationCodes(batches.capture());
+        assertEquals(batches.getAllValues().get(0).size(), 2);
+        assertEquals(batches.getAllValues().get(2).size(), 1);
+    }
+
+    @Test
+    public void testDeactivationSupersedesEarlierStateChange() throws Exception {
+
+        auditWriter.addInsert(buildAuthzCode("code", null));
+        auditWriter.addStateChange("code", OAuthConstants.AuthorizationCodeState.REVOKED);
+        auditWriter.addDeactivation(buildAuthzCode("code", "tokenId"));
+        auditWriter.flush();
+
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).insertAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        order.verify(delegate).deactivateAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        verify(delegate, never()).updateAuthorizationCodeState(anyString(), anyString());
+    }
+
+    @Test
+    public void testStateChangeAfterDeactivationIsApplied() throws Exception {
+
+        auditWriter.addDeactivation(buildAuthzCode("code", "tokenId"));
+        auditWriter.addStateChange("code", OAuthConstants.AuthorizationCodeState.REVOKED);
+        auditWriter.flush();
+
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).deactivateAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        order.verify(delegate).updateAuthorizationCodeState("code", OAuthConstants.AuthorizationCodeState.REVOKED);
+    }
+
+    @Test
+    public void testPersistPendingWritesOfSingleCode() throws Exception {
+
+        auditWriter.addInsert(buildAuthzCode("code", null));
+        auditWriter.addInsert(buildAuthzCode("otherCode", null));
+        auditWriter.persistPendingWrites("code");
+
+        ArgumentCaptor<List> batches = ArgumentCaptor.forClass(List.class);
+        verify(delegate).insertAuthorizationCodes(batches.capture());
+        assertEquals(batches.getValue().size(), 1);
+        assertEquals(((AuthzCodeDO) batches.getValue().get(0)).getAuthorizationCode(), "code");
+
+        // The other code is left to the flush, and the code is not written again.
+        auditWriter.flush();
+        verify(delegate, times(2)).insertAuthorizationCodes(batches.capture());
+        assertEquals(batches.getValue().size(), 1);
+        assertEquals(((AuthzCodeDO) batches.getValue().get(0)).getAuthorizationCode(), "otherCode");
+    }
+
+    @Test
+    public void testFailedWritesAreRetried() throws Exception {
+
+        doThrow(new IdentityOAuth2Exception("Database error")).doNothing().when(delegate)
+                .insertAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        auditWriter.addInsert(buildAuthzCode("code", null));
+        auditWriter.addDeactivation(buildAuthzCode("code", "tokenId"));
+        auditWriter.flush();
+
+        // The deactivation waits for the insert of the code.
+        verify(delegate, never()).deactivateAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        auditWriter.flush();
+
+        InOrder order = inOrder(delegate);
+        order.verify(delegate, times(2)).insertAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        order.verify(delegate).deactivateAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+    }
+
+    @Test
+    public void testFailedWritesAreDroppedAfterRetries() throws Exception {
+
+        doThrow(new IdentityOAuth2Exception("Database error")).when(delegate)
+                .insertAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        auditWriter.addInsert(buildAuthzCode("code", null));
+        for (int i = 0; i < 4; i++) {
+            auditWriter.flush();
+        }
+        verify(delegate, times(3)).insertAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+    }
+
+    @Test
+    public void testFlushWithoutPendingWrites() throws Exception {
+
+        auditWriter.flush();
+        verifyZeroInteractions(delegate);
+    }
+
+    private AuthzCodeDO buildAuthzCode(String authzCode, String tokenId) {
+
+        AuthzCodeDO authzCodeDO = new AuthzCodeDO();
+        authzCodeDO.setAuthorizationCode(authzCode);
+        authzCodeDO.setOauthTokenId(tokenId);
+        return authzCodeDO;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.cache.AuthorizationCodeStoreCache;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.AuthorizationCodeState.ACTIVE;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.AuthorizationCodeState.REVOKED;
+
+/**
+ * Unit tests for the redemption of authorization codes by CacheBackedAuthorizationCodeDAO.
+ */
+@PrepareForTest({AuthorizationCodeStoreCache.class})
+public class CacheBackedAuthorizationCodeDAOTest extends PowerMockIdentityBaseTest {
+
+    private static final String CONSUMER_KEY = "consumerKey";
+    private static final String AUTHZ_CODE = "authzCode";
+    private static final String CALLBACK = "http://localhost:8080/redirect";
+
+    private final Map<String, AuthzCodeDO> storedCodes = new ConcurrentHashMap<>();
+    private AuthorizationCodeDAO delegate;
+    private CacheBackedAuthorizationCodeDAO authorizationCodeDAO;
+
+    @BeforeMethod
+    public void setUp() {
+
+        storedCodes.clear();
+        AuthorizationCodeStoreCache store = mock(AuthorizationCodeStoreCache.class);
+        doAnswer(invocation -> storedCodes.put((String) invocation.getArguments()[0],
+                (AuthzCodeDO) invocation.getArguments()[1])).when(store)
+                .addToCacheByCode(anyString(), any(AuthzCodeDO.class));
+        doAnswer(invocation -> storedCodes.remove((String) invocation.getArguments()[0])).when(store)
+                .clearCacheEntryByCode(anyString());
+        when(store.getValueFromCacheByCode(anyString()))
+                .thenAnswer(invocation -> storedCodes.get((String) invocation.getArguments()[0]));
+        mockStatic(AuthorizationCodeStoreCache.class);
+        when(AuthorizationCodeStoreCache.getInstance()).thenReturn(store);
+
+        delegate = mock(AuthorizationCodeDAO.class);
+        authorizationCodeDAO = new CacheBackedAuthorizationCodeDAO(delegate,
+                new AuthorizationCodeAuditWriter(delegate, 100));
+    }
+
+    @Test
+    public void testCodeIsRedeemedInDatabase() throws Exception {
+
+        when(delegate.updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED)).thenReturn(true);
+        insertCode();
+
+        AuthorizationCodeValidationResult result = authorizationCodeDAO.validateAuthorizationCode(CONSUMER_KEY,
+                AUTHZ_CODE);
+
+        assertTrue(result.isActiveCode());
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).insertAuthorizationCodes(anyListOf(AuthzCodeDO.class));
+        order.verify(delegate).updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED);
+        assertEquals(storedCodes.get(AUTHZ_CODE).getState(), REVOKED);
+    }
+
+    @Test
+    public void testRedemptionPersistsOnlyRedeemedCode() throws Exception {
+
+        when(delegate.updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED)).thenReturn(true);
+        authorizationCodeDAO.insertAuthorizationCode("otherCode", CONSUMER_KEY, CALLBACK, buildCode(ACTIVE));
+        insertCode();
+
+        assertTrue(authorizationCodeDAO.validateAuthorizationCode(CONSUMER_KEY, AUTHZ_CODE).isActiveCode());
+
+        ArgumentCaptor<List> insertedCodes = ArgumentCaptor.forClass(List.class);
+        verify(delegate).insertAuthorizationCodes(insertedCodes.capture());
+        assertEquals(insertedCodes.getValue().size(), 1);
+        assertEquals(((AuthzCodeDO) insertedCodes.getValue().get(0)).getAuthorizationCode(), AUTHZ_CODE);
+    }
+
+    @Test
+    public void testCodeIsNotRedeemedTwice() throws Exception {
+
+        when(delegate.updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED)).thenReturn(true);
+        insertCode();
+
+        assertTrue(authorizationCodeDAO.validateAuthorizationCode(CONSUMER_KEY, AUTHZ_CODE).isActiveCode());
+        AuthorizationCodeValidationResult secondResult = authorizationCodeDAO.validateAuthorizationCode(CONSUMER_KEY,
+                AUTHZ_CODE);
+
+        assertFalse(secondResult.isActiveCode());
+        assertEquals(secondResult.getAuthzCodeDO().getState(), REVOKED);
+        verify(delegate, times(1)).updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED);
+    }
+
+    @Test
+    public void testConcurrentRedemptionsRedeemCodeOnce() throws Exception {
+
+        when(delegate.updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED)).thenReturn(true);
+        insertCode();
+
+        int requests = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            Callable<Boolean> redemption = () -> authorizationCodeDAO.validateAuthorizationCode(CONSUMER_KEY,
+                    AUTHZ_CODE).isActiveCode();
+            int activeResults = 0;
+            for (Future<Boolean> result : executor.invokeAll(Collections.nCopies(requests, redemption))) {
+                activeResults += result.get() ? 1 : 0;
+            }
+            assertEquals(activeResults, 1, "Only one of the concurrent requests should redeem the code.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCodeRedeemedOnAnotherNodeIsTakenFromDatabase() throws Exception {
+
+        AuthzCodeDO redeemedCode = buildCode(REVOKED);
+        when(delegate.updateAuthorizationCodeState(AUTHZ_CODE, ACTIVE, REVOKED)).thenReturn(false);
+        when(delegate.validateAuthorizationCode(CONSUMER_KEY, AUTHZ_CODE))
+                .thenReturn(new AuthorizationCodeValidationResult(redeemedCode, null));
+        insertCode();
+
+        AuthorizationCodeValidationResult result = authorizationCodeDAO.validateAuthorizationCode(CONSUMER_KEY,
+                AUTHZ_CODE);
+
+        assertFalse(result.isActiveCode());
+        assertNull(storedCodes.get(AUTHZ_CODE), "The code should be served by the database afterwards.");
+    }
+
+    private void insertCode() throws Exception {
+
+        authorizationCodeDAO.insertAuthorizationCode(AUTHZ_CODE, CONSUMER_KEY, CALLBACK, buildCode(ACTIVE));
+    }
+
+    private AuthzCodeDO buildCode(String state) {
+
+        return new AuthzCodeDO(null, new String[]{"openid"}, new Timestamp(System.currentTimeMillis()), 3600000L,
+                CALLBACK, CONSUMER_KEY, AUTHZ_CODE, "codeId", state, null, null);
+    }
+}
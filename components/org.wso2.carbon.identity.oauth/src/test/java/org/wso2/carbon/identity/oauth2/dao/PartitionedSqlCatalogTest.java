@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Unit tests for PartitionedSqlCatalog.
+ */
+@PrepareForTest({OAuthServerConfiguration.class, IdentityUtil.class})
+public class PartitionedSqlCatalogTest extends PowerMockIdentityBaseTest {
+
+    private OAuthServerConfiguration oAuthServerConfiguration;
+
+    @BeforeMethod
+    public void setUp() {
+
+        oAuthServerConfiguration = mock(OAuthServerConfiguration.class);
+        mockStatic(OAuthServerConfiguration.class);
+        when(OAuthServerConfiguration.getInstance()).thenReturn(oAuthServerConfiguration);
+        when(oAuthServerConfiguration.getAccessTokenPartitioningDomains()).thenReturn("A:H2, B:AD");
+        mockStatic(IdentityUtil.class);
+        when(IdentityUtil.getPrimaryDomainName()).thenReturn("PRIMARY");
+    }
+
+    @Test
+    public void testGetPartitionedSqlOfCatalogQuery() throws Exception {
+
+        PartitionedSqlCatalog catalog = PartitionedSqlCatalog.getInstance();
+        String partitionedSql = catalog.getPartitionedSql(SQLQueries.LIST_ALL_TOKENS_IN_TENANT, "h2");
+        assertEquals(partitionedSql, SQLQueries.LIST_ALL_TOKENS_IN_TENANT
+                .replace("IDN_OAUTH2_ACCESS_TOKEN_SCOPE", "IDN_OAUTH2_ACCESS_TOKEN_SCOPE_A")
+                .replace("IDN_OAUTH2_ACCESS_TOKEN ", "IDN_OAUTH2_ACCESS_TOKEN_A "));
+        // Statements of mapped domains are precomputed and shared.
+        assertSame(catalog.getPartitionedSql(SQLQueries.LIST_ALL_TOKENS_IN_TENANT, "H2"), partitionedSql);
+    }
+
+    @Test
+    public void testGetPartitionedSqlOfUnmappedDomain() throws Exception {
+
+        String sql = "SELECT TOKEN_ID FROM IDN_OAUTH2_ACCESS_TOKEN WHERE ACCESS_TOKEN = ?";
+        PartitionedSqlCatalog catalog = PartitionedSqlCatalog.getInstance();
+        String partitionedSql = catalog.getPartitionedSql(sql, "LDAP");
+        assertEquals(partitionedSql, "SELECT TOKEN_ID FROM IDN_OAUTH2_ACCESS_TOKEN_LDAP WHERE ACCESS_TOKEN = ?");
+        assertSame(catalog.getPartitionedSql(sql, "LDAP"), partitionedSql);
+        assertSame(catalog.getPartitionedSql(sql, "PRIMARY"), sql);
+        assertSame(catalog.getPartitionedSql(sql, null), sql);
+    }
+
+    @Test
+    public void testCatalogRebuiltOnConfigurationChange() throws Exception {
+
+        PartitionedSqlCatalog catalog = PartitionedSqlCatalog.getInstance();
+        assertSame(PartitionedSqlCatalog.getInstance(), catalog);
+
+        when(oAuthServerConfiguration.getAccessTokenPartitioningDomains()).thenReturn("C:H2");
+        PartitionedSqlCatalog rebuiltCatalog = PartitionedSqlCatalog.getInstance();
+        assertNotSame(rebuiltCatalog, catalog);
+        assertEquals(rebuiltCatalog.getPartitionedSql("SELECT * FROM IDN_OAUTH2_ACCESS_TOKEN", "H2"),
+                "SELECT * FROM IDN_OAUTH2_ACCESS_TOKEN_C");
+    }
+}
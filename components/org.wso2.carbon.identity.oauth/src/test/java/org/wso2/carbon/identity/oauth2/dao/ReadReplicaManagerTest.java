@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for ReadReplicaManager.
+ */
+@PrepareForTest({IdentityDatabaseUtil.class, IdentityUtil.class})
+public class ReadReplicaManagerTest extends PowerMockIdentityBaseTest {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+    private static final String SCOPE_KEY = ReadReplicaManager.SCOPE + "1";
+
+    private Connection replicaConnection;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(IdentityUtil.class);
+        mockStatic(IdentityDatabaseUtil.class);
+        when(IdentityDatabaseUtil.getDBConnection(anyBoolean())).thenReturn(mock(Connection.class));
+
+        replicaConnection = mock(Connection.class);
+        DataSource replica = mock(DataSource.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        ReadReplicaManager.setReplica(replica);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        ReadReplicaManager.setReplica(null);
+        ReadReplicaManager.clearRecentWrites();
+    }
+
+    @Test
+    public void testReadFromReplica() throws Exception {
+
+        assertEquals(ReadReplicaManager.read(SCOPE_KEY, this::resolveDatabase), REPLICA);
+        assertEquals(resolveDatabase(), PRIMARY);
+    }
+
+    @Test
+    public void testReadAfterWriteGoesToPrimary() throws Exception {
+
+        ReadReplicaManager.markWritten(SCOPE_KEY);
+
+        assertTrue(ReadReplicaManager.isRecentlyWritten(SCOPE_KEY));
+        assertFalse(ReadReplicaManager.isRecentlyWritten(ReadReplicaManager.SCOPE + "2"));
+        assertEquals(ReadReplicaManager.read(SCOPE_KEY, this::resolveDatabase), PRIMARY);
+    }
+
+    @Test
+    public void testReplicaMissFallsBackToPrimary() throws Exception {
+
+        String result = ReadReplicaManager.read(SCOPE_KEY, () -> {
+            String database = resolveDatabase();
+            return PRIMARY.equals(database) ? database : null;
+        });
+        assertEquals(result, PRIMARY);
+    }
+
+    @Test
+    public void testReplicaFailureFallsBackToPrimary() throws Exception {
+
+        String result = ReadReplicaManager.read(SCOPE_KEY, () -> {
+            String database = resolveDatabase();
+            if (REPLICA.equals(database)) {
+                throw new IdentityOAuth2Exception("Replica is not reachable.");
+            }
+            return database;
+        });
+        assertEquals(result, PRIMARY);
+    }
+
+    private String resolveDatabase() {
+
+        return ReadReplicaManager.getDBConnection(false) == replicaConnection ? REPLICA : PRIMARY;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.dao.SQLQueries;
+import org.wso2.carbon.identity.oauth2.dao.util.DAOUtils;
+import org.wso2.carbon.identity.oauth2.model.AuthorizedClientDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.OAuthVersions.VERSION_2;
+
+/**
+ * Unit tests for TokenManagementDAOImpl.
+ */
+@WithCarbonHome
+@PrepareForTest({IdentityDatabaseUtil.class, IdentityUtil.class, OAuth2Util.class})
+public class TokenManagementDAOImplTest extends PowerMockIdentityBaseTest {
+
+    private static final String DB_NAME = "testTokenManagementDB";
+    private static final int TENANT_ID = 1234;
+    private static final String USER_NAME = "authorizedUser";
+    private static final String CALLBACK = "http://localhost:8080/redirect";
+
+    private final Map<String, Integer> appIds = new HashMap<>();
+
+    @BeforeClass
+    public void initTest() throws Exception {
+
+        DAOUtils.initializeDataSource(DB_NAME, DAOUtils.getFilePath("identity.sql"));
+        try (Connection connection = DAOUtils.getConnection(DB_NAME)) {
+            createApplication(connection, "clientWithActiveToken", "activeApp");
+            createApplication(connection, "clientWithExpiredToken", "expiredApp");
+            createApplication(connection, "clientWithRevokedToken", "revokedApp");
+
+            addAccessToken(connection, "clientWithActiveToken", USER_NAME, "ACTIVE", 1000L);
+            addAccessToken(connection, "clientWithActiveToken", USER_NAME, "EXPIRED", 5000L);
+            addAccessToken(connection, "clientWithExpiredToken", USER_NAME, "EXPIRED", 2000L);
+            addAccessToken(connection, "clientWithRevokedToken", USER_NAME, "REVOKED", 3000L);
+            addAccessToken(connection, "clientWithRevokedToken", "anotherUser", "ACTIVE", 4000L);
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(IdentityDatabaseUtil.class);
+        when(IdentityDatabaseUtil.getDBConnection(false)).thenAnswer(invocation -> DAOUtils.getConnection(DB_NAME));
+        mockStatic(IdentityUtil.class);
+        when(IdentityUtil.isUserStoreInUsernameCaseSensitive(anyString())).thenReturn(true);
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getTenantId(anyString())).thenReturn(TENANT_ID);
+        when(OAuth2Util.getSanitizedUserStoreDomain(anyString())).thenAnswer(
+                invocation -> ((String) invocation.getArguments()[0]).toUpperCase());
+        when(OAuth2Util.getTokenPartitionedSqlByUserStore(anyString(), anyString())).thenAnswer(
+                invocation -> invocation.getArguments()[0]);
+    }
+
+    @Test
+    public void testGetAuthorizedClients() throws Exception {
+
+        AuthenticatedUser user = new AuthenticatedUser();
+        user.setUserName(USER_NAME);
+        user.setTenantDomain("carbon.super");
+        user.setUserStoreDomain(UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+
+        List<AuthorizedClientDO> authorizedClients = new TokenManagementDAOImpl().getAuthorizedClients(user);
+
+        Map<String, AuthorizedClientDO> clientsByKey = new HashMap<>();
+        for (AuthorizedClientDO authorizedClient : authorizedClients) {
+            clientsByKey.put(authorizedClient.getConsumerKey(), authorizedClient);
+        }
+        assertEquals(authorizedClients.size(), 2, "Each authorized application should be listed once.");
+        assertEquals(clientsByKey.get("clientWithActiveToken").getApplicationName(), "activeApp");
+        assertEquals(clientsByKey.get("clientWithActiveToken").getLatestTokenIssuedTime().getTime(), 5000L);
+        assertEquals(clientsByKey.get("clientWithExpiredToken").getLatestTokenIssuedTime().getTime(), 2000L);
+    }
+
+    private void createApplication(Connection connection, String consumerKey, String appName) throws Exception {
+
+        try (PreparedStatement prepStmt = connection.prepareStatement(SQLQueries.OAuthAppDAOSQLQueries.ADD_OAUTH_APP,
+                new String[]{"ID"})) {
+            prepStmt.setString(1, consumerKey);
+            prepStmt.setString(2, UUID.randomUUID().toString());
+            prepStmt.setString(3, USER_NAME);
+            prepStmt.setInt(4, TENANT_ID);
+            prepStmt.setString(5, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+            prepStmt.setString(6, appName);
+            prepStmt.setString(7, VERSION_2);
+            prepStmt.setString(8, CALLBACK);
+            prepStmt.setString(9, "authorization_code");
+            prepStmt.setLong(10, 3600L);
+            prepStmt.setLong(11, 3600L);
+            prepStmt.setLong(12, 84600L);
+            prepStmt.setLong(13, 3600L);
+            prepStmt.execute();
+            try (ResultSet keys = prepStmt.getGeneratedKeys()) {
+                keys.next();
+                appIds.put(consumerKey, keys.getInt(1));
+            }
+        }
+    }
+
+    private void addAccessToken(Connection connection, String consumerKey, String user, String state,
+                                long timeCreated) throws Exception {
+
+        try (PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO IDN_OAUTH2_ACCESS_TOKEN " +
+                "(TOKEN_ID, ACCESS_TOKEN, CONSUMER_KEY_ID, AUTHZ_USER, TENANT_ID, USER_DOMAIN, TIME_CREATED, " +
+                "TOKEN_STATE, TOKEN_STATE_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            prepStmt.setString(1, UUID.randomUUID().toString());
+            prepStmt.setString(2, UUID.randomUUID().toString());
+            prepStmt.setInt(3, appIds.get(consumerKey));
+            prepStmt.setString(4, user);
+            prepStmt.setInt(5, TENANT_ID);
+            prepStmt.setString(6, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+            prepStmt.setTimestamp(7, new Timestamp(timeCreated), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+            prepStmt.setString(8, state);
+            prepStmt.setString(9, UUID.randomUUID().toString());
+            prepStmt.execute();
+        }
+    }
+}
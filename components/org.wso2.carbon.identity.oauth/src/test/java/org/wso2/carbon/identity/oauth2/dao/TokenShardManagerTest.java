@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.dao;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.common.testng.WithH2Database;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth.dao.SQLQueries;
+import org.wso2.carbon.identity.oauth.tokenprocessor.PlainTextPersistenceProcessor;
+import org.wso2.carbon.identity.oauth2.dao.util.DAOUtils;
+import org.wso2.carbon.identity.oauth2.model.AuthzCodeDO;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.AuthorizationCodeState.ACTIVE;
+import static org.wso2.carbon.identity.oauth.common.OAuthConstants.OAuthVersions.VERSION_2;
+
+/**
+ * Unit tests for TokenShardManager and the sharded authorization code DAO, over two H2 databases.
+ */
+@WithCarbonHome
+@WithH2Database(jndiName = "jdbc/WSO2IdentityDB", files = {"dbScripts/identity.sql"},
+        dbName = "testTokenShardIdentityDB")
+@PrepareForTest({OAuth2Util.class})
+public class TokenShardManagerTest extends PowerMockIdentityBaseTest {
+
+    private static final String[] SHARD_NAMES = {"testTokenShard0DB", "testTokenShard1DB"};
+    private static final int TENANT_ID = 1234;
+    private static final String CONSUMER_KEY = "shardedConsumerKey";
+    private static final String CALLBACK = "http://localhost:8080/redirect";
+
+    private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+    private TokenShardManager shardManager;
+
+    @BeforeClass
+    public void initTest() throws Exception {
+
+        // The application and identity provider are only created in the identity datasource, after another
+        // application, so that their ids differ from the ones a shard would generate.
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection()) {
+            createApplication(connection, "otherConsumerKey");
+            createApplication(connection, CONSUMER_KEY);
+            try (PreparedStatement prepStmt = connection.prepareStatement(
+                    "INSERT INTO IDP (TENANT_ID, NAME, UUID) VALUES (1234, 'LOCAL', 5678)")) {
+                prepStmt.execute();
+            }
+            IdentityDatabaseUtil.commitTransaction(connection);
+        }
+        for (String shardName : SHARD_NAMES) {
+            BasicDataSource dataSource = new BasicDataSource();
+            dataSource.setDriverClassName("org.h2.Driver");
+            dataSource.setUsername("username");
+            dataSource.setPassword("password");
+            dataSource.setUrl("jdbc:h2:mem:" + shardName);
+            try (Connection connection = dataSource.getConnection()) {
+                connection.createStatement().executeUpdate("RUNSCRIPT FROM '" + DAOUtils.getFilePath("identity.sql")
+                        + "'");
+            }
+            dataSources.put(shardName, dataSource);
+        }
+        shardManager = new TokenShardManager(dataSources, 64, SHARD_NAMES.length,
+                new PlainTextPersistenceProcessor());
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+
+        shardManager.shutdown();
+        for (DataSource dataSource : dataSources.values()) {
+            ((BasicDataSource) dataSource).close();
+        }
+    }
+
+    @Test
+    public void testKeysAreSpreadAcrossShards() {
+
+        int[] keysPerShard = new int[SHARD_NAMES.length];
+        for (int i = 0; i < 1000; i++) {
+            String key = UUID.randomUUID().toString();
+            int shardIndex = shardManager.getShardIndex(key);
+            assertEquals(shardManager.getShardIndex(key), shardIndex, "A key should always map to the same shard.");
+            keysPerShard[shardIndex]++;
+        }
+        for (int keys : keysPerShard) {
+            assertTrue(keys > 300, "Keys are not spread across the shards: " + keys);
+        }
+    }
+
+    @Test
+    public void testAddingShardOnlyRelocatesKeysToNewShard() {
+
+        Map<String, DataSource> extendedShards = new LinkedHashMap<>(dataSources);
+        extendedShards.put("testTokenShard2DB", new BasicDataSource());
+        TokenShardManager extendedShardManager = new TokenShardManager(extendedShards, 64, 1,
+                new PlainTextPersistenceProcessor());
+        try {
+            for (int i = 0; i < 1000; i++) {
+                String key = UUID.randomUUID().toString();
+                int shardIndex = extendedShardManager.getShardIndex(key);
+                if (shardIndex != 2) {
+                    assertEquals(shardIndex, shardManager.getShardIndex(key),
+                            "Only the keys taken over by the new shard should be relocated.");
+                }
+            }
+        } finally {
+            extendedShardManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testTokenIdsAreDerivedFromAccessTokens() throws Exception {
+
+        for (int i = 0; i < 20; i++) {
+            String accessToken = UUID.randomUUID().toString();
+            String tokenId = TokenShardManager.getTokenId(accessToken);
+            assertEquals(TokenShardManager.getTokenId(accessToken), tokenId, "Token id should be stable.");
+            assertEquals(UUID.fromString(tokenId).toString(), tokenId);
+            assertEquals(shardManager.getShardIndexOfAccessToken(accessToken),
+                    shardManager.getShardIndexOfTokenId(tokenId),
+                    "A token should be placed on the same shard when looked up by the token or its id.");
+        }
+    }
+
+    @Test
+    public void testExecuteOnShardBindsShardToThread() throws Exception {
+
+        for (int shardIndex = 0; shardIndex < SHARD_NAMES.length; shardIndex++) {
+            String url = shardManager.executeOnShard(shardIndex, () -> {
+                try (Connection connection = TokenShardManager.getCurrentShardConnection(false)) {
+                    return connection.getMetaData().getURL();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            assertTrue(url.endsWith(SHARD_NAMES[shardIndex]), "Unexpected shard: " + url);
+        }
+        assertNull(TokenShardManager.getCurrentShard());
+    }
+
+    @Test
+    public void testExecuteOnAllShardsReturnsResultsInShardOrder() throws Exception {
+
+        List<String> shardUrls = shardManager.executeOnAllShards(() -> {
+            try (Connection connection = TokenShardManager.getCurrentShardConnection(false)) {
+                return connection.getMetaData().getURL();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertEquals(shardUrls.size(), SHARD_NAMES.length);
+        for (int shardIndex = 0; shardIndex < SHARD_NAMES.length; shardIndex++) {
+            assertTrue(shardUrls.get(shardIndex).endsWith(SHARD_NAMES[shardIndex]));
+        }
+    }
+
+    @Test
+    public void testAuthorizationCodesAreRoutedByCode() throws Exception {
+
+        mockAuthorizationCodeDependencies();
+        AuthorizationCodeDAO authorizationCodeDAO = new ShardedAuthorizationCodeDAO(new AuthorizationCodeDAOImpl(),
+                shardManager);
+        AuthenticatedUser user = getUser();
+
+        Map<String, String> codeIds = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            String code = UUID.randomUUID().toString();
+            String codeId = UUID.randomUUID().toString();
+            authorizationCodeDAO.insertAuthorizationCode(code, CONSUMER_KEY, CALLBACK, new AuthzCodeDO(user,
+                    new String[]{"openid"}, new Timestamp(System.currentTimeMillis()), 3600000L, CALLBACK,
+                    CONSUMER_KEY, code, codeId, ACTIVE, null, null));
+            codeIds.put(code, codeId);
+        }
+
+        Set<Integer> usedShards = new HashSet<>();
+        for (Map.Entry<String, String> codeId : codeIds.entrySet()) {
+            int codeShard = shardManager.getShardIndex(codeId.getKey());
+            usedShards.add(codeShard);
+            assertEquals(authorizationCodeDAO.getCodeIdByAuthorizationCode(codeId.getKey()), codeId.getValue());
+            for (int shardIndex = 0; shardIndex < SHARD_NAMES.length; shardIndex++) {
+                assertEquals(isCodeStored(dataSources.get(SHARD_NAMES[shardIndex]), codeId.getValue()),
+                        shardIndex == codeShard, "Code should only be stored in the shard of its hash.");
+            }
+        }
+        assertEquals(usedShards.size(), SHARD_NAMES.length, "Codes of a client should be spread across shards.");
+        // Lookups by client are merged from all the shards.
+        assertTrue(authorizationCodeDAO.getAuthorizationCodesByConsumerKey(CONSUMER_KEY).containsAll(
+                codeIds.keySet()));
+    }
+
+    @Test
+    public void testReferenceRowsAreCopiedToShards() throws Exception {
+
+        mockAuthorizationCodeDependencies();
+        AuthorizationCodeDAO authorizationCodeDAO = new ShardedAuthorizationCodeDAO(new AuthorizationCodeDAOImpl(),
+                shardManager);
+        Set<Integer> shardsWithCodes = new HashSet<>();
+        while (shardsWithCodes.size() < SHARD_NAMES.length) {
+            String code = UUID.randomUUID().toString();
+            if (shardsWithCodes.add(shardManager.getShardIndex(code))) {
+                authorizationCodeDAO.insertAuthorizationCode(code, CONSUMER_KEY, CALLBACK, new AuthzCodeDO(
+                        getUser(), new String[]{"openid"}, new Timestamp(System.currentTimeMillis()), 3600000L,
+                        CALLBACK, CONSUMER_KEY, code, UUID.randomUUID().toString(), ACTIVE, null, null));
+            }
+        }
+
+        int applicationId = getIdentityApplicationId();
+        for (String shardName : SHARD_NAMES) {
+            DataSource shard = dataSources.get(shardName);
+            assertEquals(getApplicationId(shard), applicationId,
+                    "Application row should be copied to the shard with the id of the identity datasource.");
+            assertFalse(hasApplication(shard, "otherConsumerKey"), "Only the used application should be copied.");
+            assertTrue(hasLocalIdP(shard), "Identity provider row should be copied to the shard.");
+        }
+    }
+
+    private void mockAuthorizationCodeDependencies() throws Exception {
+
+        OAuthAppDO oAuthAppDO = new OAuthAppDO();
+        oAuthAppDO.setId(getIdentityApplicationId());
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getTenantId(anyString())).thenReturn(TENANT_ID);
+        when(OAuth2Util.getUserStoreDomain(any())).thenReturn(UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+        when(OAuth2Util.getAuthenticatedIDP(any())).thenReturn("LOCAL");
+        when(OAuth2Util.getAppInformationByClientId(CONSUMER_KEY)).thenReturn(oAuthAppDO);
+    }
+
+    private AuthenticatedUser getUser() {
+
+        AuthenticatedUser user = new AuthenticatedUser();
+        user.setTenantDomain("super.wso2");
+        user.setUserName("shardedUser");
+        user.setUserStoreDomain(UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+        return user;
+    }
+
+    private int getIdentityApplicationId() throws Exception {
+
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(false)) {
+            return getApplicationId(connection);
+        }
+    }
+
+    private int getApplicationId(DataSource dataSource) throws Exception {
+
+        try (Connection connection = dataSource.getConnection()) {
+            return getApplicationId(connection);
+        }
+    }
+
+    private int getApplicationId(Connection connection) throws Exception {
+
+        try (PreparedStatement prepStmt = connection.prepareStatement(
+                "SELECT ID FROM IDN_OAUTH_CONSUMER_APPS WHERE CONSUMER_KEY = ?")) {
+            prepStmt.setString(1, CONSUMER_KEY);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                assertTrue(resultSet.next(), "Application not found.");
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private boolean hasApplication(DataSource dataSource, String consumerKey) throws Exception {
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "SELECT ID FROM IDN_OAUTH_CONSUMER_APPS WHERE CONSUMER_KEY = ?")) {
+            prepStmt.setString(1, consumerKey);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private boolean hasLocalIdP(DataSource dataSource) throws Exception {
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "SELECT ID FROM IDP WHERE NAME = 'LOCAL' AND TENANT_ID = ?")) {
+            prepStmt.setInt(1, TENANT_ID);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private boolean isCodeStored(DataSource dataSource, String codeId) throws Exception {
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement prepStmt = connection.prepareStatement(
+                     "SELECT CODE_ID FROM IDN_OAUTH2_AUTHORIZATION_CODE WHERE CODE_ID = ?")) {
+            prepStmt.setString(1, codeId);
+            try (ResultSet resultSet = prepStmt.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private void createApplication(Connection connection, String consumerKey) throws Exception {
+
+        try (PreparedStatement prepStmt = connection.prepareStatement(SQLQueries.OAuthAppDAOSQLQueries.ADD_OAUTH_APP)) {
+            prepStmt.setString(1, consumerKey);
+            prepStmt.setString(2, UUID.randomUUID().toString());
+            prepStmt.setString(3, "user1");
+            prepStmt.setInt(4, TENANT_ID);
+            prepStmt.setString(5, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+            prepStmt.setString(6, "shardedApp");
+            prepStmt.setString(7, VERSION_2);
+            prepStmt.setString(8, CALLBACK);
+            prepStmt.setString(9, "authorization_code");
+            prepStmt.setLong(10, 3600L);
+            prepStmt.setLong(11, 3600L);
+            prepStmt.setLong(12, 84600L);
+            prepStmt.setLong(13, 3600L);
+            prepStmt.execute();
+        }
+    }
+}
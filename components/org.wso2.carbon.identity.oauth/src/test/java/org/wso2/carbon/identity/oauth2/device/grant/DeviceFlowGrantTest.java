@@ -25,8 +25,13 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 import org.wso2.carbon.identity.common.testng.WithCarbonHome;
 import org.wso2.carbon.identity.common.testng.WithH2Database;
+import org.wso2.carbon.identity.core.util.IdentityDatabaseUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.device.constants.Constants;
 import org.wso2.carbon.identity.oauth2.device.model.DeviceFlowDO;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.Timestamp;
 import java.util.Date;
 
@@ -64,4 +69,34 @@ public class DeviceFlowGrantTest extends PowerMockTestCase {
         Assert.assertFalse(WhiteboxImpl.invokeMethod(DeviceFlowGrant.class, "isValidPollTime", newTime, deviceFlowDO1));
         Assert.assertTrue(WhiteboxImpl.invokeMethod(DeviceFlowGrant.class, "isValidPollTime", newTime, deviceFlowDO2));
     }
+
+    @Test
+    public void testExpireAuthorizedDeviceCodeOnlyOnce() throws Exception {
+
+        String deviceCode = "authorizedDeviceCode";
+        try (Connection connection = IdentityDatabaseUtil.getDBConnection(true);
+             PreparedStatement prepStmt = connection.prepareStatement("INSERT INTO IDN_OAUTH2_DEVICE_FLOW " +
+                     "(CODE_ID, DEVICE_CODE, USER_CODE, LAST_POLL_TIME, EXPIRY_TIME, POLL_TIME, STATUS) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            prepStmt.setString(1, "authorizedCodeId");
+            prepStmt.setString(2, deviceCode);
+            prepStmt.setString(3, "authorizedUserCode");
+            prepStmt.setTimestamp(4, newTime);
+            prepStmt.setTimestamp(5, new Timestamp(date.getTime() + 60000));
+            prepStmt.setLong(6, 5000);
+            prepStmt.setString(7, Constants.AUTHORIZED);
+            prepStmt.execute();
+            IdentityDatabaseUtil.commitTransaction(connection);
+        }
+
+        DeviceFlowGrant deviceFlowGrant = new DeviceFlowGrant();
+        WhiteboxImpl.invokeMethod(deviceFlowGrant, "expireAuthorizedDeviceCode", deviceCode);
+        // A concurrent poll which also read the device code as authorized must not get a token.
+        try {
+            WhiteboxImpl.invokeMethod(deviceFlowGrant, "expireAuthorizedDeviceCode", deviceCode);
+            Assert.fail("Device code was expired twice.");
+        } catch (IdentityOAuth2Exception e) {
+            Assert.assertEquals(e.getErrorCode(), "expired_token");
+        }
+    }
 }
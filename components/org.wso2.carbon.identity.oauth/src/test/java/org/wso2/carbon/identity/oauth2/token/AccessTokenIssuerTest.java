@@ -43,6 +43,7 @@ import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
+import org.wso2.carbon.identity.oauth.util.RequestScopedUserClaimCache;
 import org.wso2.carbon.identity.oauth2.IDTokenValidationFailureException;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.ResponseHeader;
@@ -61,12 +62,15 @@ import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -525,6 +529,52 @@ public class AccessTokenIssuerTest extends PowerMockIdentityBaseTest {
         assertEquals(tokenRespDTO.getIDToken(), ID_TOKEN);
     }
 
+    @Test
+    public void testIssueWithOpenIdScopeSharesUserClaims() throws Exception {
+
+        String grantType = GrantType.AUTHORIZATION_CODE.toString();
+        OAuth2AccessTokenReqDTO reqDTO = new OAuth2AccessTokenReqDTO();
+        reqDTO.setGrantType(grantType);
+        reqDTO.setScope((String[]) ArrayUtils.clone(SCOPES_WITH_OPENID));
+        OAuthClientAuthnContext oAuthClientAuthnContext = new OAuthClientAuthnContext();
+        oAuthClientAuthnContext.setClientId(SOME_CLIENT_ID);
+        reqDTO.setoAuthClientAuthnContext(oAuthClientAuthnContext);
+        setupOIDCScopeTest(grantType, true);
+
+        // Both the access token and the ID token read the same user claim.
+        AtomicInteger userStoreCalls = new AtomicInteger();
+        AuthorizationGrantHandler grantHandler = oAuthServerConfiguration.getSupportedGrantTypes().get(grantType);
+        doAnswer(invocationOnMock -> {
+            OAuthTokenReqMessageContext context = invocationOnMock.getArgumentAt(0, OAuthTokenReqMessageContext.class);
+            context.setScope(context.getOauth2AccessTokenReqDTO().getScope());
+            getEmailClaim(userStoreCalls);
+            return new OAuth2AccessTokenRespDTO();
+        }).when(grantHandler).issue(any(OAuthTokenReqMessageContext.class));
+        IDTokenBuilder idTokenBuilder = oAuthServerConfiguration.getOpenIDConnectIDTokenBuilder();
+        doAnswer(invocationOnMock -> {
+            assertEquals(getEmailClaim(userStoreCalls), "admin@wso2.com");
+            return ID_TOKEN;
+        }).when(idTokenBuilder).buildIDToken(any(OAuthTokenReqMessageContext.class),
+                any(OAuth2AccessTokenRespDTO.class));
+
+        OAuth2AccessTokenRespDTO tokenRespDTO = AccessTokenIssuer.getInstance().issue(reqDTO);
+
+        assertEquals(tokenRespDTO.getIDToken(), ID_TOKEN);
+        assertEquals(userStoreCalls.get(), 1);
+        assertFalse(RequestScopedUserClaimCache.isScopeActive());
+    }
+
+    private String getEmailClaim(AtomicInteger userStoreCalls) {
+
+        String emailClaim = "http://wso2.org/claims/emailaddress";
+        return RequestScopedUserClaimCache.getClaimValues("admin", MultitenantConstants.SUPER_TENANT_DOMAIN_NAME,
+                RequestScopedUserClaimCache.LOCAL_CLAIM_DIALECT, Collections.singletonList(emailClaim),
+                claimURIs -> {
+                    userStoreCalls.incrementAndGet();
+                    return Collections.singletonMap(emailClaim, "admin@wso2.com");
+                }).get(emailClaim);
+    }
+
     @Test
     public void testIssueWithOpenIdScopeFailure() throws Exception {
 
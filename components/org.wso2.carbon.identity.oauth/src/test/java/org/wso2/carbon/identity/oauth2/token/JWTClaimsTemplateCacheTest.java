@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Test class for JWTClaimsTemplateCache.
+ */
+@PrepareForTest({IdentityUtil.class})
+public class JWTClaimsTemplateCacheTest extends PowerMockIdentityBaseTest {
+
+    private static final String CLIENT_ID = "clientId";
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String SUBJECT = "admin";
+
+    private JWTClaimsTemplateCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+
+        mockStatic(IdentityUtil.class);
+        cache = new JWTClaimsTemplateCache();
+    }
+
+    @Test
+    public void testGetTemplate() {
+
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().subject(SUBJECT).claim("scope", "read write").build();
+        cache.addTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, new String[]{"read", "write"}, claimsSet);
+
+        // The scope order of the request does not matter.
+        JWTClaimsTemplateCache.ClaimsTemplate template =
+                cache.getTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, new String[]{"write", "read"});
+        assertNotNull(template);
+        assertEquals(template.getClaimsSet(), claimsSet);
+        assertNull(cache.getTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, new String[]{"read"}));
+        assertNull(cache.getTemplate(CLIENT_ID, "wso2.com", SUBJECT, new String[]{"read", "write"}));
+    }
+
+    @Test
+    public void testTemplateWithoutClaims() {
+
+        cache.addTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, null, null);
+
+        JWTClaimsTemplateCache.ClaimsTemplate template = cache.getTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, null);
+        assertNotNull(template);
+        assertNull(template.getClaimsSet());
+    }
+
+    @Test
+    public void testTimeToLiveBoundsEntries() throws Exception {
+
+        when(IdentityUtil.getProperty("OAuth.JWTAccessToken.ClaimsTemplateCache.TimeToLive")).thenReturn("1");
+        cache.addTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, null, new JWTClaimsSet.Builder().build());
+        Thread.sleep(10);
+        assertNull(cache.getTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, null));
+    }
+
+    @Test
+    public void testInvalidate() {
+
+        cache.addTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, new String[]{"read"}, new JWTClaimsSet.Builder().build());
+        cache.addTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, new String[]{"write"}, null);
+        cache.addTemplate("otherClientId", TENANT_DOMAIN, SUBJECT, null, new JWTClaimsSet.Builder().build());
+        assertEquals(cache.size(), 3);
+
+        cache.invalidate(CLIENT_ID);
+        assertEquals(cache.size(), 1);
+        assertNotNull(cache.getTemplate("otherClientId", TENANT_DOMAIN, SUBJECT, null));
+    }
+
+    @Test
+    public void testDisabledCache() {
+
+        when(IdentityUtil.getProperty("OAuth.JWTAccessToken.ClaimsTemplateCache.Enable")).thenReturn("false");
+        cache.addTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, null, new JWTClaimsSet.Builder().build());
+        assertNull(cache.getTemplate(CLIENT_ID, TENANT_DOMAIN, SUBJECT, null));
+        assertEquals(cache.size(), 0);
+    }
+}
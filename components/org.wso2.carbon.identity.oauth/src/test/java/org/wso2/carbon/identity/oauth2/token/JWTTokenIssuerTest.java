@@ -28,6 +28,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.internal.WhiteboxImpl;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -35,6 +36,9 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import org.wso2.carbon.base.CarbonBaseConstants;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.common.model.ClaimConfig;
+import org.wso2.carbon.identity.application.common.model.ClaimMapping;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.common.exception.InvalidOAuthClientException;
@@ -47,6 +51,7 @@ import org.wso2.carbon.identity.oauth2.dto.OAuth2AuthorizeReqDTO;
 import org.wso2.carbon.identity.oauth2.token.handlers.grant.AuthorizationGrantHandler;
 import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.openidconnect.CustomClaimsCallbackHandler;
+import org.wso2.carbon.identity.openidconnect.DefaultOIDCClaimsCallbackHandler;
 import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
 
 import java.nio.file.Paths;
@@ -59,6 +64,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
@@ -71,7 +77,10 @@ import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.spy;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.powermock.api.support.membermodification.MemberMatcher.method;
+import static org.powermock.api.support.membermodification.MemberModifier.replace;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -128,6 +137,8 @@ public class JWTTokenIssuerTest extends PowerMockIdentityBaseTest {
     @AfterMethod
     public void tearDown() throws Exception {
         reset(oAuthServerConfiguration);
+        JWTClaimsTemplateCache.getInstance().clear();
+        WhiteboxImpl.setInternalState(JWTClaimsTemplateCache.getInstance(), "enabled", (Boolean) null);
     }
 
     @DataProvider(name = "requestScopesProvider")
@@ -593,4 +604,125 @@ public class JWTTokenIssuerTest extends PowerMockIdentityBaseTest {
                 thenReturn(claimsCallBackHandler);
 
     }
+
+    @Test
+    public void testTemplatedClaimSetMatchesUncachedClaimSet() throws Exception {
+
+        OAuthTokenReqMessageContext tokenReqMessageContext = mockClientCredentialsTokenRequest(new ClaimMapping[0]);
+        AtomicInteger customClaimsHandlingCount = countCustomClaimsHandling();
+        JWTTokenIssuer jwtTokenIssuer = new JWTTokenIssuer();
+        jwtTokenIssuer.setPersistAccessTokenAlias(false);
+
+        WhiteboxImpl.setInternalState(JWTClaimsTemplateCache.getInstance(), "enabled", false);
+        JWTClaimsSet uncachedClaimsSet =
+                jwtTokenIssuer.createJWTClaimSet(null, tokenReqMessageContext, DUMMY_CLIENT_ID);
+        assertEquals(customClaimsHandlingCount.get(), 1);
+
+        WhiteboxImpl.setInternalState(JWTClaimsTemplateCache.getInstance(), "enabled", true);
+        // The first token builds the template and the second one is built from it.
+        jwtTokenIssuer.createJWTClaimSet(null, tokenReqMessageContext, DUMMY_CLIENT_ID);
+        JWTClaimsSet templatedClaimsSet =
+                jwtTokenIssuer.createJWTClaimSet(null, tokenReqMessageContext, DUMMY_CLIENT_ID);
+
+        assertEquals(getClaimsCommonToTokens(templatedClaimsSet), getClaimsCommonToTokens(uncachedClaimsSet));
+        assertNotEquals(templatedClaimsSet.getJWTID(), uncachedClaimsSet.getJWTID());
+        assertEquals(templatedClaimsSet.getExpirationTime().getTime() - templatedClaimsSet.getIssueTime().getTime(),
+                uncachedClaimsSet.getExpirationTime().getTime() - uncachedClaimsSet.getIssueTime().getTime());
+        assertEquals(templatedClaimsSet.getNotBeforeTime(), templatedClaimsSet.getIssueTime());
+        assertEquals(customClaimsHandlingCount.get(), 1, "Templated tokens should not be passed to the claims " +
+                "callback handler.");
+    }
+
+    @DataProvider(name = "claimMappingsProvider")
+    public Object[][] provideClaimMappings() {
+
+        return new Object[][]{
+                {new ClaimMapping[0], 0},
+                {new ClaimMapping[]{ClaimMapping.build("http://wso2.org/claims/emailaddress", "email", "", true)}, 2}
+        };
+    }
+
+    @Test(dataProvider = "claimMappingsProvider")
+    public void testCustomClaimsHandlingOfTemplatedTokens(ClaimMapping[] claimMappings,
+                                                          int expectedCustomClaimsHandlingCount) throws Exception {
+
+        OAuthTokenReqMessageContext tokenReqMessageContext = mockClientCredentialsTokenRequest(claimMappings);
+        AtomicInteger customClaimsHandlingCount = countCustomClaimsHandling();
+        WhiteboxImpl.setInternalState(JWTClaimsTemplateCache.getInstance(), "enabled", true);
+        JWTTokenIssuer jwtTokenIssuer = new JWTTokenIssuer();
+        jwtTokenIssuer.setPersistAccessTokenAlias(false);
+
+        jwtTokenIssuer.createJWTClaimSet(null, tokenReqMessageContext, DUMMY_CLIENT_ID);
+        jwtTokenIssuer.createJWTClaimSet(null, tokenReqMessageContext, DUMMY_CLIENT_ID);
+
+        assertEquals(customClaimsHandlingCount.get(), expectedCustomClaimsHandlingCount);
+    }
+
+    private OAuthTokenReqMessageContext mockClientCredentialsTokenRequest(ClaimMapping[] claimMappings)
+            throws Exception {
+
+        OAuthAppDO appDO = new OAuthAppDO();
+        appDO.setApplicationAccessTokenExpiryTime(APPLICATION_ACCESS_TOKEN_LIFE_TIME);
+        ServiceProvider serviceProvider = new ServiceProvider();
+        ClaimConfig claimConfig = new ClaimConfig();
+        claimConfig.setClaimMappings(claimMappings);
+        serviceProvider.setClaimConfig(claimConfig);
+
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getAppInformationByClientId(anyString())).thenReturn(appDO);
+        when(OAuth2Util.getIdTokenIssuer(anyString())).thenReturn(ID_TOKEN_ISSUER);
+        when(OAuth2Util.getOIDCAudience(anyString(), anyObject())).thenReturn(Collections.singletonList
+                (DUMMY_CLIENT_ID));
+        when(OAuth2Util.buildScopeString(any(String[].class))).thenReturn("scope1");
+        when(OAuth2Util.getServiceProvider(anyString(), anyString())).thenReturn(serviceProvider);
+
+        AuthorizationGrantHandler clientCredentialsGrantHandler = mock(AuthorizationGrantHandler.class);
+        when(clientCredentialsGrantHandler.isOfTypeApplicationUser()).thenReturn(false);
+        when(oAuthServerConfiguration.getSupportedGrantTypes()).thenReturn(Collections.singletonMap(
+                OAuthConstants.GrantTypes.CLIENT_CREDENTIALS, clientCredentialsGrantHandler));
+        when(oAuthServerConfiguration.getSignatureAlgorithm()).thenReturn(SHA256_WITH_HMAC);
+        when(oAuthServerConfiguration.getOpenIDConnectCustomClaimsCallbackHandler())
+                .thenReturn(new DefaultOIDCClaimsCallbackHandler());
+
+        AuthenticatedUser appOwner = new AuthenticatedUser();
+        appOwner.setUserName("DUMMY_USERNAME");
+        appOwner.setTenantDomain("carbon.super");
+        appOwner.setUserStoreDomain("PRIMARY");
+        appOwner.setAuthenticatedSubjectIdentifier(appOwner.toString());
+
+        OAuth2AccessTokenReqDTO tokenReqDTO = new OAuth2AccessTokenReqDTO();
+        tokenReqDTO.setClientId(DUMMY_CLIENT_ID);
+        tokenReqDTO.setTenantDomain("carbon.super");
+        tokenReqDTO.setGrantType(OAuthConstants.GrantTypes.CLIENT_CREDENTIALS);
+        OAuthTokenReqMessageContext tokenReqMessageContext = new OAuthTokenReqMessageContext(tokenReqDTO);
+        tokenReqMessageContext.setAuthorizedUser(appOwner);
+        tokenReqMessageContext.setScope(new String[]{"scope1"});
+        tokenReqMessageContext.addProperty(OAuthConstants.UserType.USER_TYPE, OAuthConstants.UserType.APPLICATION);
+        return tokenReqMessageContext;
+    }
+
+    /**
+     * Count the custom claims handling of the token issuer. The claims callback handler adds no claims, as it would
+     * for an application without claim mappings.
+     */
+    private AtomicInteger countCustomClaimsHandling() {
+
+        AtomicInteger count = new AtomicInteger();
+        replace(method(JWTTokenIssuer.class, "handleCustomClaims", JWTClaimsSet.Builder.class,
+                OAuthTokenReqMessageContext.class)).with((proxy, invokedMethod, arguments) -> {
+            count.incrementAndGet();
+            return ((JWTClaimsSet.Builder) arguments[0]).build();
+        });
+        return count;
+    }
+
+    private Map<String, Object> getClaimsCommonToTokens(JWTClaimsSet claimsSet) {
+
+        Map<String, Object> claims = new HashMap<>(claimsSet.getClaims());
+        claims.remove("jti");
+        claims.remove("iat");
+        claims.remove("nbf");
+        claims.remove("exp");
+        return claims;
+    }
 }
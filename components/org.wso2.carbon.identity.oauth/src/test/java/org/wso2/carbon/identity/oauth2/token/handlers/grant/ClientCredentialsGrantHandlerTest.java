@@ -22,23 +22,40 @@ import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth.cache.CacheEntry;
+import org.wso2.carbon.identity.oauth.cache.OAuthCache;
+import org.wso2.carbon.identity.oauth.cache.OAuthCacheKey;
+import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
+import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.oauth2.token.JWTTokenIssuer;
 import org.wso2.carbon.identity.oauth2.token.OAuthTokenReqMessageContext;
+import org.wso2.carbon.identity.oauth2.util.OAuth2Util;
 import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 /**
  * Test class for ClientCredentialsGrantHandler test cases.
  */
-@PrepareForTest({OAuthServerConfiguration.class, AbstractAuthorizationGrantHandler.class})
+@PrepareForTest({OAuthServerConfiguration.class, AbstractAuthorizationGrantHandler.class, OAuth2Util.class,
+        OAuthCache.class})
 public class ClientCredentialsGrantHandlerTest extends PowerMockIdentityBaseTest {
 
     @Mock
@@ -83,4 +100,47 @@ public class ClientCredentialsGrantHandlerTest extends PowerMockIdentityBaseTest
         clientCredentialsGrantHandler.init();
         assertTrue(clientCredentialsGrantHandler.issueRefreshToken(), "Refresh token issuance failed.");
     }
+
+    @Test
+    public void testIssueStatelessAccessToken() throws Exception {
+
+        String clientId = "clientId";
+        OAuthCache mockOAuthCache = mock(OAuthCache.class);
+        when(mockOAuthCache.isEnabled()).thenReturn(true);
+        mockStatic(OAuthCache.class);
+        when(OAuthCache.getInstance()).thenReturn(mockOAuthCache);
+        JWTTokenIssuer mockJWTTokenIssuer = mock(JWTTokenIssuer.class);
+        when(mockJWTTokenIssuer.accessToken(any(OAuthTokenReqMessageContext.class))).thenReturn("stateless.jwt.token");
+
+        OAuthAppDO oAuthAppDO = new OAuthAppDO();
+        oAuthAppDO.setOauthConsumerKey(clientId);
+        oAuthAppDO.setApplicationAccessTokenExpiryTime(3600);
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.getOAuthTokenIssuerForOAuthApp(clientId)).thenReturn(mockJWTTokenIssuer);
+        when(OAuth2Util.getAppInformationByClientId(clientId)).thenReturn(oAuthAppDO);
+        when(OAuth2Util.isStatelessJWTAccessTokenGrant(OAuthConstants.GrantTypes.CLIENT_CREDENTIALS))
+                .thenReturn(true);
+
+        OAuth2AccessTokenReqDTO tokenReqDTO = new OAuth2AccessTokenReqDTO();
+        tokenReqDTO.setClientId(clientId);
+        tokenReqDTO.setGrantType(OAuthConstants.GrantTypes.CLIENT_CREDENTIALS);
+        OAuthTokenReqMessageContext tokenReqMessageContext = new OAuthTokenReqMessageContext(tokenReqDTO);
+        AuthenticatedUser authenticatedUser = new AuthenticatedUser();
+        authenticatedUser.setUserName("appOwner");
+        authenticatedUser.setUserId("4b4414e1-916b-4475-aaee-6b0751c29ff6");
+        tokenReqMessageContext.setAuthorizedUser(authenticatedUser);
+        tokenReqMessageContext.setScope(new String[]{"scope1"});
+
+        clientCredentialsGrantHandler = spy(new ClientCredentialsGrantHandler());
+        clientCredentialsGrantHandler.init();
+        OAuth2AccessTokenRespDTO tokenRespDTO = clientCredentialsGrantHandler.issue(tokenReqMessageContext);
+
+        assertEquals(tokenRespDTO.getAccessToken(), "stateless.jwt.token");
+        assertEquals(tokenRespDTO.getExpiresIn(), 3600);
+        assertEquals(tokenReqMessageContext.getProperty(OAuth2Util.STATELESS_ACCESS_TOKEN), true,
+                "The token should be marked as stateless for the token issuer.");
+        verify(clientCredentialsGrantHandler, never()).storeAccessToken(any(OAuth2AccessTokenReqDTO.class),
+                anyString(), any(AccessTokenDO.class), anyString(), any(AccessTokenDO.class));
+        verify(mockOAuthCache, never()).addToCache(any(OAuthCacheKey.class), any(CacheEntry.class));
+    }
 }
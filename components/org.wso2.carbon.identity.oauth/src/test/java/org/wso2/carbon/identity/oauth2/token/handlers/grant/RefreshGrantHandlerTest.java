@@ -18,6 +18,7 @@
 
 package org.wso2.carbon.identity.oauth2.token.handlers.grant;
 
+import org.powermock.reflect.internal.WhiteboxImpl;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -30,11 +31,16 @@ import org.wso2.carbon.identity.application.mgt.internal.ApplicationManagementSe
 import org.wso2.carbon.identity.common.testng.WithCarbonHome;
 import org.wso2.carbon.identity.common.testng.WithH2Database;
 import org.wso2.carbon.identity.common.testng.WithRealmService;
+import org.wso2.carbon.identity.oauth.cache.RefreshTokenValidationCache;
+import org.wso2.carbon.identity.oauth.cache.RefreshTokenValidationCacheEntry;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDAO;
 import org.wso2.carbon.identity.oauth.dao.OAuthAppDO;
 import org.wso2.carbon.identity.oauth.internal.OAuthComponentServiceHolder;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenDAO;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.dao.TokenManagementDAO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenReqDTO;
 import org.wso2.carbon.identity.oauth2.dto.OAuth2AccessTokenRespDTO;
 import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
@@ -45,13 +51,22 @@ import org.wso2.carbon.identity.test.common.testng.utils.MockAuthenticatedUser;
 import org.wso2.carbon.identity.testutil.Whitebox;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenStates.TOKEN_STATE_ACTIVE;
 import static org.wso2.carbon.identity.oauth.common.OAuthConstants.TokenStates.TOKEN_STATE_EXPIRED;
@@ -163,6 +178,85 @@ public class RefreshGrantHandlerTest {
         Assert.fail("Authenticated user cannot be null.");
     }
 
+    @Test
+    public void testRefreshTokenOfReissuedTokenIsRejected() throws Exception {
+
+        String clientId = "reissuedClientId";
+        String oldRefreshToken = "oldRefreshToken";
+        RefreshTokenValidationDataDO cachedValidationData = buildValidationData(TOKEN_STATE_ACTIVE);
+        RefreshTokenValidationCache.getInstance().addToCacheByRefreshToken(oldRefreshToken,
+                new RefreshTokenValidationCacheEntry(clientId, cachedValidationData, true));
+
+        OAuthTokenPersistenceFactory persistenceFactory = OAuthTokenPersistenceFactory.getInstance();
+        AccessTokenDAO accessTokenDAO = persistenceFactory.getAccessTokenDAO();
+        TokenManagementDAO tokenManagementDAO = persistenceFactory.getTokenManagementDAO();
+        AccessTokenDAO mockAccessTokenDAO = mock(AccessTokenDAO.class);
+        TokenManagementDAO mockTokenManagementDAO = mock(TokenManagementDAO.class);
+        WhiteboxImpl.setInternalState(persistenceFactory, "tokenDAO", mockAccessTokenDAO);
+        WhiteboxImpl.setInternalState(persistenceFactory, "managementDAO", mockTokenManagementDAO);
+        try {
+            refreshGrantHandler = new RefreshGrantHandler();
+            refreshGrantHandler.init();
+            WhiteboxImpl.setInternalState(refreshGrantHandler, "cacheEnabled", true,
+                    AbstractAuthorizationGrantHandler.class);
+            WhiteboxImpl.setInternalState(refreshGrantHandler, "isHashDisabled", true, RefreshGrantHandler.class);
+
+            // A new token is issued in place of the token of the refresh token, which expires the existing token.
+            AccessTokenDO existingToken = new AccessTokenDO();
+            existingToken.setTokenId(cachedValidationData.getTokenId());
+            existingToken.setAccessToken(cachedValidationData.getAccessToken());
+            existingToken.setRefreshToken(oldRefreshToken);
+            AccessTokenDO newToken = new AccessTokenDO();
+            newToken.setTokenId("newTokenId");
+            newToken.setAccessToken("newAccessToken");
+            newToken.setRefreshToken("newRefreshToken");
+            newToken.setTokenState(TOKEN_STATE_ACTIVE);
+            // Evict the cached data of the expired token by its id, as the token DAO does once the insert is
+            // committed.
+            doAnswer(invocation -> {
+                RefreshTokenValidationCache.getInstance().clearCacheEntryByTokenId(existingToken.getTokenId());
+                return true;
+            }).when(mockAccessTokenDAO).insertAccessToken(anyString(), anyString(), any(AccessTokenDO.class),
+                    any(AccessTokenDO.class), anyString());
+            OAuth2AccessTokenReqDTO reissueReqDTO = new OAuth2AccessTokenReqDTO();
+            reissueReqDTO.setClientId(clientId);
+            refreshGrantHandler.storeAccessToken(reissueReqDTO, null, newToken, newToken.getAccessToken(),
+                    existingToken);
+            assertNull(RefreshTokenValidationCache.getInstance().getValueFromCacheByRefreshToken(oldRefreshToken),
+                    "Refresh token of the expired token should be evicted from the cache.");
+
+            when(mockTokenManagementDAO.validateRefreshToken(clientId, oldRefreshToken))
+                    .thenReturn(buildValidationData(TOKEN_STATE_EXPIRED));
+            when(mockAccessTokenDAO.getLatestAccessTokens(anyString(), any(AuthenticatedUser.class), anyString(),
+                    anyString(), anyString(), anyBoolean(), anyInt())).thenReturn(Collections.singletonList(newToken));
+
+            OAuth2AccessTokenReqDTO tokenReqDTO = new OAuth2AccessTokenReqDTO();
+            tokenReqDTO.setClientId(clientId);
+            tokenReqDTO.setRefreshToken(oldRefreshToken);
+            try {
+                refreshGrantHandler.validateGrant(new OAuthTokenReqMessageContext(tokenReqDTO));
+                Assert.fail("Refresh token of a reissued token should be rejected as an invalid grant.");
+            } catch (IdentityOAuth2Exception e) {
+                assertEquals(e.getMessage(), "Invalid refresh token value in the request");
+            }
+        } finally {
+            WhiteboxImpl.setInternalState(persistenceFactory, "tokenDAO", accessTokenDAO);
+            WhiteboxImpl.setInternalState(persistenceFactory, "managementDAO", tokenManagementDAO);
+            RefreshTokenValidationCache.getInstance().clearCacheEntryByRefreshToken(oldRefreshToken);
+        }
+    }
+
+    private RefreshTokenValidationDataDO buildValidationData(String refreshTokenState) {
+
+        RefreshTokenValidationDataDO validationData = new RefreshTokenValidationDataDO();
+        validationData.setTokenId("oldTokenId");
+        validationData.setAccessToken("oldAccessToken");
+        validationData.setAuthorizedUser(authenticatedUser);
+        validationData.setScope(scopes);
+        validationData.setRefreshTokenState(refreshTokenState);
+        return validationData;
+    }
+
     @Test(dataProvider = "GetTokenIssuerData")
     public void testIssue(Long userAccessTokenExpiryTime, Long validityPeriod, String renewRefreshToken,
                           String clientId) throws Exception {
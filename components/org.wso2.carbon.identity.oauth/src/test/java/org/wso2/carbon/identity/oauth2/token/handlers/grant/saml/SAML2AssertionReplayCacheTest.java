@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.token.handlers.grant.saml;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for SAML2AssertionReplayCache.
+ */
+@PrepareForTest({IdentityUtil.class})
+public class SAML2AssertionReplayCacheTest extends PowerMockIdentityBaseTest {
+
+    private static final String ISSUER = "https://idp.example.com";
+    private static final String ASSERTION_ID = "_a75adf55-01d7-40cc-929f-dbd8372ebdfc";
+
+    @BeforeMethod
+    public void setUp() {
+
+        mockStatic(IdentityUtil.class);
+    }
+
+    @Test
+    public void testReplayedAssertionIsRejected() throws Exception {
+
+        SAML2AssertionReplayCache replayCache = new SAML2AssertionReplayCache();
+        long expiry = System.currentTimeMillis() + 60000;
+
+        assertTrue(replayCache.isEnabled());
+        assertTrue(replayCache.markUsed(ISSUER, ASSERTION_ID, expiry));
+        assertFalse(replayCache.markUsed(ISSUER, ASSERTION_ID, expiry));
+        assertTrue(replayCache.markUsed("https://other-idp.example.com", ASSERTION_ID, expiry));
+    }
+
+    @Test
+    public void testExpiredEntryIsReplaced() throws Exception {
+
+        SAML2AssertionReplayCache replayCache = new SAML2AssertionReplayCache();
+
+        assertTrue(replayCache.markUsed(ISSUER, ASSERTION_ID, System.currentTimeMillis() - 1));
+        assertTrue(replayCache.markUsed(ISSUER, ASSERTION_ID, System.currentTimeMillis() + 60000));
+        assertFalse(replayCache.markUsed(ISSUER, ASSERTION_ID, System.currentTimeMillis() + 60000));
+    }
+
+    @Test
+    public void testExpiredEntriesArePrunedWhenFull() throws Exception {
+
+        when(IdentityUtil.getProperty("OAuth.SAML2Grant.ReplayProtection.MaxEntries")).thenReturn("2");
+        SAML2AssertionReplayCache replayCache = new SAML2AssertionReplayCache();
+
+        replayCache.markUsed(ISSUER, "id1", System.currentTimeMillis() - 1);
+        replayCache.markUsed(ISSUER, "id2", System.currentTimeMillis() + 60000);
+        assertTrue(replayCache.markUsed(ISSUER, "id3", System.currentTimeMillis() + 60000));
+        assertEquals(replayCache.size(), 2);
+    }
+
+    @Test(expectedExceptions = IdentityOAuth2Exception.class)
+    public void testAssertionIsRejectedWhenFull() throws Exception {
+
+        when(IdentityUtil.getProperty("OAuth.SAML2Grant.ReplayProtection.MaxEntries")).thenReturn("1");
+        SAML2AssertionReplayCache replayCache = new SAML2AssertionReplayCache();
+
+        assertTrue(replayCache.markUsed(ISSUER, "id1", System.currentTimeMillis() + 60000));
+        replayCache.markUsed(ISSUER, "id2", System.currentTimeMillis() + 60000);
+    }
+
+    @Test
+    public void testDisabledReplayProtection() {
+
+        when(IdentityUtil.getProperty("OAuth.SAML2Grant.ReplayProtection.Enable")).thenReturn("false");
+        assertFalse(new SAML2AssertionReplayCache().isEnabled());
+    }
+}
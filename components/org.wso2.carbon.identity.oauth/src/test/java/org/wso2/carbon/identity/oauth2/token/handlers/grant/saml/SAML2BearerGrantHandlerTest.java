@@ -90,6 +90,7 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -208,6 +209,33 @@ public class SAML2BearerGrantHandlerTest extends PowerMockIdentityBaseTest {
                 MultitenantUtils.getTenantAwareUsername(TestConstants.TEST_USER_NAME));
     }
 
+    @Test
+    public void testReplayedAssertionIsRejected() throws Exception {
+
+        initSAMLGrant(OAuthConstants.UserType.LOCAL_USER_TYPE, "LOCAL");
+        mockOAuthComponents();
+        when(realmService.getTenantUserRealm(anyInt())).thenReturn(userRealm);
+        when(userRealm.getUserStoreManager()).thenReturn(userStoreManager);
+        when(userStoreManager.isExistingUser(anyString())).thenReturn(true);
+        when(oAuthServerConfiguration.getSaml2BearerTokenUserType())
+                .thenReturn(OAuthConstants.UserType.LOCAL_USER_TYPE);
+        when(IdentityUtil.extractDomainFromName(anyString())).thenReturn(TestConstants.USERSTORE_DOMAIN);
+        AtomicInteger callbackInvocations = new AtomicInteger();
+        when(oAuthServerConfiguration.getSAML2TokenCallbackHandler())
+                .thenReturn(context -> callbackInvocations.incrementAndGet());
+
+        assertTrue(saml2BearerGrantHandler.validateGrant(tokReqMsgCtx));
+        OAuthTokenReqMessageContext replayedTokReqMsgCtx = new OAuthTokenReqMessageContext(oAuth2AccessTokenReqDTO);
+        replayedTokReqMsgCtx.setTenantID(-1234);
+        try {
+            saml2BearerGrantHandler.validateGrant(replayedTokReqMsgCtx);
+            fail("Replayed assertion was accepted");
+        } catch (IdentityOAuth2Exception e) {
+            assertEquals(e.getMessage(), "Assertion has already been used");
+        }
+        assertEquals(callbackInvocations.get(), 1, "SAML2 token callback invoked for a replayed assertion");
+    }
+
     @DataProvider (name = "validateGrantExceptionDataProvider")
     public Object[][] validateGrantExceptionDataProvider() throws Exception {
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for AuthorizationStatusNotifier.
+ */
+public class AuthorizationStatusNotifierTest {
+
+    private static final String DEVICE_CODE = "dummyDeviceCode";
+
+    @Test
+    public void testAwaitWhenLongPollingDisabled() {
+
+        AuthorizationStatusNotifier notifier = new AuthorizationStatusNotifier(false, 5000L, 10);
+        assertFalse(notifier.isLongPollingEnabled());
+        assertFalse(notifier.awaitStatusChange(DEVICE_CODE, System.currentTimeMillis() + 5000L));
+    }
+
+    @Test
+    public void testAwaitTimeout() {
+
+        AuthorizationStatusNotifier notifier = new AuthorizationStatusNotifier(true, 50L, 10);
+        assertFalse(notifier.awaitStatusChange(DEVICE_CODE, System.currentTimeMillis() + 5000L));
+        assertFalse(notifier.hasWaitingRequests());
+    }
+
+    @Test
+    public void testAwaitAfterDeadline() {
+
+        AuthorizationStatusNotifier notifier = new AuthorizationStatusNotifier(true, 5000L, 10);
+        assertFalse(notifier.awaitStatusChange(DEVICE_CODE, System.currentTimeMillis() - 1000L));
+    }
+
+    @Test
+    public void testAwaitWhenMaxWaitingRequestsReached() {
+
+        AuthorizationStatusNotifier notifier = new AuthorizationStatusNotifier(true, 5000L, 0);
+        assertFalse(notifier.awaitStatusChange(DEVICE_CODE, System.currentTimeMillis() + 5000L));
+    }
+
+    @Test
+    public void testNotifyStatusChange() throws Exception {
+
+        AuthorizationStatusNotifier notifier = new AuthorizationStatusNotifier(true, 10000L, 10);
+        CompletableFuture<Boolean> waitingRequest = CompletableFuture.supplyAsync(() ->
+                notifier.awaitStatusChange(DEVICE_CODE, System.currentTimeMillis() + 10000L));
+        long waitUntil = System.currentTimeMillis() + 5000L;
+        while (!notifier.hasWaitingRequests() && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(10);
+        }
+        notifier.notifyStatusChange(DEVICE_CODE);
+        assertTrue(waitingRequest.get(5, TimeUnit.SECONDS));
+        assertFalse(notifier.hasWaitingRequests());
+    }
+}
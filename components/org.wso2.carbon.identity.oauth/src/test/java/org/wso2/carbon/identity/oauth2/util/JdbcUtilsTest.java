@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for the statement execution methods of JdbcUtils.
+ */
+@PrepareForTest({IdentityUtil.class})
+public class JdbcUtilsTest extends PowerMockIdentityBaseTest {
+
+    private static final String INSERT_SCOPE = "INSERT INTO TEST_SCOPE (NAME, TENANT_ID) VALUES (?, ?)";
+    private static final String GET_SCOPES = "SELECT NAME FROM TEST_SCOPE WHERE TENANT_ID = ? ORDER BY NAME";
+    private static final String UPDATE_TENANT = "UPDATE TEST_SCOPE SET TENANT_ID = ? WHERE TENANT_ID = ?";
+
+    private Connection connection;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(IdentityUtil.class);
+        connection = DriverManager.getConnection("jdbc:h2:mem:jdbcUtilsTest");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE TEST_SCOPE (NAME VARCHAR(255), TENANT_ID INTEGER)");
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE TEST_SCOPE");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testExecuteBatchAndQuery() throws Exception {
+
+        int[] updateCounts = JdbcUtils.executeBatch(connection, INSERT_SCOPE,
+                Arrays.asList("openid", "email", "profile"), (prepStmt, scope) -> {
+                    prepStmt.setString(1, scope);
+                    prepStmt.setInt(2, 1);
+                });
+        assertEquals(updateCounts.length, 3);
+
+        List<String> scopes = JdbcUtils.executeQuery(connection, GET_SCOPES,
+                (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setInt(1, 1));
+        assertEquals(scopes, Arrays.asList("email", "openid", "profile"));
+        assertEquals(JdbcUtils.fetchSingleRecord(connection, GET_SCOPES,
+                (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setInt(1, 1)), "email");
+    }
+
+    @Test
+    public void testExecuteUpdate() throws Exception {
+
+        JdbcUtils.executeBatch(connection, INSERT_SCOPE, Arrays.asList("openid", "email"),
+                (prepStmt, scope) -> {
+                    prepStmt.setString(1, scope);
+                    prepStmt.setInt(2, 1);
+                });
+        int updatedRows = JdbcUtils.executeUpdate(connection, UPDATE_TENANT, prepStmt -> {
+            prepStmt.setInt(1, 2);
+            prepStmt.setInt(2, 1);
+        });
+        assertEquals(updatedRows, 2);
+        assertNull(JdbcUtils.fetchSingleRecord(connection, GET_SCOPES,
+                (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> prepStmt.setInt(1, 1)));
+    }
+
+    @Test
+    public void testExecuteBatchWithoutElements() throws Exception {
+
+        assertEquals(JdbcUtils.executeBatch(connection, INSERT_SCOPE, Collections.<String>emptyList(),
+                (prepStmt, scope) -> prepStmt.setString(1, scope)).length, 0);
+    }
+
+    @Test
+    public void testStatementsArePoolableByDefault() throws Exception {
+
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(preparedStatement);
+
+        JdbcUtils.executeUpdate(mockConnection, UPDATE_TENANT, prepStmt -> prepStmt.setInt(1, 2));
+        verify(preparedStatement).setPoolable(true);
+        verify(preparedStatement).close();
+    }
+
+    @Test
+    public void testQueryStatisticsAreRecorded() throws Exception {
+
+        JdbcUtils.executeQuery(connection, GET_SCOPES, (resultSet, rowNumber) -> resultSet.getString(1),
+                prepStmt -> prepStmt.setInt(1, 1));
+        JdbcUtils.QueryStatistics statistics = JdbcUtils.getQueryStatistics().get(GET_SCOPES);
+        assertTrue(statistics.getExecutionCount() >= 1);
+        assertTrue(statistics.getTotalExecutionNanos() >= statistics.getMaxExecutionNanos());
+    }
+
+    @Test
+    public void testQueryStatisticsAreBounded() throws Exception {
+
+        for (int i = 0; i <= JdbcUtils.MAX_TRACKED_QUERIES; i++) {
+            JdbcUtils.executeQuery(connection, "SELECT NAME FROM TEST_SCOPE WHERE TENANT_ID = " + i,
+                    (resultSet, rowNumber) -> resultSet.getString(1), prepStmt -> { });
+        }
+        assertEquals(JdbcUtils.getQueryStatistics().size(), JdbcUtils.MAX_TRACKED_QUERIES);
+    }
+}
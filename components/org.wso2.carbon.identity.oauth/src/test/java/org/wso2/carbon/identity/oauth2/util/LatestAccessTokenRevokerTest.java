@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.mockito.ArgumentCaptor;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenDAO;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test class for LatestAccessTokenRevoker.
+ */
+@PrepareForTest({OAuthUtil.class, OAuth2Util.class})
+public class LatestAccessTokenRevokerTest extends PowerMockIdentityBaseTest {
+
+    private static final String CONSUMER_KEY = "dummyConsumerKey";
+
+    private AccessTokenDAO accessTokenDAO;
+    private AccessTokenDAO originalAccessTokenDAO;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(OAuthUtil.class);
+        mockStatic(OAuth2Util.class);
+        when(OAuth2Util.buildScopeString(any(String[].class))).thenAnswer(invocation ->
+                String.join(" ", (String[]) invocation.getArguments()[0]));
+        OAuthTokenPersistenceFactory persistenceFactory = OAuthTokenPersistenceFactory.getInstance();
+        originalAccessTokenDAO = persistenceFactory.getAccessTokenDAO();
+        accessTokenDAO = mock(AccessTokenDAO.class);
+        WhiteboxImpl.setInternalState(persistenceFactory, "tokenDAO", accessTokenDAO);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        WhiteboxImpl.setInternalState(OAuthTokenPersistenceFactory.getInstance(), "tokenDAO",
+                originalAccessTokenDAO);
+    }
+
+    @Test
+    public void testRevokeLatestTokenOfEachKey() throws Exception {
+
+        LatestAccessTokenRevoker tokenRevoker = new LatestAccessTokenRevoker(10);
+        tokenRevoker.consume(Arrays.asList(buildToken("token1", "alice", "openid", 1000L),
+                buildToken("token2", "alice", "openid", 3000L)));
+        tokenRevoker.consume(Arrays.asList(buildToken("token3", "alice", "openid", 2000L),
+                buildToken("token4", "alice", "email", 1000L)));
+        tokenRevoker.revokeLatestAccessTokens();
+
+        ArgumentCaptor<String[]> revokedTokens = ArgumentCaptor.forClass(String[].class);
+        verify(accessTokenDAO, times(1)).revokeAccessTokens(revokedTokens.capture(), anyBoolean());
+        List<String> tokens = Arrays.asList(revokedTokens.getValue());
+        Collections.sort(tokens);
+        assertEquals(tokens, Arrays.asList("token2", "token4"));
+    }
+
+    @Test
+    public void testRevokeWhileStreaming() throws Exception {
+
+        LatestAccessTokenRevoker tokenRevoker = new LatestAccessTokenRevoker(1);
+        tokenRevoker.consume(Collections.singletonList(buildToken("token1", "alice", "openid", 1000L)));
+        verify(accessTokenDAO, never()).revokeAccessTokens(any(String[].class), anyBoolean());
+
+        // Moving on to the tokens of the next user completes the tokens of the previous user.
+        tokenRevoker.consume(Collections.singletonList(buildToken("token2", "bob", "openid", 1000L)));
+        verify(accessTokenDAO, times(1)).revokeAccessTokens(new String[]{"token1"}, false);
+
+        tokenRevoker.revokeLatestAccessTokens();
+        verify(accessTokenDAO, times(1)).revokeAccessTokens(new String[]{"token2"}, false);
+    }
+
+    private AccessTokenDO buildToken(String accessToken, String userName, String scope, long issuedTime) {
+
+        AuthenticatedUser user = new AuthenticatedUser();
+        user.setUserName(userName);
+        user.setUserStoreDomain("PRIMARY");
+        user.setTenantDomain("carbon.super");
+        AccessTokenDO accessTokenDO = new AccessTokenDO(CONSUMER_KEY, user, new String[]{scope},
+                new Timestamp(issuedTime), new Timestamp(issuedTime), 3600000L, 3600000L, "APPLICATION_USER");
+        accessTokenDO.setAccessToken(accessToken);
+        return accessTokenDO;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2ClientException;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.openidconnect.dao.ScopeClaimMappingDAO;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test class for OIDCScopeBootstrapJob.
+ */
+public class OIDCScopeBootstrapJobTest extends PowerMockIdentityBaseTest {
+
+    private ScopeClaimMappingDAO scopeClaimMappingDAO;
+    private ScopeClaimMappingDAO originalScopeClaimMappingDAO;
+    private List<ScopeDTO> originalScopeClaims;
+    private ScopeDTO openidScope;
+    private ScopeDTO profileScope;
+
+    @BeforeMethod
+    public void setUp() {
+
+        OAuthTokenPersistenceFactory persistenceFactory = OAuthTokenPersistenceFactory.getInstance();
+        originalScopeClaimMappingDAO = persistenceFactory.getScopeClaimMappingDAO();
+        scopeClaimMappingDAO = mock(ScopeClaimMappingDAO.class);
+        WhiteboxImpl.setInternalState(persistenceFactory, "scopeClaimMappingDAO", scopeClaimMappingDAO);
+
+        openidScope = new ScopeDTO("openid", "openid", null, new String[]{"sub"});
+        profileScope = new ScopeDTO("profile", "profile", null, new String[]{"name", "family_name"});
+        originalScopeClaims = OAuth2ServiceComponentHolder.getInstance().getOIDCScopesClaims();
+        OAuth2ServiceComponentHolder.getInstance().setOIDCScopesClaims(Arrays.asList(openidScope, profileScope));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        WhiteboxImpl.setInternalState(OAuthTokenPersistenceFactory.getInstance(), "scopeClaimMappingDAO",
+                originalScopeClaimMappingDAO);
+        OAuth2ServiceComponentHolder.getInstance().setOIDCScopesClaims(originalScopeClaims);
+    }
+
+    @Test
+    public void testSeedOnlyMissingTenants() throws Exception {
+
+        when(scopeClaimMappingDAO.getTenantsWithScopesPopulated(anyCollection(), anyCollection()))
+                .thenReturn(new HashSet<>(Collections.singletonList(2)));
+        when(scopeClaimMappingDAO.getScopeNames(anyInt())).thenReturn(new ArrayList<>());
+        doThrow(new IdentityOAuth2Exception("Database error")).when(scopeClaimMappingDAO)
+                .addScope(any(ScopeDTO.class), eq(3));
+
+        OIDCScopeBootstrapJob job = new OIDCScopeBootstrapJob(Arrays.asList(1, 2, 3), 2);
+        job.process();
+
+        assertEquals(job.getStatus(), OIDCScopeBootstrapJob.Status.COMPLETED);
+        assertEquals(job.getTotalTenants(), 3);
+        assertEquals(job.getSkippedTenants(), 1);
+        assertEquals(job.getSeededTenants(), 1);
+        assertEquals(job.getFailedTenants(), 1);
+        verify(scopeClaimMappingDAO).getTenantsWithScopesPopulated(Arrays.asList(1, 2, 3),
+                Arrays.asList("openid", "profile"));
+        verify(scopeClaimMappingDAO).addScope(openidScope, 1);
+        verify(scopeClaimMappingDAO).addScope(profileScope, 1);
+        verify(scopeClaimMappingDAO, never()).addScope(any(ScopeDTO.class), eq(2));
+    }
+
+    @Test
+    public void testPartiallySeededTenantIsResumed() throws Exception {
+
+        when(scopeClaimMappingDAO.getTenantsWithScopesPopulated(anyCollection(), anyCollection()))
+                .thenReturn(new HashSet<>());
+        when(scopeClaimMappingDAO.getScopeNames(1)).thenReturn(new ArrayList<>(Collections.singletonList("openid")));
+
+        OIDCScopeBootstrapJob job = new OIDCScopeBootstrapJob(Collections.singletonList(1), 1);
+        job.process();
+
+        assertEquals(job.getSeededTenants(), 1);
+        assertEquals(job.getFailedTenants(), 0);
+        verify(scopeClaimMappingDAO, never()).addScope(openidScope, 1);
+        verify(scopeClaimMappingDAO).addScope(profileScope, 1);
+    }
+
+    @Test
+    public void testConcurrentlyAddedScopeDoesNotStopSeeding() throws Exception {
+
+        when(scopeClaimMappingDAO.getTenantsWithScopesPopulated(anyCollection(), anyCollection()))
+                .thenReturn(new HashSet<>());
+        when(scopeClaimMappingDAO.getScopeNames(1)).thenReturn(new ArrayList<>());
+        doThrow(new IdentityOAuth2ClientException("Scope exists")).when(scopeClaimMappingDAO)
+                .addScope(openidScope, 1);
+
+        OIDCScopeBootstrapJob job = new OIDCScopeBootstrapJob(Collections.singletonList(1), 1);
+        job.process();
+
+        assertEquals(job.getSeededTenants(), 1);
+        assertEquals(job.getFailedTenants(), 0);
+        verify(scopeClaimMappingDAO).addScope(profileScope, 1);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.oauth2.util;
+
+import org.mockito.InOrder;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.oauth.OAuthUtil;
+import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenBatchConsumer;
+import org.wso2.carbon.identity.oauth2.dao.AccessTokenDAO;
+import org.wso2.carbon.identity.oauth2.dao.AuthorizationCodeDAO;
+import org.wso2.carbon.identity.oauth2.dao.OAuthTokenPersistenceFactory;
+import org.wso2.carbon.identity.oauth2.internal.OAuth2ServiceComponentHolder;
+import org.wso2.carbon.identity.oauth2.model.AccessTokenDO;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+import org.wso2.carbon.registry.core.Registry;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.registry.core.service.RegistryService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.IntConsumer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Test class for UserStoreDomainRenameJob.
+ */
+@PrepareForTest({OAuth2Util.class, OAuthUtil.class, IdentityUtil.class})
+public class UserStoreDomainRenameJobTest extends PowerMockIdentityBaseTest {
+
+    private static final int TENANT_ID = 1;
+    private static final String TENANT_DOMAIN = "wso2.com";
+    private static final String CURRENT_DOMAIN = "SECONDARY";
+    private static final String NEW_DOMAIN = "RENAMED";
+
+    private AccessTokenDAO accessTokenDAO;
+    private AuthorizationCodeDAO authorizationCodeDAO;
+    private AccessTokenDAO originalAccessTokenDAO;
+    private AuthorizationCodeDAO originalAuthorizationCodeDAO;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+
+        mockStatic(OAuth2Util.class);
+        mockStatic(OAuthUtil.class);
+        mockStatic(IdentityUtil.class);
+        when(OAuth2Util.getTenantDomain(TENANT_ID)).thenReturn(TENANT_DOMAIN);
+        when(OAuth2Util.getSanitizedUserStoreDomain(anyString())).thenAnswer(invocation ->
+                ((String) invocation.getArguments()[0]).toUpperCase());
+
+        OAuthTokenPersistenceFactory persistenceFactory = OAuthTokenPersistenceFactory.getInstance();
+        originalAccessTokenDAO = persistenceFactory.getAccessTokenDAO();
+        originalAuthorizationCodeDAO = persistenceFactory.getAuthorizationCodeDAO();
+        accessTokenDAO = mock(AccessTokenDAO.class);
+        authorizationCodeDAO = mock(AuthorizationCodeDAO.class);
+        WhiteboxImpl.setInternalState(persistenceFactory, "tokenDAO", accessTokenDAO);
+        WhiteboxImpl.setInternalState(persistenceFactory, "authorizationCodeDAO", authorizationCodeDAO);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        OAuthTokenPersistenceFactory persistenceFactory = OAuthTokenPersistenceFactory.getInstance();
+        WhiteboxImpl.setInternalState(persistenceFactory, "tokenDAO", originalAccessTokenDAO);
+        WhiteboxImpl.setInternalState(persistenceFactory, "authorizationCodeDAO", originalAuthorizationCodeDAO);
+        OAuth2ServiceComponentHolder.setRegistryService(null);
+    }
+
+    @Test
+    public void testExecuteInChunks() throws Exception {
+
+        doAnswer(invocation -> {
+            AccessTokenBatchConsumer consumer = (AccessTokenBatchConsumer) invocation.getArguments()[4];
+            consumer.consume(Arrays.asList(buildToken("token1"), buildToken("token2")));
+            consumer.consume(Collections.singletonList(buildToken("token3")));
+            return null;
+        }).when(accessTokenDAO).updateUserStoreDomainInChunks(eq(TENANT_ID), eq(CURRENT_DOMAIN), eq(NEW_DOMAIN),
+                eq(2), any(AccessTokenBatchConsumer.class));
+        doAnswer(invocation -> {
+            IntConsumer consumer = (IntConsumer) invocation.getArguments()[4];
+            consumer.accept(2);
+            consumer.accept(2);
+            return null;
+        }).when(authorizationCodeDAO).updateUserStoreDomainInChunks(eq(TENANT_ID), eq(CURRENT_DOMAIN),
+                eq(NEW_DOMAIN), eq(2), any(IntConsumer.class));
+
+        UserStoreDomainRenameJob job = new UserStoreDomainRenameJob(TENANT_ID, CURRENT_DOMAIN, NEW_DOMAIN, 2);
+        job.execute();
+
+        assertEquals(job.getStatus(), UserStoreDomainRenameJob.Status.COMPLETED);
+        assertEquals(UserStoreDomainRenameJob.getStatus(TENANT_ID, CURRENT_DOMAIN),
+                UserStoreDomainRenameJob.Status.COMPLETED);
+        assertEquals(job.getProcessedAccessTokens(), 3);
+        assertEquals(job.getProcessedAuthorizationCodes(), 4);
+        verifyStatic(OAuthUtil.class, times(3));
+        OAuthUtil.clearOAuthCacheByTenant(anyString(), eq(TENANT_DOMAIN));
+    }
+
+    @Test
+    public void testExecuteWithFailure() throws Exception {
+
+        doThrow(new IdentityOAuth2Exception("Database error")).when(accessTokenDAO).updateUserStoreDomainInChunks(
+                anyInt(), anyString(), anyString(), anyInt(), any(AccessTokenBatchConsumer.class));
+
+        UserStoreDomainRenameJob job = new UserStoreDomainRenameJob(TENANT_ID, "FAILING", NEW_DOMAIN, 2);
+        try {
+            job.execute();
+            fail("Expected the rename job to fail.");
+        } catch (IdentityOAuth2Exception e) {
+            assertEquals(job.getStatus(), UserStoreDomainRenameJob.Status.FAILED);
+            assertEquals(UserStoreDomainRenameJob.getStatus(TENANT_ID, "FAILING"),
+                    UserStoreDomainRenameJob.Status.FAILED);
+        }
+        assertNull(UserStoreDomainRenameJob.getStatus(TENANT_ID, "UNKNOWN"));
+    }
+
+    @Test
+    public void testPendingRenameRecordedUntilCompleted() throws Exception {
+
+        Registry registry = mock(Registry.class);
+        Resource resource = mock(Resource.class);
+        RegistryService registryService = mock(RegistryService.class);
+        when(registryService.getConfigSystemRegistry()).thenReturn(registry);
+        when(registry.resourceExists(anyString())).thenReturn(true);
+        when(registry.get(anyString())).thenReturn(resource);
+        OAuth2ServiceComponentHolder.setRegistryService(registryService);
+
+        new UserStoreDomainRenameJob(TENANT_ID, "RECORDED", NEW_DOMAIN, 2).execute();
+
+        InOrder inOrder = inOrder(resource, accessTokenDAO);
+        inOrder.verify(resource).setProperty("1:RECORDED", Arrays.asList("RECORDED", NEW_DOMAIN));
+        inOrder.verify(accessTokenDAO).updateUserStoreDomainInChunks(eq(TENANT_ID), eq("RECORDED"),
+                eq(NEW_DOMAIN), eq(2), any(AccessTokenBatchConsumer.class));
+        inOrder.verify(resource).removeProperty("1:RECORDED");
+    }
+
+    @Test
+    public void testPendingRenameLeasedByAnotherNode() throws Exception {
+
+        Registry registry = mock(Registry.class);
+        Resource resource = mock(Resource.class);
+        RegistryService registryService = mock(RegistryService.class);
+        when(registryService.getConfigSystemRegistry()).thenReturn(registry);
+        when(registry.resourceExists(anyString())).thenReturn(true);
+        when(registry.get(anyString())).thenReturn(resource);
+        when(resource.getPropertyValues("1:LEASED")).thenReturn(Arrays.asList("otherNode",
+                String.valueOf(System.currentTimeMillis() + 60000)));
+        OAuth2ServiceComponentHolder.setRegistryService(registryService);
+
+        WhiteboxImpl.invokeMethod(UserStoreDomainRenameJob.class, "resumePendingJob", "1:LEASED",
+                Arrays.asList("LEASED", NEW_DOMAIN));
+
+        verify(accessTokenDAO, never()).updateUserStoreDomainInChunks(anyInt(), anyString(), anyString(), anyInt(),
+                any(AccessTokenBatchConsumer.class));
+        verify(resource, never()).setProperty(anyString(), anyListOf(String.class));
+        verify(resource, never()).removeProperty(anyString());
+    }
+
+    @Test
+    public void testPendingRenameKeptOnFailure() throws Exception {
+
+        Registry registry = mock(Registry.class);
+        Resource resource = mock(Resource.class);
+        RegistryService registryService = mock(RegistryService.class);
+        when(registryService.getConfigSystemRegistry()).thenReturn(registry);
+        when(registry.resourceExists(anyString())).thenReturn(true);
+        when(registry.get(anyString())).thenReturn(resource);
+        OAuth2ServiceComponentHolder.setRegistryService(registryService);
+        doThrow(new IdentityOAuth2Exception("Database error")).when(accessTokenDAO).updateUserStoreDomainInChunks(
+                anyInt(), anyString(), anyString(), anyInt(), any(AccessTokenBatchConsumer.class));
+
+        try {
+            new UserStoreDomainRenameJob(TENANT_ID, "INTERRUPTED", NEW_DOMAIN, 2).execute();
+            fail("Expected the rename job to fail.");
+        } catch (IdentityOAuth2Exception e) {
+            verify(resource).setProperty("1:INTERRUPTED", Arrays.asList("INTERRUPTED", NEW_DOMAIN));
+            verify(resource, never()).removeProperty(anyString());
+        }
+    }
+
+    private AccessTokenDO buildToken(String accessToken) {
+
+        AccessTokenDO accessTokenDO = new AccessTokenDO();
+        accessTokenDO.setTokenId(accessToken + "Id");
+        accessTokenDO.setAccessToken(accessToken);
+        return accessTokenDO;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.identity.oauth2.validators;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.store.SessionDataStore;
+import org.wso2.carbon.identity.common.testng.WithCarbonHome;
+import org.wso2.carbon.identity.oauth.cache.JWTRevocationCache;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for JWTRevocationList.
+ */
+@WithCarbonHome
+@PrepareForTest({SessionDataStore.class})
+public class JWTRevocationListTest extends PowerMockIdentityBaseTest {
+
+    private final Map<String, Object> storedEntries = new ConcurrentHashMap<>();
+
+    @BeforeMethod
+    public void setUp() {
+
+        storedEntries.clear();
+        SessionDataStore sessionDataStore = mock(SessionDataStore.class);
+        doAnswer(invocation -> storedEntries.put(invocation.getArguments()[1] + ":" + invocation.getArguments()[0],
+                invocation.getArguments()[2])).when(sessionDataStore)
+                .storeSessionData(anyString(), anyString(), any());
+        when(sessionDataStore.getSessionData(anyString(), anyString())).thenAnswer(invocation ->
+                storedEntries.get(invocation.getArguments()[1] + ":" + invocation.getArguments()[0]));
+        mockStatic(SessionDataStore.class);
+        when(SessionDataStore.getInstance()).thenReturn(sessionDataStore);
+        JWTRevocationCache.getInstance().clearAll();
+    }
+
+    @Test
+    public void testRevoke() {
+
+        JWTRevocationList revocationList = new JWTRevocationList();
+        long expiryTime = System.currentTimeMillis() + 60000;
+
+        assertFalse(revocationList.isRevoked("jti-1"));
+        assertTrue(revocationList.revoke("jti-1", expiryTime));
+        assertTrue(revocationList.isRevoked("jti-1"));
+        assertFalse(revocationList.revoke("jti-1", expiryTime), "A token should be revoked only once.");
+        assertEquals(revocationList.getLatestSequence(), 1);
+    }
+
+    @Test
+    public void testRevokeExpiredToken() {
+
+        JWTRevocationList revocationList = new JWTRevocationList();
+
+        assertFalse(revocationList.revoke("jti-1", System.currentTimeMillis() - 1000));
+        assertFalse(revocationList.isRevoked("jti-1"));
+        assertFalse(revocationList.revoke(null, System.currentTimeMillis() + 60000));
+    }
+
+    @Test
+    public void testGetRevokedTokens() {
+
+        JWTRevocationList revocationList = new JWTRevocationList();
+        long expiryTime = System.currentTimeMillis() + 60000;
+        revocationList.revoke("jti-1", expiryTime);
+        revocationList.revoke("jti-2", expiryTime);
+        revocationList.revoke("jti-3", expiryTime);
+
+        List<JWTRevocationList.RevokedJWT> allRevocations = revocationList.getRevokedTokens(0);
+        assertEquals(allRevocations.size(), 3);
+        assertEquals(allRevocations.get(0).getJwtId(), "jti-1");
+
+        List<JWTRevocationList.RevokedJWT> newRevocations =
+                revocationList.getRevokedTokens(allRevocations.get(1).getSequence());
+        assertEquals(newRevocations.size(), 1);
+        assertEquals(newRevocations.get(0).getJwtId(), "jti-3");
+        assertTrue(revocationList.getRevokedTokens(revocationList.getLatestSequence()).isEmpty());
+    }
+
+    @Test
+    public void testRevocationOfAnotherNode() {
+
+        JWTRevocationList revokingNodeList = new JWTRevocationList();
+        JWTRevocationList peerNodeList = new JWTRevocationList();
+        revokingNodeList.revoke("jti-1", System.currentTimeMillis() + 60000);
+
+        assertTrue(peerNodeList.isRevoked("jti-1"), "A revocation should be visible through the shared cache.");
+        assertTrue(peerNodeList.getRevokedTokens(0).isEmpty());
+
+        JWTRevocationCache.getInstance().addRevokedToken("jti-2", System.currentTimeMillis() - 1000);
+        assertFalse(peerNodeList.isRevoked("jti-2"), "An expired token need not be rejected as revoked.");
+    }
+
+    @Test
+    public void testRevocationIsReadFromSessionDataStore() {
+
+        JWTRevocationList revokingNodeList = new JWTRevocationList();
+        JWTRevocationList peerNodeList = new JWTRevocationList();
+        revokingNodeList.revoke("jti-1", System.currentTimeMillis() + 60000);
+        assertEquals(storedEntries.size(), 1);
+
+        // The cache of a peer node does not hold the revocation, hence it is read from the session data store.
+        JWTRevocationCache.getInstance().clearAll();
+        assertTrue(peerNodeList.isRevoked("jti-1"));
+        assertFalse(peerNodeList.isRevoked("jti-2"));
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.wso2.carbon.identity.oauth2.validators;
 
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.oltu.oauth2.as.issuer.OAuthIssuer;
 import org.mockito.Mock;
@@ -25,6 +27,7 @@ import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.testng.PowerMockTestCase;
+import org.powermock.reflect.internal.WhiteboxImpl;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -61,9 +64,12 @@ import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.mockito.Matchers.any;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 
 @WithCarbonHome
@@ -87,6 +93,7 @@ public class TokenValidationHandlerTest extends PowerMockTestCase {
     private static final String DB_NAME = "jdbc/WSO2IdentityDB";
     private static final String H2_SCRIPT_NAME = "token.sql";
     private Connection conn = null;
+    private BasicDataSource dataSource;
 
     @Mock
     private OAuth2TokenValidator tokenValidator;
@@ -205,6 +212,74 @@ public class TokenValidationHandlerTest extends PowerMockTestCase {
         assertNotNull(tokenValidationHandler.buildIntrospectionResponse(oAuth2TokenValidationRequestDTO));
     }
 
+    @DataProvider(name = "StatelessAccessTokenDataProvider")
+    public Object[][] statelessAccessTokenDataProvider() {
+
+        return new Object[][]{
+                // Token marked as stateless at issuance, of an active application.
+                {true, true},
+                // Token not marked as stateless, for example a persisted token that is revoked.
+                {false, false}
+        };
+    }
+
+    @Test(dataProvider = "StatelessAccessTokenDataProvider")
+    public void testFindOAuthConsumerIfStatelessTokenIsValid(boolean statelessTokenBuilt, boolean expectedValid)
+            throws Exception {
+
+        mockRequiredObjects();
+        when(IdentityDatabaseUtil.getDBConnection(false)).thenAnswer(invocation -> dataSource.getConnection());
+        when(oAuthServerConfiguration.getPersistenceProcessor()).thenReturn(new PlainTextPersistenceProcessor());
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put("OAuth.JWTAccessToken.Stateless.Enable", "true");
+        WhiteboxImpl.setInternalState(IdentityUtil.class, "configuration", configuration);
+
+        String token = new PlainJWT(new JWTClaimsSet.Builder().jwtID("statelessJwtId").build()).serialize();
+        AuthenticatedUser appOwner = new AuthenticatedUser();
+        appOwner.setUserName("appOwner");
+        appOwner.setUserStoreDomain("PRIMARY");
+        appOwner.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        AccessTokenDO statelessAccessTokenDO = new AccessTokenDO(clientId, appOwner, scopeArraySorted, issuedTime,
+                refreshTokenIssuedTime, validityPeriodInMillis, refreshTokenValidityPeriodInMillis, tokenType,
+                authorizationCode);
+        OAuth2JWTTokenValidator jwtTokenValidator = Mockito.mock(OAuth2JWTTokenValidator.class);
+        doAnswer(invocation -> {
+            if (statelessTokenBuilt) {
+                ((OAuth2TokenValidationMessageContext) invocation.getArguments()[0])
+                        .addProperty(OAuth2Util.STATELESS_ACCESS_TOKEN_DO, statelessAccessTokenDO);
+            }
+            return true;
+        }).when(jwtTokenValidator).validateAccessToken(any(OAuth2TokenValidationMessageContext.class));
+        when(jwtTokenValidator.validateAccessDelegation(any(OAuth2TokenValidationMessageContext.class)))
+                .thenReturn(true);
+        when(jwtTokenValidator.validateScope(any(OAuth2TokenValidationMessageContext.class))).thenReturn(true);
+
+        Map<String, OAuth2TokenValidator> tokenValidators =
+                WhiteboxImpl.getInternalState(tokenValidationHandler, "tokenValidators");
+        OAuth2TokenValidator originalJWTTokenValidator = tokenValidators.get(JWT_TOKEN_TYPE.toLowerCase());
+        tokenValidationHandler.addTokenValidator(JWT_TOKEN_TYPE.toLowerCase(), jwtTokenValidator);
+        try {
+            OAuth2TokenValidationRequestDTO requestDTO = new OAuth2TokenValidationRequestDTO();
+            OAuth2TokenValidationRequestDTO.OAuth2AccessToken accessToken = requestDTO.new OAuth2AccessToken();
+            accessToken.setIdentifier(token);
+            accessToken.setTokenType("bearer");
+            requestDTO.setAccessToken(accessToken);
+
+            OAuth2ClientApplicationDTO response = tokenValidationHandler.findOAuthConsumerIfTokenIsValid(requestDTO);
+            assertEquals(response.getAccessTokenValidationResponse().isValid(), expectedValid);
+            if (expectedValid) {
+                assertEquals(response.getConsumerKey(), clientId);
+            }
+        } finally {
+            if (originalJWTTokenValidator != null) {
+                tokenValidators.put(JWT_TOKEN_TYPE.toLowerCase(), originalJWTTokenValidator);
+            } else {
+                tokenValidators.remove(JWT_TOKEN_TYPE.toLowerCase());
+            }
+            WhiteboxImpl.setInternalState(IdentityUtil.class, "configuration", new HashMap<>());
+        }
+    }
+
     protected void mockRequiredObjects() throws Exception {
 
         mockStatic(OAuthServerConfiguration.class);
@@ -226,7 +301,7 @@ public class TokenValidationHandlerTest extends PowerMockTestCase {
     private Connection getDBConnection() throws Exception {
 
         if (conn == null) {
-            BasicDataSource dataSource = new BasicDataSource();
+            dataSource = new BasicDataSource();
             dataSource.setDriverClassName("org.h2.Driver");
             dataSource.setUsername("username");
             dataSource.setPassword("password");
@@ -61,6 +61,7 @@ import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheEntry;
 import org.wso2.carbon.identity.oauth.cache.AuthorizationGrantCacheKey;
 import org.wso2.carbon.identity.oauth.common.OAuthConstants;
 import org.wso2.carbon.identity.oauth.config.OAuthServerConfiguration;
+import org.wso2.carbon.identity.oauth.util.ClaimDialectMappingCache;
 import org.wso2.carbon.identity.oauth2.IdentityOAuth2Exception;
 import org.wso2.carbon.identity.oauth2.TestConstants;
 import org.wso2.carbon.identity.oauth2.authz.OAuthAuthzReqMessageContext;
@@ -696,6 +697,7 @@ public class DefaultOIDCClaimsCallbackHandlerTest {
                 TENANT_DOMAIN, false);
         // Set Claim Handler instance
         setStaticField(ClaimMetadataHandler.class, "INSTANCE", claimMetadataHandler);
+        ClaimDialectMappingCache.getInstance().clear();
     }
 
     private void setStaticField(Class classname,
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.openidconnect;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.oauth.dto.ScopeDTO;
+import org.wso2.carbon.identity.openidconnect.cache.OIDCScopeClaimCacheEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for OIDCScopeClaimProjection.
+ */
+public class OIDCScopeClaimProjectionTest {
+
+    private OIDCScopeClaimProjection projection;
+    private Map<String, Object> userClaims;
+
+    @BeforeClass
+    public void setUp() {
+
+        List<ScopeDTO> scopes = new ArrayList<>();
+        scopes.add(new ScopeDTO("openid", "openid", null, new String[]{"sub"}));
+        scopes.add(new ScopeDTO("email", "email", null, new String[]{"email", "email_verified"}));
+        scopes.add(new ScopeDTO("profile", "profile", null, new String[]{"given_name", "email"}));
+        scopes.add(new ScopeDTO("address", "address", null, new String[]{"address.country", "locality"}));
+        projection = new OIDCScopeClaimProjection(scopes);
+
+        userClaims = new HashMap<>();
+        userClaims.put("sub", "admin");
+        userClaims.put("email", "admin@wso2.com");
+        userClaims.put("given_name", "Admin");
+        userClaims.put("country", "Sri Lanka");
+        userClaims.put("locality", "Colombo");
+    }
+
+    @Test
+    public void testIsOIDCScope() {
+
+        assertTrue(projection.isOIDCScope("email"));
+        assertFalse(projection.isOIDCScope("internal_login"));
+        assertFalse(projection.isEmpty());
+        assertTrue(new OIDCScopeClaimProjection(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void testFilterClaimsForSingleScope() {
+
+        Map<String, Object> filteredClaims = new HashMap<>();
+        Map<String, Object> addressClaims = new HashMap<>();
+        projection.filterClaims(userClaims, new String[]{"email"}, filteredClaims, addressClaims);
+        assertEquals(filteredClaims.size(), 1);
+        assertEquals(filteredClaims.get("email"), "admin@wso2.com");
+        assertTrue(addressClaims.isEmpty());
+    }
+
+    @Test
+    public void testFilterClaimsForMultipleScopes() {
+
+        String[] requestedScopes = {"openid", "profile", "address", "internal_login"};
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> filteredClaims = new HashMap<>();
+            Map<String, Object> addressClaims = new HashMap<>();
+            projection.filterClaims(userClaims, requestedScopes, filteredClaims, addressClaims);
+            assertEquals(filteredClaims.size(), 3);
+            assertEquals(filteredClaims.get("given_name"), "Admin");
+            assertEquals(addressClaims.size(), 2);
+            assertEquals(addressClaims.get("country"), "Sri Lanka");
+            assertEquals(addressClaims.get("locality"), "Colombo");
+        }
+    }
+
+    @Test
+    public void testGetScopeClaimsMap() {
+
+        assertEquals(projection.getScopeClaimsMap().size(), 4);
+        assertEquals(projection.getScopeClaimsMap().get("profile").get(0), "given_name");
+    }
+
+    @Test
+    public void testProjectionSerializedWithCacheEntry() throws Exception {
+
+        List<ScopeDTO> scopes = new ArrayList<>();
+        scopes.add(new ScopeDTO("email", "email", null, new String[]{"email", "email_verified"}));
+        scopes.add(new ScopeDTO("address", "address", null, new String[]{"address.country", "locality"}));
+        OIDCScopeClaimCacheEntry cacheEntry = new OIDCScopeClaimCacheEntry();
+        cacheEntry.setScopeClaimMapping(scopes);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(cacheEntry);
+        }
+        OIDCScopeClaimCacheEntry deserializedEntry;
+        try (ObjectInputStream objectInputStream =
+                     new ObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            deserializedEntry = (OIDCScopeClaimCacheEntry) objectInputStream.readObject();
+        }
+
+        OIDCScopeClaimProjection deserializedProjection = deserializedEntry.getScopeClaimProjection();
+        assertNotNull(deserializedProjection);
+        Map<String, Object> filteredClaims = new HashMap<>();
+        Map<String, Object> addressClaims = new HashMap<>();
+        deserializedProjection.filterClaims(userClaims, new String[]{"email", "address"}, filteredClaims,
+                addressClaims);
+        assertEquals(filteredClaims.get("email"), "admin@wso2.com");
+        assertEquals(addressClaims.get("country"), "Sri Lanka");
+        assertEquals(addressClaims.size(), 2);
+    }
+}
@@ -39,7 +39,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @WithCarbonHome
 @WithRegistry
@@ -127,6 +130,19 @@ public class RequestObjectServiceTest extends PowerMockTestCase {
         Assert.assertEquals(claims.get(0).getName(), "address");
     }
 
+    @Test
+    public void testGetRequestedClaimsFromMap() {
+
+        Map<String, List<RequestedClaim>> requestedClaims = new HashMap<>();
+        requestedClaims.put(OIDCConstants.USERINFO, Collections.singletonList(requestedClaimForEmail));
+        requestedClaims.put(OIDCConstants.ID_TOKEN, Collections.singletonList(requestedClaimForAddress));
+        Assert.assertEquals(requestObjectService.getRequestedClaims(requestedClaims, true).get(0).getName(),
+                "email");
+        Assert.assertEquals(requestObjectService.getRequestedClaims(requestedClaims, false).get(0).getName(),
+                "address");
+        Assert.assertTrue(requestObjectService.getRequestedClaims(new HashMap<>(), true).isEmpty());
+    }
+
     protected void addToken(String token, String tokenId) throws Exception {
 
         // TODO this is not good :(
@@ -74,10 +74,12 @@ CREATE TABLE IF NOT EXISTS IDN_OAUTH2_TOKEN_BINDING (
             TOKEN_BINDING_REF VARCHAR (32),
             TOKEN_BINDING_VALUE VARCHAR (1024),
             TENANT_ID INTEGER DEFAULT -1,
-            PRIMARY KEY (TOKEN_ID),
+            UNIQUE (TOKEN_ID,TOKEN_BINDING_TYPE,TOKEN_BINDING_VALUE),
             FOREIGN KEY (TOKEN_ID) REFERENCES IDN_OAUTH2_ACCESS_TOKEN(TOKEN_ID) ON DELETE CASCADE
 );
 
+CREATE INDEX IDX_IDN_AUTH_BIND ON IDN_OAUTH2_TOKEN_BINDING (TOKEN_BINDING_VALUE, TOKEN_BINDING_TYPE);
+
 CREATE TABLE IF NOT EXISTS IDN_OAUTH2_ACCESS_TOKEN_SCOPE (
             TOKEN_ID VARCHAR (255),
             TOKEN_SCOPE VARCHAR (60),
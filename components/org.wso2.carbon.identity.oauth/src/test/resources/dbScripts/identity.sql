@@ -94,16 +94,20 @@ CREATE TABLE IF NOT EXISTS IDN_OAUTH2_TOKEN_BINDING (
             TOKEN_BINDING_REF VARCHAR (32),
             TOKEN_BINDING_VALUE VARCHAR (1024),
             TENANT_ID INTEGER DEFAULT -1,
-            PRIMARY KEY (TOKEN_ID),
+            UNIQUE (TOKEN_ID,TOKEN_BINDING_TYPE,TOKEN_BINDING_VALUE),
             FOREIGN KEY (TOKEN_ID) REFERENCES IDN_OAUTH2_ACCESS_TOKEN(TOKEN_ID) ON DELETE CASCADE
 );
 
+CREATE INDEX IDX_IDN_AUTH_BIND ON IDN_OAUTH2_TOKEN_BINDING (TOKEN_BINDING_VALUE, TOKEN_BINDING_TYPE);
+
 CREATE INDEX IDX_AT_CK_AU ON IDN_OAUTH2_ACCESS_TOKEN(CONSUMER_KEY_ID, AUTHZ_USER, TOKEN_STATE, USER_TYPE);
 
 CREATE INDEX IDX_TC ON IDN_OAUTH2_ACCESS_TOKEN(TIME_CREATED);
 
 CREATE INDEX IDX_AT ON IDN_OAUTH2_ACCESS_TOKEN(ACCESS_TOKEN);
 
+CREATE INDEX IDX_AT_TI_UD ON IDN_OAUTH2_ACCESS_TOKEN(TENANT_ID, USER_DOMAIN, TOKEN_ID);
+
 CREATE TABLE IF NOT EXISTS IDN_OAUTH2_DEVICE_FLOW (
     CODE_ID VARCHAR(255),
     DEVICE_CODE VARCHAR(255),
@@ -162,6 +166,8 @@ CREATE TABLE IF NOT EXISTS IDN_OAUTH2_AUTHZ_CODE_SCOPE(
 
 CREATE INDEX IDX_AUTHORIZATION_CODE ON IDN_OAUTH2_AUTHORIZATION_CODE (AUTHORIZATION_CODE,CONSUMER_KEY_ID);
 
+CREATE INDEX IDX_AC_TI_UD ON IDN_OAUTH2_AUTHORIZATION_CODE(TENANT_ID, USER_DOMAIN, CODE_ID);
+
 CREATE TABLE IF NOT EXISTS IDN_OAUTH2_ACCESS_TOKEN_SCOPE (
             TOKEN_ID VARCHAR (255),
             TOKEN_SCOPE VARCHAR (60),